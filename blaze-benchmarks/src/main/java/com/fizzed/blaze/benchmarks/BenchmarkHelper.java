@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.core.ContextHolder;
+import com.fizzed.blaze.internal.ConfigHelper;
+import com.fizzed.blaze.internal.ContextImpl;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Shared setup for the benchmarks.
+ */
+class BenchmarkHelper {
+    
+    static Context context() {
+        return context(null);
+    }
+    
+    static Context context(Path userDir) {
+        Context context = new ContextImpl(null, userDir, null, ConfigHelper.create(null));
+        ContextHolder.set(context);
+        return context;
+    }
+    
+    static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+    
+    static byte[] lines(int count, int length) {
+        StringBuilder sb = new StringBuilder(count * (length + 1));
+        Random random = new Random(count);
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < length; j++) {
+                sb.append((char)('a' + random.nextInt(26)));
+            }
+            sb.append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * @return The bundled examples dir (-Dblaze.examples.dir, otherwise
+     *      searched for from the working dir up)
+     */
+    static Path examplesDir() {
+        String dir = System.getProperty("blaze.examples.dir");
+        if (dir != null) {
+            return Paths.get(dir);
+        }
+        Path path = Paths.get("").toAbsolutePath();
+        while (path != null) {
+            if (Files.isDirectory(path.resolve("examples"))) {
+                return path.resolve("examples");
+            }
+            path = path.getParent();
+        }
+        throw new IllegalStateException("Unable to find examples dir (try -Dblaze.examples.dir)");
+    }
+    
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with JMH, writing results as JSON (jmh-result.json in
+ * the working dir) so they can be tracked across changes.  Any JMH option is
+ * supported and -rf/-rff override the result format/file.
+ * 
+ *   java -jar blaze-benchmarks/target/benchmarks.jar [regexp] [jmh options]
+ */
+public class BenchmarkMain {
+    
+    static public void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        
+        if (!arguments.contains("-rf")) {
+            arguments.add("-rf");
+            arguments.add("json");
+        }
+        
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+    
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import com.fizzed.blaze.util.BytePipe;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Moves 8MB thru a pipe from a writer thread to the benchmark thread (which
+ * is what every pipeline stage does).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BytePipeBenchmark {
+    
+    static private final int SIZE = 8 * 1024 * 1024;
+    
+    @Param({ "16384", "65536" })
+    public int pipeSize;
+    
+    @Param({ "512", "8192" })
+    public int chunkSize;
+    
+    private ExecutorService writer;
+    private byte[] chunk;
+    private byte[] readBuffer;
+    
+    @Setup
+    public void setup() {
+        this.writer = Executors.newSingleThreadExecutor();
+        this.chunk = BenchmarkHelper.randomBytes(chunkSize);
+        this.readBuffer = new byte[chunkSize];
+    }
+    
+    @TearDown
+    public void teardown() {
+        this.writer.shutdownNow();
+    }
+    
+    @Benchmark
+    public long transfer() throws Exception {
+        BytePipe pipe = new BytePipe(pipeSize);
+        
+        Future<?> written = writer.submit(() -> {
+            try (OutputStream output = pipe.getOutputStream()) {
+                for (int i = 0; i < SIZE; i += chunk.length) {
+                    output.write(chunk, 0, chunk.length);
+                }
+            }
+            return null;
+        });
+        
+        long count = 0;
+        try (InputStream input = pipe.getInputStream()) {
+            int n;
+            while ((n = input.read(readBuffer)) >= 0) {
+                count += n;
+            }
+        } catch (IOException e) {
+            written.cancel(true);
+            throw e;
+        }
+        
+        written.get();
+        
+        return count;
+    }
+    
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import com.fizzed.blaze.util.ByteRingBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Put then get a chunk thru a ring buffer (wrapping around as it goes).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ByteRingBufferBenchmark {
+    
+    @Param({ "64", "1024", "8192" })
+    public int chunkSize;
+    
+    private ByteRingBuffer buffer;
+    private byte[] chunk;
+    
+    @Setup
+    public void setup() {
+        // not a multiple of any chunk size so puts & gets wrap
+        this.buffer = new ByteRingBuffer(16384 + 7);
+        this.chunk = BenchmarkHelper.randomBytes(chunkSize);
+    }
+    
+    @Benchmark
+    public int putAndGet() {
+        buffer.put(chunk, 0, chunk.length);
+        return buffer.get(chunk, 0, chunk.length);
+    }
+    
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.ssh.SshConnect;
+import com.fizzed.blaze.ssh.impl.JschConnect;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.Command;
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.auth.UserAuthPasswordFactory;
+import org.apache.sshd.server.command.ScpCommandFactory;
+import org.apache.sshd.server.forward.AcceptAllForwardingFilter;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.server.subsystem.sftp.SftpSubsystemFactory;
+
+/**
+ * An in-process sshd (password auth, sftp, scp, direct-tcpip forwarding and
+ * an "echo" command) for the ssh benchmarks.  Connects can optionally be
+ * routed thru a {@link LatencyProxy} to simulate a remote host.
+ */
+class EmbeddedSshd implements Closeable {
+    
+    static final String USERNAME = "blaze";
+    static final String PASSWORD = "bench";
+    
+    private final Path dir;
+    private final SshServer sshd;
+    private final LatencyProxy proxy;
+    private final Context context;
+    
+    EmbeddedSshd(long rttMillis) throws IOException {
+        this.dir = Files.createTempDirectory("blaze-sshd");
+        Files.createDirectories(dir.resolve("home/.ssh"));
+        Files.createDirectories(dir.resolve("remote"));
+        
+        this.sshd = SshServer.setUpDefaultServer();
+        sshd.setHost("localhost");
+        sshd.setPort(0);
+        SimpleGeneratorHostKeyProvider hostKeyProvider = new SimpleGeneratorHostKeyProvider();
+        hostKeyProvider.setAlgorithm("RSA");
+        sshd.setKeyPairProvider(hostKeyProvider);
+        // password only so keyboard-interactive isn't tried first on every connect
+        sshd.setUserAuthFactories(Arrays.asList(new UserAuthPasswordFactory()));
+        sshd.setPasswordAuthenticator((String username, String password, ServerSession ss) -> {
+            return USERNAME.equals(username) && PASSWORD.equals(password);
+        });
+        sshd.setFileSystemFactory(new VirtualFileSystemFactory(remoteDir().toAbsolutePath().toString()));
+        sshd.setSubsystemFactories(Arrays.asList(new SftpSubsystemFactory()));
+        sshd.setTcpipForwardingFilter(AcceptAllForwardingFilter.INSTANCE);
+        // scp commands go to scp and everything else to echo
+        ScpCommandFactory commandFactory = new ScpCommandFactory();
+        commandFactory.setDelegateCommandFactory(EchoCommand::new);
+        sshd.setCommandFactory(commandFactory);
+        sshd.start();
+        
+        this.proxy = (rttMillis > 0 ? new LatencyProxy(new InetSocketAddress("localhost", sshd.getPort()), rttMillis) : null);
+        
+        // an empty user dir so ~/.ssh of whoever runs the benchmark is ignored
+        this.context = BenchmarkHelper.context(dir.resolve("home"));
+    }
+    
+    Context context() {
+        return context;
+    }
+    
+    Path remoteDir() {
+        return dir.resolve("remote");
+    }
+    
+    int port() {
+        return (proxy != null ? proxy.port() : sshd.getPort());
+    }
+    
+    SshConnect connect() {
+        return new JschConnect(context)
+            .host("localhost")
+            .port(port())
+            .username(USERNAME)
+            .password(PASSWORD)
+            .hostChecking(false);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            if (proxy != null) {
+                proxy.close();
+            }
+            sshd.stop(true);
+        } finally {
+            FileUtils.deleteDirectory(dir.toFile());
+        }
+    }
+    
+    /**
+     * Writes back its args (like "echo") then exits.
+     */
+    static private class EchoCommand implements Command {
+        
+        private final String line;
+        private OutputStream out;
+        private ExitCallback exit;
+
+        EchoCommand(String line) {
+            this.line = line;
+        }
+        
+        @Override
+        public void setInputStream(InputStream in) {
+            // not used
+        }
+
+        @Override
+        public void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void setErrorStream(OutputStream err) {
+            // not used
+        }
+
+        @Override
+        public void setExitCallback(ExitCallback exit) {
+            this.exit = exit;
+        }
+
+        @Override
+        public void start(Environment env) throws IOException {
+            String text = line.startsWith("echo ") ? line.substring(5) : line;
+            out.write((text + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            exit.onExit(0);
+        }
+
+        @Override
+        public void destroy() {
+            // nothing to clean up
+        }
+        
+    }
+    
+}
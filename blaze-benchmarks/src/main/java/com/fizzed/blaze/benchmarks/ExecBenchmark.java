@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.system.Exec;
+import com.fizzed.blaze.system.Head;
+import com.fizzed.blaze.system.Pipeline;
+import com.fizzed.blaze.system.Tail;
+import com.fizzed.blaze.util.CaptureOutput;
+import com.fizzed.blaze.util.StreamableInput;
+import com.fizzed.blaze.util.Streamables;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end process spawning and piping against local commands (so only
+ * meaningful on a unix-like host with true and cat).  Processes read
+ * their data from a file arg rather than a piped stdin since an exec
+ * only sees the end of a piped input once the stream is closed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExecBenchmark {
+    
+    private Context context;
+    private Path file;
+    private byte[] lines;
+    
+    @Setup
+    public void setup() throws IOException {
+        this.context = BenchmarkHelper.context();
+        this.file = Files.createTempFile("blaze-bench-", ".bin");
+        Files.write(file, BenchmarkHelper.randomBytes(8 * 1024 * 1024));
+        this.lines = BenchmarkHelper.lines(100000, 80);
+    }
+    
+    @TearDown
+    public void teardown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    @Benchmark
+    public Object spawn() {
+        return new Exec(context)
+            .command("true")
+            .pipeInput((StreamableInput)null)
+            .pipeOutput(Streamables.nullOutput())
+            .run();
+    }
+    
+    @Benchmark
+    public Object catThroughput() {
+        return new Exec(context)
+            .command("cat")
+            .arg(file)
+            .pipeInput((StreamableInput)null)
+            .pipeOutput(Streamables.nullOutput())
+            .run();
+    }
+    
+    @Benchmark
+    public String pipelineOfProcessToActions() {
+        CaptureOutput capture = Streamables.captureOutput();
+        
+        new Pipeline(context)
+            .add(new Exec(context).command("cat").arg(file).pipeInput((StreamableInput)null))
+            .add(new Tail(context).count(10))
+            .pipeOutput(capture)
+            .run();
+        
+        return capture.toString();
+    }
+    
+    @Benchmark
+    public String pipelineOfActions() {
+        CaptureOutput capture = Streamables.captureOutput();
+        
+        new Pipeline(context)
+            .pipeInput(new ByteArrayInputStream(lines))
+            .add(new Head(context).count(50000))
+            .add(new Tail(context).count(10))
+            .pipeOutput(capture)
+            .run();
+        
+        return capture.toString();
+    }
+    
+}
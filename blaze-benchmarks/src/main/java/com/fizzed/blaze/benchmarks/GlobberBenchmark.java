@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import com.fizzed.blaze.util.Globber;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scans a tree of 5000 files (in 250 dirs) like a source tree would be.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GlobberBenchmark {
+    
+    private Path root;
+    
+    @Setup
+    public void setup() throws IOException {
+        this.root = Files.createTempDirectory("blaze-globber");
+        for (int i = 0; i < 250; i++) {
+            Path dir = root.resolve("module" + (i % 10)).resolve("src" + i);
+            Files.createDirectories(dir);
+            for (int j = 0; j < 20; j++) {
+                Files.createFile(dir.resolve("File" + j + (j % 2 == 0 ? ".java" : ".txt")));
+            }
+        }
+    }
+    
+    @TearDown
+    public void teardown() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+    
+    @Benchmark
+    public List<Path> scanAll() throws IOException {
+        return Globber.globber(root, "**/*")
+            .filesOnly()
+            .scan();
+    }
+    
+    @Benchmark
+    public List<Path> scanExtension() throws IOException {
+        return Globber.globber(root, "**/*.java")
+            .scan();
+    }
+    
+    @Benchmark
+    public List<Path> scanExcluded() throws IOException {
+        return Globber.globber(root, "**/*.java")
+            .exclude("module1/**")
+            .exclude("module2/**")
+            .scan();
+    }
+    
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A tcp relay that holds every chunk of data for half the round-trip time
+ * before forwarding it on (in each direction).  Unlike sleeping before each
+ * write, throughput is not throttled -- data keeps flowing, it just arrives
+ * late like it would on a real long-haul link.
+ */
+class LatencyProxy implements Closeable {
+    
+    static private final byte[] EOF = new byte[0];
+    
+    static private class Chunk {
+        final long due;
+        final byte[] bytes;
+
+        Chunk(long due, byte[] bytes) {
+            this.due = due;
+            this.bytes = bytes;
+        }
+    }
+    
+    private final InetSocketAddress target;
+    private final long delayNanos;
+    private final ServerSocket server;
+    private final List<Socket> sockets;
+    
+    LatencyProxy(InetSocketAddress target, long rttMillis) throws IOException {
+        this.target = target;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(rttMillis) / 2;
+        this.server = new ServerSocket(0, 50, target.getAddress());
+        this.sockets = new CopyOnWriteArrayList<>();
+        daemon("latency-proxy-accept", this::accept);
+    }
+    
+    int port() {
+        return server.getLocalPort();
+    }
+    
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket client = server.accept();
+                Socket upstream = new Socket(target.getAddress(), target.getPort());
+                client.setTcpNoDelay(true);
+                upstream.setTcpNoDelay(true);
+                sockets.add(client);
+                sockets.add(upstream);
+                relay(client, upstream);
+                relay(upstream, client);
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+    
+    private void relay(Socket from, Socket to) throws IOException {
+        final InputStream input = from.getInputStream();
+        final OutputStream output = to.getOutputStream();
+        final BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+        
+        daemon("latency-proxy-read", () -> {
+            byte[] buffer = new byte[32768];
+            try {
+                int n;
+                while ((n = input.read(buffer)) >= 0) {
+                    byte[] bytes = new byte[n];
+                    System.arraycopy(buffer, 0, bytes, 0, n);
+                    queue.add(new Chunk(System.nanoTime() + delayNanos, bytes));
+                }
+            } catch (IOException e) {
+                // closed
+            }
+            queue.add(new Chunk(System.nanoTime() + delayNanos, EOF));
+        });
+        
+        daemon("latency-proxy-write", () -> {
+            try {
+                while (true) {
+                    Chunk chunk = queue.take();
+                    long wait;
+                    while ((wait = chunk.due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    if (chunk.bytes == EOF) {
+                        to.shutdownOutput();
+                        return;
+                    }
+                    output.write(chunk.bytes);
+                    output.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // closed
+            }
+        });
+    }
+    
+    static private void daemon(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        sockets.clear();
+    }
+    
+}
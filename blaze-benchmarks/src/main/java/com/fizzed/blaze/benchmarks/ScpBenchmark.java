@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import com.fizzed.blaze.ssh.SshScp;
+import com.fizzed.blaze.ssh.SshSession;
+import com.fizzed.blaze.ssh.SshSftpSession;
+import com.fizzed.blaze.ssh.impl.JschScp;
+import com.fizzed.blaze.ssh.impl.JschSftp;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scp versus sftp put of one large file and of a tree of small files over
+ * one open session against an in-process sshd.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ScpBenchmark {
+    
+    static private final int SMALL_FILES = 100;
+    
+    @Param({ "0", "20" })
+    public long rttMillis;
+    
+    private EmbeddedSshd sshd;
+    private SshSession session;
+    private SshSftpSession sftp;
+    private Path localDir;
+    private Path largeFile;
+    private Path smallDir;
+    
+    @Setup
+    public void setup() throws IOException {
+        this.sshd = new EmbeddedSshd(rttMillis);
+        this.session = sshd.connect().run();
+        this.sftp = new JschSftp(sshd.context(), session).run();
+        this.localDir = Files.createTempDirectory("blaze-scp");
+        this.largeFile = localDir.resolve("large.bin");
+        Files.write(largeFile, BenchmarkHelper.randomBytes(16 * 1024 * 1024));
+        this.smallDir = localDir.resolve("small");
+        for (int i = 0; i < SMALL_FILES; i++) {
+            Path subDir = smallDir.resolve("sub" + (i % 4));
+            Files.createDirectories(subDir);
+            Files.write(subDir.resolve("file" + i + ".txt"), BenchmarkHelper.randomBytes(1024 + i));
+        }
+        for (int i = 0; i < 4; i++) {
+            Files.createDirectories(sshd.remoteDir().resolve("sftp-small/sub" + i));
+        }
+    }
+    
+    @TearDown
+    public void teardown() throws IOException {
+        try {
+            sftp.close();
+            session.close();
+            sshd.close();
+        } finally {
+            FileUtils.deleteDirectory(localDir.toFile());
+        }
+    }
+    
+    @Benchmark
+    public SshScp.Result scpLarge() {
+        return new JschScp(sshd.context(), session)
+            .source(largeFile)
+            .target("scp-large.bin")
+            .runResult();
+    }
+    
+    @Benchmark
+    public long sftpLarge() {
+        return sftp.put()
+            .source(largeFile)
+            .target("sftp-large.bin")
+            .runResult()
+            .bytes();
+    }
+    
+    @Benchmark
+    public SshScp.Result scpSmall() {
+        return new JschScp(sshd.context(), session)
+            .source(smallDir)
+            .target("scp-small")
+            .recursive(true)
+            .runResult();
+    }
+    
+    @Benchmark
+    public long sftpSmall() {
+        long bytes = 0;
+        for (int i = 0; i < SMALL_FILES; i++) {
+            String file = "sub" + (i % 4) + "/file" + i + ".txt";
+            bytes += sftp.put()
+                .source(smallDir.resolve(file))
+                .target("sftp-small/" + file)
+                .runResult()
+                .bytes();
+        }
+        return bytes;
+    }
+    
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import com.fizzed.blaze.ssh.SshSession;
+import com.fizzed.blaze.ssh.SshSftpGet;
+import com.fizzed.blaze.ssh.SshSftpPut;
+import com.fizzed.blaze.ssh.SshSftpSession;
+import com.fizzed.blaze.ssh.impl.JschSftp;
+import com.fizzed.blaze.util.StreamableInput;
+import com.fizzed.blaze.util.Streamables;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sftp put and get of a single file over one open session against an
+ * in-process sshd.  Divide size by the score for throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SftpBenchmark {
+    
+    @Param({ "0", "20" })
+    public long rttMillis;
+    
+    @Param({ "4096", "1048576", "16777216" })
+    public int size;
+    
+    private EmbeddedSshd sshd;
+    private SshSession session;
+    private SshSftpSession sftp;
+    private byte[] bytes;
+    
+    @Setup
+    public void setup() throws IOException {
+        this.sshd = new EmbeddedSshd(rttMillis);
+        this.session = sshd.connect().run();
+        this.sftp = new JschSftp(sshd.context(), session).run();
+        this.bytes = BenchmarkHelper.randomBytes(size);
+        Files.write(sshd.remoteDir().resolve("get.bin"), bytes);
+    }
+    
+    @TearDown
+    public void teardown() throws IOException {
+        sftp.close();
+        session.close();
+        sshd.close();
+    }
+    
+    @Benchmark
+    public SshSftpPut.Result put() {
+        StreamableInput input = new StreamableInput(new ByteArrayInputStream(bytes), "<bytes>", null, (long)bytes.length);
+        
+        return sftp.put()
+            .source(input)
+            .target("put.bin")
+            .runResult();
+    }
+    
+    @Benchmark
+    public SshSftpGet.Result get() {
+        return sftp.get()
+            .source("get.bin")
+            .target(Streamables.nullOutput())
+            .runResult();
+    }
+    
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import com.fizzed.blaze.ssh.SshChainedConnect;
+import com.fizzed.blaze.ssh.SshSession;
+import com.fizzed.blaze.ssh.impl.JschExec;
+import com.fizzed.blaze.util.CaptureOutput;
+import com.fizzed.blaze.util.StreamableInput;
+import com.fizzed.blaze.util.Streamables;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Connect and exec latency against an in-process sshd, optionally with an
+ * artificial round-trip time to see how many round trips each costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SshBenchmark {
+    
+    @Param({ "0", "20" })
+    public long rttMillis;
+    
+    private EmbeddedSshd sshd;
+    private SshSession session;
+    
+    @Setup
+    public void setup() throws IOException {
+        this.sshd = new EmbeddedSshd(rttMillis);
+        this.session = sshd.connect().run();
+    }
+    
+    @TearDown
+    public void teardown() throws IOException {
+        session.close();
+        sshd.close();
+    }
+    
+    @Benchmark
+    public SshSession connect() throws IOException {
+        try (SshSession s = sshd.connect().run()) {
+            return s;
+        }
+    }
+    
+    @Benchmark
+    public SshSession chainedConnect() throws IOException {
+        // jump thru the same server back to itself
+        SshChainedConnect chain = new SshChainedConnect(sshd.context(),
+            Arrays.asList(sshd.connect(), sshd.connect()));
+        
+        try (SshSession s = chain.run()) {
+            return s;
+        }
+    }
+    
+    @Benchmark
+    public String execRoundTrip() {
+        CaptureOutput capture = Streamables.captureOutput();
+        
+        new JschExec(sshd.context(), session)
+            .command("echo")
+            .arg("hello")
+            .pipeInput((StreamableInput)null)
+            .pipeOutput(capture)
+            .run();
+        
+        return capture.toString();
+    }
+    
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.benchmarks;
+
+import com.fizzed.blaze.core.Blaze;
+import com.fizzed.blaze.internal.NoopDependencyResolver;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Locates, configures and compiles a bundled example (what happens before a
+ * task runs).  Single shot in fresh jvms measures cold startup, while the
+ * average time is what a warm jvm (e.g. a long running build) pays.
+ */
+@State(Scope.Benchmark)
+@Fork(3)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+    
+    @Param({ "hello.java", "hello.js" })
+    public String script;
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public Blaze coldBuild() {
+        return build();
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Blaze warmBuild() {
+        return build();
+    }
+    
+    private Blaze build() {
+        return new Blaze.Builder()
+            .dependencyResolver(new NoopDependencyResolver())
+            .file(BenchmarkHelper.examplesDir().resolve(script))
+            .build();
+    }
+    
+}
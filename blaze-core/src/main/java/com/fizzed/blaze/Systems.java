@@ -15,12 +15,16 @@
  */
 package com.fizzed.blaze;
 
+import com.fizzed.blaze.system.Archive;
+import com.fizzed.blaze.system.Copy;
 import com.fizzed.blaze.system.Exec;
 import com.fizzed.blaze.system.Head;
+import com.fizzed.blaze.system.Move;
 import com.fizzed.blaze.system.Pipeline;
 import com.fizzed.blaze.system.Remove;
 import com.fizzed.blaze.system.RequireExec;
 import com.fizzed.blaze.system.Tail;
+import com.fizzed.blaze.system.Unarchive;
 import com.fizzed.blaze.system.Which;
 import com.fizzed.blaze.util.Globber;
 import java.io.File;
@@ -363,6 +367,249 @@ public class Systems {
             .paths(files);
     }
 
+    /**
+     * Prepares an action to copy one or more files and directories found
+     * using a globber.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.copy;
+     * import static com.fizzed.blaze.util.Globber.globber;
+     * 
+     * // ...
+     * 
+     * copy(globber("target/*.jar"))
+     *      .target(Paths.get("dist"))
+     *      .skipIdentical()
+     *      .run();
+     * </pre>
+     * 
+     * @param globber The globber to use to find the paths to copy
+     * @return A new Copy action bound to current context
+     */
+    static public Copy copy(Globber globber) {
+        return new Copy(Contexts.currentContext())
+            .paths(globber);
+    }
+    
+    /**
+     * Prepares an action to copy one or more files and directories.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.copy;
+     * 
+     * // ...
+     * 
+     * copy(Paths.get("images"))
+     *      .target(Paths.get("dist"))
+     *      .recursive()
+     *      .parallel()
+     *      .run();
+     * </pre>
+     * 
+     * @param paths The paths to copy
+     * @return A new Copy action bound to current context
+     */
+    static public Copy copy(Path... paths) {
+        return new Copy(Contexts.currentContext())
+            .paths(paths);
+    }
+    
+    /**
+     * Prepares an action to copy one or more files and directories.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.copy;
+     * 
+     * // ...
+     * 
+     * copy(new File("images"))
+     *      .target(new File("dist"))
+     *      .recursive()
+     *      .run();
+     * </pre>
+     * 
+     * @param files The files to copy
+     * @return A new Copy action bound to current context
+     */
+    static public Copy copy(File... files) {
+        return new Copy(Contexts.currentContext())
+            .paths(files);
+    }
+    
+    /**
+     * Prepares an action to move one or more files and directories found
+     * using a globber.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.move;
+     * import static com.fizzed.blaze.util.Globber.globber;
+     * 
+     * // ...
+     * 
+     * move(globber("target/*.jar"))
+     *      .target(Paths.get("dist"))
+     *      .run();
+     * </pre>
+     * 
+     * @param globber The globber to use to find the paths to move
+     * @return A new Move action bound to current context
+     */
+    static public Move move(Globber globber) {
+        return new Move(Contexts.currentContext())
+            .paths(globber);
+    }
+    
+    /**
+     * Prepares an action to move one or more files and directories.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.move;
+     * 
+     * // ...
+     * 
+     * move(Paths.get("images"))
+     *      .target(Paths.get("dist/images"))
+     *      .run();
+     * </pre>
+     * 
+     * @param paths The paths to move
+     * @return A new Move action bound to current context
+     */
+    static public Move move(Path... paths) {
+        return new Move(Contexts.currentContext())
+            .paths(paths);
+    }
+    
+    /**
+     * Prepares an action to move one or more files and directories.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.move;
+     * 
+     * // ...
+     * 
+     * move(new File("images"))
+     *      .target(new File("dist/images"))
+     *      .run();
+     * </pre>
+     * 
+     * @param files The files to move
+     * @return A new Move action bound to current context
+     */
+    static public Move move(File... files) {
+        return new Move(Contexts.currentContext())
+            .paths(files);
+    }
+
+    /**
+     * Prepares an action to archive (zip, tar or tar.gz) files and directories
+     * found using a globber.  Compression is done in parallel.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.archive;
+     * import static com.fizzed.blaze.util.Globber.globber;
+     * 
+     * // ...
+     * 
+     * archive(globber("target/*.jar"))
+     *      .target(Paths.get("target/dist.tar.gz"))
+     *      .run();
+     * </pre>
+     * 
+     * @param globber The globber to use to find the paths to archive
+     * @return A new Archive action bound to current context
+     */
+    static public Archive archive(Globber globber) {
+        return new Archive(Contexts.currentContext())
+            .paths(globber);
+    }
+    
+    /**
+     * Prepares an action to archive (zip, tar or tar.gz) one or more files
+     * and directories.  Compression is done in parallel.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.archive;
+     * 
+     * // ...
+     * 
+     * archive(Paths.get("target/dist"))
+     *      .target(Paths.get("target/dist.zip"))
+     *      .run();
+     * </pre>
+     * 
+     * @param paths The paths to archive
+     * @return A new Archive action bound to current context
+     */
+    static public Archive archive(Path... paths) {
+        return new Archive(Contexts.currentContext())
+            .paths(paths);
+    }
+    
+    /**
+     * Prepares an action to archive (zip, tar or tar.gz) one or more files
+     * and directories.  Compression is done in parallel.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.archive;
+     * 
+     * // ...
+     * 
+     * archive(new File("target/dist"))
+     *      .target(new File("target/dist.zip"))
+     *      .run();
+     * </pre>
+     * 
+     * @param files The files to archive
+     * @return A new Archive action bound to current context
+     */
+    static public Archive archive(File... files) {
+        return new Archive(Contexts.currentContext())
+            .paths(files);
+    }
+    
+    /**
+     * Prepares an action to extract a zip, tar or tar.gz archive.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.unarchive;
+     * 
+     * // ...
+     * 
+     * unarchive(Paths.get("dist.tar.gz"))
+     *      .target(Paths.get("/opt/app"))
+     *      .run();
+     * </pre>
+     * 
+     * @param path The archive to extract
+     * @return A new Unarchive action bound to current context
+     */
+    static public Unarchive unarchive(Path path) {
+        return new Unarchive(Contexts.currentContext())
+            .source(path);
+    }
+    
+    /**
+     * Prepares an action to extract a zip, tar or tar.gz archive.
+     * 
+     * <pre>
+     * import static com.fizzed.blaze.Systems.unarchive;
+     * 
+     * // ...
+     * 
+     * unarchive(new File("dist.zip"))
+     *      .target(new File("/opt/app"))
+     *      .run();
+     * </pre>
+     * 
+     * @param file The archive to extract
+     * @return A new Unarchive action bound to current context
+     */
+    static public Unarchive unarchive(File file) {
+        return new Unarchive(Contexts.currentContext())
+            .source(file);
+    }
+
     static public Pipeline pipeline() {
         return new Pipeline(Contexts.currentContext());
     }
@@ -21,10 +21,16 @@ import com.fizzed.blaze.core.BlazeTask;
 import com.fizzed.blaze.core.MessageOnlyException;
 import com.fizzed.blaze.core.NoSuchTaskException;
 import com.fizzed.blaze.core.DependencyResolveException;
+import com.fizzed.blaze.core.Jfr;
+import com.fizzed.blaze.core.Metrics;
+import com.fizzed.blaze.core.Trace;
 import com.fizzed.blaze.core.WrappedBlazeException;
+import com.fizzed.blaze.internal.CdsHelper;
 import com.fizzed.blaze.internal.InstallHelper;
 import com.fizzed.blaze.util.Timer;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -33,6 +39,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.List;
+import java.util.Locale;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +52,13 @@ public class Bootstrap {
     protected Path blazeFile = null;
     protected Path blazeDir = null;
     protected List<String> tasks;
+    protected boolean metrics = false;
+    protected Path metricsFile = null;
+    protected Path traceFile = null;
+    protected Path startupFile = null;
+    protected boolean generateCds = false;
+    protected Timer timer;
+    protected long mainEpochMillis;
     
     public Bootstrap() {
         this.tasks = new ArrayList<>();
@@ -56,6 +70,12 @@ public class Bootstrap {
     
     @SuppressWarnings("ThrowableResultIgnored")
     public void run(Deque<String> args) throws IOException {
+        this.mainEpochMillis = System.currentTimeMillis();
+        this.timer = new Timer();
+        
+        // as given (for a training run)
+        List<String> arguments = new ArrayList<>(args);
+        
         Thread.currentThread().setName(getName());
 
         boolean listTasks = false;
@@ -106,6 +126,22 @@ public class Bootstrap {
                 }
             } else if (arg.equals("-l") || arg.equals("--list")) {
                 listTasks = true;
+            } else if (arg.equals("--metrics")) {
+                metrics = true;
+            } else if (arg.equals("--metrics-file")) {
+                String nextArg = nextArg(args, arg, "<file>");
+                metricsFile = Paths.get(nextArg);
+            } else if (arg.equals("--trace")) {
+                String nextArg = nextArg(args, arg, "<file>");
+                traceFile = Paths.get(nextArg);
+                Trace.global().enabled(true);
+            } else if (arg.equals("--jfr")) {
+                systemProperty(Jfr.PROPERTY, "true");
+            } else if (arg.equals("--startup-file")) {
+                String nextArg = nextArg(args, arg, "<file>");
+                startupFile = Paths.get(nextArg);
+            } else if (arg.equals("--generate-cds")) {
+                generateCds = true;
             } else if (arg.startsWith("-")) {
                 System.err.println("[ERROR] Unsupported command line switch [" + arg + "]; " + getName() + " -h for more info");
                 System.exit(1);
@@ -127,7 +163,18 @@ public class Bootstrap {
         // trigger logger to be bound!
         Logger log = LoggerFactory.getLogger(Bootstrap.class);
         
-        Timer timer = new Timer();
+        timer.split("bootstrap");
+        
+        if (generateCds) {
+            try {
+                System.exit(generateCds(log, arguments, listTasks));
+            } catch (MessageOnlyException e) {
+                log.error(e.getMessage());
+                System.exit(1);
+            }
+        }
+        
+        int exitCode = 0;
         try {
             // build blaze
             Blaze blaze = this.buildBlaze();
@@ -143,13 +190,13 @@ public class Bootstrap {
                     // do not log stack trace
                     log.error(e.getMessage());
                     logTasks(log, blaze);
-                    System.exit(1);
+                    exitCode = 1;
                 }
             }
         } catch (MessageOnlyException | DependencyResolveException e) {
             // do not log stack trace
             log.error(e.getMessage());
-            System.exit(1);
+            exitCode = 1;
         } catch (Throwable t) {
             // unwrap a wrapped exception (much cleaner)
             if (t instanceof WrappedBlazeException) {
@@ -158,11 +205,22 @@ public class Bootstrap {
             }
             // hmmm... definitely something unexpected so log stack trace
             log.error(t.getMessage(), t);
-            System.exit(1);
+            exitCode = 1;
         }
         
         // only log time if no exception
-        log.info("Blazed in {} ms", timer.stop().millis());
+        if (exitCode == 0) {
+            log.info("Blazed in {}", timer.stop());
+        }
+        
+        // even a failed run is worth seeing where time went
+        reportStartup(log);
+        reportMetrics(log);
+        writeTrace(log);
+        
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
     }
     
     // all overrideable by subclasses
@@ -195,10 +253,44 @@ public class Bootstrap {
         System.out.println("-v|--version       Display version and then exit");
         System.out.println("-Dname=value       Sets a System property as name=value");
         System.out.println("-i|--install <dir> Install blaze or blaze.bat to directory");
+        System.out.println("--metrics          Display a summary of time spent in each action when done");
+        System.out.println("--metrics-file <f> Write the action metrics as JSON to a file when done");
+        System.out.println("--trace <file>     Write a Chrome trace (chrome://tracing or ui.perfetto.dev) of the run to a file");
+        System.out.println("--jfr              Emit Java Flight Recorder events (for a recording started w/ -XX:StartFlightRecording)");
+        System.out.println("--startup-file <f> Write the startup breakdown (also logged w/ -x) as JSON to a file when done");
+        System.out.println("--generate-cds     Do a training run (of the other args) and save a class-data sharing archive for faster startup (Java 13+)");
+    }
+    
+    public int generateCds(Logger log, List<String> arguments, boolean listTasks) throws MessageOnlyException {
+        // train on this same run, but only list tasks rather than run the
+        // default task (and whatever side effects it has) if none were given
+        List<String> trainingArgs = new ArrayList<>(arguments);
+        trainingArgs.remove("--generate-cds");
+        if (tasks.isEmpty() && !listTasks) {
+            trainingArgs.add("-l");
+        }
+        
+        Path archiveFile = CdsHelper.archiveFile(
+            CdsHelper.userCdsDir(),
+            Version.getVersion(),
+            CdsHelper.jdkVersion(Paths.get(System.getProperty("java.home"))));
+        
+        log.info("Training run for class-data sharing archive: {} {}", getName(), String.join(" ", trainingArgs));
+        
+        int exitValue = CdsHelper.generate(archiveFile, getClass().getName(), trainingArgs);
+        
+        if (exitValue != 0) {
+            log.error("Training run failed (exit value {}) so no archive generated", exitValue);
+        } else {
+            log.info("Generated class-data sharing archive {} in {}", archiveFile, timer.stop());
+        }
+        
+        return exitValue;
     }
     
     public Blaze buildBlaze() {
         return new Blaze.Builder()
+            .timer(timer)
             .file(blazeFile)
             .directory(blazeDir)
             .build();
@@ -249,6 +341,81 @@ public class Bootstrap {
          */
     }
     
+    /**
+     * Logs (at debug) and/or writes as JSON the breakdown of where startup
+     * and each task spent their time.  The jvm split (from jvm start to this
+     * bootstrap running) is only millisecond accurate.
+     */
+    public void reportStartup(Logger log) {
+        if (!log.isDebugEnabled() && startupFile == null) {
+            return;
+        }
+        
+        // only touch management (slow to load) if reporting
+        long jvmMillis = Math.max(0L, mainEpochMillis - ManagementFactory.getRuntimeMXBean().getStartTime());
+        List<Timer.Split> splits = timer.splits();
+        long totalNanos = jvmMillis * 1000000L;
+        for (Timer.Split split : splits) {
+            totalNanos += split.nanos();
+        }
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Startup breakdown:");
+            log.debug(String.format(Locale.US, "  %-24s %12.3f ms", "jvm", (double)jvmMillis));
+            for (Timer.Split split : splits) {
+                log.debug(String.format(Locale.US, "  %-24s %12.3f ms", split.name(), split.fractionalMillis()));
+            }
+            log.debug(String.format(Locale.US, "  %-24s %12.3f ms", "total", totalNanos / 1e6));
+        }
+        
+        if (startupFile != null) {
+            StringBuilder json = new StringBuilder();
+            json.append("{\n  \"jvmMillis\": ").append(jvmMillis).append(",\n  \"splits\": [");
+            for (int i = 0; i < splits.size(); i++) {
+                Timer.Split split = splits.get(i);
+                json.append(i > 0 ? ",\n" : "\n")
+                    .append("    { \"name\": \"").append(split.name().replace("\\", "\\\\").replace("\"", "\\\""))
+                    .append("\", \"nanos\": ").append(split.nanos()).append(" }");
+            }
+            json.append(splits.isEmpty() ? "],\n" : "\n  ],\n");
+            json.append("  \"totalNanos\": ").append(totalNanos).append("\n}\n");
+            
+            try {
+                Files.write(startupFile, json.toString().getBytes(StandardCharsets.UTF_8));
+                log.info("Wrote startup breakdown to {}", startupFile);
+            } catch (IOException e) {
+                log.error("Unable to write startup breakdown to {}", startupFile, e);
+            }
+        }
+    }
+    
+    public void reportMetrics(Logger log) {
+        if (metrics) {
+            System.out.println("metrics =>");
+            System.out.print(Metrics.global().toSummary());
+        }
+        
+        if (metricsFile != null) {
+            try {
+                Files.write(metricsFile, Metrics.global().toJson().getBytes(StandardCharsets.UTF_8));
+                log.info("Wrote metrics to {}", metricsFile);
+            } catch (IOException e) {
+                log.error("Unable to write metrics to {}", metricsFile, e);
+            }
+        }
+    }
+    
+    public void writeTrace(Logger log) {
+        if (traceFile != null) {
+            try {
+                Trace.global().write(traceFile);
+                log.info("Wrote trace to {}", traceFile);
+            } catch (IOException e) {
+                log.error("Unable to write trace to {}", traceFile, e);
+            }
+        }
+    }
+    
     public void logTasks(Logger log, Blaze blaze) {
         System.out.println("tasks =>");
         
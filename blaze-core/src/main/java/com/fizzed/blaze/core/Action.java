@@ -16,23 +16,38 @@
 package com.fizzed.blaze.core;
 
 import com.fizzed.blaze.Context;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class Action<R extends Result<?,V,R>,V> {
     
     protected final Context context;
     protected volatile boolean used;
+    private final AtomicLong bytesIn;
+    private final AtomicLong bytesOut;
     
     public Action(Context context) {
         this.context = context;
+        this.bytesIn = new AtomicLong();
+        this.bytesOut = new AtomicLong();
     }
     
     public R runResult() throws BlazeException {
         if (used) {
             throw new BlazeException("Can only run once");
         }
-        R result = doRun();
-        used = true;
-        return result;
+        String name = Metrics.nameOf(this);
+        long start = System.nanoTime();
+        boolean failed = true;
+        Object jfr = Jfr.beginAction(name);
+        try (Trace.Span span = Trace.global().span("action", name)) {
+            R result = doRun();
+            used = true;
+            failed = false;
+            return result;
+        } finally {
+            Metrics.global().record(name, System.nanoTime() - start, bytesIn.get(), bytesOut.get(), failed);
+            Jfr.endAction(jfr, this, bytesIn.get(), bytesOut.get(), failed);
+        }
     }
     
     public V run() throws BlazeException {
@@ -41,4 +56,34 @@ public abstract class Action<R extends Result<?,V,R>,V> {
     
     abstract protected R doRun() throws BlazeException;
     
+    /**
+     * A short detail of what this action acts on (e.g. the command or host)
+     * for profiling.  Only called when profiling is enabled.
+     * @return The detail or null
+     * @see Jfr
+     */
+    protected String detail() {
+        return null;
+    }
+    
+    /**
+     * Adds to the bytes this run received (e.g. from stdout or a download).
+     * May be called from any thread.
+     * @param bytes The bytes
+     * @see Metrics
+     */
+    protected void bytesIn(long bytes) {
+        this.bytesIn.addAndGet(bytes);
+    }
+    
+    /**
+     * Adds to the bytes this run sent (e.g. to stdin or an upload).  May be
+     * called from any thread.
+     * @param bytes The bytes
+     * @see Metrics
+     */
+    protected void bytesOut(long bytes) {
+        this.bytesOut.addAndGet(bytes);
+    }
+    
 }
@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,11 +63,27 @@ public class Blaze {
         private List<Dependency> collectedDependencies;
         private ScriptFileLocator scriptFileLocator;
         private DependencyResolver dependencyResolver;
-        
+        private Timer timer;
         
         public Builder() {
+            this.timer = new Timer();
             this.scriptFileLocator = new DefaultScriptFileLocator();
-            this.dependencyResolver = DependencyResolvers.load();
+            // resolver (e.g. ivy) is only loaded if something must be resolved
+        }
+        
+        /**
+         * The timer to record the startup splits (config, resolver,
+         * classpath, engine, compile) and then each task into.
+         * @param timer The timer
+         * @return This builder
+         */
+        public Builder timer(Timer timer) {
+            this.timer = timer;
+            return this;
+        }
+        
+        public Timer getTimer() {
+            return this.timer;
         }
         
         public Builder directory(Path directory) {
@@ -131,6 +148,9 @@ public class Blaze {
         }
         
         public DependencyResolver getDependencyResolver() {
+            if (this.dependencyResolver == null) {
+                this.dependencyResolver = DependencyResolvers.load();
+            }
             return this.dependencyResolver;
         }
 
@@ -149,12 +169,17 @@ public class Blaze {
         private Config config;
         private String scriptExtension;
         private Context context;
+        private boolean resolved;
         private List<Dependency> dependencies;
         private List<File> dependencyJarFiles;
         private Engine engine;
         private Script script;
 
         public List<Dependency> getDependencies() {
+            if (dependencies == null && resolved) {
+                // nothing needed resolving so only read the bundled list if asked
+                dependencies = (collectedDependencies != null ? collectedDependencies : DependencyHelper.alreadyBundled());
+            }
             return dependencies;
         }
 
@@ -219,6 +244,8 @@ public class Blaze {
                 config);
             
             ContextHolder.set(context);
+            
+            timer.split("config");
         }
         
         public void resolveDependencies() {
@@ -232,58 +259,83 @@ public class Blaze {
             log.info("Resolving dependencies...");
             Timer dependencyTimer = new Timer();
             
-            // save which dependencies are already resolved
-            List<Dependency> resolvedDependencies
-                    = (collectedDependencies != null ? collectedDependencies : DependencyHelper.alreadyBundled());
-            
             // any well known engines to include?
             List<Dependency> wellKnownEngineDependencies = DependencyHelper.wellKnownEngineDependencies(scriptExtension);
             
             // did script declare any dependencies we need to include?
             List<Dependency> applicationDependencies = DependencyHelper.applicationDependencies(config);
             
-            // build dependencies to resolve (need collected so correct versions are picked)
-            dependencies = new ArrayList<>();
-            
-            DependencyHelper.collect(dependencies, resolvedDependencies);
-            DependencyHelper.collect(dependencies, wellKnownEngineDependencies);
-            DependencyHelper.collect(dependencies, applicationDependencies);
-            
             // smart resolving...
             try {
+                if (isEmpty(wellKnownEngineDependencies) && isEmpty(applicationDependencies)) {
+                    // nothing beyond what is already bundled (or collected) so
+                    // skip parsing the bundled list and loading the resolver
+                    log.debug("No extra dependencies to resolve (skipping resolver)");
+                    resolved = true;
+                    return;
+                }
+                
+                // save which dependencies are already resolved
+                List<Dependency> resolvedDependencies
+                        = (collectedDependencies != null ? collectedDependencies : DependencyHelper.alreadyBundled());
+                
+                // build dependencies to resolve (need collected so correct versions are picked)
+                dependencies = new ArrayList<>();
+
+                DependencyHelper.collect(dependencies, resolvedDependencies);
+                DependencyHelper.collect(dependencies, wellKnownEngineDependencies);
+                DependencyHelper.collect(dependencies, applicationDependencies);
+                
+                resolved = true;
+                
                 if (dependencies.isEmpty()) {
                     log.debug("No dependencies to resolve (skipping resolver)");
                 } else if (dependencies.size() == resolvedDependencies.size()) {
                     log.debug("We already have the dependencies we need (skipping resolver)");
                 } else {
+                    Object jfr = Jfr.beginResolve(dependencies.size());
                     try {
                         // resolve dependencies against collected dependencies
-                        dependencyJarFiles = dependencyResolver.resolve(context, resolvedDependencies, dependencies);
+                        dependencyJarFiles = getDependencyResolver().resolve(context, resolvedDependencies, dependencies);
                     } catch (DependencyResolveException e) {
                         throw e;
                     } catch (IOException | ParseException e) {
                         throw new BlazeException("Unable to cleanly resolve dependencies", e);
+                    } finally {
+                        Jfr.endResolve(jfr, (dependencyJarFiles != null ? dependencyJarFiles.size() : 0));
                     }
                 }
             } finally {
-                log.info("Resolved dependencies in {} ms", dependencyTimer.stop().millis());
+                timer.split("resolver");
+                log.info("Resolved dependencies in {}", dependencyTimer.stop());
             }
         }
         
         public void loadDependencies() {
-            if (dependencies == null) {
+            if (!resolved) {
                 resolveDependencies();
             }
             
-            if (dependencyJarFiles != null) {
-                final ClassLoader classLoader = currentThreadContextClassLoader();
+            if (dependencyJarFiles != null && !dependencyJarFiles.isEmpty()) {
+                // engines (and the script) see the dependencies thru a loader
+                // of their own as the context classloader
+                ClassLoader classLoader;
+                try {
+                    classLoader = ClassLoaderHelper.dependencyClassLoader(currentThreadContextClassLoader(),
+                        dependencyJarFiles, ConfigHelper.userBlazeCacheDir(context).resolve("packages"));
+                } catch (IOException e) {
+                    throw new BlazeException("Unable to get or create package index dir", e);
+                }
+                
+                Thread.currentThread().setContextClassLoader(classLoader);
+                
                 dependencyJarFiles.stream().forEach((jarFile) -> {
-                    if (ClassLoaderHelper.addClassPath(classLoader, jarFile)) {
-                        log.debug("Added {} to classpath", jarFile.getName());
-                        log.debug(" => {}", jarFile);
-                    }
+                    log.debug("Added {} to classpath", jarFile.getName());
+                    log.debug(" => {}", jarFile);
                 });
             }
+            
+            timer.split("classpath");
         }
         
         public void compileScript() {
@@ -311,30 +363,67 @@ public class Blaze {
                 engine.init(context);
             }
             
-            script = engine.compile(context);
+            timer.split("engine");
+            
+            Object jfr = Jfr.beginCompile(engine.getClass().getSimpleName(), String.valueOf(detectedScriptFile));
+            try {
+                script = engine.compile(context);
+            } finally {
+                Jfr.end(jfr);
+            }
+            
+            timer.split("compile");
             
-            log.info("Compiled script in {} ms", engineTimer.stop().millis());
+            log.info("Compiled script in {}", engineTimer.stop());
         }
         
         public Blaze build() {
-            loadDependencies();     // also calls locate(), configure(), and resolveDependencies()
+            // each phase is only run if not yet done (e.g. called directly)
+            if (detectedScriptFile == null && context == null) {
+                phase("locate", this::locate);
+            }
+            
+            if (context == null) {
+                phase("configure", this::configure);
+            }
+            
+            if (!resolved) {
+                phase("resolveDependencies", this::resolveDependencies);
+            }
+            
+            phase("loadDependencies", this::loadDependencies);
             
-            compileScript();
+            phase("compileScript", this::compileScript);
             
-            return new Blaze(context, dependencies, engine, script);
+            return new Blaze(context, this::getDependencies, engine, script, timer);
+        }
+        
+        static private boolean isEmpty(List<?> list) {
+            return list == null || list.isEmpty();
+        }
+        
+        private void phase(String name, Runnable phase) {
+            Object jfr = Jfr.beginPhase(name);
+            try (Trace.Span span = Trace.global().span("phase", name)) {
+                phase.run();
+            } finally {
+                Jfr.end(jfr);
+            }
         }
     }
     
     final private Context context;
-    final private List<Dependency> dependencies;
+    final private Supplier<List<Dependency>> dependencies;
     final private Engine engine;
     final private Script script;
+    final private Timer timer;
     
-    private Blaze(Context context, List<Dependency> dependencies, Engine engine, Script script) {
+    private Blaze(Context context, Supplier<List<Dependency>> dependencies, Engine engine, Script script, Timer timer) {
         this.context = context;
         this.dependencies = dependencies;
         this.engine = engine;
         this.script = script;
+        this.timer = timer;
     }
 
     public Context context() {
@@ -342,7 +431,7 @@ public class Blaze {
     }
 
     public List<Dependency> dependencies() {
-        return dependencies;
+        return dependencies.get();
     }
     
     public Engine engine() {
@@ -353,6 +442,13 @@ public class Blaze {
         return script;
     }
     
+    /**
+     * @return The timer with the startup splits and a split per executed task
+     */
+    public Timer timer() {
+        return timer;
+    }
+    
     public List<BlazeTask> tasks() throws BlazeException {
         List<BlazeTask> tasks = this.script.tasks();
         
@@ -376,9 +472,15 @@ public class Blaze {
         log.info("Executing {}:{}...", scriptName, task);
         Timer executeTimer = new Timer();
         
-        this.script.execute(task);
+        Object jfr = Jfr.beginTask(scriptName, task);
+        try (Trace.Span span = Trace.global().span("task", task)) {
+            this.script.execute(task);
+        } finally {
+            Jfr.end(jfr);
+            timer.split("task:" + task);
+        }
         
-        log.info("Executed {}:{} in {} ms", scriptName, task, executeTimer.stop().millis());
+        log.info("Executed {}:{} in {}", scriptName, task, executeTimer.stop());
     }
     
     public void executeAll(List<String> tasks) throws Exception {
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits Java Flight Recorder events for tasks, actions, startup phases,
+ * dependency resolution and script compiles so a recording can tie jsch and
+ * process threads back to what a script was doing.  Enabled with the system
+ * property "blaze.jfr" (or --jfr on the command-line) on a jvm with the
+ * jdk.jfr api (java 8u262+ or 11+).  The events show up under "Blaze" in
+ * a recording, e.g.
+ * 
+ *   java -XX:StartFlightRecording=filename=blaze.jfr -jar blaze.jar --jfr
+ * 
+ * The events (JfrEvents) are only compiled when blaze is built on java 11+
+ * (a java 8 jdk may not have jdk.jfr) and are loaded by name, so a build
+ * without them simply never enables this.  When disabled every method is a
+ * no-op returning null and no jdk.jfr class is ever loaded.  The events are
+ * typed as Object so callers never need them.
+ */
+public class Jfr {
+    static private final Logger log = LoggerFactory.getLogger(Jfr.class);
+    
+    static public final String PROPERTY = "blaze.jfr";
+    
+    /**
+     * Implemented by JfrEvents.
+     */
+    interface Events {
+        Object beginPhase(String phase);
+        Object beginTask(String script, String task);
+        Object beginAction(String action);
+        Object beginResolve(int dependencies);
+        Object beginCompile(String engine, String script);
+        void end(Object event);
+        void endAction(Object event, String detail, long bytesIn, long bytesOut, boolean failed);
+        void endResolve(Object event, int jars);
+    }
+    
+    static private final Events EVENTS = (Boolean.getBoolean(PROPERTY) ? load() : null);
+    
+    static private Events load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.warn("Java Flight Recorder events are not supported on this jvm (requires java 8u262+ or 11+)");
+            return null;
+        }
+        try {
+            return (Events)Class.forName(Jfr.class.getPackage().getName() + ".JfrEvents").newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Java Flight Recorder events are not included in this build of blaze (requires building on java 11+)");
+            return null;
+        }
+    }
+    
+    static public boolean isEnabled() {
+        return EVENTS != null;
+    }
+    
+    static public Object beginPhase(String phase) {
+        return (EVENTS != null ? EVENTS.beginPhase(phase) : null);
+    }
+    
+    static public Object beginTask(String script, String task) {
+        return (EVENTS != null ? EVENTS.beginTask(script, task) : null);
+    }
+    
+    static public Object beginAction(String action) {
+        return (EVENTS != null ? EVENTS.beginAction(action) : null);
+    }
+    
+    static public Object beginResolve(int dependencies) {
+        return (EVENTS != null ? EVENTS.beginResolve(dependencies) : null);
+    }
+    
+    static public Object beginCompile(String engine, String script) {
+        return (EVENTS != null ? EVENTS.beginCompile(engine, script) : null);
+    }
+    
+    static public void end(Object event) {
+        if (event != null) {
+            EVENTS.end(event);
+        }
+    }
+    
+    static public void endAction(Object event, Action action, long bytesIn, long bytesOut, boolean failed) {
+        if (event != null) {
+            EVENTS.endAction(event, action.detail(), bytesIn, bytesOut, failed);
+        }
+    }
+    
+    static public void endResolve(Object event, int jars) {
+        if (event != null) {
+            EVENTS.endResolve(event, jars);
+        }
+    }
+    
+}
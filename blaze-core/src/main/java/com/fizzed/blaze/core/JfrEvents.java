@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder events.  Only ever loaded thru {@link Jfr} once it
+ * knows the jdk.jfr api is available.  Stack traces are off since they'd
+ * only ever point here.
+ */
+class JfrEvents implements Jfr.Events {
+    
+    @Name("com.fizzed.blaze.Phase")
+    @Label("Blaze Phase")
+    @Category("Blaze")
+    @StackTrace(false)
+    @Description("A startup phase (e.g. resolveDependencies, compileScript)")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+    }
+    
+    @Name("com.fizzed.blaze.Task")
+    @Label("Blaze Task")
+    @Category("Blaze")
+    @StackTrace(false)
+    @Description("A task executed from a script")
+    static class TaskEvent extends Event {
+        @Label("Script")
+        String script;
+        @Label("Task")
+        String task;
+    }
+    
+    @Name("com.fizzed.blaze.Action")
+    @Label("Blaze Action")
+    @Category("Blaze")
+    @StackTrace(false)
+    @Description("An action run (e.g. Exec, SshConnect, SshSftpPut)")
+    static class ActionEvent extends Event {
+        @Label("Action")
+        String action;
+        @Label("Detail")
+        @Description("The command, host or file acted on")
+        String detail;
+        @Label("Bytes In")
+        @DataAmount
+        long bytesIn;
+        @Label("Bytes Out")
+        @DataAmount
+        long bytesOut;
+        @Label("Failed")
+        boolean failed;
+    }
+    
+    @Name("com.fizzed.blaze.Resolve")
+    @Label("Blaze Dependency Resolve")
+    @Category("Blaze")
+    @StackTrace(false)
+    static class ResolveEvent extends Event {
+        @Label("Dependencies")
+        int dependencies;
+        @Label("Jars")
+        int jars;
+    }
+    
+    @Name("com.fizzed.blaze.Compile")
+    @Label("Blaze Script Compile")
+    @Category("Blaze")
+    @StackTrace(false)
+    static class CompileEvent extends Event {
+        @Label("Engine")
+        String engine;
+        @Label("Script")
+        String script;
+    }
+    
+    @Override
+    public Object beginPhase(String phase) {
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+    
+    @Override
+    public Object beginTask(String script, String task) {
+        TaskEvent event = new TaskEvent();
+        event.script = script;
+        event.task = task;
+        event.begin();
+        return event;
+    }
+    
+    @Override
+    public Object beginAction(String action) {
+        ActionEvent event = new ActionEvent();
+        event.action = action;
+        event.begin();
+        return event;
+    }
+    
+    @Override
+    public Object beginResolve(int dependencies) {
+        ResolveEvent event = new ResolveEvent();
+        event.dependencies = dependencies;
+        event.begin();
+        return event;
+    }
+    
+    @Override
+    public Object beginCompile(String engine, String script) {
+        CompileEvent event = new CompileEvent();
+        event.engine = engine;
+        event.script = script;
+        event.begin();
+        return event;
+    }
+    
+    @Override
+    public void end(Object event) {
+        ((Event)event).commit();
+    }
+    
+    @Override
+    public void endAction(Object event, String detail, long bytesIn, long bytesOut, boolean failed) {
+        ActionEvent actionEvent = (ActionEvent)event;
+        if (actionEvent.shouldCommit()) {
+            actionEvent.detail = detail;
+            actionEvent.bytesIn = bytesIn;
+            actionEvent.bytesOut = bytesOut;
+            actionEvent.failed = failed;
+            actionEvent.commit();
+        }
+    }
+    
+    @Override
+    public void endResolve(Object event, int jars) {
+        ResolveEvent resolveEvent = (ResolveEvent)event;
+        resolveEvent.jars = jars;
+        resolveEvent.commit();
+    }
+    
+}
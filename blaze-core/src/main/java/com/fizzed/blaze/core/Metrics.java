@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of timings for every action run in this jvm.  Each run of an
+ * action records its duration and (for actions that move data) the bytes in
+ * and out -- from the script's point of view, "out" is sent to a command or
+ * remote host (e.g. stdin, an upload) and "in" is received back (e.g. stdout,
+ * a download).  Recording is a few atomic adds so it is always on.
+ */
+public class Metrics {
+    
+    static private final Metrics GLOBAL = new Metrics();
+    
+    static public Metrics global() {
+        return GLOBAL;
+    }
+    
+    static public class Stat {
+        
+        private final String name;
+        private final LongAdder count;
+        private final LongAdder failures;
+        private final LongAdder totalNanos;
+        private final AtomicLong maxNanos;
+        private final LongAdder bytesIn;
+        private final LongAdder bytesOut;
+
+        Stat(String name) {
+            this.name = name;
+            this.count = new LongAdder();
+            this.failures = new LongAdder();
+            this.totalNanos = new LongAdder();
+            this.maxNanos = new AtomicLong();
+            this.bytesIn = new LongAdder();
+            this.bytesOut = new LongAdder();
+        }
+        
+        public String name() {
+            return name;
+        }
+        
+        public long count() {
+            return count.sum();
+        }
+        
+        public long failures() {
+            return failures.sum();
+        }
+        
+        public long totalNanos() {
+            return totalNanos.sum();
+        }
+        
+        public long maxNanos() {
+            return maxNanos.get();
+        }
+        
+        public long bytesIn() {
+            return bytesIn.sum();
+        }
+        
+        public long bytesOut() {
+            return bytesOut.sum();
+        }
+    }
+    
+    private final ConcurrentMap<String,Stat> stats;
+    
+    public Metrics() {
+        this.stats = new ConcurrentHashMap<>();
+    }
+    
+    public void record(Action action, long nanos, long bytesIn, long bytesOut, boolean failed) {
+        record(nameOf(action), nanos, bytesIn, bytesOut, failed);
+    }
+    
+    public void record(String name, long nanos, long bytesIn, long bytesOut, boolean failed) {
+        Stat stat = stats.computeIfAbsent(name, Stat::new);
+        stat.count.increment();
+        if (failed) {
+            stat.failures.increment();
+        }
+        stat.totalNanos.add(nanos);
+        stat.maxNanos.accumulateAndGet(nanos, Math::max);
+        stat.bytesIn.add(bytesIn);
+        stat.bytesOut.add(bytesOut);
+    }
+    
+    /**
+     * @return The stats by most total time first
+     */
+    public List<Stat> stats() {
+        List<Stat> list = new ArrayList<>(stats.values());
+        list.sort(Comparator.comparingLong(Stat::totalNanos).reversed());
+        return list;
+    }
+    
+    public void reset() {
+        stats.clear();
+    }
+    
+    /**
+     * The name an action is recorded under: its class or, for an impl (e.g.
+     * JschExec), the public action it implements (e.g. SshExec).
+     * @param action The action
+     * @return The name
+     */
+    static public String nameOf(Action action) {
+        return NAMES.get(action.getClass());
+    }
+    
+    static private final ClassValue<String> NAMES = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            while (type.getSuperclass() != Action.class
+                    && (type.isAnonymousClass() || type.getName().contains(".impl."))) {
+                type = type.getSuperclass();
+            }
+            return type.getSimpleName();
+        }
+    };
+    
+    public String toSummary() {
+        List<Stat> list = stats();
+        
+        int width = "action".length();
+        for (Stat stat : list) {
+            width = Math.max(stat.name().length(), width);
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        
+        sb.append(String.format(Locale.US, "%-" + width + "s %7s %5s %11s %10s %10s %10s %10s%n",
+            "action", "count", "fail", "total ms", "max ms", "avg ms", "in", "out"));
+        
+        for (Stat stat : list) {
+            long count = stat.count();
+            sb.append(String.format(Locale.US, "%-" + width + "s %7d %5d %11.1f %10.1f %10.1f %10s %10s%n",
+                stat.name(),
+                count,
+                stat.failures(),
+                stat.totalNanos() / 1e6,
+                stat.maxNanos() / 1e6,
+                (count > 0 ? stat.totalNanos() / 1e6 / count : 0d),
+                bytes(stat.bytesIn()),
+                bytes(stat.bytesOut())));
+        }
+        
+        return sb.toString();
+    }
+    
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        
+        sb.append("{\n  \"actions\": [");
+        
+        List<Stat> list = stats();
+        for (int i = 0; i < list.size(); i++) {
+            Stat stat = list.get(i);
+            sb.append(i > 0 ? ",\n" : "\n")
+                .append("    { \"name\": \"").append(stat.name().replace("\\", "\\\\").replace("\"", "\\\""))
+                .append("\", \"count\": ").append(stat.count())
+                .append(", \"failures\": ").append(stat.failures())
+                .append(", \"totalNanos\": ").append(stat.totalNanos())
+                .append(", \"maxNanos\": ").append(stat.maxNanos())
+                .append(", \"bytesIn\": ").append(stat.bytesIn())
+                .append(", \"bytesOut\": ").append(stat.bytesOut())
+                .append(" }");
+        }
+        
+        sb.append(list.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+        
+        return sb.toString();
+    }
+    
+    static private String bytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format(Locale.US, "%.1f KB", bytes / 1024d);
+        } else if (bytes < 1024 * 1024 * 1024) {
+            return String.format(Locale.US, "%.1f MB", bytes / (1024d * 1024d));
+        } else {
+            return String.format(Locale.US, "%.1f GB", bytes / (1024d * 1024d * 1024d));
+        }
+    }
+    
+}
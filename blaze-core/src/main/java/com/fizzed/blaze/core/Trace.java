@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records spans (bootstrap phases, tasks and actions) on the threads they ran
+ * on and writes them as Chrome trace-event JSON -- open the file in
+ * chrome://tracing or https://ui.perfetto.dev to see overlap and the critical
+ * path of a run.  Disabled by default, in which case a span is a shared no-op.
+ */
+public class Trace {
+    
+    static private final Trace GLOBAL = new Trace();
+    
+    static public Trace global() {
+        return GLOBAL;
+    }
+    
+    /**
+     * A span that ends when closed.  Use with try-with-resources.
+     */
+    static public class Span implements AutoCloseable {
+        
+        private final Trace trace;
+        private final String category;
+        private final String name;
+        private final Thread thread;
+        private final long start;
+        
+        Span(Trace trace, String category, String name) {
+            this.trace = trace;
+            this.category = category;
+            this.name = name;
+            this.thread = Thread.currentThread();
+            this.start = System.nanoTime();
+        }
+        
+        @Override
+        public void close() {
+            if (trace != null) {
+                trace.record(this, System.nanoTime());
+            }
+        }
+    }
+    
+    static private final Span NOOP = new Span(null, null, null);
+    
+    static private class Event {
+        final String category;
+        final String name;
+        final long tid;
+        final long start;
+        final long end;
+
+        Event(String category, String name, long tid, long start, long end) {
+            this.category = category;
+            this.name = name;
+            this.tid = tid;
+            this.start = start;
+            this.end = end;
+        }
+    }
+    
+    private final long origin;
+    private final ConcurrentLinkedQueue<Event> events;
+    private final Map<Long,String> threadNames;
+    private volatile boolean enabled;
+    
+    public Trace() {
+        this.origin = System.nanoTime();
+        this.events = new ConcurrentLinkedQueue<>();
+        this.threadNames = new ConcurrentHashMap<>();
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public Trace enabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+    
+    /**
+     * Begins a span on the current thread.
+     * @param category The category (e.g. "phase", "task", "action")
+     * @param name The name
+     * @return The span to close once done
+     */
+    public Span span(String category, String name) {
+        if (!enabled) {
+            return NOOP;
+        }
+        return new Span(this, category, name);
+    }
+    
+    void record(Span span, long end) {
+        long tid = span.thread.getId();
+        threadNames.putIfAbsent(tid, span.thread.getName());
+        events.add(new Event(span.category, span.name, tid, span.start, end));
+    }
+    
+    public int size() {
+        return events.size();
+    }
+    
+    public void clear() {
+        events.clear();
+        threadNames.clear();
+    }
+    
+    public String toJson() {
+        List<String> lines = new ArrayList<>();
+        
+        threadNames.forEach((tid, name) -> {
+            lines.add("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + tid
+                + ",\"args\":{\"name\":\"" + escape(name) + "\"}}");
+        });
+        
+        for (Event event : events) {
+            lines.add("{\"name\":\"" + escape(event.name)
+                + "\",\"cat\":\"" + escape(event.category)
+                + "\",\"ph\":\"X\",\"pid\":1,\"tid\":" + event.tid
+                + ",\"ts\":" + micros(event.start - origin)
+                + ",\"dur\":" + micros(event.end - event.start) + "}");
+        }
+        
+        return "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n" + String.join(",\n", lines) + "\n]}\n";
+    }
+    
+    public void write(Path file) throws IOException {
+        Files.write(file, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    static private String micros(long nanos) {
+        // trace-event times are microseconds (fractions allowed)
+        long fraction = Math.abs(nanos % 1000);
+        return (nanos / 1000) + "." + (fraction < 10 ? "00" : (fraction < 100 ? "0" : "")) + fraction;
+    }
+    
+    static private String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int)c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+    
+}
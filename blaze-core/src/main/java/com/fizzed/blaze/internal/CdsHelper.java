@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.internal;
+
+import com.fizzed.blaze.core.MessageOnlyException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a dynamic AppCDS (class-data sharing) archive of the classes a
+ * blaze run loads.  A jvm started with the archive maps those classes in
+ * rather than loading, verifying and linking them from the jar again, which
+ * is most of the startup of a short run.  The installed blaze launchers pick
+ * up the archive for their version of blaze and the java they run on.
+ * 
+ * Dynamic archives require Java 13+ and are only valid for the exact jar
+ * (path, size and modified time) and jdk build they were dumped with -- the
+ * jvm quietly ignores an archive that does not match.
+ */
+public class CdsHelper {
+    
+    // silences the warnings (e.g. pre-Java 6 classes in ivy/slf4j) that are
+    // logged while dumping as well as a mismatched archive while loading
+    static public final String QUIET_LOGGING = "-Xlog:cds=off,cds+dynamic=off";
+    
+    static public boolean supported() {
+        return javaMajorVersion(System.getProperty("java.specification.version")) >= 13;
+    }
+    
+    static int javaMajorVersion(String specificationVersion) {
+        // "1.8" before Java 9, then "9", "10", etc.
+        String v = specificationVersion.startsWith("1.") ? specificationVersion.substring(2) : specificationVersion;
+        int dot = v.indexOf('.');
+        return Integer.parseInt(dot < 0 ? v : v.substring(0, dot));
+    }
+    
+    /**
+     * The version of the jdk as the launchers see it: the JAVA_VERSION in the
+     * "release" file of the java home (falling back to java.version).
+     * @param javaHome The java home
+     * @return The jdk version
+     */
+    static public String jdkVersion(Path javaHome) {
+        Path releaseFile = javaHome.resolve("release");
+        if (Files.exists(releaseFile)) {
+            try {
+                for (String line : Files.readAllLines(releaseFile, StandardCharsets.UTF_8)) {
+                    if (line.startsWith("JAVA_VERSION=")) {
+                        return line.substring("JAVA_VERSION=".length()).replace("\"", "").trim();
+                    }
+                }
+            } catch (IOException e) {
+                // fallback to system property
+            }
+        }
+        return System.getProperty("java.version");
+    }
+    
+    static public Path userCdsDir() {
+        // ~/.blaze/cds
+        return Paths.get(System.getProperty("user.home"), ".blaze", "cds");
+    }
+    
+    static public Path archiveFile(Path cdsDir, String blazeVersion, String jdkVersion) {
+        // must match the name the launchers (bin/blaze & bin/blaze.bat) expect
+        return cdsDir.resolve("blaze-" + blazeVersion + "-jdk-" + jdkVersion + ".jsa");
+    }
+    
+    /**
+     * Does a training run of blaze in a child jvm (with the same classpath as
+     * this one) and dumps the classes it loaded to the archive once it exits.
+     * @param archiveFile The archive to generate (replaced if it exists)
+     * @param mainClass The main class to train with
+     * @param arguments The arguments of the training run
+     * @return The exit value of the training run
+     * @throws MessageOnlyException If the jvm does not support dynamic archives
+     *      or the training run could not be started
+     */
+    static public int generate(Path archiveFile, String mainClass, List<String> arguments) throws MessageOnlyException {
+        if (!supported()) {
+            throw new MessageOnlyException("Generating a class-data sharing archive requires Java 13+"
+                + " (running on " + System.getProperty("java.version") + ")");
+        }
+        
+        Path javaExe = Paths.get(System.getProperty("java.home"), "bin", "java");
+        
+        try {
+            Files.createDirectories(archiveFile.getParent());
+            
+            // dump to a temp file so a failed run never leaves a bad archive
+            Path tempFile = archiveFile.resolveSibling(archiveFile.getFileName() + ".tmp");
+            Files.deleteIfExists(tempFile);
+            
+            List<String> command = new ArrayList<>();
+            command.add(javaExe.toString());
+            command.add("-XX:ArchiveClassesAtExit=" + tempFile);
+            command.add(QUIET_LOGGING);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(mainClass);
+            command.addAll(arguments);
+            
+            Process process = new ProcessBuilder(command)
+                .inheritIO()
+                .start();
+            
+            int exitValue = process.waitFor();
+            
+            if (exitValue == 0) {
+                if (Files.notExists(tempFile)) {
+                    throw new MessageOnlyException("Training run did not dump an archive to " + tempFile);
+                }
+                Files.move(tempFile, archiveFile, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(tempFile);
+            }
+            
+            return exitValue;
+        } catch (IOException e) {
+            throw new MessageOnlyException("Unable to generate class-data sharing archive " + archiveFile + " (" + e.getMessage() + ")");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageOnlyException("Interrupted while generating class-data sharing archive");
+        }
+    }
+    
+}
@@ -16,17 +16,18 @@
 package com.fizzed.blaze.internal;
 
 import java.io.File;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.MalformedURLException;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,64 +38,63 @@ import org.slf4j.LoggerFactory;
 public class ClassLoaderHelper {
     static private final Logger log = LoggerFactory.getLogger(ClassLoaderHelper.class);
     
+    static private final ConcurrentMap<List<Object>, ClassLoader> DEPENDENCY_CLASS_LOADERS = new ConcurrentHashMap<>();
+    
     static public ClassLoader currentThreadContextClassLoader() {
         return Thread.currentThread().getContextClassLoader();
     }
     
-    static public URLClassLoader requireURLClassLoader(ClassLoader classLoader) {
-        if (!(classLoader instanceof URLClassLoader)) {
-            throw new IllegalArgumentException("Only classloaders of type URLClassLoader supported");
-        }
-        
-        return (URLClassLoader)classLoader;
+    /**
+     * A child-first loader of the dependency jars on top of the parent (or,
+     * if the parent is itself a script loader, on top of what it is on top
+     * of).  Loaders are cached per parent and set of jars so a process that
+     * builds more than one script (or the same one again) indexes them once.
+     * @param parent The parent classloader
+     * @param jarFiles The dependency jars
+     * @return The classloader
+     * @see #dependencyClassLoader(java.lang.ClassLoader, java.util.List, java.nio.file.Path) 
+     */
+    static public ClassLoader dependencyClassLoader(ClassLoader parent, List<File> jarFiles) {
+        return dependencyClassLoader(parent, jarFiles, null);
     }
     
-    static public boolean addClassPath(ClassLoader classLoader, File file) {
-        return addClassPath(classLoader, file.toURI());
+    /**
+     * A child-first loader of the dependency jars on top of the parent with
+     * the packages of each jar persisted (by its hash) to the index directory
+     * so a jar is only ever scanned once across runs.
+     * @param parent The parent classloader
+     * @param jarFiles The dependency jars
+     * @param indexDir The directory to persist the package index to (or null)
+     * @return The classloader
+     */
+    static public ClassLoader dependencyClassLoader(ClassLoader parent, List<File> jarFiles, Path indexDir) {
+        final ClassLoader base = baseClassLoader(parent);
+        
+        List<Object> key = new ArrayList<>(jarFiles.size() + 1);
+        key.add(base);
+        jarFiles.forEach((jarFile) -> key.add(jarFile.getAbsoluteFile()));
+        
+        return DEPENDENCY_CLASS_LOADERS.computeIfAbsent(key,
+            (k) -> new ScriptClassLoader(base, PackageIndex.build(jarFiles, indexDir)));
     }
     
-    static public boolean addClassPath(ClassLoader classLoader, Path path) {
-        return addClassPath(classLoader, path.toUri());
+    /**
+     * A new child-first loader of a script's compiled classes on top of the
+     * parent.  Never cached so a recompiled script is never served a stale
+     * class.
+     * @param parent The parent classloader (e.g. of the dependencies)
+     * @param classesDir The directory the script was compiled to
+     * @return The classloader
+     */
+    static public ClassLoader scriptClassLoader(ClassLoader parent, Path classesDir) {
+        return new ScriptClassLoader(parent, Arrays.asList(classesDir.toFile()));
     }
-
-    static public boolean addClassPath(ClassLoader classLoader, URI uri) {
-        URLClassLoader urlClassLoader = requireURLClassLoader(classLoader);
-        boolean isJar = uri.getScheme().startsWith("jar:");
-        File file = new File(uri);
-        
-        try {
-            // prevent duplicates
-            for (URL url : urlClassLoader.getURLs()) {
-                URI loadedUri = url.toURI();
-                
-                // exact match is a duplicate
-                if (loadedUri.equals(uri)) {
-                    log.trace("URI " + uri + " already on classpath");
-                    return false;
-                }
-                
-                if (isJar) {
-                    File loadedFile = new File(loadedUri);
-                    if (file.getName().equals(loadedFile.getName())) {
-                        log.trace("File " + file + " already on classpath");
-                        return false;
-                    }
-                }
-            }
-            
-            // add url via reflection (to workaround private access)
-            invokeDeclared(URLClassLoader.class, classLoader, "addURL", new Class[] { URL.class }, new Object[] { uri.toURL() });
-            
-            return true;
-        } catch (IllegalAccessException | NoSuchMethodException | InvocationTargetException | URISyntaxException | MalformedURLException e) {
-            throw new IllegalArgumentException("Unable to add " + uri + " to classpath", e);
+    
+    static private ClassLoader baseClassLoader(ClassLoader classLoader) {
+        while (classLoader instanceof ScriptClassLoader) {
+            classLoader = classLoader.getParent();
         }
-    }
-
-    static public Object invokeDeclared(Class c, Object obj, String method, Class[] paramClasses, Object[] params) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException {
-        Method m = c.getDeclaredMethod(method, paramClasses);
-        m.setAccessible(true);
-        return m.invoke(obj, params);
+        return classLoader;
     }
 
     static public File findContainingJar(ClassLoader classLoader, String resourceName) {
@@ -129,16 +129,6 @@ public class ClassLoaderHelper {
         return jarFile;
     }
     
-    static public List<URL> buildClassPath(ClassLoader classLoader) {
-        if (!(classLoader instanceof URLClassLoader)) {
-            throw new IllegalArgumentException("Only classloaders of type URLClassLoader supported");
-        }
-        
-        URLClassLoader urlClassLoader = (URLClassLoader)classLoader;
-        
-        return java.util.Arrays.asList(urlClassLoader.getURLs());
-    }
-    
     static public String buildClassPathAsString(ClassLoader classLoader) {
         List<File> files = buildClassPathAsFiles(classLoader);
         
@@ -156,18 +146,35 @@ public class ClassLoaderHelper {
     }
     
     static public List<File> buildClassPathAsFiles(ClassLoader classLoader) {
-        List<URL> urls = buildClassPath(classLoader);
+        // most specific first (as a child-first loader sees them) & only once
+        Set<File> files = new LinkedHashSet<>();
+        ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
         
-        List<File> files = new ArrayList<>();
-        
-        for (URL u : urls) {
-            try {
-                files.add(new File(u.toURI()));
-            } catch (Exception e) {
-                // do nothing...
+        for (ClassLoader cl = classLoader; cl != null; cl = cl.getParent()) {
+            if (cl instanceof ScriptClassLoader) {
+                files.addAll(((ScriptClassLoader)cl).getFiles());
+            } else if (cl instanceof URLClassLoader) {
+                for (URL u : ((URLClassLoader)cl).getURLs()) {
+                    try {
+                        files.add(new File(u.toURI()));
+                    } catch (Exception e) {
+                        // do nothing...
+                    }
+                }
+            }
+            
+            if (cl == systemClassLoader) {
+                // not a URLClassLoader on Java 9+ so use what it started with
+                for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                    if (!path.isEmpty()) {
+                        files.add(new File(path).getAbsoluteFile());
+                    }
+                }
+                // nothing of use above it (e.g. ext jars)
+                break;
             }
         }
         
-        return files;
+        return new ArrayList<>(files);
     }
 }
@@ -25,15 +25,22 @@ import org.slf4j.LoggerFactory;
 public class EngineHelper {
     static private final Logger log = LoggerFactory.getLogger(EngineHelper.class);
  
-    private static final ServiceLoader<Engine> ENGINE_LOADER
-        = ServiceLoader.load(Engine.class, ClassLoaderHelper.currentThreadContextClassLoader());
+    // only scanned for once a script actually needs an engine (and again if
+    // the context classloader changes, e.g. to one with dependencies)
+    private static ServiceLoader<Engine> engineLoader;
+    private static ClassLoader engineClassLoader;
     
-    static public Engine findByFileExtension(String fileExtension, boolean invalidateCache) {
-        if (invalidateCache) {
-            ENGINE_LOADER.reload();
+    static public synchronized Engine findByFileExtension(String fileExtension, boolean invalidateCache) {
+        ClassLoader classLoader = ClassLoaderHelper.currentThreadContextClassLoader();
+        
+        if (engineLoader == null || engineClassLoader != classLoader) {
+            engineLoader = ServiceLoader.load(Engine.class, classLoader);
+            engineClassLoader = classLoader;
+        } else if (invalidateCache) {
+            engineLoader.reload();
         }
         
-        Iterator<Engine> iterator = ENGINE_LOADER.iterator();
+        Iterator<Engine> iterator = engineLoader.iterator();
 
         while (iterator.hasNext()) {
             Engine engine = iterator.next();
@@ -17,20 +17,26 @@ package com.fizzed.blaze.internal;
 
 import com.fizzed.blaze.core.FileNotFoundException;
 import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.util.FileHasher;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardOpenOption;
-import java.security.MessageDigest;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  *
@@ -92,18 +98,7 @@ public class FileHelper {
     }
     
     static public byte[] md5(Path path) throws IOException, NoSuchAlgorithmException {
-        byte[] buf = new byte[1024];
-        MessageDigest complete = MessageDigest.getInstance("MD5");
-        int read;
-        try (InputStream is = Files.newInputStream(path)) {
-            do {
-                read = is.read(buf);
-                if (read > 0) {
-                    complete.update(buf, 0, read);
-                }
-            } while (read != -1);
-        }
-        return complete.digest();
+        return new FileHasher(FileHasher.Algorithm.MD5).digest(path);
     }
     
     static public String md5hash(Path path) throws IOException, NoSuchAlgorithmException {
@@ -132,4 +127,95 @@ public class FileHelper {
         return hash.equals(currentHash);
     }
     
+    /**
+     * Visits a path walked by {@link #walkRelative(Path, Path, RelativeVisitor)}.
+     */
+    public interface RelativeVisitor {
+        
+        /**
+         * @param name The name relative to the base ("/" separated)
+         * @param path The path
+         * @param attrs The attributes of the path (symlinks are not followed)
+         */
+        void visit(String name, Path path, BasicFileAttributes attrs) throws IOException;
+        
+    }
+    
+    /**
+     * Walks a file or directory (without following symlinks) visiting each
+     * directory and file with its name relative to a base directory.  The
+     * base directory itself is never visited.
+     * @param path The file or directory
+     * @param relativeTo The directory names are relative to or null for the
+     *      parent of the path
+     * @param visitor The visitor
+     * @throws FileNotFoundException If the path does not exist
+     * @throws BlazeException If a path is not within the base
+     */
+    static public void walkRelative(Path path, Path relativeTo, RelativeVisitor visitor) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileNotFoundException("Path " + path + " not found");
+        }
+        
+        final Path absolute = path.toAbsolutePath().normalize();
+        final Path base = (relativeTo != null ? relativeTo.toAbsolutePath().normalize() : absolute.getParent());
+        
+        Files.walkFileTree(absolute, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                String name = relativeName(base, dir);
+                if (!name.isEmpty()) {
+                    visitor.visit(name, dir, attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                visitor.visit(relativeName(base, file), file, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+    
+    static String relativeName(Path base, Path path) {
+        Path relative = (base != null ? base.relativize(path) : path.getFileName());
+        
+        // by name component (e.g. "..env" is fine)
+        if (relative.startsWith("..")) {
+            throw new BlazeException("Path " + path + " is not within " + base + " (check relativeTo())");
+        }
+        
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+    
+    /**
+     * Converts posix permissions to a unix mode (e.g. 0755).
+     * @param permissions The permissions
+     * @return The unix mode
+     */
+    static public int posixMode(Set<PosixFilePermission> permissions) {
+        int mode = 0;
+        for (PosixFilePermission permission : permissions) {
+            // enum is declared from OWNER_READ (0400) to OTHERS_EXECUTE (01)
+            mode |= (1 << (8 - permission.ordinal()));
+        }
+        return mode;
+    }
+    
+    /**
+     * Converts a unix mode (e.g. 0755) to posix permissions.
+     * @param mode The unix mode
+     * @return The permissions
+     */
+    static public Set<PosixFilePermission> posixPermissions(int mode) {
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (PosixFilePermission permission : PosixFilePermission.values()) {
+            if ((mode & (1 << (8 - permission.ordinal()))) != 0) {
+                permissions.add(permission);
+            }
+        }
+        return permissions;
+    }
+    
 }
@@ -15,13 +15,15 @@
  */
 package com.fizzed.blaze.internal;
 
+import com.fizzed.blaze.Version;
 import com.fizzed.blaze.core.Blaze;
 import com.fizzed.blaze.core.MessageOnlyException;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -71,7 +73,9 @@ public class InstallHelper {
         }
         
         try {
-            Files.copy(is, targetFile, StandardCopyOption.REPLACE_EXISTING);
+            // launchers look for the class-data sharing archive of this version
+            String script = readFully(is).replace("@VERSION@", Version.getVersion());
+            Files.write(targetFile, script.getBytes(StandardCharsets.UTF_8));
             // world execute!
             targetFile.toFile().setExecutable(true, false);
         } catch (IOException e) {
@@ -79,4 +83,16 @@ public class InstallHelper {
         }
     }
     
+    static private String readFully(InputStream is) throws IOException {
+        try (InputStream input = is) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                baos.write(buffer, 0, read);
+            }
+            return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+    
 }
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.internal;
+
+import com.fizzed.blaze.util.FileHasher;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Which jars (or directories) of a classpath have each package so a class or
+ * resource is only looked for in the ones that can have it.  The packages of
+ * a jar can be persisted to a directory keyed by the hash of the jar so the
+ * same jar (wherever it was resolved to) is only ever scanned once.
+ */
+public class PackageIndex {
+    static private final Logger log = LoggerFactory.getLogger(PackageIndex.class);
+    
+    static final String END_MARKER = "#packages ";
+    
+    private final List<File> files;
+    private final Map<String,List<File>> packages;
+
+    private PackageIndex(List<File> files, Map<String,List<File>> packages) {
+        this.files = Collections.unmodifiableList(new ArrayList<>(files));
+        this.packages = packages;
+    }
+    
+    /**
+     * The jars (or directories) indexed, in order.
+     * @return The files
+     */
+    public List<File> files() {
+        return files;
+    }
+    
+    /**
+     * @param packagePath The package as a path (e.g. "com/example")
+     * @return True if any jar (or directory) has the package
+     */
+    public boolean contains(String packagePath) {
+        return packages.containsKey(packagePath);
+    }
+    
+    /**
+     * @param packagePath The package as a path (e.g. "com/example")
+     * @return The jars (or directories) with the package in classpath order
+     *      or an empty list if none
+     */
+    public List<File> filesOf(String packagePath) {
+        List<File> list = packages.get(packagePath);
+        return (list != null ? list : Collections.emptyList());
+    }
+    
+    static public PackageIndex build(List<File> files) {
+        return build(files, null);
+    }
+    
+    /**
+     * Indexes the packages of each jar (or directory).
+     * @param files The jars (or directories) in classpath order
+     * @param cacheDir The directory to persist the packages of each jar to
+     *      (by its hash) or null to always scan them
+     * @return The index
+     */
+    static public PackageIndex build(List<File> files, Path cacheDir) {
+        Map<File,String> hashes = (cacheDir != null ? hashJars(files, cacheDir) : Collections.emptyMap());
+        
+        Map<String,List<File>> packages = new HashMap<>();
+        
+        for (File file : files) {
+            String hash = hashes.get(file);
+            
+            Set<String> filePackages = (hash != null ? cachedPackagesOf(file, cacheDir.resolve(hash + ".txt")) : packagesOf(file));
+            
+            for (String p : filePackages) {
+                packages.computeIfAbsent(p, (k) -> new ArrayList<>(1)).add(file);
+            }
+        }
+        
+        return new PackageIndex(files, packages);
+    }
+    
+    static private Map<File,String> hashJars(List<File> files, Path cacheDir) {
+        // directories (e.g. compiled classes) change too often to persist
+        List<Path> jars = files.stream()
+            .filter(File::isFile)
+            .map(File::toPath)
+            .collect(Collectors.toList());
+        
+        Map<File,String> hashes = new HashMap<>();
+        
+        try {
+            Files.createDirectories(cacheDir);
+            
+            new FileHasher(FileHasher.Algorithm.XXHASH64)
+                .cache(cacheDir.resolve("hashes"))
+                .hash(jars)
+                .forEach((path, hash) -> hashes.put(path.toFile(), hash));
+        } catch (IOException e) {
+            log.debug("Unable to hash jars to index (will scan them)", e);
+        }
+        
+        return hashes;
+    }
+    
+    static private Set<String> cachedPackagesOf(File file, Path indexFile) {
+        if (Files.exists(indexFile)) {
+            try {
+                Set<String> packages = readIndex(indexFile);
+                if (packages != null) {
+                    return packages;
+                }
+                log.debug("Package index {} is incomplete (will scan jar)", indexFile);
+            } catch (IOException e) {
+                log.debug("Unable to read package index {} (will scan jar)", indexFile, e);
+            }
+        }
+        
+        Set<String> packages = packagesOf(file);
+        
+        // other processes may be indexing the same jar at the same time
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+            List<String> lines = new ArrayList<>(packages);
+            lines.add(END_MARKER + packages.size());
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            try {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.debug("Unable to save package index {}", indexFile, e);
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+        
+        return packages;
+    }
+    
+    /**
+     * Reads a persisted index, which ends with a line of the number of
+     * packages so an index that was cut short (or otherwise mangled) is
+     * never trusted.
+     * @param indexFile The index
+     * @return The packages or null if the index is incomplete
+     */
+    static Set<String> readIndex(Path indexFile) throws IOException {
+        List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+        
+        if (lines.isEmpty()) {
+            return null;
+        }
+        
+        String last = lines.remove(lines.size() - 1);
+        
+        if (!last.equals(END_MARKER + lines.size())) {
+            return null;
+        }
+        
+        Set<String> packages = new TreeSet<>(lines);
+        
+        return (packages.size() == lines.size() ? packages : null);
+    }
+    
+    /**
+     * Scans the packages (as paths) a jar or directory has a class or other
+     * resource in (e.g. "com/example", "META-INF/services" or "" for the root).
+     * @param file The jar or directory
+     * @return The packages or empty if the file does not exist
+     */
+    static public Set<String> packagesOf(File file) {
+        Set<String> packages = new TreeSet<>();
+        
+        if (file.isDirectory()) {
+            Path dir = file.toPath();
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths
+                    .filter((p) -> Files.isRegularFile(p))
+                    .forEach((p) -> packages.add(packagePath(dir.relativize(p).toString().replace(File.separatorChar, '/'))));
+            } catch (IOException | UncheckedIOException e) {
+                throw new IllegalArgumentException("Unable to index " + file, e);
+            }
+        } else if (file.isFile()) {
+            try (JarFile jarFile = new JarFile(file)) {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()) {
+                        packages.add(packagePath(entry.getName()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Unable to index " + file, e);
+            }
+        }
+        
+        return packages;
+    }
+    
+    /**
+     * @param resourceName The name of a resource (e.g. "com/example/a.txt")
+     * @return The package as a path (e.g. "com/example")
+     */
+    static public String packagePath(String resourceName) {
+        String n = (resourceName.startsWith("/") ? resourceName.substring(1) : resourceName);
+        int lastSlash = n.lastIndexOf('/');
+        return (lastSlash < 0 ? "" : n.substring(0, lastSlash));
+    }
+    
+    /**
+     * @param className The binary name of a class (e.g. "com.example.A")
+     * @return The package as a path (e.g. "com/example")
+     */
+    static public String classPackagePath(String className) {
+        int lastDot = className.lastIndexOf('.');
+        return (lastDot < 0 ? "" : className.substring(0, lastDot).replace('.', '/'));
+    }
+    
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Child-first classloader of a script's dependency jars (or compiled classes)
+ * on top of the classloader blaze itself was loaded by.  Classes and resources
+ * are looked up thru a package index so they come straight from the jar (or
+ * directory) that has their package and anything none of them has goes
+ * straight to the parent rather than being searched for in every jar.
+ * 
+ * Blaze itself, slf4j and the jdk are always loaded from the parent first so
+ * the script and blaze share one copy of the types that pass between them.
+ */
+public class ScriptClassLoader extends URLClassLoader {
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+    
+    static private final String[] PARENT_FIRST = {
+        "java.", "javax.", "sun.", "com.fizzed.blaze.", "org.slf4j."
+    };
+    
+    private final PackageIndex index;
+    private final Set<File> directories;
+    private final Map<File,JarFile> jarFiles;
+    
+    public ScriptClassLoader(ClassLoader parent, List<File> files) {
+        this(parent, PackageIndex.build(files));
+    }
+    
+    public ScriptClassLoader(ClassLoader parent, PackageIndex index) {
+        super(toURLs(index.files()), parent);
+        this.index = index;
+        this.directories = new HashSet<>();
+        this.jarFiles = new ConcurrentHashMap<>();
+        
+        for (File file : index.files()) {
+            if (file.isDirectory()) {
+                this.directories.add(file);
+            }
+        }
+    }
+
+    /**
+     * The jars (or directories) this loader loads from, in order.
+     * @return The files
+     */
+    public List<File> getFiles() {
+        return index.files();
+    }
+    
+    /**
+     * The index of which jars (or directories) have each package.
+     * @return The index
+     */
+    public PackageIndex getIndex() {
+        return index;
+    }
+    
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> c = findLoadedClass(name);
+            
+            if (c == null && !isParentFirst(name)) {
+                try {
+                    c = findClass(name);
+                } catch (ClassNotFoundException e) {
+                    // try the parent
+                }
+            }
+            
+            if (c == null) {
+                // parent then this loader
+                c = super.loadClass(name, false);
+            }
+            
+            if (resolve) {
+                resolveClass(c);
+            }
+            
+            return c;
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String packagePath = PackageIndex.classPackagePath(name);
+        String resourceName = name.replace('.', '/') + ".class";
+        
+        for (File file : index.filesOf(packagePath)) {
+            try {
+                byte[] bytes = read(file, resourceName);
+                if (bytes != null) {
+                    URL url = file.toURI().toURL();
+                    
+                    definePackageIfNeeded(packagePath.replace('/', '.'), file, url);
+                    
+                    return defineClass(name, bytes, 0, bytes.length, new CodeSource(url, (CodeSigner[])null));
+                }
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+        
+        throw new ClassNotFoundException(name);
+    }
+    
+    @Override
+    public URL getResource(String name) {
+        if (!isParentFirst(name.replace('/', '.'))) {
+            URL url = findResource(name);
+            if (url != null) {
+                return url;
+            }
+        }
+        return super.getResource(name);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        for (File file : index.filesOf(PackageIndex.packagePath(name))) {
+            URL url = resourceUrl(file, name);
+            if (url != null) {
+                return url;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        List<URL> urls = new ArrayList<>();
+        for (File file : index.filesOf(PackageIndex.packagePath(name))) {
+            URL url = resourceUrl(file, name);
+            if (url != null) {
+                urls.add(url);
+            }
+        }
+        return Collections.enumeration(urls);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            for (JarFile jarFile : jarFiles.values()) {
+                jarFile.close();
+            }
+            jarFiles.clear();
+        } finally {
+            super.close();
+        }
+    }
+    
+    private JarFile jarFile(File file) throws IOException {
+        JarFile jarFile = jarFiles.get(file);
+        if (jarFile == null) {
+            synchronized (jarFiles) {
+                jarFile = jarFiles.get(file);
+                if (jarFile == null) {
+                    jarFile = new JarFile(file);
+                    jarFiles.put(file, jarFile);
+                }
+            }
+        }
+        return jarFile;
+    }
+    
+    private byte[] read(File file, String resourceName) throws IOException {
+        if (directories.contains(file)) {
+            File f = new File(file, resourceName);
+            return (f.isFile() ? Files.readAllBytes(f.toPath()) : null);
+        }
+        
+        JarFile jarFile = jarFile(file);
+        JarEntry entry = jarFile.getJarEntry(resourceName);
+        if (entry == null) {
+            return null;
+        }
+        
+        try (InputStream input = jarFile.getInputStream(entry)) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(entry.getSize() > 0 ? (int)entry.getSize() : 8192);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                baos.write(buffer, 0, read);
+            }
+            return baos.toByteArray();
+        }
+    }
+    
+    private URL resourceUrl(File file, String name) {
+        String resourceName = (name.startsWith("/") ? name.substring(1) : name);
+        try {
+            if (directories.contains(file)) {
+                File f = new File(file, resourceName);
+                return (f.isFile() ? f.toURI().toURL() : null);
+            }
+            
+            if (jarFile(file).getJarEntry(resourceName) == null) {
+                return null;
+            }
+            
+            return new URL("jar:" + file.toURI().toURL() + "!/" + resourceName);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private void definePackageIfNeeded(String packageName, File file, URL url) throws IOException {
+        if (packageName.isEmpty() || getPackage(packageName) != null) {
+            return;
+        }
+        
+        Manifest manifest = (!directories.contains(file) ? jarFile(file).getManifest() : null);
+        
+        try {
+            if (manifest != null) {
+                definePackage(packageName, manifest, url);
+            } else {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            }
+        } catch (IllegalArgumentException e) {
+            // defined concurrently by another thread
+        }
+    }
+    
+    /**
+     * @param name The name of a class (e.g. "com.example.A")
+     * @return True if the class is always loaded from the parent first
+     *      (rather than from this loader first)
+     */
+    static public boolean isParentFirst(String name) {
+        for (String prefix : PARENT_FIRST) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    static private URL[] toURLs(List<File> files) {
+        URL[] urls = new URL[files.size()];
+        for (int i = 0; i < urls.length; i++) {
+            try {
+                urls[i] = files.get(i).toURI().toURL();
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Unable to add " + files.get(i) + " to classpath", e);
+            }
+        }
+        return urls;
+    }
+    
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal reader/writer of the tar format (ustar with GNU long name and
+ * base-256 size extensions, pax path headers on read).
+ */
+public class TarHelper {
+    
+    static public final int BLOCK_SIZE = 512;
+    
+    static public final char TYPE_FILE = '0';
+    static public final char TYPE_SYMLINK = '2';
+    static public final char TYPE_DIRECTORY = '5';
+    static private final char TYPE_GNU_LONGNAME = 'L';
+    static private final char TYPE_GNU_LONGLINK = 'K';
+    static private final char TYPE_PAX = 'x';
+    static private final char TYPE_PAX_GLOBAL = 'g';
+    
+    static private final String LONGLINK_NAME = "././@LongLink";
+    
+    static public class Entry {
+        
+        private final String name;
+        private final char type;
+        private final long size;
+        private final int mode;
+        private final long modifiedTime;
+        private final String linkName;
+
+        public Entry(String name, char type, long size, int mode, long modifiedTime, String linkName) {
+            this.name = name;
+            this.type = type;
+            this.size = size;
+            this.mode = mode;
+            this.modifiedTime = modifiedTime;
+            this.linkName = linkName;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public char type() {
+            return type;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public int mode() {
+            return mode;
+        }
+
+        /**
+         * @return The modified time in millis since epoch
+         */
+        public long modifiedTime() {
+            return modifiedTime;
+        }
+
+        public String linkName() {
+            return linkName;
+        }
+        
+    }
+    
+    static public void writeEntry(OutputStream output, Entry entry) throws IOException {
+        byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+        byte[] linkName = (entry.linkName() != null ? entry.linkName().getBytes(StandardCharsets.UTF_8) : new byte[0]);
+        
+        byte[] prefix = new byte[0];
+        
+        if (name.length > 100) {
+            int split = splitForPrefix(name);
+            if (split > 0) {
+                prefix = Arrays.copyOfRange(name, 0, split);
+                name = Arrays.copyOfRange(name, split + 1, name.length);
+            } else {
+                writeLongName(output, TYPE_GNU_LONGNAME, name);
+                name = Arrays.copyOf(name, 100);
+            }
+        }
+        
+        if (linkName.length > 100) {
+            writeLongName(output, TYPE_GNU_LONGLINK, linkName);
+            linkName = Arrays.copyOf(linkName, 100);
+        }
+        
+        byte[] header = header(name, prefix, entry.type(), entry.size(), entry.mode(), entry.modifiedTime() / 1000L, linkName);
+        
+        output.write(header);
+    }
+    
+    /**
+     * Pads the data of an entry to a full block.
+     * @param output The output to write to
+     * @param size The size of the entry data
+     * @throws IOException 
+     */
+    static public void writePadding(OutputStream output, long size) throws IOException {
+        int remainder = (int)(size % BLOCK_SIZE);
+        if (remainder > 0) {
+            output.write(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+    
+    static public void writeEnd(OutputStream output) throws IOException {
+        output.write(new byte[BLOCK_SIZE * 2]);
+    }
+    
+    /**
+     * Reads the next entry header.  The caller must then consume exactly
+     * size() bytes of data plus padding (see skipPadding()).
+     * @param input The input to read from
+     * @return The entry or null if the end of the archive was reached
+     * @throws IOException 
+     */
+    static public Entry readEntry(InputStream input) throws IOException {
+        String longName = null;
+        String longLinkName = null;
+        byte[] header = new byte[BLOCK_SIZE];
+        
+        while (true) {
+            if (!readFully(input, header, true)) {
+                return null;
+            }
+
+            if (isZero(header)) {
+                return null;
+            }
+
+            verifyChecksum(header);
+
+            char type = (char)header[156];
+            long size = parseNumber(header, 124, 12);
+
+            if (type == TYPE_GNU_LONGNAME || type == TYPE_GNU_LONGLINK) {
+                String value = trimNull(new String(readData(input, size), StandardCharsets.UTF_8));
+                if (type == TYPE_GNU_LONGNAME) {
+                    longName = value;
+                } else {
+                    longLinkName = value;
+                }
+                continue;
+            }
+
+            if (type == TYPE_PAX || type == TYPE_PAX_GLOBAL) {
+                String records = new String(readData(input, size), StandardCharsets.UTF_8);
+                if (type == TYPE_PAX) {
+                    String path = paxValue(records, "path");
+                    String linkPath = paxValue(records, "linkpath");
+                    longName = (path != null ? path : longName);
+                    longLinkName = (linkPath != null ? linkPath : longLinkName);
+                }
+                continue;
+            }
+
+            String name = parseString(header, 0, 100);
+            if (isUstar(header)) {
+                String prefix = parseString(header, 345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+            }
+            
+            if (longName != null) {
+                name = longName;
+            }
+            
+            String linkName = (longLinkName != null ? longLinkName : parseString(header, 157, 100));
+            
+            // old tar marks directories with a trailing slash on a file type
+            if ((type == TYPE_FILE || type == 0) && name.endsWith("/")) {
+                type = TYPE_DIRECTORY;
+            } else if (type == 0) {
+                type = TYPE_FILE;
+            }
+            
+            int mode = (int)parseNumber(header, 100, 8);
+            long mtime = parseNumber(header, 136, 12) * 1000L;
+
+            return new Entry(name, type, size, mode, mtime, linkName);
+        }
+    }
+    
+    static public void skipPadding(InputStream input, long size) throws IOException {
+        int remainder = (int)(size % BLOCK_SIZE);
+        if (remainder > 0) {
+            skipFully(input, BLOCK_SIZE - remainder);
+        }
+    }
+    
+    static public void skipFully(InputStream input, long count) throws IOException {
+        while (count > 0) {
+            long n = input.skip(count);
+            if (n <= 0) {
+                if (input.read() < 0) {
+                    throw new EOFException("Unexpected end of tar archive");
+                }
+                n = 1;
+            }
+            count -= n;
+        }
+    }
+    
+    static private byte[] header(byte[] name, byte[] prefix, char type, long size, int mode, long mtime, byte[] linkName) {
+        byte[] header = new byte[BLOCK_SIZE];
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, 100));
+        writeOctal(header, 100, 8, mode & 07777);
+        writeOctal(header, 108, 8, 0);
+        writeOctal(header, 116, 8, 0);
+        writeNumber(header, 124, 12, size);
+        writeNumber(header, 136, 12, Math.max(mtime, 0));
+        header[156] = (byte)type;
+        System.arraycopy(linkName, 0, header, 157, Math.min(linkName.length, 100));
+        System.arraycopy("ustar\000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        System.arraycopy(prefix, 0, header, 345, Math.min(prefix.length, 155));
+        
+        // checksum is computed with the checksum field as spaces
+        Arrays.fill(header, 148, 156, (byte)' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += (b & 0xff);
+        }
+        writeOctal(header, 148, 7, checksum);
+        header[155] = ' ';
+        
+        return header;
+    }
+    
+    static private void writeLongName(OutputStream output, char type, byte[] name) throws IOException {
+        byte[] header = header(LONGLINK_NAME.getBytes(StandardCharsets.US_ASCII), new byte[0], type, name.length + 1, 0644, 0, new byte[0]);
+        output.write(header);
+        output.write(name);
+        output.write(0);
+        writePadding(output, name.length + 1);
+    }
+    
+    static private int splitForPrefix(byte[] name) {
+        // find a '/' so that prefix fits in 155 and name fits in 100
+        for (int i = Math.min(name.length - 2, 155); i >= 0; i--) {
+            if (name[i] == '/' && (name.length - i - 1) <= 100) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    static private void writeOctal(byte[] header, int offset, int length, long value) {
+        // zero-padded octal digits followed by a NUL
+        String s = Long.toOctalString(value);
+        int digits = length - 1;
+        int pad = digits - s.length();
+        for (int i = 0; i < digits; i++) {
+            header[offset + i] = (byte)(i < pad ? '0' : s.charAt(i - pad));
+        }
+        header[offset + digits] = 0;
+    }
+    
+    static private void writeNumber(byte[] header, int offset, int length, long value) {
+        if (value < (1L << (3 * (length - 1)))) {
+            writeOctal(header, offset, length, value);
+        } else {
+            // gnu base-256 encoding for values too large for octal
+            header[offset] = (byte)0x80;
+            for (int i = length - 1; i > 0; i--) {
+                header[offset + i] = (byte)(value & 0xff);
+                value >>>= 8;
+            }
+        }
+    }
+    
+    static private long parseNumber(byte[] header, int offset, int length) {
+        if ((header[offset] & 0x80) != 0) {
+            long value = 0;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xff);
+            }
+            return value;
+        }
+        
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0) {
+                break;
+            }
+            if (b >= '0' && b <= '7') {
+                value = (value << 3) + (b - '0');
+            }
+        }
+        return value;
+    }
+    
+    static private String parseString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+    
+    static private String trimNull(String s) {
+        int i = s.indexOf('\0');
+        return (i >= 0 ? s.substring(0, i) : s);
+    }
+    
+    static private boolean isUstar(byte[] header) {
+        return header[257] == 'u' && header[258] == 's' && header[259] == 't'
+            && header[260] == 'a' && header[261] == 'r';
+    }
+    
+    static private boolean isZero(byte[] header) {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    static private void verifyChecksum(byte[] header) throws IOException {
+        long expected = parseNumber(header, 148, 8);
+        long actual = 0;
+        for (int i = 0; i < header.length; i++) {
+            actual += (i >= 148 && i < 156 ? ' ' : (header[i] & 0xff));
+        }
+        if (expected != actual) {
+            throw new IOException("Invalid tar header checksum (not a tar archive?)");
+        }
+    }
+    
+    static private String paxValue(String records, String key) {
+        // each record is "<length> <key>=<value>\n"
+        int i = 0;
+        while (i < records.length()) {
+            int space = records.indexOf(' ', i);
+            if (space < 0) {
+                break;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(records.substring(i, space));
+            } catch (NumberFormatException e) {
+                break;
+            }
+            int end = records.indexOf('\n', space);
+            if (end < 0 || length <= 0) {
+                break;
+            }
+            String record = records.substring(space + 1, end);
+            int equals = record.indexOf('=');
+            if (equals > 0 && record.substring(0, equals).equals(key)) {
+                return record.substring(equals + 1);
+            }
+            i = end + 1;
+        }
+        return null;
+    }
+    
+    static private byte[] readData(InputStream input, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Tar extended header too large");
+        }
+        byte[] data = new byte[(int)size];
+        readFully(input, data, false);
+        skipPadding(input, size);
+        return data;
+    }
+    
+    static private boolean readFully(InputStream input, byte[] buffer, boolean eofAllowed) throws IOException {
+        int off = 0;
+        while (off < buffer.length) {
+            int n = input.read(buffer, off, buffer.length - off);
+            if (n < 0) {
+                if (off == 0 && eofAllowed) {
+                    return false;
+                }
+                throw new EOFException("Unexpected end of tar archive");
+            }
+            off += n;
+        }
+        return true;
+    }
+    
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.internal;
+
+import com.fizzed.blaze.util.ParallelDeflaterOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Streaming zip writer that compresses entries in parallel.  Small files are
+ * each compressed whole by the executor (many entries in flight at once) and
+ * large files are split into blocks compressed in parallel.  Output is never
+ * seeked so it can be written to any stream (e.g. a pipe to a remote host).
+ * Zip64 records are written when sizes, offsets or entry counts require them.
+ */
+public class ZipWriter implements Closeable {
+    
+    static private final int SMALL_FILE_SIZE = 1024 * 1024;
+    static private final long ZIP64_THRESHOLD = 0xF0000000L;
+    static private final long MAX_32 = 0xFFFFFFFFL;
+    
+    static private final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    static private final int FLAG_UTF8 = 0x0800;
+    static private final int METHOD_STORED = 0;
+    static private final int METHOD_DEFLATED = 8;
+    
+    static private final int S_IFMT = 0170000;
+    static private final int S_IFREG = 0100000;
+    static private final int S_IFDIR = 0040000;
+    static private final int S_IFLNK = 0120000;
+    
+    static private class Entry {
+        byte[] name;
+        int flags;
+        int method;
+        int unixMode;
+        long dosTime;
+        long crc;
+        long compressedSize;
+        long size;
+        long offset;
+        boolean zip64;
+        // only set for entries compressed ahead of time
+        byte[] data;
+    }
+    
+    private final CountingOutputStream output;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int level;
+    private final Deque<Future<Entry>> pending;
+    private final List<Entry> entries;
+    private long bytesIn;
+    private boolean finished;
+    
+    public ZipWriter(OutputStream output, ExecutorService executor, int parallelism, int level) {
+        this.output = new CountingOutputStream(output);
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.level = level;
+        this.pending = new ArrayDeque<>();
+        this.entries = new ArrayList<>();
+    }
+
+    /**
+     * @return The number of uncompressed bytes of file data written so far
+     */
+    public long bytesIn() {
+        return bytesIn;
+    }
+    
+    /**
+     * @return The number of bytes written to the underlying output so far
+     */
+    public long bytesOut() {
+        return output.getByteCount();
+    }
+    
+    public void directory(String name, long modifiedTime, int mode) throws IOException {
+        Entry entry = entry(name.endsWith("/") ? name : name + "/", S_IFDIR | (mode & 07777), modifiedTime);
+        entry.method = METHOD_STORED;
+        entry.data = new byte[0];
+        enqueue(CompletableFuture.completedFuture(entry));
+    }
+    
+    public void symlink(String name, String target, long modifiedTime, int mode) throws IOException {
+        Entry entry = entry(name, S_IFLNK | (mode & 07777), modifiedTime);
+        entry.method = METHOD_STORED;
+        entry.data = target.getBytes(StandardCharsets.UTF_8);
+        entry.size = entry.data.length;
+        entry.compressedSize = entry.data.length;
+        CRC32 crc = new CRC32();
+        crc.update(entry.data);
+        entry.crc = crc.getValue();
+        enqueue(CompletableFuture.completedFuture(entry));
+    }
+    
+    public void file(String name, Path path, long size, long modifiedTime, int mode) throws IOException {
+        Entry entry = entry(name, S_IFREG | (mode & 07777), modifiedTime);
+        
+        if (size <= SMALL_FILE_SIZE) {
+            enqueue(executor.submit(() -> compress(entry, path, level)));
+        } else {
+            // everything queued must be written before streaming this one
+            drain(0);
+            writeStreamed(entry, path, size);
+        }
+    }
+    
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        
+        drain(0);
+        
+        long centralOffset = output.getByteCount();
+        
+        for (Entry entry : entries) {
+            writeCentralEntry(entry);
+        }
+        
+        long centralSize = output.getByteCount() - centralOffset;
+        
+        writeEnd(centralOffset, centralSize);
+        
+        output.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            pending.forEach(f -> f.cancel(true));
+            output.close();
+        }
+    }
+    
+    private Entry entry(String name, int unixMode, long modifiedTime) {
+        Entry entry = new Entry();
+        entry.name = name.getBytes(StandardCharsets.UTF_8);
+        entry.flags = FLAG_UTF8;
+        entry.unixMode = unixMode;
+        entry.dosTime = dosTime(modifiedTime);
+        return entry;
+    }
+    
+    private void enqueue(Future<Entry> future) throws IOException {
+        pending.add(future);
+        drain(parallelism * 2);
+    }
+    
+    private void drain(int limit) throws IOException {
+        while (pending.size() > limit) {
+            Entry entry = await(pending.poll());
+            writeCompressed(entry);
+        }
+    }
+    
+    static private Entry compress(Entry entry, Path path, int level) throws IOException {
+        byte[] data = Files.readAllBytes(path);
+        
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        
+        entry.crc = crc.getValue();
+        entry.size = data.length;
+        
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buffer = new byte[Math.max(data.length / 2, 4096)];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                compressed.write(buffer, 0, n);
+            }
+            
+            if (compressed.size() < data.length) {
+                entry.method = METHOD_DEFLATED;
+                entry.data = compressed.toByteArray();
+            } else {
+                // incompressible (e.g. a jar or image)
+                entry.method = METHOD_STORED;
+                entry.data = data;
+            }
+            entry.compressedSize = entry.data.length;
+        } finally {
+            deflater.end();
+        }
+        
+        return entry;
+    }
+    
+    private void writeCompressed(Entry entry) throws IOException {
+        entry.offset = output.getByteCount();
+        writeLocalHeader(entry);
+        output.write(entry.data);
+        bytesIn += entry.size;
+        entry.data = null;
+        entries.add(entry);
+    }
+    
+    private void writeStreamed(Entry entry, Path path, long size) throws IOException {
+        entry.offset = output.getByteCount();
+        entry.method = METHOD_DEFLATED;
+        entry.flags |= FLAG_DATA_DESCRIPTOR;
+        entry.zip64 = size >= ZIP64_THRESHOLD;
+        
+        writeLocalHeader(entry);
+        
+        ParallelDeflaterOutputStream deflater = new ParallelDeflaterOutputStream(
+            new CloseShieldOutputStream(output), executor, parallelism, level, ParallelDeflaterOutputStream.DEFAULT_BLOCK_SIZE);
+        
+        try (InputStream input = Files.newInputStream(path)) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = input.read(buffer)) > -1) {
+                deflater.write(buffer, 0, n);
+            }
+        }
+        
+        deflater.finish();
+        
+        entry.crc = deflater.crc();
+        entry.size = deflater.bytesIn();
+        entry.compressedSize = deflater.bytesOut();
+        
+        if (!entry.zip64 && (entry.size > MAX_32 || entry.compressedSize > MAX_32)) {
+            throw new IOException("File " + path + " grew beyond 4GB while being archived");
+        }
+        
+        // data descriptor
+        ByteBuffer buf = buffer(24);
+        buf.putInt(0x08074b50);
+        buf.putInt((int)entry.crc);
+        if (entry.zip64) {
+            buf.putLong(entry.compressedSize);
+            buf.putLong(entry.size);
+        } else {
+            buf.putInt((int)entry.compressedSize);
+            buf.putInt((int)entry.size);
+        }
+        write(buf);
+        
+        bytesIn += entry.size;
+        entries.add(entry);
+    }
+    
+    private void writeLocalHeader(Entry entry) throws IOException {
+        boolean descriptor = (entry.flags & FLAG_DATA_DESCRIPTOR) != 0;
+        int extraLength = (entry.zip64 ? 20 : 0);
+        
+        ByteBuffer buf = buffer(30 + entry.name.length + extraLength);
+        buf.putInt(0x04034b50);
+        buf.putShort((short)(entry.zip64 ? 45 : 20));
+        buf.putShort((short)entry.flags);
+        buf.putShort((short)entry.method);
+        buf.putInt((int)entry.dosTime);
+        if (entry.zip64) {
+            buf.putInt(0);
+            buf.putInt((int)MAX_32);
+            buf.putInt((int)MAX_32);
+        } else if (descriptor) {
+            buf.putInt(0);
+            buf.putInt(0);
+            buf.putInt(0);
+        } else {
+            buf.putInt((int)entry.crc);
+            buf.putInt((int)entry.compressedSize);
+            buf.putInt((int)entry.size);
+        }
+        buf.putShort((short)entry.name.length);
+        buf.putShort((short)extraLength);
+        buf.put(entry.name);
+        if (entry.zip64) {
+            buf.putShort((short)0x0001);
+            buf.putShort((short)16);
+            buf.putLong(0);
+            buf.putLong(0);
+        }
+        write(buf);
+    }
+    
+    private void writeCentralEntry(Entry entry) throws IOException {
+        boolean sizeOverflow = entry.size >= MAX_32;
+        boolean compressedOverflow = entry.compressedSize >= MAX_32;
+        boolean offsetOverflow = entry.offset >= MAX_32;
+        
+        int extraDataLength = (sizeOverflow ? 8 : 0) + (compressedOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+        int extraLength = (extraDataLength > 0 ? 4 + extraDataLength : 0);
+        int version = (entry.zip64 || extraLength > 0 ? 45 : 20);
+        
+        ByteBuffer buf = buffer(46 + entry.name.length + extraLength);
+        buf.putInt(0x02014b50);
+        buf.putShort((short)((3 << 8) | version));      // made by unix
+        buf.putShort((short)version);
+        buf.putShort((short)entry.flags);
+        buf.putShort((short)entry.method);
+        buf.putInt((int)entry.dosTime);
+        buf.putInt((int)entry.crc);
+        buf.putInt((int)(compressedOverflow ? MAX_32 : entry.compressedSize));
+        buf.putInt((int)(sizeOverflow ? MAX_32 : entry.size));
+        buf.putShort((short)entry.name.length);
+        buf.putShort((short)extraLength);
+        buf.putShort((short)0);                         // comment
+        buf.putShort((short)0);                         // disk
+        buf.putShort((short)0);                         // internal attrs
+        buf.putInt((entry.unixMode << 16) | ((entry.unixMode & S_IFMT) == S_IFDIR ? 0x10 : 0));
+        buf.putInt((int)(offsetOverflow ? MAX_32 : entry.offset));
+        buf.put(entry.name);
+        if (extraLength > 0) {
+            buf.putShort((short)0x0001);
+            buf.putShort((short)extraDataLength);
+            if (sizeOverflow) {
+                buf.putLong(entry.size);
+            }
+            if (compressedOverflow) {
+                buf.putLong(entry.compressedSize);
+            }
+            if (offsetOverflow) {
+                buf.putLong(entry.offset);
+            }
+        }
+        write(buf);
+    }
+    
+    private void writeEnd(long centralOffset, long centralSize) throws IOException {
+        int count = entries.size();
+        
+        if (count >= 0xFFFF || centralOffset >= MAX_32 || centralSize >= MAX_32) {
+            long zip64EndOffset = output.getByteCount();
+            
+            ByteBuffer buf = buffer(56 + 20);
+            buf.putInt(0x06064b50);
+            buf.putLong(44);
+            buf.putShort((short)((3 << 8) | 45));
+            buf.putShort((short)45);
+            buf.putInt(0);
+            buf.putInt(0);
+            buf.putLong(count);
+            buf.putLong(count);
+            buf.putLong(centralSize);
+            buf.putLong(centralOffset);
+            // locator
+            buf.putInt(0x07064b50);
+            buf.putInt(0);
+            buf.putLong(zip64EndOffset);
+            buf.putInt(1);
+            write(buf);
+        }
+        
+        ByteBuffer buf = buffer(22);
+        buf.putInt(0x06054b50);
+        buf.putShort((short)0);
+        buf.putShort((short)0);
+        buf.putShort((short)Math.min(count, 0xFFFF));
+        buf.putShort((short)Math.min(count, 0xFFFF));
+        buf.putInt((int)Math.min(centralSize, MAX_32));
+        buf.putInt((int)Math.min(centralOffset, MAX_32));
+        buf.putShort((short)0);
+        write(buf);
+    }
+    
+    static private ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    private void write(ByteBuffer buf) throws IOException {
+        output.write(buf.array(), 0, buf.position());
+    }
+    
+    static private long dosTime(long millis) {
+        LocalDateTime d = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (d.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long)(d.getYear() - 1980) << 25)
+            | (d.getMonthValue() << 21)
+            | (d.getDayOfMonth() << 16)
+            | (d.getHour() << 11)
+            | (d.getMinute() << 5)
+            | (d.getSecond() >> 1);
+    }
+    
+    static private Entry await(Future<Entry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+    
+}
@@ -23,17 +23,20 @@ import com.fizzed.blaze.internal.ClassLoaderHelper;
 import static com.fizzed.blaze.internal.ClassLoaderHelper.currentThreadContextClassLoader;
 import com.fizzed.blaze.internal.ConfigHelper;
 import com.fizzed.blaze.internal.FileHelper;
+import com.fizzed.blaze.internal.PackageIndex;
+import com.fizzed.blaze.internal.ScriptClassLoader;
+import com.fizzed.blaze.util.FileHasher;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Path;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
@@ -78,13 +81,16 @@ public class BlazeJdkEngine extends AbstractEngine<BlazeJdkScript> {
             
             expectedClassFile = classesDir.resolve(className + ".class");
             
-            // to check if we need to recompile we use an md5 hash of the source file
-            scriptHash = FileHelper.md5hash(context.scriptFile());
+            // to check if we need to recompile we use a hash of the source file
+            // (cached by size/mtime so an unchanged script is not even read)
+            scriptHash = new FileHasher(FileHasher.Algorithm.SHA256)
+                .cache(ConfigHelper.userBlazeCacheDir(context).resolve("hashes"))
+                .hash(context.scriptFile());
             
             if (FileHelper.verifyHashFileFor(expectedClassFile, scriptHash)) {
                 compile = false;
             }
-        } catch (NoSuchAlgorithmException | IOException e) {
+        } catch (IOException e) {
             throw new BlazeException("Unable to get or create path to compile classes", e);
         }
         
@@ -101,14 +107,13 @@ public class BlazeJdkEngine extends AbstractEngine<BlazeJdkScript> {
             }
         }
         
-        // add directory it was compiled to classpath
-        if (ClassLoaderHelper.addClassPath(classLoader, classesDir)) {
-            log.debug("Added {} to classpath", classesDir);
-        }
+        // load from the directory it was compiled to (on top of dependencies)
+        ClassLoader scriptClassLoader = ClassLoaderHelper.scriptClassLoader(classLoader, classesDir);
+        log.debug("Added {} to classpath", classesDir);
         
         // create new instance of this class
         try {
-            Class<?> type = classLoader.loadClass(className);
+            Class<?> type = scriptClassLoader.loadClass(className);
             
             Object targetObject = type.getConstructor().newInstance();
 
@@ -120,9 +125,20 @@ public class BlazeJdkEngine extends AbstractEngine<BlazeJdkScript> {
     }
     
     public void javac(ClassLoader classLoader, Context context, Path classesDir) throws BlazeException {
+        // dependency jars are served thru their package index (rather than
+        // javac looking in every one for every package) so only the rest of
+        // the runtime classpath goes on the classpath
+        PackageIndex dependencyIndex = null;
+        ClassLoader classpathLoader = classLoader;
+        
+        if (classLoader instanceof ScriptClassLoader) {
+            dependencyIndex = ((ScriptClassLoader)classLoader).getIndex();
+            classpathLoader = classLoader.getParent();
+        }
+        
         // java compiler requires a classpath to build with - use the existing
         // runtime classpath (not what we started with, but current one)
-        String classpath = ClassLoaderHelper.buildClassPathAsString(classLoader);
+        String classpath = ClassLoaderHelper.buildClassPathAsString(classpathLoader);
 
         List<String> javacOptions = new ArrayList<>();
 
@@ -134,6 +150,13 @@ public class BlazeJdkEngine extends AbstractEngine<BlazeJdkScript> {
         // classpath to compile java file with
         javacOptions.add("-cp");
         javacOptions.add(classpath);
+        
+        if (dependencyIndex != null) {
+            // javac only finds annotation processors on the classpath (unless
+            // told where) so dependencies need to be on the processor path too
+            javacOptions.add("-processorpath");
+            javacOptions.add(ClassLoaderHelper.buildClassPathAsString(classLoader));
+        }
 
         // directory to output compiles classes
         javacOptions.add("-d");
@@ -153,10 +176,22 @@ public class BlazeJdkEngine extends AbstractEngine<BlazeJdkScript> {
         Iterable<? extends JavaFileObject> compilationUnits =
                 fileManager.getJavaFileObjectsFromFiles(Arrays.asList(context.scriptFile().toFile()));
 
+        JavaFileManager javaFileManager
+                = (dependencyIndex != null ? new IndexedJavaFileManager(fileManager, dependencyIndex) : fileManager);
+        
         JavaCompiler.CompilationTask task
-                = compiler.getTask(null, null, diagnostics, javacOptions, null, compilationUnits);
+                = compiler.getTask(null, javaFileManager, diagnostics, javacOptions, null, compilationUnits);
 
-        boolean success = task.call();
+        boolean success;
+        try {
+            success = task.call();
+        } finally {
+            try {
+                javaFileManager.close();
+            } catch (IOException e) {
+                log.debug("Unable to close file manager", e);
+            }
+        }
         
         if (!success) {
             log.info("---- Compilation Error ----");
@@ -166,18 +201,25 @@ public class BlazeJdkEngine extends AbstractEngine<BlazeJdkScript> {
         for (Diagnostic diagnostic : diagnostics.getDiagnostics()) {
             JavaFileObject jfo = (JavaFileObject)diagnostic.getSource();
             
-            File javaFile = new File(jfo.toUri());
+            String diagnosticMessage;
             
-            // build message
-            String diagnosticMessage = new StringBuilder()
-                .append(javaFile)
-                .append(":[")
-                .append(diagnostic.getLineNumber())
-                .append(",")
-                .append(diagnostic.getColumnNumber())
-                .append("] ")
-                .append(diagnostic.getMessage(null))
-                .toString();
+            if (jfo == null) {
+                // e.g. about the options (no source it applies to)
+                diagnosticMessage = diagnostic.getMessage(null);
+            } else {
+                File javaFile = new File(jfo.toUri());
+
+                // build message
+                diagnosticMessage = new StringBuilder()
+                    .append(javaFile)
+                    .append(":[")
+                    .append(diagnostic.getLineNumber())
+                    .append(",")
+                    .append(diagnostic.getColumnNumber())
+                    .append("] ")
+                    .append(diagnostic.getMessage(null))
+                    .toString();
+            }
                     
             switch (diagnostic.getKind()) {
                 case ERROR:
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.jdk;
+
+import com.fizzed.blaze.internal.PackageIndex;
+import com.fizzed.blaze.internal.ScriptClassLoader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Serves the classes of dependency jars to javac thru their package index
+ * rather than putting every jar on the classpath (where javac looks in each
+ * one for every package it resolves).  Only jars that have a package are ever
+ * opened and each of those is listed once.  Dependency classes are listed
+ * ahead of the rest of the classpath (unless the package is parent first) in
+ * the same order ScriptClassLoader loads them so a script compiles against
+ * the classes it runs with.
+ */
+class IndexedJavaFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+    
+    private final PackageIndex index;
+    private final Map<File,JarListing> listings;
+    
+    IndexedJavaFileManager(JavaFileManager fileManager, PackageIndex index) {
+        super(fileManager);
+        this.index = index;
+        this.listings = new HashMap<>();
+    }
+
+    @Override
+    public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+        Iterable<JavaFileObject> listed = super.list(location, packageName, kinds, recurse);
+        
+        if (location != StandardLocation.CLASS_PATH || !kinds.contains(JavaFileObject.Kind.CLASS)) {
+            return listed;
+        }
+        
+        String packagePath = packageName.replace('.', '/');
+        
+        List<File> files = index.filesOf(packagePath);
+        
+        if (files.isEmpty() && !recurse) {
+            return listed;
+        }
+        
+        List<JavaFileObject> all = new ArrayList<>();
+        
+        boolean parentFirst = ScriptClassLoader.isParentFirst(packageName + ".");
+        
+        if (parentFirst) {
+            listed.forEach(all::add);
+        }
+        
+        if (recurse) {
+            // rarely asked for by javac
+            for (File file : index.files()) {
+                JarListing listing = listing(file);
+                if (listing != null) {
+                    listing.classes.forEach((p, classes) -> {
+                        if (p.equals(packagePath) || packagePath.isEmpty() || p.startsWith(packagePath + "/")) {
+                            all.addAll(classes);
+                        }
+                    });
+                }
+            }
+        } else {
+            for (File file : files) {
+                JarListing listing = listing(file);
+                if (listing != null) {
+                    all.addAll(listing.classesOf(packagePath));
+                }
+            }
+        }
+        
+        if (!parentFirst) {
+            listed.forEach(all::add);
+        }
+        
+        return all;
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+        if (file instanceof JarClassFileObject) {
+            return ((JarClassFileObject)file).binaryName;
+        }
+        return super.inferBinaryName(location, file);
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+        if (a instanceof JarClassFileObject || b instanceof JarClassFileObject) {
+            return a.equals(b);
+        }
+        return super.isSameFile(a, b);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            for (JarListing listing : listings.values()) {
+                if (listing != null) {
+                    listing.jarFile.close();
+                }
+            }
+            listings.clear();
+        } finally {
+            super.close();
+        }
+    }
+    
+    private JarListing listing(File file) throws IOException {
+        if (!listings.containsKey(file)) {
+            // only jars (a directory is still on the classpath for javac)
+            listings.put(file, (file.isFile() ? new JarListing(file) : null));
+        }
+        return listings.get(file);
+    }
+    
+    static private class JarListing {
+        
+        private final JarFile jarFile;
+        private final Map<String,List<JavaFileObject>> classes;
+
+        JarListing(File file) throws IOException {
+            this.jarFile = new JarFile(file);
+            this.classes = new HashMap<>();
+            
+            URI jarUri = file.toURI();
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!entry.isDirectory() && name.endsWith(".class")) {
+                    classes.computeIfAbsent(PackageIndex.packagePath(name), (k) -> new ArrayList<>())
+                        .add(new JarClassFileObject(jarUri, jarFile, entry));
+                }
+            }
+        }
+        
+        List<JavaFileObject> classesOf(String packagePath) {
+            List<JavaFileObject> list = classes.get(packagePath);
+            return (list != null ? list : Collections.<JavaFileObject>emptyList());
+        }
+    }
+    
+    static private class JarClassFileObject extends SimpleJavaFileObject {
+        
+        private final URI jarEntryUri;
+        private final JarFile jarFile;
+        private final JarEntry entry;
+        private final String binaryName;
+        
+        JarClassFileObject(URI jarUri, JarFile jarFile, JarEntry entry) {
+            // a "jar:" uri is opaque (w/o the path this requires)
+            super(URI.create(jarUri + "!/" + entry.getName()), Kind.CLASS);
+            this.jarEntryUri = URI.create("jar:" + uri);
+            this.jarFile = jarFile;
+            this.entry = entry;
+            String name = entry.getName();
+            this.binaryName = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+        }
+        
+        @Override
+        public URI toUri() {
+            return jarEntryUri;
+        }
+        
+        @Override
+        public String getName() {
+            return jarFile.getName() + "(" + entry.getName() + ")";
+        }
+        
+        @Override
+        public InputStream openInputStream() throws IOException {
+            return jarFile.getInputStream(entry);
+        }
+        
+        @Override
+        public long getLastModified() {
+            return entry.getTime();
+        }
+        
+        @Override
+        public boolean isNameCompatible(String simpleName, Kind kind) {
+            String baseName = simpleName + kind.extension;
+            String name = entry.getName();
+            return kind == Kind.CLASS && (name.equals(baseName) || name.endsWith("/" + baseName));
+        }
+    }
+    
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.system;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.core.PathsMixin;
+import com.fizzed.blaze.internal.FileHelper;
+import com.fizzed.blaze.internal.TarHelper;
+import com.fizzed.blaze.internal.ZipWriter;
+import com.fizzed.blaze.util.ObjectHelper;
+import com.fizzed.blaze.util.ParallelGzipOutputStream;
+import com.fizzed.blaze.util.StreamableOutput;
+import com.fizzed.blaze.util.Streamables;
+import com.fizzed.blaze.util.Timer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * tar/zip - create a zip, tar or tar.gz archive of files and directories
+ * 
+ * Compression is done in parallel (one thread per available processor by
+ * default).  The archive is streamed to the target and never seeked, so it
+ * can be written to any output (e.g. piped to a remote host).
+ * 
+ * Entries are named relative to the parent of each path (so archiving
+ * "target/dist" creates entries starting with "dist/") unless relativeTo()
+ * is used.
+ */
+public class Archive extends Action<Archive.Result,Void> implements PathsMixin<Archive> {
+    static private final Logger log = LoggerFactory.getLogger(Archive.class);
+    
+    static public enum Format {
+        ZIP,
+        TAR,
+        TAR_GZ;
+        
+        static public Format detect(String name) {
+            String lower = name.toLowerCase();
+            if (lower.endsWith(".zip") || lower.endsWith(".jar")) {
+                return ZIP;
+            } else if (lower.endsWith(".tar.gz") || lower.endsWith(".tgz")) {
+                return TAR_GZ;
+            } else if (lower.endsWith(".tar")) {
+                return TAR;
+            }
+            return null;
+        }
+    }
+    
+    final private List<Path> paths;
+    private StreamableOutput target;
+    private Format format;
+    private Path relativeTo;
+    private int level;
+    private int parallelism;
+    
+    public Archive(Context context) {
+        super(context);
+        this.paths = new ArrayList<>();
+        this.level = Deflater.DEFAULT_COMPRESSION;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+    
+    @Override
+    public List<Path> getPaths() {
+        return this.paths;
+    }
+    
+    public Archive target(String target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        return target(Paths.get(target));
+    }
+    
+    public Archive target(File target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        return target(target.toPath());
+    }
+    
+    public Archive target(Path target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        return target(Streamables.output(target));
+    }
+    
+    public Archive target(OutputStream target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        return target(Streamables.output(target));
+    }
+    
+    /**
+     * Output to write the archive to.  The output is closed once the archive
+     * is complete.  If the format is not set it is detected from the name of
+     * the output (e.g. ".zip" or ".tar.gz").
+     * @param target The output
+     * @return This action
+     */
+    public Archive target(StreamableOutput target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        this.target = target;
+        return this;
+    }
+    
+    public Archive format(Format format) {
+        this.format = format;
+        return this;
+    }
+    
+    /**
+     * Name entries relative to this directory rather than the parent of
+     * each path.
+     * @param relativeTo The directory entries are relative to
+     * @return This action
+     */
+    public Archive relativeTo(Path relativeTo) {
+        this.relativeTo = relativeTo;
+        return this;
+    }
+    
+    public Archive relativeTo(File relativeTo) {
+        return relativeTo(relativeTo != null ? relativeTo.toPath() : null);
+    }
+    
+    public Archive relativeTo(String relativeTo) {
+        return relativeTo(relativeTo != null ? Paths.get(relativeTo) : null);
+    }
+    
+    /**
+     * Compression level from 0 (none) to 9 (best) or -1 for the default (6).
+     * @param level The compression level
+     * @return This action
+     */
+    public Archive level(int level) {
+        if (level < -1 || level > 9) {
+            throw new IllegalArgumentException("level must be between 0 and 9 (or -1 for the default)");
+        }
+        this.level = level;
+        return this;
+    }
+    
+    /**
+     * Compress using one thread per available processor (the default).
+     * @return This action
+     */
+    public Archive parallel() {
+        return parallel(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Compress using the supplied number of threads.
+     * @param parallelism The number of threads (1 disables parallel mode)
+     * @return This action
+     */
+    public Archive parallel(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+    
+    @Override
+    protected Result doRun() throws BlazeException {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        
+        Format f = (format != null ? format : Format.detect(target.name()));
+        
+        if (f == null) {
+            throw new BlazeException("Unable to detect archive format of " + target.name() + " (use format())");
+        }
+        
+        final Timer timer = new Timer();
+        final List<Source> sources = new ArrayList<>();
+        
+        try {
+            for (Path path : paths) {
+                collect(path, sources);
+            }
+        } catch (IOException e) {
+            throw new BlazeException("Unable to archive", e);
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        
+        long bytesIn;
+        long bytesOut;
+        
+        try (OutputStream output = target.stream()) {
+            if (f == Format.ZIP) {
+                ZipWriter zip = new ZipWriter(output, executor, parallelism, level);
+                writeZip(zip, sources);
+                zip.finish();
+                bytesIn = zip.bytesIn();
+                bytesOut = zip.bytesOut();
+            } else {
+                CountingOutputStream counting = new CountingOutputStream(output);
+                if (f == Format.TAR_GZ) {
+                    ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(counting, executor, parallelism, level, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+                    bytesIn = writeTar(gzip, sources);
+                    gzip.finish();
+                } else {
+                    bytesIn = writeTar(counting, sources);
+                }
+                counting.flush();
+                bytesOut = counting.getByteCount();
+            }
+        } catch (IOException e) {
+            throw new BlazeException("Unable to archive", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        log.debug("Archived {} entries ({} bytes) to {} ({} bytes) in {} ms",
+            sources.size(), bytesIn, target.name(), bytesOut, timer.stop().millis());
+        
+        return new Result(this, null, sources.size(), bytesIn, bytesOut);
+    }
+    
+    private void collect(Path path, List<Source> sources) throws IOException {
+        FileHelper.walkRelative(path, relativeTo, (name, p, attrs) -> sources.add(new Source(name, p, attrs)));
+    }
+    
+    private void writeZip(ZipWriter zip, List<Source> sources) throws IOException {
+        for (Source source : sources) {
+            long mtime = source.attrs.lastModifiedTime().toMillis();
+            int mode = mode(source);
+            if (source.attrs.isDirectory()) {
+                zip.directory(source.name, mtime, mode);
+            } else if (source.attrs.isSymbolicLink()) {
+                zip.symlink(source.name, Files.readSymbolicLink(source.path).toString(), mtime, mode);
+            } else {
+                zip.file(source.name, source.path, source.attrs.size(), mtime, mode);
+            }
+        }
+    }
+    
+    private long writeTar(OutputStream output, List<Source> sources) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long bytes = 0;
+        
+        for (Source source : sources) {
+            long mtime = source.attrs.lastModifiedTime().toMillis();
+            int mode = mode(source);
+            
+            if (source.attrs.isDirectory()) {
+                TarHelper.writeEntry(output, new TarHelper.Entry(source.name + "/", TarHelper.TYPE_DIRECTORY, 0, mode, mtime, null));
+            } else if (source.attrs.isSymbolicLink()) {
+                String link = Files.readSymbolicLink(source.path).toString();
+                TarHelper.writeEntry(output, new TarHelper.Entry(source.name, TarHelper.TYPE_SYMLINK, 0, mode, mtime, link));
+            } else {
+                long size = source.attrs.size();
+                TarHelper.writeEntry(output, new TarHelper.Entry(source.name, TarHelper.TYPE_FILE, size, mode, mtime, null));
+                
+                long copied = 0;
+                try (InputStream input = Files.newInputStream(source.path)) {
+                    int n;
+                    while (copied < size && (n = input.read(buffer, 0, (int)Math.min(buffer.length, size - copied))) > -1) {
+                        output.write(buffer, 0, n);
+                        copied += n;
+                    }
+                }
+                
+                if (copied != size) {
+                    throw new IOException("File " + source.path + " changed size while being archived");
+                }
+                
+                TarHelper.writePadding(output, size);
+                bytes += size;
+            }
+        }
+        
+        TarHelper.writeEnd(output);
+        
+        return bytes;
+    }
+    
+    static private int mode(Source source) {
+        try {
+            return FileHelper.posixMode(Files.getPosixFilePermissions(source.path, LinkOption.NOFOLLOW_LINKS));
+        } catch (UnsupportedOperationException | IOException e) {
+            if (source.attrs.isDirectory() || Files.isExecutable(source.path)) {
+                return 0755;
+            }
+            return 0644;
+        }
+    }
+    
+    static private class Source {
+        
+        final String name;
+        final Path path;
+        final BasicFileAttributes attrs;
+
+        Source(String name, Path path, BasicFileAttributes attrs) {
+            this.name = name;
+            this.path = path;
+            this.attrs = attrs;
+        }
+        
+    }
+    
+    static public class Result extends com.fizzed.blaze.core.Result<Archive,Void,Result> {
+        
+        private final long entries;
+        private final long bytesIn;
+        private final long bytesOut;
+        
+        Result(Archive action, Void value, long entries, long bytesIn, long bytesOut) {
+            super(action, value);
+            this.entries = entries;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+        }
+
+        /**
+         * @return The number of files, directories and links archived
+         */
+        public long entries() {
+            return entries;
+        }
+
+        /**
+         * @return The number of (uncompressed) file bytes archived
+         */
+        public long bytesIn() {
+            return bytesIn;
+        }
+
+        /**
+         * @return The size of the archive in bytes
+         */
+        public long bytesOut() {
+            return bytesOut;
+        }
+        
+    }
+    
+}
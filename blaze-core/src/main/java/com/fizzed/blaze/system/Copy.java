@@ -0,0 +1,420 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.system;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.core.PathsMixin;
+import com.fizzed.blaze.util.ObjectHelper;
+import com.fizzed.blaze.util.Timer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * cp - copy files and directories
+ * 
+ * Files are copied with <code>FileChannel.transferTo</code> so the kernel can
+ * move the bytes without them passing through the java heap.
+ */
+public class Copy extends Action<Copy.Result,Void> implements PathsMixin<Copy> {
+    static private final Logger log = LoggerFactory.getLogger(Copy.class);
+    
+    final private List<Path> paths;
+    private Path target;
+    private boolean force;
+    private boolean recursive;
+    private boolean preserveAttributes;
+    private boolean skipIdentical;
+    private boolean hardLink;
+    private int parallelism;
+    
+    public Copy(Context context) {
+        super(context);
+        this.paths = new ArrayList<>();
+        this.force = false;
+        this.recursive = false;
+        this.preserveAttributes = false;
+        this.skipIdentical = false;
+        this.hardLink = false;
+        this.parallelism = 1;
+    }
+    
+    @Override
+    public List<Path> getPaths() {
+        return this.paths;
+    }
+    
+    public Copy target(String target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        return target(Paths.get(target));
+    }
+    
+    public Copy target(File target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        return target(target.toPath());
+    }
+    
+    public Copy target(Path target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        this.target = target;
+        return this;
+    }
+    
+    /**
+     * Overwrite existing target files.
+     * @return This action
+     */
+    public Copy force() {
+        return force(true);
+    }
+    
+    public Copy force(boolean force) {
+        this.force = force;
+        return this;
+    }
+    
+    public Copy recursive() {
+        return recursive(true);
+    }
+    
+    public Copy recursive(boolean recursive) {
+        this.recursive = recursive;
+        return this;
+    }
+    
+    /**
+     * Copy last modified time and posix permissions (if supported) to target.
+     * @return This action
+     */
+    public Copy preserveAttributes() {
+        return preserveAttributes(true);
+    }
+    
+    public Copy preserveAttributes(boolean preserveAttributes) {
+        this.preserveAttributes = preserveAttributes;
+        return this;
+    }
+    
+    /**
+     * Skip copying a file if the target already exists with the same size
+     * and last modified time.  The last modified time of copied files is set
+     * to the source so the next copy can skip them too.
+     * @return This action
+     */
+    public Copy skipIdentical() {
+        return skipIdentical(true);
+    }
+    
+    public Copy skipIdentical(boolean skipIdentical) {
+        this.skipIdentical = skipIdentical;
+        return this;
+    }
+    
+    /**
+     * Try to create a hard link to the source rather than copying its bytes.
+     * Falls back to a normal copy if links are not supported (e.g. the target
+     * is on a different filesystem).
+     * @return This action
+     */
+    public Copy hardLink() {
+        return hardLink(true);
+    }
+    
+    public Copy hardLink(boolean hardLink) {
+        this.hardLink = hardLink;
+        return this;
+    }
+    
+    /**
+     * Copy files concurrently using one thread per available processor.
+     * @return This action
+     * @see #parallel(int) 
+     */
+    public Copy parallel() {
+        return parallel(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Copy files concurrently using the supplied number of threads.
+     * @param parallelism The number of threads (1 disables parallel mode)
+     * @return This action
+     */
+    public Copy parallel(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+    
+    @Override
+    protected Result doRun() throws BlazeException {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        
+        final Counts counts = new Counts();
+        final Timer timer = new Timer();
+        
+        // like cp, more than one source or an existing dir means copy "into" target
+        boolean targetIsDir = Files.isDirectory(target);
+        
+        if (paths.size() > 1 && !targetIsDir) {
+            throw new BlazeException("Target " + target + " is not a directory (required when copying multiple paths)");
+        }
+        
+        final List<Path[]> dirs = new ArrayList<>();
+        final List<Path[]> files = new ArrayList<>();
+        
+        try {
+            for (Path path : paths) {
+                Path dest = (targetIsDir ? target.resolve(path.getFileName().toString()) : target);
+                
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    if (!recursive) {
+                        throw new BlazeException("Path " + path + " is a directory (did you mean to copy recursively?)");
+                    }
+                    
+                    Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                            dirs.add(new Path[] { dir, dest.resolve(path.relativize(dir).toString()) });
+                            return FileVisitResult.CONTINUE;
+                        }
+                        
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                            files.add(new Path[] { file, dest.resolve(path.relativize(file).toString()) });
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+                } else {
+                    files.add(new Path[] { path, dest });
+                }
+            }
+            
+            // parents first so files always have a directory to land in
+            for (Path[] dir : dirs) {
+                Files.createDirectories(dir[1]);
+            }
+            
+            if (parallelism <= 1 || files.size() <= 1) {
+                for (Path[] file : files) {
+                    copyFile(file[0], file[1], counts);
+                }
+            } else {
+                copyFilesInParallel(files, counts);
+            }
+            
+            // children first since copying into a dir changes its modified time
+            if (preserveAttributes) {
+                for (int i = dirs.size() - 1; i >= 0; i--) {
+                    Path[] dir = dirs.get(i);
+                    copyAttributes(dir[0], dir[1], Files.readAttributes(dir[0], BasicFileAttributes.class));
+                }
+            }
+        } catch (IOException e) {
+            throw new BlazeException("Unable to copy", e);
+        }
+        
+        log.debug("Copied {} files ({} bytes), linked {}, skipped {} in {} ms",
+            counts.copied.get(), counts.bytes.get(), counts.linked.get(), counts.skipped.get(), timer.stop().millis());
+        
+        return new Result(this, null, counts.copied.get(), counts.linked.get(), counts.skipped.get(), counts.bytes.get());
+    }
+    
+    private void copyFilesInParallel(List<Path[]> files, Counts counts) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, files.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>(files.size());
+            
+            for (Path[] file : files) {
+                futures.add(executor.submit(() -> {
+                    copyFile(file[0], file[1], counts);
+                    return null;
+                }));
+            }
+            
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException)e.getCause();
+                    }
+                    throw new BlazeException("Unable to copy", e.getCause());
+                } catch (InterruptedException e) {
+                    throw new BlazeException("Interrupted while copying", e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private void copyFile(Path source, Path dest, Counts counts) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        
+        if (Files.exists(dest, LinkOption.NOFOLLOW_LINKS)) {
+            if (skipIdentical && isIdentical(attrs, dest)) {
+                log.trace("Skipping identical {}", dest);
+                counts.skipped.incrementAndGet();
+                return;
+            }
+            if (!force) {
+                throw new FileAlreadyExistsException(dest.toString());
+            }
+            Files.delete(dest);
+        }
+        
+        if (attrs.isSymbolicLink()) {
+            Files.copy(source, dest, LinkOption.NOFOLLOW_LINKS);
+            counts.copied.incrementAndGet();
+            return;
+        }
+        
+        if (hardLink) {
+            try {
+                Files.createLink(dest, source);
+                counts.linked.incrementAndGet();
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                log.trace("Unable to hard link {} (will copy it instead): {}", source, e.getMessage());
+            }
+        }
+        
+        long bytes = transfer(source, dest);
+        
+        if (preserveAttributes || skipIdentical) {
+            copyAttributes(source, dest, attrs);
+        }
+        
+        counts.copied.incrementAndGet();
+        counts.bytes.addAndGet(bytes);
+    }
+    
+    private boolean isIdentical(BasicFileAttributes attrs, Path dest) throws IOException {
+        BasicFileAttributes destAttrs = Files.readAttributes(dest, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        return destAttrs.isRegularFile()
+            && destAttrs.size() == attrs.size()
+            && destAttrs.lastModifiedTime().equals(attrs.lastModifiedTime());
+    }
+    
+    private void copyAttributes(Path source, Path dest, BasicFileAttributes attrs) throws IOException {
+        if (preserveAttributes) {
+            PosixFileAttributeView sourceView = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+            PosixFileAttributeView destView = Files.getFileAttributeView(dest, PosixFileAttributeView.class);
+            if (sourceView != null && destView != null) {
+                PosixFileAttributes posixAttrs = sourceView.readAttributes();
+                destView.setPermissions(posixAttrs.permissions());
+            }
+        }
+        Files.setLastModifiedTime(dest, attrs.lastModifiedTime());
+    }
+    
+    static long transfer(Path source, Path dest) throws IOException {
+        try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel output = FileChannel.open(dest, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = input.size();
+            long position = 0;
+            while (position < size) {
+                // may transfer less than requested (e.g. 2GB limit on linux)
+                long transferred = input.transferTo(position, size - position, output);
+                if (transferred <= 0) {
+                    break;      // source shrank while copying
+                }
+                position += transferred;
+            }
+            // finish w/ plain reads until eof since the size isn't always right
+            // (e.g. procfs files report 0 or the source changed while copying)
+            input.position(position);
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            while (input.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position += output.write(buffer);
+                }
+                buffer.clear();
+            }
+            return position;
+        }
+    }
+    
+    static private class Counts {
+        
+        final AtomicLong copied = new AtomicLong();
+        final AtomicLong linked = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        
+    }
+    
+    static public class Result extends com.fizzed.blaze.core.Result<Copy,Void,Result> {
+        
+        private final long filesCopied;
+        private final long filesLinked;
+        private final long filesSkipped;
+        private final long bytesCopied;
+        
+        Result(Copy action, Void value, long filesCopied, long filesLinked, long filesSkipped, long bytesCopied) {
+            super(action, value);
+            this.filesCopied = filesCopied;
+            this.filesLinked = filesLinked;
+            this.filesSkipped = filesSkipped;
+            this.bytesCopied = bytesCopied;
+        }
+
+        public long filesCopied() {
+            return filesCopied;
+        }
+
+        public long filesLinked() {
+            return filesLinked;
+        }
+
+        public long filesSkipped() {
+            return filesSkipped;
+        }
+
+        public long bytesCopied() {
+            return bytesCopied;
+        }
+        
+    }
+    
+}
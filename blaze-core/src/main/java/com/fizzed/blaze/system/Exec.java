@@ -23,7 +23,6 @@ import com.fizzed.blaze.core.BlazeException;
 import com.fizzed.blaze.util.ObjectHelper;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -34,6 +33,8 @@ import org.zeroturnaround.exec.InvalidExitValueException;
 import org.zeroturnaround.exec.ProcessExecutor;
 import com.fizzed.blaze.core.PathsMixin;
 import com.fizzed.blaze.util.CaptureOutput;
+import com.fizzed.blaze.util.CountingInputStream;
+import com.fizzed.blaze.util.CountingOutputStream;
 import com.fizzed.blaze.util.InterruptibleInputStream;
 import com.fizzed.blaze.util.StreamableInput;
 import com.fizzed.blaze.util.StreamableOutput;
@@ -76,6 +77,11 @@ public class Exec extends Action<Exec.Result,Integer> implements PathsMixin<Exec
         this.exitValues.add(0);  
     }
     
+    @Override
+    protected String detail() {
+        return this.which.getCommand() + (arguments.isEmpty() ? "" : " " + String.join(" ", arguments));
+    }
+    
     @Override
     public Exec command(Path command) {
         this.which.command(command);
@@ -204,9 +210,10 @@ public class Exec extends Action<Exec.Result,Integer> implements PathsMixin<Exec
         command.addAll(arguments);
         
         // use a custom streampumper so we can more accuratly handle inputstream
-        final InputStream is = (pipeInput != null ? new InterruptibleInputStream(pipeInput.stream()) : null);
-        final OutputStream os = (pipeOutput != null ? pipeOutput.stream() : null);
-        final OutputStream es = (pipeErrorToOutput ? os : (pipeError != null ? pipeError.stream() : null));
+        final CountingInputStream cis = (pipeInput != null ? new CountingInputStream(pipeInput.stream()) : null);
+        final InputStream is = (cis != null ? new InterruptibleInputStream(cis) : null);
+        final CountingOutputStream os = (pipeOutput != null ? new CountingOutputStream(pipeOutput.stream()) : null);
+        final CountingOutputStream es = (pipeErrorToOutput ? os : (pipeError != null ? new CountingOutputStream(pipeError.stream()) : null));
         
         PumpStreamHandler streams = new PumpStreamHandler(os, es, is) {
             @Override
@@ -240,6 +247,9 @@ public class Exec extends Action<Exec.Result,Integer> implements PathsMixin<Exec
             // close all the output streams (input stream closed above)
             Streamables.close(os);
             Streamables.close(es);
+            
+            bytesOut(cis != null ? cis.count() : 0L);
+            bytesIn((os != null ? os.count() : 0L) + (es != null && es != os ? es.count() : 0L));
         }
     }
     
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.system;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.core.PathsMixin;
+import com.fizzed.blaze.util.ObjectHelper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * mv - move (rename) files and directories
+ * 
+ * A rename is tried first.  If the target is on a different filesystem the
+ * paths are copied (see {@link Copy}) and then removed.
+ */
+public class Move extends Action<Move.Result,Void> implements PathsMixin<Move> {
+    static private final Logger log = LoggerFactory.getLogger(Move.class);
+    
+    final private List<Path> paths;
+    private Path target;
+    private boolean force;
+    private int parallelism;
+    
+    public Move(Context context) {
+        super(context);
+        this.paths = new ArrayList<>();
+        this.force = false;
+        this.parallelism = 1;
+    }
+    
+    @Override
+    public List<Path> getPaths() {
+        return this.paths;
+    }
+    
+    public Move target(String target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        return target(Paths.get(target));
+    }
+    
+    public Move target(File target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        return target(target.toPath());
+    }
+    
+    public Move target(Path target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        this.target = target;
+        return this;
+    }
+    
+    /**
+     * Replace existing target files.
+     * @return This action
+     */
+    public Move force() {
+        return force(true);
+    }
+    
+    public Move force(boolean force) {
+        this.force = force;
+        return this;
+    }
+    
+    /**
+     * If a move requires a copy (e.g. across filesystems) then copy and
+     * remove using one thread per available processor.
+     * @return This action
+     */
+    public Move parallel() {
+        return parallel(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public Move parallel(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    @Override
+    protected Result doRun() throws BlazeException {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        
+        boolean targetIsDir = Files.isDirectory(target);
+        
+        if (paths.size() > 1 && !targetIsDir) {
+            throw new BlazeException("Target " + target + " is not a directory (required when moving multiple paths)");
+        }
+        
+        long renamed = 0;
+        long copied = 0;
+        
+        for (Path path : paths) {
+            Path dest = (targetIsDir ? target.resolve(path.getFileName().toString()) : target);
+            
+            try {
+                if (force) {
+                    Files.move(path, dest, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    Files.move(path, dest);
+                }
+                renamed++;
+                continue;
+            } catch (DirectoryNotEmptyException e) {
+                if (Files.isDirectory(dest)) {
+                    throw new BlazeException("Unable to move " + path + " since " + dest + " is a non-empty directory", e);
+                }
+                // a directory on another filesystem (fallback to copy + remove)
+                log.debug("Unable to rename {} to {} (will copy then remove)", path, dest);
+            } catch (IOException e) {
+                throw new BlazeException("Unable to move", e);
+            }
+            
+            new Copy(context)
+                .paths(path)
+                .target(dest)
+                .recursive()
+                .force(force)
+                .preserveAttributes()
+                .parallel(parallelism)
+                .run();
+            
+            new Remove(context)
+                .paths(path)
+                .recursive()
+                .parallel(parallelism)
+                .run();
+            
+            copied++;
+        }
+        
+        return new Result(this, null, renamed, copied);
+    }
+    
+    static public class Result extends com.fizzed.blaze.core.Result<Move,Void,Result> {
+        
+        private final long pathsRenamed;
+        private final long pathsCopied;
+        
+        Result(Move action, Void value, long pathsRenamed, long pathsCopied) {
+            super(action, value);
+            this.pathsRenamed = pathsRenamed;
+            this.pathsCopied = pathsCopied;
+        }
+
+        /**
+         * @return The number of paths moved with a cheap rename
+         */
+        public long pathsRenamed() {
+            return pathsRenamed;
+        }
+
+        /**
+         * @return The number of paths moved by copying then removing them
+         */
+        public long pathsCopied() {
+            return pathsCopied;
+        }
+        
+    }
+    
+}
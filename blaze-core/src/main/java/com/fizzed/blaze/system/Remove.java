@@ -19,14 +19,27 @@ import com.fizzed.blaze.Context;
 import com.fizzed.blaze.core.Action;
 import com.fizzed.blaze.core.BlazeException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 import com.fizzed.blaze.core.PathsMixin;
+import com.fizzed.blaze.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * rm - remove files or directories
@@ -34,16 +47,24 @@ import com.fizzed.blaze.core.PathsMixin;
  * @author joelauer
  */
 public class Remove extends Action<Remove.Result,Void> implements PathsMixin<Remove> {
+    static private final Logger log = LoggerFactory.getLogger(Remove.class);
+    
+    static final String TRASH_MARKER = ".blaze-trash-";
+    static final long STALE_TRASH_MILLIS = 60 * 60 * 1000L;
    
     final private List<Path> paths;
     private boolean force;
     private boolean recursive;
+    private int parallelism;
+    private boolean trash;
     
     public Remove(Context context) {
         super(context);
         this.paths = new ArrayList<>();
         this.force = false;
         this.recursive = false;
+        this.parallelism = 1;
+        this.trash = false;
     }
     
     @Override
@@ -70,58 +91,331 @@ public class Remove extends Action<Remove.Result,Void> implements PathsMixin<Rem
         this.recursive = recursive;
         return this;
     }
+    
+    /**
+     * Recursive removes will delete files concurrently across subtrees using
+     * one thread per available processor.  Directories are still removed
+     * bottom-up once all their children are gone.
+     * @return This action
+     * @see #parallel(int) 
+     */
+    public Remove parallel() {
+        return parallel(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Recursive removes will delete files concurrently across subtrees using
+     * the supplied number of threads.  Networked or overlay filesystems
+     * usually benefit from more threads than available processors.
+     * @param parallelism The number of threads (1 disables parallel mode)
+     * @return This action
+     */
+    public Remove parallel(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+    
+    /**
+     * Recursive removes will first rename each path to a hidden sibling
+     * (on the same filesystem) and then delete it in a background thread so
+     * this action returns almost instantly.  Counts on the result are not
+     * available in this mode since the delete happens later.
+     * 
+     * If a previous process died before its background delete finished, its
+     * hidden ".*.blaze-trash-*" siblings are left behind.  Any in the same
+     * directories that are older than an hour are swept up and deleted in
+     * the background by the next trash remove.
+     * @return This action
+     */
+    public Remove trash() {
+        return trash(true);
+    }
+    
+    public Remove trash(boolean trash) {
+        this.trash = trash;
+        return this;
+    }
 
     @Override
     protected Result doRun() throws BlazeException {
+        final Counts counts = new Counts();
+        final Timer timer = new Timer();
+        
         try {
             if (!recursive) {
                 for (Path path : paths) {
+                    BasicFileAttributes attrs = readAttributesIfExists(path);
                     if (!force) {
                         Files.delete(path);
-                    } else {
-                        Files.deleteIfExists(path);
+                    } else if (!Files.deleteIfExists(path)) {
+                        continue;
                     }
+                    counts.deleted(attrs);
                 }
             } else {
-                // http://docs.oracle.com/javase/7/docs/api/java/nio/file/FileVisitor.html
+                List<Path> trashed = new ArrayList<>();
+                
+                if (trash) {
+                    sweepStaleTrash(trashed);
+                }
+                
                 for (Path path : paths) {
                     // if path doesn't exist we should throw an error unless we are forced
-                    if (force && !Files.exists(path)) {
+                    if (force && !Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
                         continue;
                     }
                     
-                    Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-                        @Override
-                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                            Files.delete(file);
-                            return FileVisitResult.CONTINUE;
+                    if (trash) {
+                        Path trashPath = moveToTrash(path);
+                        if (trashPath != null) {
+                            trashed.add(trashPath);
+                            continue;
                         }
+                        // fallback to deleting it now
+                    }
+                    
+                    deleteTree(path, parallelism, counts);
+                }
+                
+                if (!trashed.isEmpty()) {
+                    deleteTrashInBackground(trashed, parallelism);
+                }
+            }
+        } catch (IOException e) {
+            throw new BlazeException("Unable to remove", e);
+        }
+        
+        log.debug("Removed {} files and {} dirs ({} bytes) in {} ms",
+            counts.files.get(), counts.dirs.get(), counts.bytes.get(), timer.stop().millis());
+        
+        return new Result(this, null, counts.files.get(), counts.dirs.get(), counts.bytes.get());
+    }
+    
+    static private BasicFileAttributes readAttributesIfExists(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+    
+    private void sweepStaleTrash(List<Path> trashed) {
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (Path path : paths) {
+            Path parent = path.toAbsolutePath().normalize().getParent();
+            if (parent != null) {
+                dirs.add(parent);
+            }
+        }
+        
+        long staleBefore = System.currentTimeMillis() - STALE_TRASH_MILLIS;
+        
+        for (Path dir : dirs) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, ".*" + TRASH_MARKER + "*")) {
+                for (Path stale : stream) {
+                    Long trashedAt = trashedAt(stale);
+                    if (trashedAt == null || trashedAt >= staleBefore) {
+                        continue;   // not ours or possibly still being deleted
+                    }
+                    // claim it w/ a rename so concurrent sweeps don't both delete it
+                    Path trashPath = moveToTrash(stale);
+                    if (trashPath != null) {
+                        log.debug("Sweeping stale trash {}", stale);
+                        trashed.add(trashPath);
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Unable to sweep stale trash in {}: {}", dir, e.getMessage());
+            }
+        }
+    }
+    
+    static Long trashedAt(Path trashPath) {
+        String name = trashPath.getFileName().toString();
+        int pos = name.lastIndexOf(TRASH_MARKER);
+        if (pos < 0) {
+            return null;
+        }
+        String suffix = name.substring(pos + TRASH_MARKER.length());
+        int dash = suffix.indexOf('-');
+        try {
+            return Long.valueOf(dash < 0 ? suffix : suffix.substring(0, dash));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    static private Path moveToTrash(Path path) {
+        Path fileName = path.toAbsolutePath().normalize().getFileName();
+        
+        if (fileName == null) {
+            return null;    // e.g. root of filesystem
+        }
+        
+        String name = fileName.toString();
+        int pos = name.lastIndexOf(TRASH_MARKER);
+        if (pos >= 0) {
+            name = name.substring(1, pos);     // re-trashing a stale trash dir
+        }
+        
+        // wall clock time so a later run can tell if it's stale
+        Path trashPath = path.toAbsolutePath().normalize()
+            .resolveSibling("." + name + TRASH_MARKER + System.currentTimeMillis() + "-" + System.nanoTime());
+        
+        try {
+            // same directory so this will be a cheap rename
+            Files.move(path, trashPath, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Moved {} to trash {}", path, trashPath);
+            return trashPath;
+        } catch (IOException e) {
+            log.debug("Unable to move {} to trash (will delete it now): {}", path, e.getMessage());
+            return null;
+        }
+    }
+    
+    static private void deleteTrashInBackground(List<Path> trashed, int parallelism) {
+        // not a daemon so the jvm will wait for the delete to finish
+        Thread thread = new Thread(() -> {
+            for (Path trashPath : trashed) {
+                try {
+                    deleteTree(trashPath, parallelism, new Counts());
+                } catch (IOException e) {
+                    log.warn("Unable to remove trash {}: {}", trashPath, e.getMessage());
+                }
+            }
+        }, "blaze-remove-trash");
+        thread.start();
+    }
+    
+    static private void deleteTree(Path path, int parallelism, Counts counts) throws IOException {
+        if (parallelism <= 1) {
+            // http://docs.oracle.com/javase/7/docs/api/java/nio/file/FileVisitor.html
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    counts.deleted(attrs);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e)
+                        throws IOException {
+                    if (e == null) {
+                        Files.delete(dir);
+                        counts.dirs.incrementAndGet();
+                        return FileVisitResult.CONTINUE;
+                    } else {
+                        // directory iteration failed
+                        throw e;
+                    }
+                }
+            });
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                BasicFileAttributes attrs
+                    = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                pool.invoke(new DeleteTreeTask(path, attrs, counts));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+    
+    static private class DeleteTreeTask extends RecursiveAction {
+        
+        private final Path path;
+        private final BasicFileAttributes attrs;
+        private final Counts counts;
 
-                        @Override
-                        public FileVisitResult postVisitDirectory(Path dir, IOException e)
-                                throws IOException {
-                            if (e == null) {
-                                Files.delete(dir);
-                                return FileVisitResult.CONTINUE;
+        public DeleteTreeTask(Path path, BasicFileAttributes attrs, Counts counts) {
+            this.path = path;
+            this.attrs = attrs;
+            this.counts = counts;
+        }
+        
+        @Override
+        protected void compute() {
+            try {
+                if (attrs.isDirectory()) {
+                    List<DeleteTreeTask> subtasks = new ArrayList<>();
+                    
+                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                        for (Path child : stream) {
+                            BasicFileAttributes childAttrs
+                                = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                            
+                            if (childAttrs.isDirectory()) {
+                                subtasks.add(new DeleteTreeTask(child, childAttrs, counts));
                             } else {
-                                // directory iteration failed
-                                throw e;
+                                Files.delete(child);
+                                counts.deleted(childAttrs);
                             }
                         }
-                    });
+                    }
+                    
+                    // children must be gone before this directory can be
+                    invokeAll(subtasks);
                 }
+                
+                Files.delete(path);
+                counts.deleted(attrs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+    }
+    
+    static private class Counts {
+        
+        final AtomicLong files = new AtomicLong();
+        final AtomicLong dirs = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        
+        void deleted(BasicFileAttributes attrs) {
+            if (attrs == null) {
+                return;
+            }
+            if (attrs.isDirectory()) {
+                dirs.incrementAndGet();
+            } else {
+                files.incrementAndGet();
+                bytes.addAndGet(attrs.size());
             }
-        } catch (IOException e) {
-            throw new BlazeException("Unable to remove", e);
         }
         
-        return new Result(this, null);
     }
 
     static public class Result extends com.fizzed.blaze.core.Result<Remove,Void,Result> {
         
-        Result(Remove action, Void value) {
+        private final long filesDeleted;
+        private final long dirsDeleted;
+        private final long bytesFreed;
+        
+        Result(Remove action, Void value, long filesDeleted, long dirsDeleted, long bytesFreed) {
             super(action, value);
+            this.filesDeleted = filesDeleted;
+            this.dirsDeleted = dirsDeleted;
+            this.bytesFreed = bytesFreed;
+        }
+
+        public long filesDeleted() {
+            return filesDeleted;
+        }
+
+        public long dirsDeleted() {
+            return dirsDeleted;
+        }
+
+        public long bytesFreed() {
+            return bytesFreed;
         }
         
     }
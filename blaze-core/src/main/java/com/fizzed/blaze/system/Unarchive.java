@@ -0,0 +1,505 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.system;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.internal.FileHelper;
+import com.fizzed.blaze.internal.TarHelper;
+import com.fizzed.blaze.system.Archive.Format;
+import com.fizzed.blaze.util.ObjectHelper;
+import com.fizzed.blaze.util.StreamableInput;
+import com.fizzed.blaze.util.Streamables;
+import com.fizzed.blaze.util.Timer;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * untar/unzip - extract a zip, tar or tar.gz archive into a directory
+ * 
+ * A zip file on disk has its entries inflated in parallel.  A tar.gz stream
+ * can only be inflated sequentially, so entries are read on the calling
+ * thread and their files are written in parallel.
+ * 
+ * Entries that would be extracted outside of the target directory are
+ * rejected and symbolic links are only created once all files have been
+ * extracted.
+ */
+public class Unarchive extends Action<Unarchive.Result,Void> {
+    static private final Logger log = LoggerFactory.getLogger(Unarchive.class);
+    
+    static private final int BUFFERED_FILE_SIZE = 1024 * 1024;
+    
+    private StreamableInput source;
+    private Path target;
+    private Format format;
+    private boolean force;
+    private int parallelism;
+    
+    public Unarchive(Context context) {
+        super(context);
+        this.force = false;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+    
+    public Unarchive source(String source) {
+        ObjectHelper.requireNonNull(source, "source cannot be null");
+        return source(Paths.get(source));
+    }
+    
+    public Unarchive source(File source) {
+        ObjectHelper.requireNonNull(source, "source cannot be null");
+        return source(source.toPath());
+    }
+    
+    public Unarchive source(Path source) {
+        ObjectHelper.requireNonNull(source, "source cannot be null");
+        return source(Streamables.input(source));
+    }
+    
+    public Unarchive source(InputStream source) {
+        ObjectHelper.requireNonNull(source, "source cannot be null");
+        return source(Streamables.input(source));
+    }
+    
+    /**
+     * Input to read the archive from.  If the format is not set it is
+     * detected from the name of the input (e.g. ".zip" or ".tar.gz").
+     * @param source The input
+     * @return This action
+     */
+    public Unarchive source(StreamableInput source) {
+        ObjectHelper.requireNonNull(source, "source cannot be null");
+        this.source = source;
+        return this;
+    }
+    
+    public Unarchive target(String target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        return target(Paths.get(target));
+    }
+    
+    public Unarchive target(File target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        return target(target.toPath());
+    }
+    
+    /**
+     * Directory to extract into (created if missing).
+     * @param target The directory
+     * @return This action
+     */
+    public Unarchive target(Path target) {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        this.target = target;
+        return this;
+    }
+    
+    public Unarchive format(Format format) {
+        this.format = format;
+        return this;
+    }
+    
+    /**
+     * Overwrite existing files.
+     * @return This action
+     */
+    public Unarchive force() {
+        return force(true);
+    }
+    
+    public Unarchive force(boolean force) {
+        this.force = force;
+        return this;
+    }
+    
+    /**
+     * Extract using one thread per available processor (the default).
+     * @return This action
+     */
+    public Unarchive parallel() {
+        return parallel(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Extract using the supplied number of threads.
+     * @param parallelism The number of threads (1 disables parallel mode)
+     * @return This action
+     */
+    public Unarchive parallel(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+    
+    @Override
+    protected Result doRun() throws BlazeException {
+        ObjectHelper.requireNonNull(source, "source cannot be null");
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        
+        Format f = (format != null ? format : Format.detect(source.name()));
+        
+        if (f == null) {
+            throw new BlazeException("Unable to detect archive format of " + source.name() + " (use format())");
+        }
+        
+        final Timer timer = new Timer();
+        final Extraction extraction = new Extraction(target.toAbsolutePath().normalize());
+        
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        
+        try {
+            Files.createDirectories(extraction.root);
+            
+            if (f == Format.ZIP && source.path() != null) {
+                // random access to the file so the stream is never opened
+                extractZipFile(source.path(), extraction, executor);
+            } else {
+                try (InputStream input = source.stream()) {
+                    if (f == Format.ZIP) {
+                        extractZipStream(input, extraction);
+                    } else {
+                        InputStream buffered = new BufferedInputStream(input, 64 * 1024);
+                        InputStream tar = (f == Format.TAR_GZ ? new GZIPInputStream(buffered, 64 * 1024) : buffered);
+                        extractTar(tar, extraction, executor);
+                    }
+                }
+            }
+            
+            extraction.finish();
+        } catch (IOException e) {
+            throw new BlazeException("Unable to extract", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        log.debug("Extracted {} entries ({} bytes) from {} in {} ms",
+            extraction.entries.get(), extraction.bytes.get(), source.name(), timer.stop().millis());
+        
+        return new Result(this, null, extraction.entries.get(), extraction.bytes.get());
+    }
+    
+    private void extractZipFile(Path path, Extraction extraction, ExecutorService executor) throws IOException {
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            List<Future<?>> futures = new ArrayList<>();
+            
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (entry.isDirectory()) {
+                    extraction.directory(entry.getName(), -1, entry.getTime());
+                } else {
+                    // parents first so files always have a directory to land in
+                    Path dest = extraction.resolve(entry.getName());
+                    Files.createDirectories(dest.getParent());
+                    futures.add(executor.submit(() -> {
+                        try (InputStream input = zip.getInputStream(entry)) {
+                            extraction.file(dest, input, -1, entry.getTime());
+                        }
+                        return null;
+                    }));
+                }
+            }
+            
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        }
+    }
+    
+    private void extractZipStream(InputStream input, Extraction extraction) throws IOException {
+        ZipInputStream zip = new ZipInputStream(new BufferedInputStream(input, 64 * 1024));
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                extraction.directory(entry.getName(), -1, entry.getTime());
+            } else {
+                Path dest = extraction.resolve(entry.getName());
+                Files.createDirectories(dest.getParent());
+                extraction.file(dest, zip, -1, entry.getTime());
+            }
+        }
+    }
+    
+    private void extractTar(InputStream input, Extraction extraction, ExecutorService executor) throws IOException {
+        final Deque<Future<?>> pending = new ArrayDeque<>();
+        TarHelper.Entry entry;
+        
+        while ((entry = TarHelper.readEntry(input)) != null) {
+            switch (entry.type()) {
+                case TarHelper.TYPE_DIRECTORY:
+                    extraction.directory(entry.name(), entry.mode(), entry.modifiedTime());
+                    TarHelper.skipFully(input, entry.size());
+                    break;
+                case TarHelper.TYPE_SYMLINK:
+                    extraction.symlink(entry.name(), entry.linkName(), entry.modifiedTime());
+                    break;
+                case TarHelper.TYPE_FILE: {
+                    Path dest = extraction.resolve(entry.name());
+                    Files.createDirectories(dest.getParent());
+                    
+                    final int mode = entry.mode();
+                    final long mtime = entry.modifiedTime();
+                    
+                    if (entry.size() <= BUFFERED_FILE_SIZE && parallelism > 1) {
+                        // read on this thread, write on another so inflating never waits on disk
+                        byte[] data = new byte[(int)entry.size()];
+                        readFully(input, data);
+                        pending.add(executor.submit(() -> {
+                            extraction.file(dest, new ByteArrayInputStream(data), mode, mtime);
+                            return null;
+                        }));
+                        while (pending.size() > parallelism * 2) {
+                            await(pending.poll());
+                        }
+                    } else {
+                        extraction.file(dest, new BoundedInputStream(input, entry.size()), mode, mtime);
+                    }
+                    break;
+                }
+                default:
+                    log.warn("Skipping unsupported tar entry {} (type {})", entry.name(), entry.type());
+                    TarHelper.skipFully(input, entry.size());
+                    break;
+            }
+            TarHelper.skipPadding(input, entry.size());
+        }
+        
+        while (!pending.isEmpty()) {
+            await(pending.poll());
+        }
+    }
+    
+    static private void readFully(InputStream input, byte[] data) throws IOException {
+        int off = 0;
+        while (off < data.length) {
+            int n = input.read(data, off, data.length - off);
+            if (n < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+            off += n;
+        }
+    }
+    
+    static private void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new BlazeException("Unable to extract", e.getCause());
+        }
+    }
+    
+    /**
+     * Tracks what has been extracted and the attributes that can only be
+     * applied once everything else is done.
+     */
+    private class Extraction {
+        
+        final Path root;
+        final AtomicLong entries = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final List<Object[]> dirs = new ArrayList<>();
+        final List<String[]> symlinks = new ArrayList<>();
+
+        Extraction(Path root) {
+            this.root = root;
+        }
+        
+        Path resolve(String name) {
+            Path dest = root.resolve(name).normalize();
+            if (!dest.startsWith(root)) {
+                throw new BlazeException("Entry " + name + " would be extracted outside of " + root);
+            }
+            return dest;
+        }
+        
+        void directory(String name, int mode, long mtime) throws IOException {
+            Path dest = resolve(name);
+            Files.createDirectories(dest);
+            dirs.add(new Object[] { dest, mode, mtime });
+            entries.incrementAndGet();
+        }
+        
+        void symlink(String name, String linkName, long mtime) throws IOException {
+            // validate now, create later (so a link can't redirect other entries)
+            resolve(name);
+            symlinks.add(new String[] { name, linkName });
+            entries.incrementAndGet();
+        }
+        
+        void file(Path dest, InputStream input, int mode, long mtime) throws IOException {
+            if (Files.isSymbolicLink(dest)) {
+                throw new FileAlreadyExistsException(dest.toString());
+            }
+            
+            long n;
+            try (OutputStream output = Files.newOutputStream(dest, StandardOpenOption.WRITE,
+                    (force ? StandardOpenOption.CREATE : StandardOpenOption.CREATE_NEW), StandardOpenOption.TRUNCATE_EXISTING)) {
+                n = copy(input, output);
+            }
+            
+            attributes(dest, mode, mtime);
+            entries.incrementAndGet();
+            bytes.addAndGet(n);
+        }
+        
+        void finish() throws IOException {
+            for (String[] symlink : symlinks) {
+                Path dest = resolve(symlink[0]);
+                Files.createDirectories(dest.getParent());
+                if (force) {
+                    Files.deleteIfExists(dest);
+                }
+                Files.createSymbolicLink(dest, Paths.get(symlink[1]));
+            }
+            
+            // children first since extracting into a dir changes its modified time
+            for (int i = dirs.size() - 1; i >= 0; i--) {
+                Object[] dir = dirs.get(i);
+                attributes((Path)dir[0], (Integer)dir[1], (Long)dir[2]);
+            }
+        }
+        
+        private void attributes(Path path, int mode, long mtime) throws IOException {
+            if (mode >= 0) {
+                PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+                if (view != null) {
+                    view.setPermissions(FileHelper.posixPermissions(mode));
+                }
+            }
+            if (mtime >= 0) {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(mtime));
+            }
+        }
+        
+    }
+    
+    static private long copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long count = 0;
+        int n;
+        while ((n = input.read(buffer)) > -1) {
+            output.write(buffer, 0, n);
+            count += n;
+        }
+        return count;
+    }
+    
+    /**
+     * Reads only the data of the current tar entry.
+     */
+    static private class BoundedInputStream extends InputStream {
+        
+        private final InputStream input;
+        private long remaining;
+
+        BoundedInputStream(InputStream input, long size) {
+            this.input = input;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = input.read();
+            if (b < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = input.read(b, off, (int)Math.min(len, remaining));
+            if (n < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+            remaining -= n;
+            return n;
+        }
+        
+    }
+    
+    static public class Result extends com.fizzed.blaze.core.Result<Unarchive,Void,Result> {
+        
+        private final long entries;
+        private final long bytesExtracted;
+        
+        Result(Unarchive action, Void value, long entries, long bytesExtracted) {
+            super(action, value);
+            this.entries = entries;
+            this.bytesExtracted = bytesExtracted;
+        }
+
+        /**
+         * @return The number of files, directories and links extracted
+         */
+        public long entries() {
+            return entries;
+        }
+
+        /**
+         * @return The number of file bytes extracted
+         */
+        public long bytesExtracted() {
+            return bytesExtracted;
+        }
+        
+    }
+    
+}
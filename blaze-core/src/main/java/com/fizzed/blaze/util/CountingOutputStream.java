@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes written thru it.  Safe to share between threads (e.g. the
+ * stdout and stderr pumps of a process that pipes its error to its output).
+ */
+public class CountingOutputStream extends WrappedOutputStream {
+    
+    private final AtomicLong count;
+    
+    public CountingOutputStream(OutputStream output) {
+        super(output);
+        this.count = new AtomicLong();
+    }
+    
+    public long count() {
+        return count.get();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        output.write(b, off, len);
+        count.addAndGet(len);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        output.write(b);
+        count.incrementAndGet();
+    }
+    
+}
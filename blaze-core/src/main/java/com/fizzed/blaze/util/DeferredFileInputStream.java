@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.Objects;
 
@@ -31,7 +32,7 @@ import java.util.Objects;
 public class DeferredFileInputStream extends InputStream {
 
     private final File file;
-    private InputStream input;
+    private FileInputStream input;
     
     public DeferredFileInputStream(File file) {
         Objects.requireNonNull(file, "file cannot be null");
@@ -55,6 +56,16 @@ public class DeferredFileInputStream extends InputStream {
         }
     }
     
+    /**
+     * Opens the file (if needed) and returns its channel.  The channel shares
+     * its position with this stream.
+     * @return The channel of the underlying file
+     */
+    public FileChannel getChannel() {
+        open();
+        return this.input.getChannel();
+    }
+    
     @Override
     public int read() throws IOException {
         open();
@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.Objects;
 
@@ -31,7 +32,7 @@ import java.util.Objects;
 public class DeferredFileOutputStream extends OutputStream {
  
     private final File file;
-    private OutputStream output;
+    private FileOutputStream output;
     
     public DeferredFileOutputStream(File file) {
         Objects.requireNonNull(file, "file cannot be null");
@@ -57,6 +58,16 @@ public class DeferredFileOutputStream extends OutputStream {
         }
     }
 
+    /**
+     * Opens the file (if needed) and returns its channel.  The channel shares
+     * its position with this stream.
+     * @return The channel of the underlying file
+     */
+    public FileChannel getChannel() {
+        open();
+        return this.output.getChannel();
+    }
+
     @Override
     public void close() throws IOException {
         if (this.output != null) {
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashes the content of files quickly.  Small files are read with a single
+ * large read, big files are memory-mapped, many files can be hashed in
+ * parallel and results can be cached in a small persistent store keyed by
+ * path, size, last modified time and inode (so unchanged files are never
+ * read again).
+ * 
+ * <pre>
+ * FileHasher hasher = new FileHasher(FileHasher.Algorithm.XXHASH64)
+ *     .cache(Paths.get("target/.hashes"));
+ * 
+ * String hash = hasher.hash(Paths.get("blaze.java"));
+ * </pre>
+ */
+public class FileHasher {
+    static private final Logger log = LoggerFactory.getLogger(FileHasher.class);
+    
+    static private final int READ_BUFFER_SIZE = 256 * 1024;
+    static private final long MAP_THRESHOLD = 4L * 1024 * 1024;
+    static private final long MAP_CHUNK_SIZE = 256L * 1024 * 1024;
+    
+    static private final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(READ_BUFFER_SIZE));
+    
+    // stores are shared so every hasher in this jvm sees the same cache
+    static private final ConcurrentHashMap<Path,Store> STORES = new ConcurrentHashMap<>();
+    
+    static public enum Algorithm {
+        MD5("MD5"),
+        SHA1("SHA-1"),
+        SHA256("SHA-256"),
+        /**
+         * Non-cryptographic (but many times faster) 64-bit hash for detecting
+         * changed content.
+         */
+        XXHASH64(null);
+        
+        private final String jcaName;
+
+        private Algorithm(String jcaName) {
+            this.jcaName = jcaName;
+        }
+    }
+    
+    private final Algorithm algorithm;
+    private Store store;
+    private int parallelism;
+    
+    public FileHasher(Algorithm algorithm) {
+        Objects.requireNonNull(algorithm, "algorithm cannot be null");
+        this.algorithm = algorithm;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * Cache hashes in the supplied file.  A file is only read again if its
+     * size, last modified time or inode has changed.
+     * @param file The file to persist the cache to
+     * @return This hasher
+     */
+    public FileHasher cache(Path file) {
+        Objects.requireNonNull(file, "file cannot be null");
+        this.store = STORES.computeIfAbsent(file.toAbsolutePath().normalize(), Store::new);
+        return this;
+    }
+    
+    /**
+     * Number of files to hash concurrently with hash(List).
+     * @param parallelism The number of threads
+     * @return This hasher
+     */
+    public FileHasher parallel(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+    
+    /**
+     * @param path The file to hash
+     * @return The hash of the file as lowercase hex
+     * @throws IOException 
+     */
+    public String hash(Path path) throws IOException {
+        String hash = hashOrCached(path);
+        if (store != null) {
+            store.save();
+        }
+        return hash;
+    }
+    
+    /**
+     * Hashes the files in parallel.
+     * @param paths The files to hash
+     * @return The hash (as lowercase hex) of each file in the same order
+     * @throws IOException 
+     */
+    public Map<Path,String> hash(List<Path> paths) throws IOException {
+        Map<Path,String> hashes = new LinkedHashMap<>();
+        
+        if (parallelism <= 1 || paths.size() <= 1) {
+            for (Path path : paths) {
+                hashes.put(path, hashOrCached(path));
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, paths.size()));
+            try {
+                List<Future<String>> futures = new ArrayList<>(paths.size());
+                
+                for (Path path : paths) {
+                    futures.add(executor.submit(() -> hashOrCached(path)));
+                }
+                
+                for (int i = 0; i < paths.size(); i++) {
+                    hashes.put(paths.get(i), await(futures.get(i)));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        
+        if (store != null) {
+            store.save();
+        }
+        
+        return hashes;
+    }
+    
+    /**
+     * Hashes the file without consulting or updating the cache.
+     * @param path The file to hash
+     * @return The raw hash bytes
+     * @throws IOException 
+     */
+    public byte[] digest(Path path) throws IOException {
+        MessageDigest md = null;
+        XxHash64 xx = null;
+        
+        if (algorithm == Algorithm.XXHASH64) {
+            xx = new XxHash64();
+        } else {
+            try {
+                md = MessageDigest.getInstance(algorithm.jcaName);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(algorithm + " not supported by this jvm", e);
+            }
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            
+            if (size >= MAP_THRESHOLD) {
+                // let the os page the file in rather than copying it through the heap
+                for (long position = 0; position < size; position += MAP_CHUNK_SIZE) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK_SIZE, size - position));
+                    if (xx != null) {
+                        xx.update(mapped);
+                    } else {
+                        md.update(mapped);
+                    }
+                }
+            } else {
+                ByteBuffer buffer = BUFFERS.get();
+                buffer.clear();
+                while (channel.read(buffer) > -1) {
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        update(md, xx, buffer);
+                        buffer.clear();
+                    }
+                }
+                buffer.flip();
+                update(md, xx, buffer);
+            }
+        }
+        
+        return (xx != null ? xx.digest() : md.digest());
+    }
+    
+    static private void update(MessageDigest md, XxHash64 xx, ByteBuffer buffer) {
+        if (xx != null) {
+            xx.update(buffer);
+        } else {
+            md.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+    }
+    
+    private String hashOrCached(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        
+        String key = null;
+        
+        if (store != null) {
+            key = algorithm + "\t" + path.toAbsolutePath().normalize() + "\t" + attrs.size() + "\t"
+                + attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS) + "\t" + attrs.fileKey();
+            String hash = store.get(key);
+            if (hash != null) {
+                log.trace("Using cached hash of {}", path);
+                return hash;
+            }
+        }
+        
+        String hash = toHex(digest(path));
+        
+        if (store != null) {
+            store.put(key, hash);
+        }
+        
+        return hash;
+    }
+    
+    static private String await(Future<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+    
+    static public String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            chars[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * Persistent map of cache key to hash.  One tab-separated line per entry
+     * where the key itself is tab-separated too (so the hash is always the
+     * last column).  Rewritten atomically whenever new hashes were added.
+     */
+    static private class Store {
+        
+        static private final int MAX_ENTRIES = 20000;
+        
+        private final Path file;
+        private final ConcurrentHashMap<String,String> hashes;
+        private volatile boolean loaded;
+        private volatile boolean dirty;
+
+        Store(Path file) {
+            this.file = file;
+            this.hashes = new ConcurrentHashMap<>();
+        }
+        
+        String get(String key) throws IOException {
+            load();
+            return hashes.get(key);
+        }
+        
+        void put(String key, String hash) throws IOException {
+            load();
+            hashes.put(key, hash);
+            dirty = true;
+        }
+        
+        synchronized private void load() throws IOException {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (Files.exists(file)) {
+                try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+                    lines.forEach(line -> {
+                        int tab = line.lastIndexOf('\t');
+                        if (tab > 0) {
+                            hashes.put(line.substring(0, tab), line.substring(tab + 1));
+                        }
+                    });
+                } catch (IOException | UncheckedIOException e) {
+                    // a corrupt cache is simply rebuilt
+                    log.debug("Unable to load hash cache {}: {}", file, e.getMessage());
+                    hashes.clear();
+                }
+            }
+        }
+        
+        synchronized void save() {
+            if (!dirty) {
+                return;
+            }
+            
+            // keys include size/mtime so stale entries pile up (just start over)
+            if (hashes.size() > MAX_ENTRIES) {
+                log.debug("Hash cache {} too large (will clear it)", file);
+                hashes.clear();
+            }
+            
+            // anything put while writing marks it dirty again
+            dirty = false;
+            
+            // other processes may be saving the same cache at the same time
+            Path temp = null;
+            try {
+                Files.createDirectories(file.getParent());
+                
+                temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+                
+                try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String,String> entry : hashes.entrySet()) {
+                        writer.write(entry.getKey());
+                        writer.write('\t');
+                        writer.write(entry.getValue());
+                        writer.write('\n');
+                    }
+                }
+                
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                // only a cache so the hashes are simply computed again next time
+                log.debug("Unable to save hash cache {}: {}", file, e.getMessage());
+                deleteQuietly(temp);
+            }
+        }
+        
+        static private void deleteQuietly(Path temp) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        
+    }
+    
+}
@@ -169,8 +169,8 @@ public class LineOutputStream<P extends Processor> extends OutputStream {
         }
         
         // append unprocessed to internally expanding buffer
-        if (pos < length) {
-            this.buffer.append(buffer, pos, length - pos);
+        if (pos < end) {
+            this.buffer.append(buffer, pos, end - pos);
         }
     }
 
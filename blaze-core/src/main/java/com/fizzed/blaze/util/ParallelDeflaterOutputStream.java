@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses a stream into raw deflate data using multiple threads (the same
+ * approach as pigz).  Input is split into fixed-size blocks that are compressed
+ * independently by an executor (each primed with the last 32KB of the previous
+ * block as its dictionary) and ending on a byte boundary via a sync flush so
+ * the compressed blocks can simply be concatenated in order.
+ * 
+ * The underlying output is not closed by finish() so more data (e.g. a gzip
+ * trailer or the next zip entry) may follow.
+ */
+public class ParallelDeflaterOutputStream extends OutputStream {
+    
+    static public final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    static private final int DICTIONARY_SIZE = 32 * 1024;
+    
+    protected final OutputStream output;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final int level;
+    private final int blockSize;
+    private final Deque<Future<byte[]>> pending;
+    private final CRC32 crc;
+    private byte[] block;
+    private int blockLength;
+    private byte[] previous;
+    private long bytesIn;
+    private long bytesOut;
+    private boolean finished;
+    
+    public ParallelDeflaterOutputStream(OutputStream output, ExecutorService executor, int parallelism) {
+        this(output, executor, parallelism, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE);
+    }
+    
+    public ParallelDeflaterOutputStream(OutputStream output, ExecutorService executor, int parallelism, int level, int blockSize) {
+        Objects.requireNonNull(output, "output cannot be null");
+        Objects.requireNonNull(executor, "executor cannot be null");
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("blockSize must be >= " + DICTIONARY_SIZE);
+        }
+        this.output = output;
+        this.executor = executor;
+        // keep every thread busy while the head of the queue is being written
+        this.maxPending = parallelism * 2;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.pending = new ArrayDeque<>();
+        this.crc = new CRC32();
+        this.block = new byte[blockSize];
+        this.blockLength = 0;
+    }
+
+    /**
+     * @return The CRC-32 of the uncompressed bytes written so far
+     */
+    public long crc() {
+        return crc.getValue();
+    }
+
+    /**
+     * @return The number of uncompressed bytes written so far
+     */
+    public long bytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * @return The number of compressed bytes written to the underlying
+     *      output so far
+     */
+    public long bytesOut() {
+        return bytesOut;
+    }
+    
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (finished) {
+            throw new IOException("Stream already finished");
+        }
+        if (blockLength == blockSize) {
+            submit(false);
+        }
+        block[blockLength++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Stream already finished");
+        }
+        while (len > 0) {
+            if (blockLength == blockSize) {
+                submit(false);
+            }
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes any blocks that have finished compressing.  A partially filled
+     * block is held back since compressing it early would hurt the ratio.
+     * @throws IOException 
+     */
+    @Override
+    public void flush() throws IOException {
+        drain(0);
+        output.flush();
+    }
+    
+    /**
+     * Compresses any remaining input, waits for all blocks to be written and
+     * terminates the deflate stream.  Does not close the underlying output.
+     * @throws IOException 
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        submit(true);
+        drain(0);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            pending.forEach(f -> f.cancel(true));
+            output.close();
+        }
+    }
+    
+    private void submit(boolean last) throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] dictionary = previous;
+        
+        crc.update(data, 0, length);
+        bytesIn += length;
+        
+        pending.add(executor.submit(() -> deflate(data, length, dictionary, level, last)));
+        
+        previous = data;
+        block = (last ? null : new byte[blockSize]);
+        blockLength = 0;
+        
+        drain(last ? 0 : maxPending);
+    }
+    
+    private void drain(int limit) throws IOException {
+        while (pending.size() > limit) {
+            byte[] compressed = await(pending.poll());
+            output.write(compressed);
+            bytesOut += compressed.length;
+        }
+    }
+    
+    static private byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+    
+    static private byte[] deflate(byte[] data, int length, byte[] dictionary, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            
+            deflater.setInput(data, 0, length);
+            
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[Math.max(length / 2, 4096)];
+            int n;
+            
+            if (last) {
+                // final deflate block terminates the stream
+                deflater.finish();
+                while (!deflater.finished()) {
+                    n = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, n);
+                }
+            } else {
+                // sync flush ends on a byte boundary so blocks can be concatenated
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+            
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+}
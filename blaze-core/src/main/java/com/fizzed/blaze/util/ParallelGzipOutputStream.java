@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip output stream that compresses blocks in parallel.  The result is a
+ * single standard gzip member readable by gunzip or GZIPInputStream.
+ * 
+ * @see ParallelDeflaterOutputStream
+ */
+public class ParallelGzipOutputStream extends ParallelDeflaterOutputStream {
+    
+    static private final byte[] HEADER = new byte[] {
+        0x1f, (byte)0x8b,           // magic
+        Deflater.DEFLATED,          // method
+        0,                          // flags
+        0, 0, 0, 0,                 // mtime
+        0,                          // extra flags
+        (byte)0xff                  // os (unknown)
+    };
+    
+    public ParallelGzipOutputStream(OutputStream output, ExecutorService executor, int parallelism) throws IOException {
+        this(output, executor, parallelism, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE);
+    }
+    
+    public ParallelGzipOutputStream(OutputStream output, ExecutorService executor, int parallelism, int level, int blockSize) throws IOException {
+        super(output, executor, parallelism, level, blockSize);
+        output.write(HEADER);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (isFinished()) {
+            return;
+        }
+        super.finish();
+        writeIntLE(crc());
+        writeIntLE(bytesIn());
+    }
+    
+    private void writeIntLE(long v) throws IOException {
+        output.write((int)(v & 0xff));
+        output.write((int)((v >> 8) & 0xff));
+        output.write((int)((v >> 16) & 0xff));
+        output.write((int)((v >> 24) & 0xff));
+    }
+    
+}
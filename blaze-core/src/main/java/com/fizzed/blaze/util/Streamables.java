@@ -23,16 +23,22 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -205,6 +211,19 @@ public class Streamables {
         copy(input, output, 16384);
     }
     
+    /**
+     * Copies the input to the output.  If the input is a file and the output
+     * is a file or socket the bytes are moved with FileChannel.transferTo so
+     * the kernel can skip copying them through the heap.  Anything past the
+     * reported size (e.g. procfs files and fifos report 0) is then read until
+     * eof.  Otherwise a pooled buffer is used that grows (up to 256KB) while
+     * reads keep filling it.
+     * 
+     * @param input The input
+     * @param output The output
+     * @param bufferSize The initial read size if a buffer is used
+     * @throws IOException 
+     */
     static public void copy(StreamableInput input, StreamableOutput output, int bufferSize) throws IOException {
         copy(input.stream(), output.stream(), bufferSize);
     }
@@ -214,12 +233,104 @@ public class Streamables {
     }
     
     static private void copy(InputStream input, OutputStream output, int bufferSize) throws IOException {
-        int read;
-        byte[] buffer = new byte[bufferSize];
-        while ((read = input.read(buffer)) > -1) {
-            output.write(buffer, 0, read);
+        FileChannel inputChannel = fileChannel(input);
+        WritableByteChannel outputChannel = (inputChannel != null ? fileChannel(output) : null);
+        
+        if (inputChannel != null && outputChannel != null && transfer(inputChannel, outputChannel)) {
+            // the size isn't always right (e.g. procfs files and fifos report
+            // 0 or the file grew) so it's only done once a read confirms eof
+            int b = input.read();
+            if (b < 0) {
+                output.flush();
+                return;
+            }
+            output.write(b);
+            // fallback to reading the rest until eof
+        }
+        
+        int maxSize = Math.max(bufferSize, MAX_BUFFER_SIZE);
+        byte[] buffer = borrowBuffer(maxSize);
+        try {
+            int size = Math.min(bufferSize, maxSize);
+            int read;
+            while ((read = input.read(buffer, 0, size)) > -1) {
+                output.write(buffer, 0, read);
+                // a full read means more is likely waiting (read more next time)
+                if (read == size && size < maxSize) {
+                    size = Math.min(size * 2, maxSize);
+                }
+            }
+        } finally {
+            returnBuffer(buffer);
         }
         output.flush();
     }
     
+    static private boolean transfer(FileChannel input, WritableByteChannel output) throws IOException {
+        long position;
+        try {
+            position = input.position();
+        } catch (IOException e) {
+            return false;   // not seekable (e.g. a fifo)
+        }
+        long size = input.size();
+        while (position < size) {
+            // may transfer less than requested (e.g. 2GB limit on linux)
+            long n = input.transferTo(position, size - position, output);
+            if (n <= 0) {
+                break;
+            }
+            position += n;
+        }
+        // transferTo does not move the position of the input
+        input.position(position);
+        return true;
+    }
+    
+    static private FileChannel fileChannel(InputStream input) {
+        if (input instanceof FileInputStream) {
+            return ((FileInputStream)input).getChannel();
+        } else if (input instanceof DeferredFileInputStream) {
+            return ((DeferredFileInputStream)input).getChannel();
+        }
+        return null;
+    }
+    
+    static private WritableByteChannel fileChannel(OutputStream output) {
+        // also catches socket streams (null channel unless opened via a channel)
+        if (output instanceof FileOutputStream) {
+            return ((FileOutputStream)output).getChannel();
+        } else if (output instanceof DeferredFileOutputStream) {
+            return ((DeferredFileOutputStream)output).getChannel();
+        }
+        return null;
+    }
+    
+    static private final int MAX_BUFFER_SIZE = 256 * 1024;
+    static private final int MAX_POOLED_BUFFERS = 8;
+    static private final ConcurrentLinkedQueue<SoftReference<byte[]>> BUFFERS = new ConcurrentLinkedQueue<>();
+    
+    static private byte[] borrowBuffer(int size) {
+        // only standard sized buffers are pooled (a larger request would
+        // otherwise drain the pool of buffers it can't use)
+        if (size > MAX_BUFFER_SIZE) {
+            return new byte[size];
+        }
+        SoftReference<byte[]> ref;
+        while ((ref = BUFFERS.poll()) != null) {
+            byte[] buffer = ref.get();
+            if (buffer != null && buffer.length >= size) {
+                return buffer;
+            }
+        }
+        return new byte[size];
+    }
+    
+    static private void returnBuffer(byte[] buffer) {
+        // only standard sized buffers are worth keeping around
+        if (buffer.length == MAX_BUFFER_SIZE && BUFFERS.size() < MAX_POOLED_BUFFERS) {
+            BUFFERS.offer(new SoftReference<>(buffer));
+        }
+    }
+    
 }
@@ -15,26 +15,112 @@
  */
 package com.fizzed.blaze.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
 /**
- *
+ * Monotonic (System.nanoTime) timer with optional named splits.  Each split
+ * is the time since the previous split (or the start) so a sequence of
+ * splits breaks down where the total went.  Elapsed times are read from
+ * the last stop() or, if still running, from now.
+ * 
  * @author joelauer
  */
 public class Timer {
     
+    static public class Split {
+        
+        private final String name;
+        private final long nanos;
+
+        Split(String name, long nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+        
+        public double fractionalMillis() {
+            return nanos / 1e6;
+        }
+        
+        @Override
+        public String toString() {
+            return name + " " + format(nanos);
+        }
+    }
+    
     final private long start;
     private long stop;
+    private boolean stopped;
+    private long mark;
+    private final List<Split> splits;
     
     public Timer() {
-        this.start = System.currentTimeMillis();
+        this.start = this.mark = System.nanoTime();
+        this.splits = new ArrayList<>();
     }
     
     public Timer stop() {
-        this.stop = System.currentTimeMillis();
+        this.stop = System.nanoTime();
+        this.stopped = true;
         return this;
     }
     
+    /**
+     * Records a split of the time since the previous split (or the start).
+     * @param name The name of the split
+     * @return The split
+     */
+    public Split split(String name) {
+        long now = System.nanoTime();
+        Split split;
+        synchronized (this.splits) {
+            split = new Split(name, now - this.mark);
+            this.mark = now;
+            this.splits.add(split);
+        }
+        return split;
+    }
+    
+    public List<Split> splits() {
+        synchronized (this.splits) {
+            return Collections.unmodifiableList(new ArrayList<>(this.splits));
+        }
+    }
+    
+    public long nanos() {
+        // nanoTime may be any value (even 0) so stop can't double as a flag
+        return (this.stopped ? this.stop : System.nanoTime()) - this.start;
+    }
+    
     public long millis() {
-        return (this.stop - this.start);
+        return TimeUnit.NANOSECONDS.toMillis(nanos());
+    }
+    
+    public double fractionalMillis() {
+        return nanos() / 1e6;
+    }
+    
+    /**
+     * @return The elapsed time in millis to microsecond precision (e.g. "1.234 ms")
+     */
+    @Override
+    public String toString() {
+        return format(nanos());
+    }
+    
+    static public String format(long nanos) {
+        return String.format(Locale.US, "%.3f ms", nanos / 1e6);
     }
     
 }
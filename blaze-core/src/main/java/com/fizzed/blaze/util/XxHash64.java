@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming implementation of the 64-bit xxHash (XXH64) algorithm.  A very
+ * fast non-cryptographic hash suitable for detecting changed content (not
+ * for security).  Reads 8 bytes at a time straight from heap, direct or
+ * memory-mapped buffers.
+ */
+public class XxHash64 {
+    
+    static private final long P1 = 0x9E3779B185EBCA87L;
+    static private final long P2 = 0xC2B2AE3D27D4EB4FL;
+    static private final long P3 = 0x165667B19E3779F9L;
+    static private final long P4 = 0x85EBCA77C2B2AE63L;
+    static private final long P5 = 0x27D4EB2F165667C5L;
+    
+    private final long seed;
+    private final ByteBuffer buffer;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long total;
+    
+    public XxHash64() {
+        this(0);
+    }
+    
+    public XxHash64(long seed) {
+        this.seed = seed;
+        this.buffer = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+        reset();
+    }
+    
+    public final void reset() {
+        this.v1 = seed + P1 + P2;
+        this.v2 = seed + P2;
+        this.v3 = seed;
+        this.v4 = seed - P1;
+        this.total = 0;
+        this.buffer.clear();
+    }
+    
+    public void update(byte[] b) {
+        update(b, 0, b.length);
+    }
+    
+    public void update(byte[] b, int off, int len) {
+        update(ByteBuffer.wrap(b, off, len));
+    }
+    
+    /**
+     * Hashes the remaining bytes of the buffer and advances its position to
+     * its limit.
+     * @param data The data to hash
+     */
+    public void update(ByteBuffer data) {
+        ByteBuffer in = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        data.position(data.limit());
+        
+        total += in.remaining();
+        
+        // finish a partially filled stripe first
+        if (buffer.position() > 0) {
+            while (buffer.hasRemaining() && in.hasRemaining()) {
+                buffer.put(in.get());
+            }
+            if (buffer.hasRemaining()) {
+                return;
+            }
+            buffer.flip();
+            stripe(buffer);
+            buffer.clear();
+        }
+        
+        while (in.remaining() >= 32) {
+            stripe(in);
+        }
+        
+        while (in.hasRemaining()) {
+            buffer.put(in.get());
+        }
+    }
+    
+    public long getValue() {
+        long h;
+        
+        if (total >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = seed + P5;
+        }
+        
+        h += total;
+        
+        ByteBuffer tail = (ByteBuffer)buffer.duplicate().flip();
+        tail.order(ByteOrder.LITTLE_ENDIAN);
+        
+        while (tail.remaining() >= 8) {
+            h ^= round(0, tail.getLong());
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        
+        if (tail.remaining() >= 4) {
+            h ^= (tail.getInt() & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+        }
+        
+        while (tail.hasRemaining()) {
+            h ^= (tail.get() & 0xFF) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+        
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        
+        return h;
+    }
+    
+    /**
+     * @return The hash as 8 big-endian bytes (the canonical representation)
+     */
+    public byte[] digest() {
+        return ByteBuffer.allocate(8).putLong(getValue()).array();
+    }
+    
+    private void stripe(ByteBuffer in) {
+        v1 = round(v1, in.getLong());
+        v2 = round(v2, in.getLong());
+        v3 = round(v3, in.getLong());
+        v4 = round(v4, in.getLong());
+    }
+    
+    static private long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+    
+    static private long merge(long h, long v) {
+        h ^= round(0, v);
+        return h * P1 + P4;
+    }
+    
+}
@@ -1,2 +1,10 @@
 @echo off
-java -jar blaze.jar %*
\ No newline at end of file
+setlocal
+rem use the class-data sharing archive from "blaze --generate-cds" if one was
+rem generated for this version of blaze and the java on the PATH
+set CDS_OPTS=
+for /f "delims=" %%j in ('where java 2^>nul') do if not defined JAVA_BIN_DIR set "JAVA_BIN_DIR=%%~dpj"
+if defined JAVA_BIN_DIR for /f "tokens=2 delims==" %%v in ('findstr /b "JAVA_VERSION=" "%JAVA_BIN_DIR%..\release" 2^>nul') do set "JDK_VERSION=%%~v"
+set "CDS_ARCHIVE=%USERPROFILE%\.blaze\cds\blaze-@VERSION@-jdk-%JDK_VERSION%.jsa"
+if defined JDK_VERSION if exist "%CDS_ARCHIVE%" set CDS_OPTS="-XX:SharedArchiveFile=%CDS_ARCHIVE%" -Xshare:auto -Xlog:cds=off,cds+dynamic=off
+java %CDS_OPTS% -jar blaze.jar %*
@@ -18,8 +18,10 @@ package com.fizzed.blaze.core;
 import com.fizzed.blaze.Task;
 import com.fizzed.blaze.internal.NoopDependencyResolver;
 import com.fizzed.blaze.jdk.TargetObjectScript;
+import com.fizzed.blaze.util.Timer;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
@@ -56,6 +58,21 @@ public class BlazeBuilderTest {
         verify(scriptObject).main();
     }
 
+    @Test
+    public void startupSplits() throws Exception {
+        Blaze blaze = new Blaze.Builder()
+            .scriptObject(new TestScriptObject())
+            .build();
+        
+        blaze.execute("main");
+        
+        List<String> names = blaze.timer().splits().stream()
+            .map(Timer.Split::name)
+            .collect(Collectors.toList());
+        
+        assertThat(names, is(Arrays.asList("config", "resolver", "classpath", "task:main")));
+    }
+    
     @Test
     public void dependencyResolverNotCalledIfNoExtraDependencies() throws Exception {
         DependencyResolver dr = spy(new NoopDependencyResolver());
@@ -72,6 +89,21 @@ public class BlazeBuilderTest {
         verify(dr, never()).resolve(any(), any(), any());
     }
     
+    @Test
+    public void dependencyResolverNotCalledIfNoDeclaredDependencies() throws Exception {
+        DependencyResolver dr = spy(new NoopDependencyResolver());
+        
+        Blaze blaze = new Blaze.Builder()
+            .scriptObject(new TestScriptObject())
+            .dependencyResolver(dr)
+            .build();
+        
+        verify(dr, never()).resolve(any(), any(), any());
+        
+        // bundled dependencies are still available (read once asked)
+        assertThat(blaze.dependencies(), is(not(empty())));
+    }
+    
     @Test
     public void tasks() throws Exception {
         TestScriptObject scriptObject = new TestScriptObject();
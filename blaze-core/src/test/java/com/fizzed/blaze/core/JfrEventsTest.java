@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.core;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * Only compiled on java 11+ (the same as JfrEvents).
+ */
+public class JfrEventsTest {
+    
+    @Test
+    public void eventsInRecording() throws Exception {
+        JfrEvents jfr = new JfrEvents();
+        Path file = Files.createTempFile("blaze", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("com.fizzed.blaze.Action");
+                recording.enable("com.fizzed.blaze.Task");
+                recording.start();
+                
+                Object task = jfr.beginTask("blaze.java", "deploy");
+                Object started = jfr.beginAction("SshExec");
+                jfr.endAction(started, "uptime", 10L, 20L, false);
+                jfr.end(task);
+                
+                recording.stop();
+                recording.dump(file);
+            }
+            
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter((e) -> e.getEventType().getName().startsWith("com.fizzed.blaze."))
+                .collect(Collectors.toList());
+            
+            assertThat(events, hasSize(2));
+            
+            RecordedEvent action = events.stream()
+                .filter((e) -> e.getEventType().getName().equals("com.fizzed.blaze.Action"))
+                .findFirst().get();
+            
+            assertThat(action.getString("action"), is("SshExec"));
+            assertThat(action.getString("detail"), is("uptime"));
+            assertThat(action.getLong("bytesIn"), is(10L));
+            assertThat(action.getLong("bytesOut"), is(20L));
+            assertThat(action.getBoolean("failed"), is(false));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class JfrTest {
+    
+    @Test
+    public void disabledByDefault() {
+        assertThat(Jfr.isEnabled(), is(false));
+        assertThat(Jfr.beginAction("Exec"), is(nullValue()));
+        assertThat(Jfr.beginTask("blaze.java", "main"), is(nullValue()));
+        
+        // no-ops
+        Jfr.end(null);
+        Jfr.endResolve(null, 1);
+    }
+    
+}
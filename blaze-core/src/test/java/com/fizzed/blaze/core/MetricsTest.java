@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.core;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.internal.ConfigHelper;
+import com.fizzed.blaze.internal.ContextImpl;
+import static com.fizzed.blaze.system.ShellTestHelper.getBinDirAsResource;
+import com.fizzed.blaze.system.Exec;
+import com.fizzed.blaze.util.CaptureOutput;
+import com.fizzed.blaze.util.Streamables;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsTest {
+    
+    Context context;
+    
+    static public class Sleep extends Action<Sleep.Result,Void> {
+        
+        private final long millis;
+        
+        public Sleep(Context context, long millis) {
+            super(context);
+            this.millis = millis;
+        }
+        
+        @Override
+        protected Result doRun() throws BlazeException {
+            bytesIn(10);
+            bytesOut(20);
+            if (millis < 0) {
+                throw new BlazeException("Failed");
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                throw new BlazeException("Interrupted", e);
+            }
+            return new Result(this, null);
+        }
+        
+        static public class Result extends com.fizzed.blaze.core.Result<Sleep,Void,Result> {
+            Result(Sleep action, Void value) {
+                super(action, value);
+            }
+        }
+    }
+    
+    @Before
+    public void setup() {
+        context = new ContextImpl(null, null, null, ConfigHelper.create(null));
+        Metrics.global().reset();
+    }
+    
+    @Test
+    public void recordsEveryRun() {
+        new Sleep(context, 1).run();
+        new Sleep(context, 20).run();
+        
+        List<Metrics.Stat> stats = Metrics.global().stats();
+        
+        assertThat(stats, hasSize(1));
+        assertThat(stats.get(0).name(), is("Sleep"));
+        assertThat(stats.get(0).count(), is(2L));
+        assertThat(stats.get(0).failures(), is(0L));
+        assertThat(stats.get(0).maxNanos() >= 20000000L, is(true));
+        assertThat(stats.get(0).totalNanos() > stats.get(0).maxNanos(), is(true));
+        assertThat(stats.get(0).bytesIn(), is(20L));
+        assertThat(stats.get(0).bytesOut(), is(40L));
+    }
+    
+    @Test
+    public void recordsFailures() {
+        try {
+            new Sleep(context, -1).run();
+            fail();
+        } catch (BlazeException e) {
+            // expected
+        }
+        
+        assertThat(Metrics.global().stats().get(0).failures(), is(1L));
+    }
+    
+    @Test
+    public void nameOfAnonymousIsItsAction() {
+        Sleep sleep = new Sleep(context, 1) { };
+        
+        assertThat(Metrics.nameOf(sleep), is("Sleep"));
+    }
+    
+    @Test
+    public void execRecordsBytes() throws Exception {
+        CaptureOutput capture = Streamables.captureOutput();
+        
+        new Exec(context)
+            .command("hello-world-test")
+            .path(getBinDirAsResource())
+            .pipeOutput(capture)
+            .run();
+        
+        Metrics.Stat stat = Metrics.global().stats().get(0);
+        
+        assertThat(stat.name(), is("Exec"));
+        assertThat(stat.bytesIn(), greaterThan(0L));
+        assertThat(stat.bytesIn(), is((long)capture.asBytes().length));
+    }
+    
+    @Test
+    public void summaryAndJson() {
+        new Sleep(context, 1).run();
+        
+        assertThat(Metrics.global().toSummary(), containsString("Sleep"));
+        assertThat(Metrics.global().toJson(), containsString("\"name\": \"Sleep\", \"count\": 1, \"failures\": 0"));
+    }
+    
+}
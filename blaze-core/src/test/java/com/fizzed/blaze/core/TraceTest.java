@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.core;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.internal.ConfigHelper;
+import com.fizzed.blaze.internal.ContextImpl;
+import com.fizzed.blaze.system.Head;
+import com.fizzed.blaze.system.Pipeline;
+import com.fizzed.blaze.system.Tail;
+import com.fizzed.blaze.util.Streamables;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TraceTest {
+    
+    Context context;
+    
+    @Before
+    public void setup() {
+        context = new ContextImpl(null, null, null, ConfigHelper.create(null));
+        Trace.global().clear();
+    }
+    
+    @After
+    public void teardown() {
+        Trace.global().enabled(false).clear();
+    }
+    
+    @Test
+    public void disabledRecordsNothing() {
+        new Tail(context)
+            .pipeInput(new ByteArrayInputStream("a\nb\n".getBytes(StandardCharsets.UTF_8)))
+            .pipeOutput(Streamables.nullOutput())
+            .run();
+        
+        assertThat(Trace.global().size(), is(0));
+    }
+    
+    @Test
+    public void phasesTasksAndActions() throws Exception {
+        Trace.global().enabled(true);
+        
+        Blaze blaze = new Blaze.Builder()
+            .scriptObject(new TestScriptObject())
+            .build();
+        
+        blaze.execute("main");
+        
+        String json = Trace.global().toJson();
+        
+        assertThat(json, containsString("\"traceEvents\""));
+        assertThat(json, containsString("{\"name\":\"configure\",\"cat\":\"phase\",\"ph\":\"X\""));
+        assertThat(json, containsString("{\"name\":\"compileScript\",\"cat\":\"phase\",\"ph\":\"X\""));
+        assertThat(json, containsString("{\"name\":\"main\",\"cat\":\"task\",\"ph\":\"X\""));
+    }
+    
+    @Test
+    public void pipelineStagesOnTheirOwnThreads() {
+        Trace.global().enabled(true);
+        
+        new Pipeline(context)
+            .pipeInput(new ByteArrayInputStream("a\nb\nc\n".getBytes(StandardCharsets.UTF_8)))
+            .add(new Head(context).count(2))
+            .add(new Tail(context).count(1))
+            .pipeOutput(Streamables.nullOutput())
+            .run();
+        
+        String json = Trace.global().toJson();
+        
+        assertThat(Trace.global().size(), is(3));
+        assertThat(json, containsString("{\"name\":\"Pipeline\",\"cat\":\"action\""));
+        assertThat(json, containsString("{\"name\":\"Head\",\"cat\":\"action\""));
+        assertThat(json, containsString("{\"name\":\"Tail\",\"cat\":\"action\""));
+        // one thread name for the caller and each stage
+        assertThat(json.split("\"thread_name\"").length - 1, is(3));
+        assertThat(json, not(containsString("\"dur\":-")));
+    }
+    
+}
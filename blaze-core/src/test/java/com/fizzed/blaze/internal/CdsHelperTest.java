@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CdsHelperTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    @Test
+    public void javaMajorVersion() {
+        assertThat(CdsHelper.javaMajorVersion("1.8"), is(8));
+        assertThat(CdsHelper.javaMajorVersion("11"), is(11));
+        assertThat(CdsHelper.javaMajorVersion("17"), is(17));
+    }
+    
+    @Test
+    public void jdkVersionFromReleaseFile() throws Exception {
+        Path javaHome = temporaryFolder.getRoot().toPath();
+        
+        Files.write(javaHome.resolve("release"),
+            "IMPLEMENTOR=\"Eclipse Adoptium\"\nJAVA_VERSION=\"17.0.9\"\nJAVA_VERSION_DATE=\"2023-10-17\"\n"
+                .getBytes(StandardCharsets.UTF_8));
+        
+        assertThat(CdsHelper.jdkVersion(javaHome), is("17.0.9"));
+    }
+    
+    @Test
+    public void jdkVersionWithoutReleaseFile() throws Exception {
+        Path javaHome = temporaryFolder.getRoot().toPath();
+        
+        assertThat(CdsHelper.jdkVersion(javaHome), is(System.getProperty("java.version")));
+    }
+    
+    @Test
+    public void archiveFile() {
+        Path archiveFile = CdsHelper.archiveFile(Paths.get("cds"), "0.16.1", "17.0.9");
+        
+        assertThat(archiveFile, is(Paths.get("cds", "blaze-0.16.1-jdk-17.0.9.jsa")));
+    }
+    
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassLoaderHelperTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private File jar(String name, String... entries) throws Exception {
+        File jarFile = temporaryFolder.newFile(name);
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile))) {
+            for (String entry : entries) {
+                jos.putNextEntry(new JarEntry(entry));
+                jos.write(name.getBytes(StandardCharsets.UTF_8));
+                jos.closeEntry();
+            }
+        }
+        return jarFile;
+    }
+    
+    @Test
+    public void dependencyClassLoaderCachedPerSetOfJars() throws Exception {
+        ClassLoader parent = getClass().getClassLoader();
+        File a = jar("a.jar", "com/example/a.txt");
+        File b = jar("b.jar", "com/example/b.txt");
+        
+        ClassLoader ab = ClassLoaderHelper.dependencyClassLoader(parent, Arrays.asList(a, b));
+        
+        assertThat(ClassLoaderHelper.dependencyClassLoader(parent, Arrays.asList(a, b)), is(sameInstance(ab)));
+        assertThat(ClassLoaderHelper.dependencyClassLoader(parent, Arrays.asList(a)), is(not(sameInstance(ab))));
+        // stacked on the same base rather than on each other
+        assertThat(ClassLoaderHelper.dependencyClassLoader(ab, Arrays.asList(a, b)), is(sameInstance(ab)));
+    }
+    
+    @Test
+    public void childFirstExceptForBlaze() throws Exception {
+        ClassLoader parent = getClass().getClassLoader();
+        File jarFile = jar("c.jar", "logback.xml", "com/fizzed/blaze/bundled.txt", "com/example/c.txt");
+        
+        ClassLoader classLoader = ClassLoaderHelper.dependencyClassLoader(parent, Arrays.asList(jarFile));
+        
+        URL logback = classLoader.getResource("logback.xml");
+        assertThat(logback.toString(), containsString("c.jar!"));
+        
+        URL bundled = classLoader.getResource("com/fizzed/blaze/bundled.txt");
+        assertThat(bundled.toString(), not(containsString("c.jar!")));
+        
+        assertThat(classLoader.getResource("com/example/c.txt"), is(not(nullValue())));
+        assertThat(classLoader.getResource("com/example/missing.txt"), is(nullValue()));
+        
+        // classes it does not have still come from the parent
+        assertThat(classLoader.loadClass(ClassLoaderHelper.class.getName()), is(sameInstance(ClassLoaderHelper.class)));
+    }
+    
+    @Test
+    public void buildClassPathAsFiles() throws Exception {
+        File jarFile = jar("d.jar", "com/example/d.txt");
+        
+        ClassLoader classLoader
+            = ClassLoaderHelper.dependencyClassLoader(getClass().getClassLoader(), Arrays.asList(jarFile));
+        
+        List<File> files = ClassLoaderHelper.buildClassPathAsFiles(classLoader);
+        
+        // dependencies first, then what blaze was started with
+        assertThat(files.get(0), is(jarFile));
+        
+        File classesDir = new File(ClassLoaderHelper.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        assertThat(files, hasItem(classesDir));
+        
+        assertThat(ClassLoaderHelper.buildClassPathAsString(classLoader), containsString(jarFile.getAbsolutePath()));
+    }
+    
+}
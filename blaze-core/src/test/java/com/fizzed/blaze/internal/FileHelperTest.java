@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.internal;
+
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.core.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileHelperTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private List<String> walk(Path path, Path relativeTo) throws Exception {
+        List<String> names = new ArrayList<>();
+        FileHelper.walkRelative(path, relativeTo, (name, p, attrs) -> names.add(name + (attrs.isDirectory() ? "/" : "")));
+        Collections.sort(names);
+        return names;
+    }
+    
+    @Test
+    public void walkRelativeToParent() throws Exception {
+        Path root = temporaryFolder.getRoot().toPath();
+        Files.createDirectories(root.resolve("site/css"));
+        Files.write(root.resolve("site/index.html"), new byte[0]);
+        Files.write(root.resolve("site/css/a.css"), new byte[0]);
+        
+        assertThat(walk(root.resolve("site"), null),
+            is(Arrays.asList("site/", "site/css/", "site/css/a.css", "site/index.html")));
+        
+        // the relativeTo dir itself is not visited
+        assertThat(walk(root.resolve("site"), root.resolve("site")),
+            is(Arrays.asList("css/", "css/a.css", "index.html")));
+    }
+    
+    @Test
+    public void walkRelativeAllowsDotDotNames() throws Exception {
+        Path root = temporaryFolder.getRoot().toPath();
+        Files.write(root.resolve("..env"), new byte[0]);
+        Files.write(root.resolve("..."), new byte[0]);
+        
+        assertThat(walk(root.resolve("..env"), root), is(Arrays.asList("..env")));
+        assertThat(walk(root.resolve("..."), root), is(Arrays.asList("...")));
+    }
+    
+    @Test(expected=BlazeException.class)
+    public void walkRelativeOutsideOfBase() throws Exception {
+        Path root = temporaryFolder.getRoot().toPath();
+        Files.createDirectories(root.resolve("a"));
+        Files.createDirectories(root.resolve("b"));
+        
+        walk(root.resolve("a"), root.resolve("b"));
+    }
+    
+    @Test(expected=FileNotFoundException.class)
+    public void walkRelativeNotFound() throws Exception {
+        walk(temporaryFolder.getRoot().toPath().resolve("missing"), null);
+    }
+    
+}
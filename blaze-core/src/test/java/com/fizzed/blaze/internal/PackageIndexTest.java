@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PackageIndexTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private File jar(String name, String... entries) throws Exception {
+        File jarFile = temporaryFolder.newFile(name);
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile))) {
+            for (String entry : entries) {
+                jos.putNextEntry(new JarEntry(entry));
+                jos.write(name.getBytes(StandardCharsets.UTF_8));
+                jos.closeEntry();
+            }
+        }
+        return jarFile;
+    }
+    
+    @Test
+    public void filesOfPackageInOrder() throws Exception {
+        File a = jar("a.jar", "com/example/A.class", "META-INF/services/x");
+        File b = jar("b.jar", "com/example/B.class", "com/example/util/C.class", "root.txt");
+        
+        PackageIndex index = PackageIndex.build(Arrays.asList(a, b));
+        
+        assertThat(index.filesOf("com/example"), is(Arrays.asList(a, b)));
+        assertThat(index.filesOf("com/example/util"), is(Arrays.asList(b)));
+        assertThat(index.filesOf("META-INF/services"), is(Arrays.asList(a)));
+        assertThat(index.filesOf(""), is(Arrays.asList(b)));
+        assertThat(index.filesOf("com"), is(Collections.emptyList()));
+        assertThat(index.contains("org/example"), is(false));
+    }
+    
+    @Test
+    public void persistedByHashOfJar() throws Exception {
+        File a = jar("a.jar", "com/example/A.class");
+        Path cacheDir = temporaryFolder.getRoot().toPath().resolve("packages");
+        
+        PackageIndex.build(Arrays.asList(a), cacheDir);
+        
+        List<Path> indexFiles;
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            indexFiles = files.filter((p) -> p.toString().endsWith(".txt")).collect(Collectors.toList());
+        }
+        
+        assertThat(indexFiles.size(), is(1));
+        assertThat(Files.readAllLines(indexFiles.get(0), StandardCharsets.UTF_8), is(Arrays.asList("com/example", "#packages 1")));
+        
+        // the same jar is never scanned again (the persisted index is used)
+        Files.write(indexFiles.get(0), Arrays.asList("com/example", "org/example", "#packages 2"), StandardCharsets.UTF_8);
+        
+        PackageIndex index = PackageIndex.build(Arrays.asList(a), cacheDir);
+        
+        assertThat(index.filesOf("org/example"), is(Arrays.asList(a)));
+    }
+    
+    @Test
+    public void incompleteIndexIsScannedAgain() throws Exception {
+        File a = jar("a.jar", "com/example/A.class", "com/example/util/B.class", "org/example/C.class");
+        Path cacheDir = temporaryFolder.getRoot().toPath().resolve("packages");
+        
+        PackageIndex.build(Arrays.asList(a), cacheDir);
+        
+        Path indexFile;
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            indexFile = files.filter((p) -> p.toString().endsWith(".txt")).findFirst().get();
+        }
+        
+        // e.g. cut short by a crash while being written
+        Files.write(indexFile, Arrays.asList("com/example"), StandardCharsets.UTF_8);
+        
+        PackageIndex index = PackageIndex.build(Arrays.asList(a), cacheDir);
+        
+        assertThat(index.filesOf("com/example/util"), is(Arrays.asList(a)));
+        assertThat(index.filesOf("org/example"), is(Arrays.asList(a)));
+        
+        // and the index is rewritten in full (with no temp files left behind)
+        assertThat(Files.readAllLines(indexFile, StandardCharsets.UTF_8),
+            is(Arrays.asList("com/example", "com/example/util", "org/example", "#packages 3")));
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertThat(files.filter((p) -> p.toString().endsWith(".tmp")).count(), is(0L));
+        }
+    }
+    
+    @Test
+    public void packagePaths() {
+        assertThat(PackageIndex.packagePath("com/example/a.txt"), is("com/example"));
+        assertThat(PackageIndex.packagePath("/com/example/a.txt"), is("com/example"));
+        assertThat(PackageIndex.packagePath("a.txt"), is(""));
+        assertThat(PackageIndex.classPackagePath("com.example.A"), is("com/example"));
+        assertThat(PackageIndex.classPackagePath("A"), is(""));
+    }
+    
+}
@@ -22,10 +22,18 @@ import com.fizzed.blaze.internal.ConfigHelper;
 import com.fizzed.blaze.internal.ContextImpl;
 import static com.fizzed.blaze.system.ShellTestHelper.getBinDirAsResource;
 import static com.fizzed.blaze.internal.FileHelper.resourceAsPath;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import javax.tools.ToolProvider;
 import org.apache.commons.io.FileUtils;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
@@ -36,6 +44,7 @@ import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.contrib.java.lang.system.SystemOutRule;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +58,9 @@ public class BlazeJdkEngineTest {
     @Rule
     public final SystemOutRule systemOutRule = new SystemOutRule().enableLog();
     
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
     @BeforeClass
     static public void forceBinResourceExecutable() throws Exception {
         // this makes the files in the "bin" sample directory executable
@@ -75,6 +87,101 @@ public class BlazeJdkEngineTest {
         assertThat(systemOutRule.getLog(), containsString("Hello World!"));
     }
     
+    @Test
+    public void dependencyJar() throws Exception {
+        // a jar with a class the script compiles and runs against
+        File srcDir = temporaryFolder.newFolder("src");
+        Path greeterFile = srcDir.toPath().resolve("com/example/dependency/Greeter.java");
+        Files.createDirectories(greeterFile.getParent());
+        Files.write(greeterFile, ("package com.example.dependency;\n"
+            + "public class Greeter { public static String greet() { return \"Hello from dependency\"; } }\n")
+            .getBytes(StandardCharsets.UTF_8));
+        
+        int compiled = ToolProvider.getSystemJavaCompiler().run(null, null, null, greeterFile.toString());
+        assertThat(compiled, is(0));
+        
+        File jarFile = temporaryFolder.newFile("dependency.jar");
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile))) {
+            jos.putNextEntry(new JarEntry("com/example/dependency/Greeter.class"));
+            jos.write(Files.readAllBytes(greeterFile.resolveSibling("Greeter.class")));
+            jos.closeEntry();
+        }
+        
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Blaze blaze = new Blaze.Builder()
+                .file(resourceAsPath("/jdk/uses_dependency.java"))
+                .dependencyResolver((context, resolvedDependencies, dependencies) -> Arrays.asList(jarFile))
+                .build();
+
+            systemOutRule.clearLog();
+
+            blaze.execute();
+
+            assertThat(systemOutRule.getLog(), containsString("Hello from dependency"));
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+    
+    @Test
+    public void dependencyAnnotationProcessor() throws Exception {
+        // a jar with a processor that generates the class the script uses
+        File srcDir = temporaryFolder.newFolder("src");
+        Path processorFile = srcDir.toPath().resolve("com/example/processor/GreeterProcessor.java");
+        Files.createDirectories(processorFile.getParent());
+        Files.write(processorFile, ("package com.example.processor;\n"
+            + "import java.io.Writer;\n"
+            + "import java.util.Set;\n"
+            + "import javax.annotation.processing.*;\n"
+            + "import javax.lang.model.SourceVersion;\n"
+            + "import javax.lang.model.element.TypeElement;\n"
+            + "@SupportedAnnotationTypes(\"*\")\n"
+            + "public class GreeterProcessor extends AbstractProcessor {\n"
+            + "  private boolean generated;\n"
+            + "  @Override public SourceVersion getSupportedSourceVersion() { return SourceVersion.latestSupported(); }\n"
+            + "  @Override public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {\n"
+            + "    if (!generated) {\n"
+            + "      generated = true;\n"
+            + "      try (Writer w = processingEnv.getFiler().createSourceFile(\"com.example.generated.Greeter\").openWriter()) {\n"
+            + "        w.write(\"package com.example.generated; public class Greeter { public static String greet() { return \\\"Hello from processor\\\"; } }\");\n"
+            + "      } catch (java.io.IOException e) { throw new RuntimeException(e); }\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "}\n")
+            .getBytes(StandardCharsets.UTF_8));
+        
+        int compiled = ToolProvider.getSystemJavaCompiler().run(null, null, null, processorFile.toString());
+        assertThat(compiled, is(0));
+        
+        File jarFile = temporaryFolder.newFile("processor.jar");
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile))) {
+            jos.putNextEntry(new JarEntry("com/example/processor/GreeterProcessor.class"));
+            jos.write(Files.readAllBytes(processorFile.resolveSibling("GreeterProcessor.class")));
+            jos.closeEntry();
+            jos.putNextEntry(new JarEntry("META-INF/services/javax.annotation.processing.Processor"));
+            jos.write("com.example.processor.GreeterProcessor\n".getBytes(StandardCharsets.UTF_8));
+            jos.closeEntry();
+        }
+        
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Blaze blaze = new Blaze.Builder()
+                .file(resourceAsPath("/jdk/uses_processor.java"))
+                .dependencyResolver((context, resolvedDependencies, dependencies) -> Arrays.asList(jarFile))
+                .build();
+
+            systemOutRule.clearLog();
+
+            blaze.execute();
+
+            assertThat(systemOutRule.getLog(), containsString("Hello from processor"));
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+    
     @Test
     public void tasks() throws Exception {
         Blaze blaze = new Blaze.Builder()
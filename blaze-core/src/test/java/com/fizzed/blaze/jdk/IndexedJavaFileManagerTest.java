@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.jdk;
+
+import com.fizzed.blaze.internal.PackageIndex;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexedJavaFileManagerTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private File jar(String name, String... entries) throws Exception {
+        File jarFile = temporaryFolder.newFile(name);
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile))) {
+            for (String entry : entries) {
+                jos.putNextEntry(new JarEntry(entry));
+                jos.closeEntry();
+            }
+        }
+        return jarFile;
+    }
+    
+    private List<String> list(String packageName) throws Exception {
+        // the parent classpath has the same classes as the dependency
+        Path classesDir = temporaryFolder.newFolder("classes").toPath();
+        for (String p : Arrays.asList("com/example", "javax/example")) {
+            Files.createDirectories(classesDir.resolve(p));
+            Files.write(classesDir.resolve(p).resolve("A.class"), new byte[0]);
+        }
+        
+        File dependency = jar("dependency.jar", "com/example/A.class", "javax/example/A.class");
+        
+        StandardJavaFileManager fileManager = ToolProvider.getSystemJavaCompiler().getStandardFileManager(null, null, null);
+        fileManager.setLocation(StandardLocation.CLASS_PATH, Collections.singletonList(classesDir.toFile()));
+        
+        List<String> names = new ArrayList<>();
+        try (IndexedJavaFileManager indexed = new IndexedJavaFileManager(fileManager, PackageIndex.build(Arrays.asList(dependency)))) {
+            for (JavaFileObject file : indexed.list(StandardLocation.CLASS_PATH, packageName, EnumSet.of(JavaFileObject.Kind.CLASS), false)) {
+                names.add(file.getName());
+            }
+        }
+        return names;
+    }
+    
+    @Test
+    public void dependencyClassesListedFirst() throws Exception {
+        List<String> names = list("com.example");
+        
+        // javac uses the first class listed (like child first loading)
+        assertThat(names.size(), is(2));
+        assertThat(names.get(0), containsString("dependency.jar"));
+        assertThat(names.get(1), containsString("classes"));
+    }
+    
+    @Test
+    public void parentFirstClassesListedLast() throws Exception {
+        List<String> names = list("javax.example");
+        
+        assertThat(names.size(), is(2));
+        assertThat(names.get(0), containsString("classes"));
+        assertThat(names.get(1), containsString("dependency.jar"));
+    }
+    
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.system;
+
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.internal.TarHelper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private Path createTree() throws Exception {
+        Path root = TreeTestHelper.createTree(temporaryFolder.newFolder("tree").toPath());
+        
+        // large enough to be split into blocks compressed in parallel
+        Files.write(root.resolve("large.bin"), largeData());
+        
+        return root;
+    }
+    
+    static private byte[] largeData() {
+        // half compressible text, half random
+        Random random = new Random(1);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (int i = 0; i < 40000; i++) {
+            baos.write(("line " + i + " of some text\n").getBytes(StandardCharsets.UTF_8), 0, ("line " + i + " of some text\n").length());
+        }
+        byte[] noise = new byte[1024 * 1024];
+        random.nextBytes(noise);
+        baos.write(noise, 0, noise.length);
+        return baos.toByteArray();
+    }
+    
+    private void assertTree(Path root) throws Exception {
+        assertThat(new String(Files.readAllBytes(root.resolve("dir0/dir1/dir2/b.txt")), StandardCharsets.UTF_8), is("hello world!"));
+        assertThat(Files.readAllBytes(root.resolve("large.bin")), is(largeData()));
+    }
+    
+    @Test
+    public void level() throws Exception {
+        new Archive(null).level(-1);
+        new Archive(null).level(9);
+        
+        try {
+            new Archive(null).level(10);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        
+        try {
+            new Archive(null).level(-2);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void zip() throws Exception {
+        Path root = createTree();
+        Path zip = temporaryFolder.getRoot().toPath().resolve("tree.zip");
+        
+        Archive.Result result = new Archive(null)
+            .paths(root)
+            .target(zip)
+            .parallel(4)
+            .runResult();
+        
+        assertThat(result.entries(), is(11L));
+        assertThat(result.bytesOut(), is(Files.size(zip)));
+        
+        // readable by the jdk
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            ZipEntry entry = zipFile.getEntry("tree/dir0/dir1/a.txt");
+            assertThat(entry, is(notNullValue()));
+            assertThat(entry.getSize(), is(12L));
+        }
+        
+        Path extracted = temporaryFolder.newFolder("extracted").toPath();
+        
+        Unarchive.Result unarchived = new Unarchive(null)
+            .source(zip)
+            .target(extracted)
+            .parallel(4)
+            .runResult();
+        
+        assertThat(unarchived.entries(), is(11L));
+        assertTree(extracted.resolve("tree"));
+    }
+    
+    @Test
+    public void zipStream() throws Exception {
+        Path root = createTree();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        
+        new Archive(null)
+            .paths(root)
+            .relativeTo(root)
+            .target(output)
+            .format(Archive.Format.ZIP)
+            .run();
+        
+        Path extracted = temporaryFolder.newFolder("extracted").toPath();
+        
+        // zip stream requires data descriptors to be read correctly
+        new Unarchive(null)
+            .source(new ByteArrayInputStream(output.toByteArray()))
+            .format(Archive.Format.ZIP)
+            .target(extracted)
+            .run();
+        
+        assertTree(extracted);
+    }
+    
+    @Test
+    public void tarGz() throws Exception {
+        Path root = createTree();
+        
+        String longName = "this-is-a-very-long-directory-name-that-will-not-fit-into-a-plain-ustar-header/"
+            + "and-another-long-directory-name-to-push-it-over/and-even-more-names-to-be-sure/"
+            + "and-a-long-file-name-that-requires-the-gnu-long-name-extension-to-be-used.txt";
+        Files.createDirectories(root.resolve(longName).getParent());
+        Files.write(root.resolve(longName), "long".getBytes(StandardCharsets.UTF_8));
+        
+        boolean posix = Files.getFileStore(root).supportsFileAttributeView("posix");
+        if (posix) {
+            Files.setPosixFilePermissions(root.resolve("dir0/a.txt"), PosixFilePermissions.fromString("rwxr-x---"));
+            Files.createSymbolicLink(root.resolve("link.txt"), Paths.get("dir0/a.txt"));
+        }
+        
+        Path tgz = temporaryFolder.getRoot().toPath().resolve("tree.tar.gz");
+        
+        new Archive(null)
+            .paths(root)
+            .target(tgz)
+            .parallel(4)
+            .run();
+        
+        Path extracted = temporaryFolder.newFolder("extracted").toPath();
+        
+        new Unarchive(null)
+            .source(tgz)
+            .target(extracted)
+            .run();
+        
+        assertTree(extracted.resolve("tree"));
+        assertThat(new String(Files.readAllBytes(extracted.resolve("tree").resolve(longName)), StandardCharsets.UTF_8), is("long"));
+        
+        if (posix) {
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(extracted.resolve("tree/dir0/a.txt"))), is("rwxr-x---"));
+            assertThat(Files.readSymbolicLink(extracted.resolve("tree/link.txt")), is(Paths.get("dir0/a.txt")));
+        }
+        
+        // exists now so it requires force
+        try {
+            new Unarchive(null)
+                .source(tgz)
+                .target(extracted)
+                .run();
+            fail();
+        } catch (BlazeException e) {
+            // expected
+        }
+        
+        new Unarchive(null)
+            .source(tgz)
+            .target(extracted)
+            .force()
+            .run();
+    }
+    
+    @Test
+    public void unarchiveRejectsEntriesOutsideTarget() throws Exception {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        TarHelper.writeEntry(tar, new TarHelper.Entry("../evil.txt", TarHelper.TYPE_FILE, 4, 0644, 0, null));
+        tar.write("evil".getBytes(StandardCharsets.UTF_8));
+        TarHelper.writePadding(tar, 4);
+        TarHelper.writeEnd(tar);
+        
+        Path extracted = temporaryFolder.newFolder("extracted").toPath();
+        
+        try {
+            new Unarchive(null)
+                .source(new ByteArrayInputStream(tar.toByteArray()))
+                .format(Archive.Format.TAR)
+                .target(extracted)
+                .run();
+            fail();
+        } catch (BlazeException e) {
+            // expected
+        }
+        
+        assertThat(Files.exists(temporaryFolder.getRoot().toPath().resolve("evil.txt")), is(false));
+    }
+    
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.system;
+
+import com.fizzed.blaze.core.BlazeException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CopyTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private Path createTree() throws Exception {
+        return TreeTestHelper.createTree(temporaryFolder.newFolder("tree").toPath());
+    }
+    
+    @Test
+    public void file() throws Exception {
+        Path root = createTree();
+        Path target = temporaryFolder.getRoot().toPath().resolve("a.txt");
+        
+        Copy.Result result = new Copy(null)
+            .paths(root.resolve("dir0/a.txt"))
+            .target(target)
+            .runResult();
+        
+        assertThat(new String(Files.readAllBytes(target), StandardCharsets.UTF_8), is("hello world!"));
+        assertThat(result.filesCopied(), is(1L));
+        assertThat(result.bytesCopied(), is(12L));
+        
+        // exists now so it requires force
+        try {
+            new Copy(null)
+                .paths(root.resolve("dir0/a.txt"))
+                .target(target)
+                .run();
+            fail();
+        } catch (BlazeException e) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void directoryRequiresRecursive() throws Exception {
+        Path root = createTree();
+        
+        try {
+            new Copy(null)
+                .paths(root)
+                .target(temporaryFolder.getRoot().toPath().resolve("copy"))
+                .run();
+            fail();
+        } catch (BlazeException e) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void recursiveParallelThenSkipIdentical() throws Exception {
+        Path root = createTree();
+        // existing directory so tree is copied into it
+        Path target = temporaryFolder.newFolder("copy").toPath();
+        
+        Copy.Result result = new Copy(null)
+            .paths(root)
+            .target(target)
+            .recursive()
+            .parallel(4)
+            .preserveAttributes()
+            .runResult();
+        
+        assertThat(Files.isRegularFile(target.resolve("tree/dir0/dir1/dir2/b.txt")), is(true));
+        assertThat(result.filesCopied(), is(6L));
+        assertThat(result.bytesCopied(), is(72L));
+        
+        result = new Copy(null)
+            .paths(root)
+            .target(target)
+            .recursive()
+            .skipIdentical()
+            .runResult();
+        
+        assertThat(result.filesCopied(), is(0L));
+        assertThat(result.filesSkipped(), is(6L));
+    }
+    
+    @Test
+    public void hardLink() throws Exception {
+        Path root = createTree();
+        Path target = temporaryFolder.getRoot().toPath().resolve("linked.txt");
+        
+        Copy.Result result = new Copy(null)
+            .paths(root.resolve("dir0/a.txt"))
+            .target(target)
+            .hardLink()
+            .runResult();
+        
+        // either linked or fell back to a copy
+        assertThat(result.filesLinked() + result.filesCopied(), is(1L));
+        assertThat(new String(Files.readAllBytes(target), StandardCharsets.UTF_8), is("hello world!"));
+    }
+    
+    @Test
+    public void move() throws Exception {
+        Path root = createTree();
+        Path target = temporaryFolder.getRoot().toPath().resolve("moved");
+        
+        Move.Result result = new Move(null)
+            .paths(root)
+            .target(target)
+            .runResult();
+        
+        assertThat(Files.exists(root), is(false));
+        assertThat(Files.isRegularFile(target.resolve("dir0/dir1/dir2/b.txt")), is(true));
+        assertThat(result.pathsRenamed(), is(1L));
+    }
+    
+    @Test
+    public void transferSourceWithoutSize() throws Exception {
+        // procfs files report a size of 0 but still have content
+        Path source = Paths.get("/proc/self/status");
+        assumeTrue(Files.isReadable(source));
+        Path target = temporaryFolder.getRoot().toPath().resolve("status");
+        
+        long bytes = Copy.transfer(source, target);
+        
+        assertThat(bytes > 0, is(true));
+        assertThat(Files.size(target), is(bytes));
+    }
+    
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.system;
+
+import com.fizzed.blaze.core.BlazeException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RemoveTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private Path createTree() throws Exception {
+        return TreeTestHelper.createTree(temporaryFolder.newFolder("tree").toPath());
+    }
+    
+    @Test
+    public void recursive() throws Exception {
+        Path root = createTree();
+        
+        Remove.Result result = new Remove(null)
+            .paths(root)
+            .recursive()
+            .runResult();
+        
+        assertThat(Files.exists(root), is(false));
+        assertThat(result.filesDeleted(), is(6L));
+        assertThat(result.dirsDeleted(), is(4L));
+        assertThat(result.bytesFreed(), is(72L));
+    }
+    
+    @Test
+    public void recursiveParallel() throws Exception {
+        Path root = createTree();
+        
+        Remove.Result result = new Remove(null)
+            .paths(root)
+            .recursive()
+            .parallel(4)
+            .runResult();
+        
+        assertThat(Files.exists(root), is(false));
+        assertThat(result.filesDeleted(), is(6L));
+        assertThat(result.dirsDeleted(), is(4L));
+        assertThat(result.bytesFreed(), is(72L));
+    }
+    
+    @Test
+    public void recursiveParallelNotFound() throws Exception {
+        Path root = temporaryFolder.getRoot().toPath().resolve("doesnotexist");
+        
+        try {
+            new Remove(null)
+                .paths(root)
+                .recursive()
+                .parallel(2)
+                .run();
+            fail();
+        } catch (BlazeException e) {
+            // expected
+        }
+        
+        // forced is okay
+        Remove.Result result = new Remove(null)
+            .paths(root)
+            .recursive()
+            .parallel(2)
+            .force()
+            .runResult();
+        
+        assertThat(result.filesDeleted(), is(0L));
+    }
+    
+    @Test
+    public void recursiveTrash() throws Exception {
+        Path root = createTree();
+        
+        new Remove(null)
+            .paths(root)
+            .recursive()
+            .trash()
+            .run();
+        
+        // renamed immediately, deleted eventually
+        assertThat(Files.exists(root), is(false));
+        
+        long timeout = System.currentTimeMillis() + 5000L;
+        while (temporaryFolder.getRoot().list().length > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10L);
+        }
+        
+        assertThat(temporaryFolder.getRoot().list().length, is(0));
+    }
+    
+    @Test
+    public void recursiveTrashSweepsStaleTrash() throws Exception {
+        Path root = createTree();
+        
+        // left behind by a process that died 2 hours ago
+        long twoHoursAgo = System.currentTimeMillis() - 2 * Remove.STALE_TRASH_MILLIS;
+        Path stale = TreeTestHelper.createTree(temporaryFolder.getRoot().toPath()
+            .resolve(".old" + Remove.TRASH_MARKER + twoHoursAgo + "-1"));
+        
+        // recently trashed so possibly still being deleted
+        Path recent = temporaryFolder.getRoot().toPath()
+            .resolve(".new" + Remove.TRASH_MARKER + System.currentTimeMillis() + "-1");
+        Files.createDirectories(recent);
+        
+        assertThat(Remove.trashedAt(stale), is(twoHoursAgo));
+        
+        new Remove(null)
+            .paths(root)
+            .recursive()
+            .trash()
+            .run();
+        
+        long timeout = System.currentTimeMillis() + 5000L;
+        while (temporaryFolder.getRoot().list().length > 1 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10L);
+        }
+        
+        assertThat(temporaryFolder.getRoot().list().length, is(1));
+        assertThat(Files.exists(recent), is(true));
+    }
+    
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.system;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TreeTestHelper {
+    
+    static public final String CONTENT = "hello world!";
+    
+    /**
+     * Creates a tree 3 dirs deep (dir0/dir1/dir2) with an "a.txt" and "b.txt"
+     * in each of them, so 6 files and 72 bytes in total.
+     * @param root The directory to create the tree in (must exist)
+     * @return The root
+     * @throws Exception On any error
+     */
+    static public Path createTree(Path root) throws Exception {
+        Path dir = root;
+        for (int i = 0; i < 3; i++) {
+            dir = dir.resolve("dir" + i);
+            Files.createDirectories(dir);
+            Files.write(dir.resolve("a.txt"), CONTENT.getBytes(StandardCharsets.UTF_8));
+            Files.write(dir.resolve("b.txt"), CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+        return root;
+    }
+    
+}
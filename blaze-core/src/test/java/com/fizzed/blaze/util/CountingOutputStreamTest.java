@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class CountingOutputStreamTest {
+    
+    @Test
+    public void countsSingleAndArrayWrites() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CountingOutputStream cos = new CountingOutputStream(baos);
+        
+        cos.write('a');
+        cos.write(new byte[10]);
+        cos.write(new byte[10], 2, 5);
+        
+        assertThat(cos.count(), is(16L));
+        assertThat(baos.size(), is(16));
+    }
+    
+    @Test
+    public void countsWritesFromManyThreads() throws Exception {
+        // like stdout and stderr pumps sharing one stream
+        CountingOutputStream cos = new CountingOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                // discard
+            }
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                // discard
+            }
+        });
+        
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    byte[] bytes = new byte[3];
+                    for (int j = 0; j < 100000; j++) {
+                        cos.write(bytes);
+                        cos.write(1);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertThat(cos.count(), is(threads.length * 100000L * 4L));
+    }
+    
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.util;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileHasherTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    @Test
+    public void xxHash64() throws Exception {
+        assertThat(Long.toHexString(new XxHash64().getValue()), is("ef46db3751d8e999"));
+        
+        XxHash64 abc = new XxHash64();
+        abc.update("abc".getBytes(StandardCharsets.UTF_8));
+        assertThat(Long.toHexString(abc.getValue()), is("44bc2cf5ad770999"));
+        
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte)(i % 251);
+        }
+        
+        // streamed in odd sized chunks to cross stripe boundaries
+        XxHash64 streamed = new XxHash64();
+        for (int i = 0; i < data.length; i += 7) {
+            streamed.update(data, i, Math.min(7, data.length - i));
+        }
+        assertThat(Long.toHexString(streamed.getValue()), is("f306f04aa88b54d3"));
+    }
+    
+    @Test
+    public void sha256() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, "abc".getBytes(StandardCharsets.UTF_8));
+        
+        assertThat(new FileHasher(FileHasher.Algorithm.SHA256).hash(file),
+            is("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"));
+    }
+    
+    @Test
+    public void largeFilesAreMapped() throws Exception {
+        byte[] data = new byte[5 * 1024 * 1024 + 3];
+        new Random(1).nextBytes(data);
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, data);
+        
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(data);
+        
+        assertThat(new FileHasher(FileHasher.Algorithm.SHA256).digest(file), is(expected));
+        
+        XxHash64 xx = new XxHash64();
+        xx.update(data);
+        
+        assertThat(new FileHasher(FileHasher.Algorithm.XXHASH64).digest(file), is(xx.digest()));
+    }
+    
+    @Test
+    public void cacheKeyedBySizeAndModifiedTime() throws Exception {
+        Path cache = temporaryFolder.getRoot().toPath().resolve("hashes");
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, "hello".getBytes(StandardCharsets.UTF_8));
+        FileTime mtime = Files.getLastModifiedTime(file);
+        
+        String hash = new FileHasher(FileHasher.Algorithm.XXHASH64).cache(cache).hash(file);
+        
+        assertThat(Files.exists(cache), is(true));
+        
+        // same size and modified time means the cached hash is used
+        Files.write(file, "world".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, mtime);
+        
+        assertThat(new FileHasher(FileHasher.Algorithm.XXHASH64).cache(cache).hash(file), is(hash));
+        
+        Files.setLastModifiedTime(file, FileTime.fromMillis(mtime.toMillis() - 10000));
+        
+        assertThat(new FileHasher(FileHasher.Algorithm.XXHASH64).cache(cache).hash(file), is(not(hash)));
+    }
+    
+    @Test
+    public void cacheThatCannotBeSavedIsIgnored() throws Exception {
+        // parent of the cache is a file so it can never be written
+        Path cache = temporaryFolder.newFile().toPath().resolve("hashes");
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, "hello".getBytes(StandardCharsets.UTF_8));
+        
+        String hash = new FileHasher(FileHasher.Algorithm.XXHASH64).cache(cache).hash(file);
+        
+        assertThat(hash, is(new FileHasher(FileHasher.Algorithm.XXHASH64).hash(file)));
+        assertThat(Files.exists(cache), is(false));
+    }
+    
+    @Test
+    public void concurrentSavesOfSameCache() throws Exception {
+        Path cache = temporaryFolder.getRoot().toPath().resolve("hashes");
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Path file = temporaryFolder.newFile().toPath();
+            Files.write(file, ("hello " + i).getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        
+        // separate hashers (like separate processes) saving the same cache
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Map<Path,String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> new FileHasher(FileHasher.Algorithm.XXHASH64).cache(cache).hash(files)));
+            }
+            for (Future<Map<Path,String>> future : futures) {
+                assertThat(future.get().size(), is(20));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        
+        // only the cache is left behind (no temp files)
+        assertThat(Files.exists(cache), is(true));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cache.getParent(), "hashes*.tmp")) {
+            assertThat(stream.iterator().hasNext(), is(false));
+        }
+    }
+    
+    @Test
+    public void parallel() throws Exception {
+        Path a = temporaryFolder.newFile().toPath();
+        Path b = temporaryFolder.newFile().toPath();
+        Files.write(a, "a".getBytes(StandardCharsets.UTF_8));
+        Files.write(b, "b".getBytes(StandardCharsets.UTF_8));
+        
+        FileHasher hasher = new FileHasher(FileHasher.Algorithm.MD5).parallel(2);
+        
+        Map<Path,String> hashes = hasher.hash(Arrays.asList(a, b));
+        
+        assertThat(hashes.get(a), is("0cc175b9c0f1b6a831c399e269772661"));
+        assertThat(hashes.get(b), is("92eb5ffee6ae2fec3ad71c777531578f"));
+    }
+    
+}
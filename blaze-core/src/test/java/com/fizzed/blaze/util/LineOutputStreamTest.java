@@ -102,4 +102,18 @@ public class LineOutputStreamTest {
         assertThat(lpos.processor().lastLine(), is("world"));
     }
     
+    @Test
+    public void writeWithOffset() throws IOException {
+        LineOutputStream<BufferingProcessor> lpos = LineOutputStream.buffering();
+        
+        byte[] bytes = "xxhello\nwor".getBytes(StandardCharsets.UTF_8);
+        
+        lpos.write(bytes, 2, bytes.length - 2);
+        lpos.write("ld\n".getBytes(StandardCharsets.UTF_8));
+        
+        assertThat(lpos.processor().lines(), hasSize(2));
+        assertThat(lpos.processor().lines().poll(), is("hello"));
+        assertThat(lpos.processor().lines().poll(), is("world"));
+    }
+    
 }
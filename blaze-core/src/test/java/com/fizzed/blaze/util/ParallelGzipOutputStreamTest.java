@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.io.ByteArrayInputStream;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class ParallelGzipOutputStreamTest {
+    
+    @Test
+    public void multipleBlocks() throws Exception {
+        // text repeats across blocks so the dictionary is exercised too
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            data.write(("line " + random.nextInt(100) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] noise = new byte[100000];
+        random.nextBytes(noise);
+        data.write(noise);
+        byte[] expected = data.toByteArray();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            
+            try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed, executor, 3, 6, 32 * 1024)) {
+                // odd sized writes to cross block boundaries
+                for (int i = 0; i < expected.length; i += 1000) {
+                    gzip.write(expected, i, Math.min(1000, expected.length - i));
+                }
+                gzip.write('!');
+            }
+            
+            byte[] actual = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+            
+            assertThat(actual.length, is(expected.length + 1));
+            assertThat(actual[actual.length - 1], is((byte)'!'));
+            assertThat(new String(actual, 0, 100, StandardCharsets.UTF_8), is(new String(expected, 0, 100, StandardCharsets.UTF_8)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void empty() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            new ParallelGzipOutputStream(compressed, executor, 1).close();
+            byte[] actual = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+            assertThat(actual.length, is(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StreamablesCopyTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    static private byte[] data(int size) {
+        byte[] data = new byte[size];
+        new Random(1).nextBytes(data);
+        return data;
+    }
+    
+    @Test
+    public void fileToFile() throws Exception {
+        byte[] data = data(1024 * 1024 + 5);
+        Path source = temporaryFolder.newFile().toPath();
+        Path target = temporaryFolder.getRoot().toPath().resolve("target.bin");
+        Files.write(source, data);
+        
+        StreamableOutput output = Streamables.output(target);
+        
+        Streamables.copy(Streamables.input(source), output);
+        
+        output.close();
+        
+        assertThat(Files.readAllBytes(target), is(data));
+    }
+    
+    @Test
+    public void fileToFileFromCurrentPosition() throws Exception {
+        byte[] data = data(100000);
+        Path source = temporaryFolder.newFile().toPath();
+        Path target = temporaryFolder.getRoot().toPath().resolve("target.bin");
+        Files.write(source, data);
+        
+        try (FileInputStream input = new FileInputStream(source.toFile())) {
+            // consume some via the stream first
+            input.read(new byte[10]);
+            
+            StreamableOutput output = Streamables.output(target);
+            Streamables.copy(Streamables.input(input), output);
+            output.close();
+            
+            // stream is at the end afterwards too
+            assertThat(input.read(), is(-1));
+        }
+        
+        assertThat(Files.readAllBytes(target), is(Arrays.copyOfRange(data, 10, data.length)));
+    }
+    
+    @Test
+    public void procFileToFile() throws Exception {
+        // procfs files report a size of 0 but still have content
+        Path source = Paths.get("/proc/self/status");
+        assumeTrue(Files.isReadable(source));
+        Path target = temporaryFolder.getRoot().toPath().resolve("target.txt");
+        
+        StreamableOutput output = Streamables.output(target);
+        
+        Streamables.copy(Streamables.input(source), output);
+        
+        output.close();
+        
+        assertThat(new String(Files.readAllBytes(target), StandardCharsets.UTF_8), containsString("Name:"));
+    }
+    
+    @Test
+    public void fifoToFile() throws Exception {
+        Path fifo = temporaryFolder.getRoot().toPath().resolve("fifo");
+        try {
+            assumeTrue(new ProcessBuilder("mkfifo", fifo.toString()).start().waitFor() == 0);
+        } catch (IOException e) {
+            assumeTrue(false);  // no mkfifo on this platform
+        }
+        Path target = temporaryFolder.getRoot().toPath().resolve("target.bin");
+        byte[] data = data(100000);
+        
+        Thread writer = new Thread(() -> {
+            try (FileOutputStream fos = new FileOutputStream(fifo.toFile())) {
+                fos.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.start();
+        
+        StreamableOutput output = Streamables.output(target);
+        
+        Streamables.copy(Streamables.input(fifo), output);
+        
+        output.close();
+        writer.join();
+        
+        assertThat(Files.readAllBytes(target), is(data));
+    }
+    
+    @Test
+    public void streamToStream() throws Exception {
+        byte[] data = data(3 * 1024 * 1024 + 7);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        
+        Streamables.copy(Streamables.input(new ByteArrayInputStream(data)), Streamables.output(baos), 1024);
+        
+        assertThat(baos.toByteArray(), is(data));
+        
+        // again with a pooled buffer
+        baos.reset();
+        
+        Streamables.copy(Streamables.input(new ByteArrayInputStream(data)), Streamables.output(baos));
+        
+        assertThat(baos.toByteArray(), is(data));
+    }
+    
+}
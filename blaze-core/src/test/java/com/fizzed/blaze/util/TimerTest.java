@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.util;
+
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class TimerTest {
+    
+    @Test
+    public void splitsAreSinceThePreviousSplit() throws Exception {
+        Timer timer = new Timer();
+        
+        Thread.sleep(20);
+        timer.split("first");
+        Thread.sleep(5);
+        timer.split("second");
+        timer.stop();
+        
+        List<Timer.Split> splits = timer.splits();
+        
+        assertThat(splits, hasSize(2));
+        assertThat(splits.get(0).name(), is("first"));
+        assertThat(splits.get(0).nanos(), greaterThanOrEqualTo(20000000L));
+        assertThat(splits.get(1).name(), is("second"));
+        assertThat(splits.get(1).nanos(), greaterThanOrEqualTo(5000000L));
+        assertThat(splits.get(1).nanos(), lessThanOrEqualTo(splits.get(0).nanos()));
+        assertThat(splits.get(0).nanos() + splits.get(1).nanos(), lessThanOrEqualTo(timer.nanos()));
+    }
+    
+    @Test
+    public void stopFreezesElapsed() throws Exception {
+        Timer timer = new Timer();
+        
+        Thread.sleep(2);
+        long nanos = timer.stop().nanos();
+        Thread.sleep(2);
+        
+        assertThat(timer.nanos(), is(nanos));
+        assertThat(timer.millis(), greaterThanOrEqualTo(2L));
+    }
+    
+    @Test
+    public void format() {
+        assertThat(Timer.format(1234567L), is("1.235 ms"));
+        assertThat(Timer.format(500L), is("0.001 ms"));
+    }
+    
+}
@@ -0,0 +1,9 @@
+import com.example.dependency.Greeter;
+
+public class uses_dependency {
+    
+    public void main() {
+        System.out.println(Greeter.greet());
+    }
+    
+}
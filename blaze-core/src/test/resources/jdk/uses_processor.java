@@ -0,0 +1,9 @@
+import com.example.generated.Greeter;
+
+public class uses_processor {
+    
+    public void main() {
+        System.out.println(Greeter.greet());
+    }
+    
+}
@@ -22,12 +22,12 @@ import com.fizzed.blaze.internal.ClassLoaderHelper;
 import static com.fizzed.blaze.internal.ClassLoaderHelper.currentThreadContextClassLoader;
 import com.fizzed.blaze.internal.ConfigHelper;
 import com.fizzed.blaze.internal.FileHelper;
+import com.fizzed.blaze.util.FileHasher;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.List;
 import org.slf4j.Logger;
@@ -70,13 +70,16 @@ public class BlazeKotlinEngine extends AbstractEngine<BlazeKotlinScript> {
             
             expectedClassFile = classesDir.resolve(sourceFile.getClassName() + ".class");
             
-            // to check if we need to recompile we use an md5 hash of the source file
-            scriptHash = FileHelper.md5hash(context.scriptFile());
+            // to check if we need to recompile we use a hash of the source file
+            // (cached by size/mtime so an unchanged script is not even read)
+            scriptHash = new FileHasher(FileHasher.Algorithm.SHA256)
+                .cache(ConfigHelper.userBlazeCacheDir(context).resolve("hashes"))
+                .hash(context.scriptFile());
             
             if (FileHelper.verifyHashFileFor(expectedClassFile, scriptHash)) {
                 compile = false;
             }
-        } catch (NoSuchAlgorithmException | IOException e) {
+        } catch (IOException e) {
             throw new BlazeException("Unable to get or create path to compile classes", e);
         }
         
@@ -94,10 +97,9 @@ public class BlazeKotlinEngine extends AbstractEngine<BlazeKotlinScript> {
             }
         }
         
-        // add directory it was compiled to classpath
-        if (ClassLoaderHelper.addClassPath(classLoader, classesDir)) {
-            log.debug("Added {} to classpath", classesDir);
-        }
+        // load from the directory it was compiled to (on top of dependencies)
+        ClassLoader scriptClassLoader = ClassLoaderHelper.scriptClassLoader(classLoader, classesDir);
+        log.debug("Added {} to classpath", classesDir);
         
         // create new instance of this class
         String className = sourceFile.getClassName();
@@ -108,7 +110,7 @@ public class BlazeKotlinEngine extends AbstractEngine<BlazeKotlinScript> {
                 }
             }
             
-            Class<?> type = classLoader.loadClass(className);
+            Class<?> type = scriptClassLoader.loadClass(className);
             
             Object targetObject;
             
@@ -18,13 +18,18 @@ package com.fizzed.blaze;
 import com.fizzed.blaze.ssh.SshConnect;
 import com.fizzed.blaze.util.MutableUri;
 import com.fizzed.blaze.ssh.SshExec;
+import com.fizzed.blaze.ssh.SshMultiExec;
 import com.fizzed.blaze.ssh.SshProvider;
+import com.fizzed.blaze.ssh.SshScp;
 import com.fizzed.blaze.ssh.SshSession;
 import com.fizzed.blaze.ssh.SshSftp;
 import com.fizzed.blaze.ssh.impl.JschExec;
+import com.fizzed.blaze.ssh.impl.JschMultiExec;
+import com.fizzed.blaze.ssh.impl.JschScp;
 import com.fizzed.blaze.ssh.impl.JschSftp;
 import com.fizzed.blaze.util.SchemeProvider;
 import java.net.URI;
+import java.util.Collection;
 
 public class SecureShells {
     
@@ -52,8 +57,34 @@ public class SecureShells {
             .args(arguments);
     }
     
+    /**
+     * Executes a command on many hosts in parallel.
+     * 
+     * <pre>
+     * sshMultiExec(Arrays.asList("ssh://web1", "ssh://web2"), "uptime")
+     *     .concurrency(50)
+     *     .batch(10)
+     *     .run();
+     * </pre>
+     * 
+     * @param uris The hosts to execute on
+     * @param command The command to execute
+     * @param arguments The arguments to the command
+     * @return The multi-host exec
+     */
+    static public SshMultiExec sshMultiExec(Collection<String> uris, String command, Object ... arguments) {
+        return new JschMultiExec(Contexts.currentContext())
+            .hosts(uris)
+            .command(command)
+            .args(arguments);
+    }
+    
     static public SshSftp sshSftp(SshSession session) {
         return new JschSftp(Contexts.currentContext(), session);
     }
     
+    static public SshScp sshScp(SshSession session) {
+        return new JschScp(Contexts.currentContext(), session);
+    }
+    
 }
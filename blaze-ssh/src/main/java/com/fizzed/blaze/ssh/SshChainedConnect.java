@@ -82,6 +82,37 @@ public class SshChainedConnect extends SshConnect {
         return this;
     }
     
+    @Override
+    public SshConnect compressionLevel(int level) {
+        // only the last hop carries data worth compressing
+        this.chain.get(this.chain.size()-1).compressionLevel(level);
+        return this;
+    }
+    
+    @Override
+    public SshConnect ciphers(String... ciphers) {
+        this.chain.forEach((connect) -> {
+            connect.ciphers(ciphers);
+        });
+        return this;
+    }
+    
+    @Override
+    public SshConnect macs(String... macs) {
+        this.chain.forEach((connect) -> {
+            connect.macs(macs);
+        });
+        return this;
+    }
+    
+    @Override
+    public SshConnect pooled(boolean pooled) {
+        this.chain.forEach((connect) -> {
+            connect.pooled(pooled);
+        });
+        return this;
+    }
+    
     @Override
     public SshConnect newConnect(MutableUri uri) {
         throw new UnsupportedOperationException("A chain of ssh connects cannot create new connects!");
@@ -44,7 +44,45 @@ abstract public class SshConnect extends Action<SshConnect.Result,SshSession> im
      * @see #hostChecking(boolean)
      */
     abstract public SshConnect disableHostChecking();
-    
+
+    /**
+     * Compress the session with zlib.  Speeds up text-heavy transfers and
+     * command output over slow links, but costs cpu on fast ones.  Overrides
+     * the "Compression" key in the ssh config.
+     * @param compression If true then compress at the default level (6)
+     * @return This connect
+     * @see #compressionLevel(int)
+     */
+    public SshConnect compression(boolean compression) {
+        return compressionLevel(compression ? 6 : 0);
+    }
+
+    /**
+     * Compress the session with zlib at the level.  Overrides the
+     * "Compression" and "CompressionLevel" keys in the ssh config.
+     * @param level From 1 (fastest) to 9 (smallest) or 0 for no compression
+     * @return This connect
+     */
+    abstract public SshConnect compressionLevel(int level);
+
+    /**
+     * The ciphers to prefer in order (e.g. "aes128-ctr", "aes256-ctr").  Any
+     * not supported by this client are skipped.  Overrides the "Ciphers" key
+     * in the ssh config.
+     * @param ciphers The ciphers in order of preference
+     * @return This connect
+     */
+    abstract public SshConnect ciphers(String... ciphers);
+
+    /**
+     * The MACs to prefer in order (e.g. "hmac-sha2-256", "hmac-sha1").  Any
+     * not supported by this client are skipped.  Overrides the "MACs" key
+     * in the ssh config.
+     * @param macs The MACs in order of preference
+     * @return This connect
+     */
+    abstract public SshConnect macs(String... macs);
+
     /**
      * The connection will be proxied thru the supplied session.  Allows you
      * to connect thru an SSH bastion "jump" host.  Can be done multiple times
@@ -68,6 +106,28 @@ abstract public class SshConnect extends Action<SshConnect.Result,SshSession> im
      */
     abstract public SshConnect proxy(SshSession session, boolean autoclose);
     
+    /**
+     * Acquire the session from a shared pool of live connections.  Connects
+     * with the same user, host, port and options reuse one connection (ssh
+     * multiplexes channels) and closing the session returns it to the pool
+     * rather than disconnecting.  Idle connections are closed after a timeout.
+     * @return This connect
+     * @see #pooled(boolean) 
+     */
+    public SshConnect pooled() {
+        return pooled(true);
+    }
+    
+    abstract public SshConnect pooled(boolean pooled);
+    
+    @Override
+    protected String detail() {
+        // never the password
+        MutableUri uri = getUri();
+        return (uri.getUsername() != null ? uri.getUsername() + "@" : "") + uri.getHost()
+            + (uri.getPort() != null ? ":" + uri.getPort() : "");
+    }
+    
     protected Result createResult(SshSession value) {
         return new Result(this, value);
     }
@@ -17,6 +17,10 @@ package com.fizzed.blaze.ssh;
 
 public class SshException extends RuntimeException {
 
+    public SshException(String msg) {
+        super(msg);
+    }
+
     public SshException(String msg, Throwable t) {
         super(msg, t);
     }
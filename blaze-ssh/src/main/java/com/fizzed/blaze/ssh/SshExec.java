@@ -60,6 +60,11 @@ abstract public class SshExec extends Action<SshExec.Result,Integer> implements
         this.exitValues = new ArrayList<>(Arrays.asList(0));
     }
     
+    @Override
+    protected String detail() {
+        return command + (arguments.isEmpty() ? "" : " " + String.join(" ", arguments));
+    }
+    
     @Override
     public SshExec command(String command) {
         ObjectHelper.requireNonNull(command, "command cannot be null");
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.core.UnexpectedExitValueException;
+import com.fizzed.blaze.util.LineOutputStream;
+import com.fizzed.blaze.util.MutableUri;
+import com.fizzed.blaze.util.ObjectHelper;
+import com.fizzed.blaze.util.SchemeProvider;
+import com.fizzed.blaze.util.StreamableInput;
+import com.fizzed.blaze.util.StreamableOutput;
+import com.fizzed.blaze.util.Streamables;
+import com.fizzed.blaze.util.Timer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes the same command on many hosts at once.  Each host is connected
+ * and executed on its own thread (with bounded concurrency) and every line
+ * of its output is written to the shared output prefixed with the host.  The
+ * result contains the exit value and timings for each host.
+ * 
+ * Optionally hosts are done in rolling batches where the next batch only
+ * starts once the previous one is finished and stops early if too many hosts
+ * failed.
+ */
+abstract public class SshMultiExec extends Action<SshMultiExec.Result,List<SshMultiExec.HostResult>> {
+    static private final Logger log = LoggerFactory.getLogger(SshMultiExec.class);
+    
+    static public enum Status {
+        SUCCESS,
+        FAILED,
+        SKIPPED
+    }
+    
+    final protected List<MutableUri> hosts;
+    protected Path command;
+    final protected List<String> arguments;
+    protected Map<String,String> environment;
+    protected boolean pty;
+    final protected List<Integer> exitValues;
+    protected StreamableOutput pipeOutput;
+    protected StreamableOutput pipeError;
+    protected boolean pipeErrorToOutput;
+    protected boolean prefix;
+    protected int concurrency;
+    protected int batchSize;
+    protected int maxFailures;
+    protected boolean failOnError;
+    protected boolean pooled;
+    protected Consumer<SshConnect> configurer;
+    
+    public SshMultiExec(Context context) {
+        super(context);
+        this.hosts = new ArrayList<>();
+        this.arguments = new ArrayList<>();
+        this.exitValues = new ArrayList<>(Arrays.asList(0));
+        this.pipeOutput = Streamables.standardOutput();
+        this.pipeError = Streamables.standardError();
+        this.prefix = true;
+        this.concurrency = 20;
+        this.batchSize = 0;
+        this.maxFailures = 0;
+        this.failOnError = true;
+    }
+    
+    public SshMultiExec host(String uri) {
+        ObjectHelper.requireNonNull(uri, "uri cannot be null");
+        return host(MutableUri.of(uri));
+    }
+    
+    public SshMultiExec host(URI uri) {
+        ObjectHelper.requireNonNull(uri, "uri cannot be null");
+        return host(new MutableUri(uri));
+    }
+    
+    public SshMultiExec host(MutableUri uri) {
+        ObjectHelper.requireNonNull(uri, "uri cannot be null");
+        this.hosts.add(uri);
+        return this;
+    }
+    
+    public SshMultiExec hosts(String... uris) {
+        return hosts(Arrays.asList(uris));
+    }
+    
+    public SshMultiExec hosts(Collection<String> uris) {
+        ObjectHelper.requireNonNull(uris, "uris cannot be null");
+        uris.forEach(this::host);
+        return this;
+    }
+    
+    public SshMultiExec command(String command) {
+        ObjectHelper.requireNonNull(command, "command cannot be null");
+        this.command = Paths.get(command);
+        return this;
+    }
+    
+    public SshMultiExec command(Path command) {
+        ObjectHelper.requireNonNull(command, "command cannot be null");
+        this.command = command;
+        return this;
+    }
+    
+    public SshMultiExec arg(Object argument) {
+        this.arguments.add(ObjectHelper.nonNullToString(argument));
+        return this;
+    }
+
+    public SshMultiExec args(Object... arguments) {
+        this.arguments.addAll(ObjectHelper.nonNullToStringList(arguments));
+        return this;
+    }
+    
+    public SshMultiExec env(String name, String value) {
+        if (this.environment == null) {
+            this.environment = new HashMap<>();
+        }
+        this.environment.put(name, value);
+        return this;
+    }
+    
+    public SshMultiExec pty(boolean value) {
+        this.pty = value;
+        return this;
+    }
+    
+    /**
+     * Exit values a host may return and still be considered successful.
+     * Defaults to 0.
+     * @param exitValues The exit values
+     * @return This action
+     */
+    public SshMultiExec exitValues(Integer... exitValues) {
+        this.exitValues.clear();
+        this.exitValues.addAll(Arrays.asList(exitValues));
+        return this;
+    }
+    
+    /**
+     * Output every host writes its lines to (stdout by default).  Lines from
+     * different hosts are interleaved as they arrive but never mixed within
+     * a line.
+     * @param pipeOutput The output
+     * @return This action
+     */
+    public SshMultiExec pipeOutput(StreamableOutput pipeOutput) {
+        this.pipeOutput = pipeOutput;
+        return this;
+    }
+    
+    public SshMultiExec pipeError(StreamableOutput pipeError) {
+        this.pipeError = pipeError;
+        return this;
+    }
+    
+    public SshMultiExec pipeErrorToOutput(boolean pipeErrorToOutput) {
+        this.pipeErrorToOutput = pipeErrorToOutput;
+        return this;
+    }
+    
+    /**
+     * Whether each line of output is prefixed with "[host] " (the default).
+     * @param prefix True to prefix lines
+     * @return This action
+     */
+    public SshMultiExec prefix(boolean prefix) {
+        this.prefix = prefix;
+        return this;
+    }
+    
+    /**
+     * Maximum number of hosts connected and executing at once.  Defaults
+     * to 20.
+     * @param concurrency The number of hosts
+     * @return This action
+     */
+    public SshMultiExec concurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be >= 1");
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+    
+    /**
+     * Execute hosts in rolling batches of this size.  A batch only starts
+     * once the previous one is finished and no more batches are started once
+     * more than maxFailures hosts failed (the rest are skipped).  Defaults to
+     * 0 where all hosts are a single batch.
+     * @param batchSize The number of hosts per batch
+     * @return This action
+     * @see #maxFailures(int) 
+     */
+    public SshMultiExec batch(int batchSize) {
+        if (batchSize < 0) {
+            throw new IllegalArgumentException("batchSize must be >= 0");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+    
+    public SshMultiExec maxFailures(int maxFailures) {
+        if (maxFailures < 0) {
+            throw new IllegalArgumentException("maxFailures must be >= 0");
+        }
+        this.maxFailures = maxFailures;
+        return this;
+    }
+    
+    /**
+     * Whether to throw an exception once all hosts are done if any of them
+     * failed (the default).  If false then check the result for failures.
+     * @param failOnError True to throw on failures
+     * @return This action
+     */
+    public SshMultiExec failOnError(boolean failOnError) {
+        this.failOnError = failOnError;
+        return this;
+    }
+    
+    /**
+     * Connect each host thru the shared session pool.
+     * @param pooled True to use pooled sessions
+     * @return This action
+     * @see SshConnect#pooled(boolean) 
+     */
+    public SshMultiExec pooled(boolean pooled) {
+        this.pooled = pooled;
+        return this;
+    }
+    
+    /**
+     * Customizes the connect of every host (e.g. to set the identity file or
+     * to disable host checking) before it is run.
+     * @param configurer The function to apply to each connect
+     * @return This action
+     */
+    public SshMultiExec connect(Consumer<SshConnect> configurer) {
+        this.configurer = configurer;
+        return this;
+    }
+    
+    abstract protected SshExec newExec(SshSession session);
+    
+    protected SshConnect newConnect(MutableUri uri) {
+        SshProvider provider = SchemeProvider.load(uri.getScheme(), SshProvider.class);
+        SshConnect connect = provider.connect(context, uri);
+        if (pooled) {
+            connect.pooled(true);
+        }
+        if (configurer != null) {
+            configurer.accept(connect);
+        }
+        return connect;
+    }
+    
+    @Override
+    protected Result doRun() throws BlazeException {
+        ObjectHelper.requireNonNull(command, "ssh command cannot be null");
+        
+        final Timer timer = new Timer();
+        final List<HostResult> results = new ArrayList<>();
+        final OutputStream output = (pipeOutput != null ? pipeOutput.stream() : null);
+        final OutputStream error = (pipeErrorToOutput ? output : (pipeError != null ? pipeError.stream() : null));
+        final int size = (batchSize > 0 ? batchSize : Math.max(1, hosts.size()));
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, size));
+        
+        try {
+            int failures = 0;
+            
+            for (int i = 0; i < hosts.size(); i += size) {
+                List<MutableUri> batch = hosts.subList(i, Math.min(i + size, hosts.size()));
+                
+                if (failures > maxFailures) {
+                    batch.forEach((uri) -> results.add(new HostResult(uri, Status.SKIPPED, null, null, 0, 0)));
+                    continue;
+                }
+                
+                List<Future<HostResult>> futures = new ArrayList<>();
+                
+                for (MutableUri uri : batch) {
+                    futures.add(executor.submit(() -> execute(uri, output, error)));
+                }
+                
+                for (Future<HostResult> future : futures) {
+                    HostResult result = future.get();
+                    if (result.status() == Status.FAILED) {
+                        failures++;
+                    }
+                    results.add(result);
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new BlazeException("Interrupted while executing on hosts", e);
+        } catch (ExecutionException e) {
+            throw new BlazeException("Unable to execute on hosts", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            flush(output);
+            flush(error);
+        }
+        
+        Result result = new Result(this, Collections.unmodifiableList(results));
+        
+        log.debug("ssh-exec on {} hosts ({} failed, {} skipped) in {} ms",
+            results.size(), result.failed().size(), result.skipped().size(), timer.stop().millis());
+        
+        if (failOnError && !result.failed().isEmpty()) {
+            HostResult first = result.failed().get(0);
+            throw new SshException("Execute failed on " + result.failed().size() + " of "
+                + results.size() + " hosts (first was " + label(first.uri()) + ")", first.error());
+        }
+        
+        return result;
+    }
+    
+    private HostResult execute(MutableUri uri, OutputStream output, OutputStream error) {
+        final String label = label(uri);
+        final Timer timer = new Timer();
+        long connectMillis = 0;
+        SshSession session = null;
+        
+        try {
+            session = newConnect(uri).run();
+            connectMillis = timer.millis();
+            
+            SshExec exec = newExec(session)
+                .command(command)
+                .args(arguments.toArray())
+                .exitValues(exitValues.toArray(new Integer[0]))
+                .pty(pty)
+                .pipeInput((StreamableInput)null)
+                .pipeOutput(lines(label, output))
+                .pipeError(lines(label, error));
+            
+            if (environment != null) {
+                environment.forEach(exec::env);
+            }
+            
+            Integer exitValue = exec.run();
+            
+            return new HostResult(uri, Status.SUCCESS, exitValue, null, connectMillis, timer.millis());
+        } catch (UnexpectedExitValueException e) {
+            log.warn("{} exited with {}", label, e.getActual());
+            return new HostResult(uri, Status.FAILED, e.getActual(), e, connectMillis, timer.millis());
+        } catch (RuntimeException e) {
+            log.warn("{} failed: {}", label, e.getMessage());
+            return new HostResult(uri, Status.FAILED, null, e, connectMillis, timer.millis());
+        } finally {
+            Streamables.closeQuietly(session);
+        }
+    }
+    
+    private StreamableOutput lines(String label, OutputStream target) {
+        if (target == null) {
+            return null;
+        }
+        
+        final byte[] prefixBytes = (prefix ? ("[" + label + "] ").getBytes(StandardCharsets.UTF_8) : new byte[0]);
+        
+        return Streamables.output(new LineOutputStream<>((String line) -> {
+            byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            // one host's line is never split by another's
+            synchronized (target) {
+                try {
+                    target.write(prefixBytes);
+                    target.write(bytes);
+                } catch (IOException e) {
+                    throw new BlazeException("Unable to write output", e);
+                }
+            }
+        }));
+    }
+    
+    static private void flush(OutputStream stream) {
+        if (stream != null) {
+            try {
+                stream.flush();
+            } catch (IOException e) {
+                // do nothing
+            }
+        }
+    }
+    
+    static String label(MutableUri uri) {
+        if (uri.getPort() != null && uri.getPort() != 22) {
+            return uri.getHost() + ":" + uri.getPort();
+        }
+        return uri.getHost();
+    }
+    
+    static public class HostResult {
+        
+        private final MutableUri uri;
+        private final Status status;
+        private final Integer exitValue;
+        private final Throwable error;
+        private final long connectMillis;
+        private final long totalMillis;
+
+        HostResult(MutableUri uri, Status status, Integer exitValue, Throwable error, long connectMillis, long totalMillis) {
+            this.uri = uri;
+            this.status = status;
+            this.exitValue = exitValue;
+            this.error = error;
+            this.connectMillis = connectMillis;
+            this.totalMillis = totalMillis;
+        }
+
+        public MutableUri uri() {
+            return uri;
+        }
+
+        public Status status() {
+            return status;
+        }
+
+        /**
+         * The exit value of the command or null if it never finished (e.g.
+         * the host could not be connected to or was skipped).
+         * @return The exit value or null
+         */
+        public Integer exitValue() {
+            return exitValue;
+        }
+
+        public Throwable error() {
+            return error;
+        }
+
+        public long connectMillis() {
+            return connectMillis;
+        }
+
+        public long totalMillis() {
+            return totalMillis;
+        }
+
+        @Override
+        public String toString() {
+            return label(uri) + " " + status + " (exit=" + exitValue + ", " + totalMillis + " ms)";
+        }
+        
+    }
+    
+    static public class Result extends com.fizzed.blaze.core.Result<SshMultiExec,List<HostResult>,Result> {
+        
+        Result(SshMultiExec action, List<HostResult> value) {
+            super(action, value);
+        }
+        
+        public List<HostResult> succeeded() {
+            return filter(Status.SUCCESS);
+        }
+        
+        public List<HostResult> failed() {
+            return filter(Status.FAILED);
+        }
+        
+        public List<HostResult> skipped() {
+            return filter(Status.SKIPPED);
+        }
+        
+        private List<HostResult> filter(Status status) {
+            return get().stream()
+                .filter((r) -> r.status() == status)
+                .collect(Collectors.toList());
+        }
+        
+    }
+    
+}
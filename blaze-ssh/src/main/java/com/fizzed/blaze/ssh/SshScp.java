@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.ssh.impl.PathHelper;
+import com.fizzed.blaze.util.StreamableInput;
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Copies a local file, directory or stream to the remote host with scp.  Each
+ * file is streamed as-is with no per-request round trips (as sftp has) and
+ * the messages for a batch of files and directories are sent before waiting
+ * on their acks, so many small files or a high latency link copy quicker.
+ * The remote host must have an scp binary.
+ * 
+ * <pre>
+ * sshScp(session)
+ *     .source(Paths.get("target/site"))
+ *     .target("/var/www/site")
+ *     .recursive(true)
+ *     .preserveTimes(true)
+ *     .run();
+ * </pre>
+ */
+abstract public class SshScp extends Action<SshScp.Result,Void> {
+
+    final protected SshSession session;
+    protected Path sourcePath;
+    protected StreamableInput source;
+    protected String target;
+    protected boolean recursive;
+    protected boolean preserveTimes;
+    
+    public SshScp(Context context, SshSession session) {
+        super(context);
+        this.session = session;
+    }
+    
+    public SshScp source(String sourceFile) {
+        return source(Paths.get(sourceFile));
+    }
+    
+    public SshScp source(File sourceFile) {
+        return source(sourceFile.toPath());
+    }
+    
+    /**
+     * @param sourceFile The local file (or directory if recursive)
+     * @return This action
+     */
+    public SshScp source(Path sourceFile) {
+        this.sourcePath = sourceFile;
+        this.source = null;
+        return this;
+    }
+    
+    /**
+     * @param source The input to stream, which must have a known size (since
+     *      scp sends it before the content)
+     * @return This action
+     */
+    public SshScp source(StreamableInput source) {
+        if (source.size() == null) {
+            throw new IllegalArgumentException("scp source must have a known size");
+        }
+        this.source = source;
+        this.sourcePath = null;
+        return this;
+    }
+    
+    public SshScp target(String target) {
+        this.target = target;
+        return this;
+    }
+    
+    public SshScp target(Path target) {
+        return target(PathHelper.toString(target));
+    }
+    
+    /**
+     * Copy a source directory and everything in it.  Like scp, if the target
+     * is an existing directory the source directory is copied into it,
+     * otherwise the target is created as the copy.  Defaults to false.
+     * @param recursive True to copy directories
+     * @return This action
+     */
+    public SshScp recursive(boolean recursive) {
+        this.recursive = recursive;
+        return this;
+    }
+    
+    /**
+     * Preserve the modified and access times of the source files (and their
+     * modes).  Defaults to false.
+     * @param preserveTimes True to preserve times
+     * @return This action
+     */
+    public SshScp preserveTimes(boolean preserveTimes) {
+        this.preserveTimes = preserveTimes;
+        return this;
+    }
+    
+    @Override
+    protected String detail() {
+        return target;
+    }
+    
+    static public class Result extends com.fizzed.blaze.core.Result<SshScp,Void,Result> {
+        
+        private final long files;
+        private final long bytes;
+        private final long millis;
+        
+        public Result(SshScp action, Void value, long files, long bytes, long millis) {
+            super(action, value);
+            this.files = files;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+        
+        public long files() {
+            return this.files;
+        }
+        
+        public long bytes() {
+            return this.bytes;
+        }
+        
+        public long millis() {
+            return this.millis;
+        }
+        
+        public long bytesPerSecond() {
+            return this.bytes * 1000L / Math.max(1L, this.millis);
+        }
+        
+    }
+    
+}
@@ -20,10 +20,12 @@ import com.fizzed.blaze.core.BlazeException;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import com.fizzed.blaze.ssh.impl.JschSftpTransfer;
 import com.fizzed.blaze.ssh.impl.SshSftpSupport;
 import com.fizzed.blaze.util.ObjectHelper;
 import com.fizzed.blaze.util.StreamableOutput;
 import com.fizzed.blaze.util.Streamables;
+import com.fizzed.blaze.util.Timer;
 import java.io.OutputStream;
 
 public class SshSftpGet extends Action<SshSftpGet.Result,Void> {
@@ -31,11 +33,16 @@ public class SshSftpGet extends Action<SshSftpGet.Result,Void> {
     private final SshSftpSupport sftp;
     private StreamableOutput target;
     private Path source;
+    private int requests;
+    private int channels;
+    private boolean resume;
     
     public SshSftpGet(SshSftpSession sftp) {
         super(sftp.session().context());
         this.sftp = (SshSftpSupport)sftp;
         this.target = null;
+        this.requests = JschSftpTransfer.DEFAULT_REQUESTS;
+        this.channels = 1;
     }
     
     public SshSftpGet source(String sourceFile) {
@@ -68,18 +75,89 @@ public class SshSftpGet extends Action<SshSftpGet.Result,Void> {
         return this;
     }
 
+    /**
+     * Maximum number of sftp read requests in flight per channel (defaults
+     * to 64).  More requests keep a high latency link busy.
+     * @param requests The number of outstanding requests
+     * @return This action
+     */
+    public SshSftpGet requests(int requests) {
+        if (requests < 1) {
+            throw new IllegalArgumentException("requests must be >= 1");
+        }
+        this.requests = requests;
+        return this;
+    }
+    
+    /**
+     * Split a large file downloaded to a local file into ranges that are
+     * transferred over up to this many sftp channels at once.  Each range is
+     * at least 8MB.  Defaults to 1.
+     * @param channels The maximum number of channels
+     * @return This action
+     */
+    public SshSftpGet channels(int channels) {
+        if (channels < 1) {
+            throw new IllegalArgumentException("channels must be >= 1");
+        }
+        this.channels = channels;
+        return this;
+    }
+    
+    /**
+     * Download to a local file via a partial file next to it ("name.part")
+     * that is moved to the target once complete.  If a previous attempt
+     * failed (e.g. a dropped connection) and the partial file is still the
+     * start of the source, only the rest is downloaded.  All of the partial
+     * file is compared (hashed by the server, or read back if no more than
+     * a megabyte) and if that is not possible it starts over.  The file is
+     * always transferred over a single channel (ignoring channels()) since
+     * ranges transferred at once could leave holes in the partial file if
+     * one fails.  Defaults to false.
+     * @param resume True to download resumably
+     * @return This action
+     */
+    public SshSftpGet resume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    @Override
+    protected String detail() {
+        return String.valueOf(source);
+    }
+    
     @Override
     protected Result doRun() throws BlazeException {
         ObjectHelper.requireNonNull(source, "source cannot be null");
         ObjectHelper.requireNonNull(target, "target cannot be null");
-        sftp.get(source, target);
-        return new Result(this, null);
+        Timer timer = new Timer();
+        long bytes = sftp.get(source, target, requests, channels, resume);
+        bytesIn(bytes);
+        return new Result(this, null, bytes, timer.stop().millis());
     }
     
     static public class Result extends com.fizzed.blaze.core.Result<SshSftpGet,Void,Result> {
         
-        Result(SshSftpGet action, Void value) {
+        private final long bytes;
+        private final long millis;
+        
+        Result(SshSftpGet action, Void value, long bytes, long millis) {
             super(action, value);
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+        
+        public long bytes() {
+            return this.bytes;
+        }
+        
+        public long millis() {
+            return this.millis;
+        }
+        
+        public long bytesPerSecond() {
+            return this.bytes * 1000L / Math.max(1L, this.millis);
         }
         
     }
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.ssh.impl.JschSftpTransfer;
+import com.fizzed.blaze.ssh.impl.PathHelper;
+import com.fizzed.blaze.ssh.impl.SshSftpSupport;
+import com.fizzed.blaze.util.ObjectHelper;
+import com.fizzed.blaze.util.Timer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a remote directory (recursively) or file into a local directory.
+ * Many files are downloaded at once over multiple sftp channels of the same
+ * session.
+ * 
+ * Downloading the remote "www/site" into the local "target" creates
+ * "target/site/...".  Remote symlinks are skipped.
+ */
+public class SshSftpGetAll extends Action<SshSftpGetAll.Result,Void> {
+    static private final Logger log = LoggerFactory.getLogger(SshSftpGetAll.class);
+    
+    private final SshSftpSession session;
+    private final SshSftpSupport sftp;
+    private Path source;
+    private Path target;
+    private int requests;
+    private int channels;
+    
+    public SshSftpGetAll(SshSftpSession sftp) {
+        super(sftp.session().context());
+        this.session = sftp;
+        this.sftp = (SshSftpSupport)sftp;
+        this.requests = JschSftpTransfer.DEFAULT_REQUESTS;
+        this.channels = 4;
+    }
+    
+    public SshSftpGetAll source(String source) {
+        return source(Paths.get(source));
+    }
+    
+    public SshSftpGetAll source(Path source) {
+        this.source = source;
+        return this;
+    }
+    
+    public SshSftpGetAll target(String target) {
+        return target(Paths.get(target));
+    }
+    
+    public SshSftpGetAll target(File target) {
+        return target(target.toPath());
+    }
+    
+    /**
+     * The local directory to download into.  It is created if it does not
+     * exist.
+     * @param target The local directory
+     * @return This action
+     */
+    public SshSftpGetAll target(Path target) {
+        this.target = target;
+        return this;
+    }
+    
+    /**
+     * Maximum number of sftp requests in flight per channel (defaults to
+     * 64).
+     * @param requests The number of outstanding requests
+     * @return This action
+     */
+    public SshSftpGetAll requests(int requests) {
+        if (requests < 1) {
+            throw new IllegalArgumentException("requests must be >= 1");
+        }
+        this.requests = requests;
+        return this;
+    }
+    
+    /**
+     * Maximum number of sftp channels (and files) transferring at once.
+     * Defaults to 4.
+     * @param channels The number of channels
+     * @return This action
+     */
+    public SshSftpGetAll channels(int channels) {
+        if (channels < 1) {
+            throw new IllegalArgumentException("channels must be >= 1");
+        }
+        this.channels = channels;
+        return this;
+    }
+    
+    @Override
+    protected Result doRun() throws BlazeException {
+        ObjectHelper.requireNonNull(source, "source cannot be null");
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        
+        final Timer timer = new Timer();
+        final Map<String,Path> files = new LinkedHashMap<>();
+        final int[] directories = new int[1];
+        
+        try {
+            Files.createDirectories(target);
+            
+            Path local = target.resolve(source.getFileName().toString());
+            SshFileAttributes attrs = session.lstat(source);
+            
+            if (attrs.isDirectory()) {
+                collect(source, local, files, directories);
+            } else {
+                files.put(PathHelper.toString(source), local);
+            }
+        } catch (IOException e) {
+            throw new BlazeException("Unable to download", e);
+        }
+        
+        long bytes = sftp.getAll(files, requests, channels);
+        
+        long millis = timer.stop().millis();
+        
+        log.info("Downloaded {} files ({} bytes) to {} in {} ms", files.size(), bytes, target, millis);
+        
+        return new Result(this, null, files.size(), directories[0], bytes, millis);
+    }
+    
+    private void collect(Path remoteDir, Path localDir, Map<String,Path> files, int[] directories) throws IOException {
+        Files.createDirectories(localDir);
+        directories[0]++;
+        
+        for (SshFile file : session.ls(remoteDir)) {
+            Path local = localDir.resolve(file.fileName());
+            
+            if (file.attributes().isDirectory()) {
+                collect(file.path(), local, files, directories);
+            } else if (file.attributes().isRegularFile()) {
+                files.put(PathHelper.toString(file.path()), local);
+            } else {
+                log.warn("Skipping {} (not a regular file or directory)", file.path());
+            }
+        }
+    }
+    
+    static public class Result extends com.fizzed.blaze.core.Result<SshSftpGetAll,Void,Result> {
+        
+        private final int files;
+        private final int directories;
+        private final long bytes;
+        private final long millis;
+        
+        Result(SshSftpGetAll action, Void value, int files, int directories, long bytes, long millis) {
+            super(action, value);
+            this.files = files;
+            this.directories = directories;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+        
+        public int files() {
+            return this.files;
+        }
+        
+        public int directories() {
+            return this.directories;
+        }
+        
+        public long bytes() {
+            return this.bytes;
+        }
+        
+        public long millis() {
+            return this.millis;
+        }
+        
+        public long bytesPerSecond() {
+            return this.bytes * 1000L / Math.max(1L, this.millis);
+        }
+        
+    }
+    
+}
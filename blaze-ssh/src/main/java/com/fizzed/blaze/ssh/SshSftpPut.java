@@ -22,21 +22,28 @@ import java.io.File;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import com.fizzed.blaze.ssh.impl.JschSftpTransfer;
 import com.fizzed.blaze.ssh.impl.SshSftpSupport;
 import com.fizzed.blaze.util.ObjectHelper;
 import com.fizzed.blaze.util.StreamableInput;
 import com.fizzed.blaze.util.Streamables;
+import com.fizzed.blaze.util.Timer;
 
 public class SshSftpPut extends Action<SshSftpPut.Result,Void> {
 
     private final SshSftpSupport sftp;
     private StreamableInput source;
     private String target;
+    private int requests;
+    private int channels;
+    private boolean resume;
     
     public SshSftpPut(SshSftpSession sftp) {
         super(sftp.session().context());
         this.sftp = (SshSftpSupport)sftp;
         this.target = null;
+        this.requests = JschSftpTransfer.DEFAULT_REQUESTS;
+        this.channels = 1;
     }
     
     public SshSftpPut source(String sourceFile) {
@@ -73,18 +80,88 @@ public class SshSftpPut extends Action<SshSftpPut.Result,Void> {
         return target(targetFile.toPath());
     }
 
+    /**
+     * Maximum number of sftp write requests in flight per channel (defaults
+     * to 64).  More requests keep a high latency link busy.
+     * @param requests The number of outstanding requests
+     * @return This action
+     */
+    public SshSftpPut requests(int requests) {
+        if (requests < 1) {
+            throw new IllegalArgumentException("requests must be >= 1");
+        }
+        this.requests = requests;
+        return this;
+    }
+    
+    /**
+     * Split a large local file into ranges that are uploaded over up to this
+     * many sftp channels at once.  Each range is at least 8MB.  Defaults to 1.
+     * @param channels The maximum number of channels
+     * @return This action
+     */
+    public SshSftpPut channels(int channels) {
+        if (channels < 1) {
+            throw new IllegalArgumentException("channels must be >= 1");
+        }
+        this.channels = channels;
+        return this;
+    }
+    
+    /**
+     * Upload a local file to a partial file next to the target
+     * (".name.part") that is renamed to the target once complete.  If a
+     * previous attempt failed (e.g. a dropped connection) and the partial
+     * file is still the start of the source, only the rest is uploaded.
+     * All of the partial file is compared (hashed by the server, or read
+     * back if no more than a megabyte) and if that is not possible it
+     * starts over.  The file is always transferred over a single channel
+     * (ignoring channels()) since ranges transferred at once could leave
+     * holes in the partial file if one fails.  Defaults to false.
+     * @param resume True to upload resumably
+     * @return This action
+     */
+    public SshSftpPut resume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    @Override
+    protected String detail() {
+        return target;
+    }
+    
     @Override
     protected Result doRun() throws BlazeException {
         ObjectHelper.requireNonNull(source, "source cannot be null");
         ObjectHelper.requireNonNull(target, "target cannot be null");
-        sftp.put(source, target);
-        return new Result(this, null);
+        Timer timer = new Timer();
+        long bytes = sftp.put(source, target, requests, channels, resume);
+        bytesOut(bytes);
+        return new Result(this, null, bytes, timer.stop().millis());
     }
     
     static public class Result extends com.fizzed.blaze.core.Result<SshSftpPut,Void,Result> {
         
-        Result(SshSftpPut action, Void value) {
+        private final long bytes;
+        private final long millis;
+        
+        Result(SshSftpPut action, Void value, long bytes, long millis) {
             super(action, value);
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+        
+        public long bytes() {
+            return this.bytes;
+        }
+        
+        public long millis() {
+            return this.millis;
+        }
+        
+        public long bytesPerSecond() {
+            return this.bytes * 1000L / Math.max(1L, this.millis);
         }
         
     }
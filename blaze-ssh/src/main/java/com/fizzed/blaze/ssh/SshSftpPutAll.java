@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.core.PathsMixin;
+import com.fizzed.blaze.internal.FileHelper;
+import com.fizzed.blaze.ssh.impl.JschSftpTransfer;
+import com.fizzed.blaze.ssh.impl.PathHelper;
+import com.fizzed.blaze.ssh.impl.SshSftpSupport;
+import com.fizzed.blaze.util.ObjectHelper;
+import com.fizzed.blaze.util.Timer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uploads local files and directories (recursively) to a remote directory.
+ * The remote directories are created up front and many files are uploaded
+ * at once over multiple sftp channels of the same session, so deploying
+ * thousands of small files is not bound by the latency of each one.
+ * 
+ * Files are named relative to the parent of each path (so uploading
+ * "target/site" creates "site/..." in the remote directory) unless
+ * relativeTo() is used.
+ */
+public class SshSftpPutAll extends Action<SshSftpPutAll.Result,Void> implements PathsMixin<SshSftpPutAll> {
+    static private final Logger log = LoggerFactory.getLogger(SshSftpPutAll.class);
+    
+    private final SshSftpSupport sftp;
+    private final List<Path> paths;
+    private Path relativeTo;
+    private String target;
+    private int requests;
+    private int channels;
+    
+    public SshSftpPutAll(SshSftpSession sftp) {
+        super(sftp.session().context());
+        this.sftp = (SshSftpSupport)sftp;
+        this.paths = new ArrayList<>();
+        this.requests = JschSftpTransfer.DEFAULT_REQUESTS;
+        this.channels = 4;
+    }
+    
+    @Override
+    public List<Path> getPaths() {
+        return this.paths;
+    }
+    
+    /**
+     * Name files relative to this directory rather than the parent of each
+     * path.
+     * @param relativeTo The directory files are relative to
+     * @return This action
+     */
+    public SshSftpPutAll relativeTo(Path relativeTo) {
+        this.relativeTo = relativeTo;
+        return this;
+    }
+    
+    public SshSftpPutAll relativeTo(File relativeTo) {
+        return relativeTo(relativeTo != null ? relativeTo.toPath() : null);
+    }
+    
+    public SshSftpPutAll relativeTo(String relativeTo) {
+        return relativeTo(relativeTo != null ? Paths.get(relativeTo) : null);
+    }
+    
+    /**
+     * The remote directory to upload into.  It is created if it does not
+     * exist (but its parent must).
+     * @param target The remote directory
+     * @return This action
+     */
+    public SshSftpPutAll target(String target) {
+        this.target = target;
+        return this;
+    }
+    
+    public SshSftpPutAll target(Path target) {
+        return target(PathHelper.toString(target));
+    }
+    
+    /**
+     * Maximum number of sftp requests in flight per channel (defaults to
+     * 64).
+     * @param requests The number of outstanding requests
+     * @return This action
+     */
+    public SshSftpPutAll requests(int requests) {
+        if (requests < 1) {
+            throw new IllegalArgumentException("requests must be >= 1");
+        }
+        this.requests = requests;
+        return this;
+    }
+    
+    /**
+     * Maximum number of sftp channels (and files) transferring at once.
+     * Defaults to 4.
+     * @param channels The number of channels
+     * @return This action
+     */
+    public SshSftpPutAll channels(int channels) {
+        if (channels < 1) {
+            throw new IllegalArgumentException("channels must be >= 1");
+        }
+        this.channels = channels;
+        return this;
+    }
+    
+    @Override
+    protected Result doRun() throws BlazeException {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        
+        final Timer timer = new Timer();
+        final Set<String> directories = new LinkedHashSet<>();
+        final Map<Path,String> files = new LinkedHashMap<>();
+        
+        directories.add(target);
+        
+        try {
+            for (Path path : paths) {
+                collect(path, relativeTo, target, directories, files);
+            }
+        } catch (IOException e) {
+            throw new BlazeException("Unable to upload", e);
+        }
+        
+        long bytes = sftp.putAll(new ArrayList<>(directories), files, requests, channels);
+        
+        long millis = timer.stop().millis();
+        
+        log.info("Uploaded {} files ({} bytes) to {} in {} ms", files.size(), bytes, target, millis);
+        
+        return new Result(this, null, files.size(), directories.size(), bytes, millis);
+    }
+    
+    /**
+     * Walks the local path adding its remote directories and files.
+     */
+    static void collect(Path path, Path relativeTo, String target, Set<String> directories, Map<Path,String> files) throws IOException {
+        FileHelper.walkRelative(path, relativeTo, (name, p, attrs) -> {
+            if (attrs.isDirectory()) {
+                directories.add(remotePath(target, name));
+            } else {
+                files.put(p, remotePath(target, name));
+            }
+        });
+    }
+    
+    static private String remotePath(String target, String name) {
+        return (target.endsWith("/") ? target + name : target + "/" + name);
+    }
+    
+    static public class Result extends com.fizzed.blaze.core.Result<SshSftpPutAll,Void,Result> {
+        
+        private final int files;
+        private final int directories;
+        private final long bytes;
+        private final long millis;
+        
+        Result(SshSftpPutAll action, Void value, int files, int directories, long bytes, long millis) {
+            super(action, value);
+            this.files = files;
+            this.directories = directories;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+        
+        public int files() {
+            return this.files;
+        }
+        
+        public int directories() {
+            return this.directories;
+        }
+        
+        public long bytes() {
+            return this.bytes;
+        }
+        
+        public long millis() {
+            return this.millis;
+        }
+        
+        public long bytesPerSecond() {
+            return this.bytes * 1000L / Math.max(1L, this.millis);
+        }
+        
+    }
+    
+}
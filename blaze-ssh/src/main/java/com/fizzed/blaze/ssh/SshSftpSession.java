@@ -61,6 +61,15 @@ public abstract class SshSftpSession implements SshSupport {
     // builder-syntax for puts is better
     abstract public SshSftpPut put() throws SshException;
     
+    // recursive put of local files and directories (many files at once)
+    abstract public SshSftpPutAll putAll() throws SshException;
+    
+    // recursive get of a remote directory (many files at once)
+    abstract public SshSftpGetAll getAll() throws SshException;
+    
+    // like putAll but only sends what changed
+    abstract public SshSftpSync sync() throws SshException;
+    
     abstract public void chgrp(String path, int gid);
     
     abstract public void chgrp(Path path, int gid);
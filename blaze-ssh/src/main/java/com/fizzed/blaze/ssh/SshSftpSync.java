@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.core.PathsMixin;
+import com.fizzed.blaze.ssh.impl.JschSftpTransfer;
+import com.fizzed.blaze.ssh.impl.PathHelper;
+import com.fizzed.blaze.ssh.impl.SshSftpSupport;
+import com.fizzed.blaze.util.ObjectHelper;
+import com.fizzed.blaze.util.Timer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Makes a remote directory match local files and directories (like rsync)
+ * so redeploying a mostly unchanged tree only sends what changed.  Remote
+ * files are stat'ed in one batch and skipped if their size and modified
+ * time match the local file (like rsync's quick check).  The modified time
+ * of every remote file written is set to that of the local file.
+ * 
+ * Existing files that changed only have what differs written when the
+ * server can copy data ("copy-data" extension, OpenSSH 9.0+).  The blocks
+ * of the remote file are hashed by running cksum and sha256sum over exec
+ * and found at any offset of the local file with a rolling checksum (like
+ * rsync), or if there is no shell, hashed by sftp ("check-file-handle"
+ * extension) and only compared at the same offsets.  They are written to a
+ * copy that then replaces the remote file so an interrupted sync never
+ * leaves one half patched.  Otherwise changed files are uploaded in full.
+ * 
+ * Files are named the same as putAll().  Remote files that no longer exist
+ * locally are left alone.
+ */
+public class SshSftpSync extends Action<SshSftpSync.Result,Void> implements PathsMixin<SshSftpSync> {
+    static private final Logger log = LoggerFactory.getLogger(SshSftpSync.class);
+    
+    private final SshSftpSupport sftp;
+    private final List<Path> paths;
+    private Path relativeTo;
+    private String target;
+    private boolean checksum;
+    private int blockSize;
+    private int requests;
+    private int channels;
+    
+    public SshSftpSync(SshSftpSession sftp) {
+        super(sftp.session().context());
+        this.sftp = (SshSftpSupport)sftp;
+        this.paths = new ArrayList<>();
+        this.blockSize = JschSftpTransfer.DEFAULT_BLOCK_SIZE;
+        this.requests = JschSftpTransfer.DEFAULT_REQUESTS;
+        this.channels = 4;
+    }
+    
+    @Override
+    public List<Path> getPaths() {
+        return this.paths;
+    }
+    
+    /**
+     * Name files relative to this directory rather than the parent of each
+     * path.
+     * @param relativeTo The directory files are relative to
+     * @return This action
+     */
+    public SshSftpSync relativeTo(Path relativeTo) {
+        this.relativeTo = relativeTo;
+        return this;
+    }
+    
+    public SshSftpSync relativeTo(File relativeTo) {
+        return relativeTo(relativeTo != null ? relativeTo.toPath() : null);
+    }
+    
+    public SshSftpSync relativeTo(String relativeTo) {
+        return relativeTo(relativeTo != null ? Paths.get(relativeTo) : null);
+    }
+    
+    /**
+     * The remote directory to sync into.  It is created if it does not
+     * exist (but its parent must).
+     * @param target The remote directory
+     * @return This action
+     */
+    public SshSftpSync target(String target) {
+        this.target = target;
+        return this;
+    }
+    
+    public SshSftpSync target(Path target) {
+        return target(PathHelper.toString(target));
+    }
+    
+    /**
+     * Compare the content of existing files even if their size and modified
+     * time match (like rsync --checksum).  Useful if the server does not
+     * keep the modified times it is sent.  Files are compared by their
+     * SHA-256 or if the server can't hash them over exec, patched.  Files
+     * that can't be compared either way are left alone (with a warning)
+     * rather than uploaded in full.  Defaults to false.
+     * @param checksum True to always compare content
+     * @return This action
+     */
+    public SshSftpSync checksum(boolean checksum) {
+        this.checksum = checksum;
+        return this;
+    }
+    
+    /**
+     * Size of the blocks compared in changed files (defaults to 64 KB).
+     * Files smaller than a block are always uploaded in full.
+     * @param blockSize The block size in bytes
+     * @return This action
+     */
+    public SshSftpSync blockSize(int blockSize) {
+        if (blockSize < 256) {
+            throw new IllegalArgumentException("blockSize must be >= 256");
+        }
+        this.blockSize = blockSize;
+        return this;
+    }
+    
+    /**
+     * Maximum number of sftp requests in flight per channel (defaults to
+     * 64).
+     * @param requests The number of outstanding requests
+     * @return This action
+     */
+    public SshSftpSync requests(int requests) {
+        if (requests < 1) {
+            throw new IllegalArgumentException("requests must be >= 1");
+        }
+        this.requests = requests;
+        return this;
+    }
+    
+    /**
+     * Maximum number of sftp channels (and files) transferring at once.
+     * Defaults to 4.
+     * @param channels The number of channels
+     * @return This action
+     */
+    public SshSftpSync channels(int channels) {
+        if (channels < 1) {
+            throw new IllegalArgumentException("channels must be >= 1");
+        }
+        this.channels = channels;
+        return this;
+    }
+    
+    @Override
+    protected Result doRun() throws BlazeException {
+        ObjectHelper.requireNonNull(target, "target cannot be null");
+        
+        final Timer timer = new Timer();
+        final Set<String> directories = new LinkedHashSet<>();
+        final Map<Path,String> files = new LinkedHashMap<>();
+        
+        directories.add(target);
+        
+        try {
+            for (Path path : paths) {
+                SshSftpPutAll.collect(path, relativeTo, target, directories, files);
+            }
+        } catch (IOException e) {
+            throw new BlazeException("Unable to sync", e);
+        }
+        
+        JschSftpTransfer.SyncCounts counts
+            = sftp.sync(new ArrayList<>(directories), files, checksum, blockSize, requests, channels);
+        
+        long millis = timer.stop().millis();
+        
+        log.info("Synced {} files to {} ({} unchanged, {} patched, {} uploaded, {} bytes sent) in {} ms",
+            files.size(), target, counts.unchanged(), counts.patched(), counts.uploaded(), counts.bytes(), millis);
+        
+        return new Result(this, null, files.size(), counts, millis);
+    }
+    
+    static public class Result extends com.fizzed.blaze.core.Result<SshSftpSync,Void,Result> {
+        
+        private final int files;
+        private final JschSftpTransfer.SyncCounts counts;
+        private final long millis;
+        
+        Result(SshSftpSync action, Void value, int files, JschSftpTransfer.SyncCounts counts, long millis) {
+            super(action, value);
+            this.files = files;
+            this.counts = counts;
+            this.millis = millis;
+        }
+        
+        public int files() {
+            return this.files;
+        }
+        
+        /**
+         * @return The number of files skipped since they were unchanged
+         */
+        public int unchanged() {
+            return this.counts.unchanged();
+        }
+        
+        /**
+         * @return The number of files only their changed blocks were sent
+         */
+        public int patched() {
+            return this.counts.patched();
+        }
+        
+        /**
+         * @return The number of files uploaded in full
+         */
+        public int uploaded() {
+            return this.counts.uploaded();
+        }
+        
+        /**
+         * @return The number of bytes actually sent
+         */
+        public long bytes() {
+            return this.counts.bytes();
+        }
+        
+        public long millis() {
+            return this.millis;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How to build a local file out of an existing remote one: ranges the
+ * server copies from the remote file and ranges of the local file that are
+ * sent.
+ */
+class BlockDelta {
+    
+    private final long size;
+    private final List<long[]> copies;
+    private List<long[]> literals;
+
+    private BlockDelta(long size) {
+        this.size = size;
+        this.copies = new ArrayList<>();
+    }
+    
+    /**
+     * @return The ranges copied from the remote file in the order of the
+     *      local file, each as { remote offset, local offset, length }
+     */
+    public List<long[]> copies() {
+        return copies;
+    }
+    
+    /**
+     * @return The ranges of the local file that are sent, each as
+     *      { start, end }
+     */
+    public List<long[]> literals() {
+        if (literals == null) {
+            literals = new ArrayList<>();
+            long next = 0;
+            for (long[] copy : copies) {
+                if (copy[1] > next) {
+                    literals.add(new long[] { next, copy[1] });
+                }
+                next = copy[1] + copy[2];
+            }
+            if (size > next) {
+                literals.add(new long[] { next, size });
+            }
+        }
+        return literals;
+    }
+    
+    /**
+     * @param remoteSize The size of the remote file
+     * @return True if the local file is the remote one as is
+     */
+    public boolean isSame(long remoteSize) {
+        return size == remoteSize && copies.size() == 1
+            && copies.get(0)[0] == 0 && copies.get(0)[2] == size;
+    }
+    
+    private void copy(long remote, long local, long length) {
+        long[] last = (copies.isEmpty() ? null : copies.get(copies.size() - 1));
+        if (last != null && last[0] + last[2] == remote && last[1] + last[2] == local) {
+            last[2] += length;
+        } else {
+            copies.add(new long[] { remote, local, length });
+        }
+    }
+    
+    /**
+     * The delta when blocks were only compared at the same offsets.
+     * @param size The size of the local file
+     * @param compared The length of both files that was compared
+     * @param changed The ranges within it that differ (in order)
+     * @return The delta
+     */
+    static public BlockDelta fixed(long size, long compared, List<long[]> changed) {
+        final BlockDelta delta = new BlockDelta(size);
+        long next = 0;
+        for (long[] range : changed) {
+            if (range[0] > next) {
+                delta.copy(next, next, range[0] - next);
+            }
+            next = range[1];
+        }
+        if (compared > next) {
+            delta.copy(next, next, compared - next);
+        }
+        return delta;
+    }
+    
+    /**
+     * Finds the blocks of the remote file at any offset of the local one
+     * (like rsync) so data inserted or removed only costs what changed
+     * rather than every block after it.  The cksum of each block-sized
+     * window of the local file is rolled forward a byte at a time and a
+     * window whose cksum matches a remote block is only taken once their
+     * SHA-256 matches too.
+     * @param file The local file
+     * @param blocks The checksums of the blocks of the remote file
+     * @return The delta
+     */
+    static public BlockDelta rolling(FileChannel file, JschRemoteHashes.Blocks blocks) throws IOException {
+        final long size = file.size();
+        final int blockSize = blocks.blockSize();
+        final BlockDelta delta = new BlockDelta(size);
+        
+        if (blocks.count() == 0 || size < blockSize) {
+            return delta;
+        }
+        
+        // a bit per possible cksum (of its low bits) filters out most misses cheaply
+        final int bits = Math.max(16, Math.min(24, 38 - Integer.numberOfLeadingZeros(blocks.count())));
+        final int mask = (1 << bits) - 1;
+        final long[] filter = new long[(1 << bits) / 64];
+        final Map<Long,Integer> index = new HashMap<>();
+        
+        for (int i = 0; i < blocks.count(); i++) {
+            long weak = blocks.weak(i);
+            int bit = (int)weak & mask;
+            filter[bit >>> 6] |= 1L << bit;
+            index.putIfAbsent(weak, i);
+        }
+        
+        final MessageDigest digest = JschRemoteHashes.sha256();
+        final Cksum cksum = new Cksum(blockSize);
+        final byte[] buffer = new byte[Math.max(4 * blockSize, 1024 * 1024)];
+        long bufferStart = 0;
+        int bufferLength = 0;
+        long position = 0;
+        boolean reset = true;
+        
+        while (position + blockSize <= size) {
+            // the window and the byte after it (if any)
+            final long needed = Math.min(size, position + blockSize + 1);
+            
+            if (needed > bufferStart + bufferLength) {
+                int kept = (int)(bufferStart + bufferLength - position);
+                System.arraycopy(buffer, (int)(position - bufferStart), buffer, 0, kept);
+                bufferStart = position;
+                bufferLength = kept + fill(file, buffer, kept, bufferStart + kept);
+                if (bufferStart + bufferLength < needed) {
+                    throw new IOException("File changed size while being read");
+                }
+            }
+            
+            final int offset = (int)(position - bufferStart);
+            
+            if (reset) {
+                cksum.reset(buffer, offset);
+                reset = false;
+            }
+            
+            final long weak = cksum.value();
+            final int bit = (int)weak & mask;
+            
+            if ((filter[bit >>> 6] & (1L << bit)) != 0) {
+                Integer block = index.get(weak);
+                if (block != null) {
+                    digest.update(buffer, offset, blockSize);
+                    if (MessageDigest.isEqual(digest.digest(), blocks.strong(block))) {
+                        delta.copy((long)block * blockSize, position, blockSize);
+                        position += blockSize;
+                        reset = true;
+                        continue;
+                    }
+                }
+            }
+            
+            if (position + blockSize >= size) {
+                break;
+            }
+            
+            cksum.roll(buffer[offset], buffer[offset + blockSize]);
+            position++;
+        }
+        
+        return delta;
+    }
+    
+    static private int fill(FileChannel file, byte[] buffer, int offset, long position) throws IOException {
+        final ByteBuffer bb = ByteBuffer.wrap(buffer, offset, buffer.length - offset);
+        while (bb.hasRemaining()) {
+            if (file.read(bb, position + bb.position() - offset) < 0) {
+                break;
+            }
+        }
+        return bb.position() - offset;
+    }
+    
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+/**
+ * The checksum of POSIX cksum (a 32-bit CRC of the data followed by its
+ * length) over a window of fixed length that can be rolled forward a byte
+ * at a time (like rsync's weak checksum).  Blocks of a remote file hashed
+ * by running cksum on the server can then be found at any offset of a local
+ * file rather than only at the same one.
+ */
+class Cksum {
+    
+    static private final int[] TABLE = new int[256];
+    
+    static {
+        for (int i = 0; i < 256; i++) {
+            int c = i << 24;
+            for (int j = 0; j < 8; j++) {
+                c = ((c & 0x80000000) != 0 ? (c << 1) ^ 0x04C11DB7 : c << 1);
+            }
+            TABLE[i] = c;
+        }
+    }
+    
+    private final int length;
+    private final int[] out;
+    private int crc;
+
+    /**
+     * @param length The length of the window
+     */
+    public Cksum(int length) {
+        this.length = length;
+        // the crc is linear so the effect of the byte leaving the window is
+        // that of it followed by a window of zeros (leading zeros add nothing)
+        this.out = new int[256];
+        int[] bits = new int[8];
+        for (int bit = 0; bit < 8; bit++) {
+            int c = update(0, 1 << bit);
+            for (int i = 0; i < length; i++) {
+                c = update(c, 0);
+            }
+            bits[bit] = c;
+        }
+        for (int b = 1; b < 256; b++) {
+            int c = 0;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((b & (1 << bit)) != 0) {
+                    c ^= bits[bit];
+                }
+            }
+            this.out[b] = c;
+        }
+    }
+    
+    /**
+     * Starts the window at the offset of the buffer.
+     * @param buffer The buffer holding at least the length of the window
+     * @param offset The start of the window
+     */
+    public void reset(byte[] buffer, int offset) {
+        int c = 0;
+        for (int i = offset; i < offset + length; i++) {
+            c = update(c, buffer[i]);
+        }
+        this.crc = c;
+    }
+    
+    /**
+     * Moves the window forward a byte.
+     * @param leaving The first byte of the window
+     * @param entering The byte after the window
+     */
+    public void roll(byte leaving, byte entering) {
+        this.crc = update(crc, entering) ^ out[leaving & 0xFF];
+    }
+    
+    /**
+     * @return The checksum of the window as printed by cksum
+     */
+    public long value() {
+        int c = crc;
+        for (long n = length; n != 0; n >>>= 8) {
+            c = update(c, (int)n);
+        }
+        return ~c & 0xFFFFFFFFL;
+    }
+    
+    /**
+     * @param buffer The data
+     * @param offset The start of the data
+     * @param length The length of the data
+     * @return The checksum of the data as printed by cksum
+     */
+    static public long of(byte[] buffer, int offset, int length) {
+        Cksum cksum = new Cksum(length);
+        cksum.reset(buffer, offset);
+        return cksum.value();
+    }
+    
+    static private int update(int c, int b) {
+        return (c << 8) ^ TABLE[((c >>> 24) ^ b) & 0xFF];
+    }
+    
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+import com.jcraft.jsch.ConfigRepository;
+import com.jcraft.jsch.HostKeyRepository;
+import com.jcraft.jsch.Identity;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.OpenSSHConfig;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of parsed ssh config, known_hosts and identity files shared across
+ * connects.  An entry is reloaded once its file is modified, changes size or
+ * is replaced so edits to ~/.ssh are picked up by the next connect.
+ * 
+ * Identities are cached as the jsch objects themselves, so a key whose
+ * passphrase was entered for one connect stays decrypted for the next ones.
+ */
+public class JschCache {
+    static private final Logger log = LoggerFactory.getLogger(JschCache.class);
+    
+    static private final JschCache SHARED = new JschCache();
+    
+    /**
+     * @return The cache used by SshConnect by default
+     */
+    static public JschCache shared() {
+        return SHARED;
+    }
+    
+    static private class Entry {
+        
+        final FileTime modified;
+        final long size;
+        final Object fileKey;
+        final Object value;
+
+        Entry(BasicFileAttributes attrs, Object value) {
+            this.modified = attrs.lastModifiedTime();
+            this.size = attrs.size();
+            this.fileKey = attrs.fileKey();
+            this.value = value;
+        }
+        
+        boolean matches(BasicFileAttributes attrs) {
+            return this.modified.equals(attrs.lastModifiedTime())
+                && this.size == attrs.size()
+                && Objects.equals(this.fileKey, attrs.fileKey());
+        }
+        
+    }
+    
+    private interface Loader {
+        Object load(String file) throws IOException, JSchException;
+    }
+    
+    private final ConcurrentHashMap<String,Entry> entries;
+    private final AtomicLong loads;
+    
+    public JschCache() {
+        this.entries = new ConcurrentHashMap<>();
+        this.loads = new AtomicLong();
+    }
+    
+    /**
+     * @param configFile The ssh config file (e.g. ~/.ssh/config)
+     * @return The parsed config
+     * @throws FileNotFoundException If the file does not exist
+     */
+    public ConfigRepository config(Path configFile) throws IOException {
+        try {
+            return (ConfigRepository)get("config", configFile, (f) -> OpenSSHConfig.parseFile(f));
+        } catch (JSchException e) {
+            throw new IOException(e.getMessage(), e);     // never thrown
+        }
+    }
+    
+    /**
+     * @param knownHostsFile The known_hosts file (e.g. ~/.ssh/known_hosts)
+     * @return The parsed host keys (still updated and saved by jsch when a
+     *      new host is accepted)
+     * @throws FileNotFoundException If the file does not exist
+     * @throws JSchException If the file could not be parsed
+     */
+    public HostKeyRepository knownHosts(Path knownHostsFile) throws IOException, JSchException {
+        return (HostKeyRepository)get("known_hosts", knownHostsFile, (f) -> {
+            JSch jsch = new JSch();
+            jsch.setKnownHosts(f);
+            return jsch.getHostKeyRepository();
+        });
+    }
+    
+    /**
+     * @param identityFile The private key file (e.g. ~/.ssh/id_rsa)
+     * @return The identity (decrypted once its passphrase has been supplied)
+     * @throws FileNotFoundException If the file does not exist
+     * @throws JSchException If the file is not a valid private key
+     */
+    public Identity identity(Path identityFile) throws IOException, JSchException {
+        return (Identity)get("identity", identityFile, (f) -> {
+            // a throwaway jsch is simply the only public way to load one
+            JSch jsch = new JSch();
+            jsch.addIdentity(f);
+            return jsch.getIdentityRepository().getIdentities().get(0);
+        });
+    }
+    
+    /**
+     * @return The number of times a file was (re)loaded rather than cached
+     */
+    public long loads() {
+        return this.loads.get();
+    }
+    
+    public void clear() {
+        this.entries.clear();
+    }
+    
+    private Object get(String type, Path file, Loader loader) throws IOException, JSchException {
+        Path absFile = file.toAbsolutePath();
+        
+        if (!Files.exists(absFile)) {
+            throw new FileNotFoundException(absFile.toString());
+        }
+        
+        String key = type + ":" + absFile;
+        BasicFileAttributes attrs = Files.readAttributes(absFile, BasicFileAttributes.class);
+        
+        Entry entry = this.entries.get(key);
+        
+        if (entry != null && entry.matches(attrs)) {
+            return entry.value;
+        }
+        
+        // racing connects may both load it, but they'd load the same thing
+        log.debug("Loading ssh {} {}", type, absFile);
+        
+        Object value = loader.load(absFile.toString());
+        
+        this.entries.put(key, new Entry(attrs, value));
+        this.loads.incrementAndGet();
+        
+        return value;
+    }
+    
+}
@@ -36,14 +36,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fizzed.blaze.ssh.SshConnect;
 import com.fizzed.blaze.ssh.SshSession;
 import com.fizzed.blaze.ssh.util.ProxyCommand;
+import com.fizzed.blaze.ssh.util.ProxyJump;
 import com.fizzed.blaze.ssh.util.SshCommand;
 import com.fizzed.blaze.util.ObjectHelper;
+import com.fizzed.blaze.util.Streamables;
 import com.jcraft.jsch.Proxy;
 import java.nio.file.attribute.PosixFileAttributeView;
 
@@ -58,7 +61,15 @@ public class JschConnect extends SshConnect {
     private Path knownHostsFile;
     private List<Path> identityFiles;
     private boolean hostChecking;
+    // null means whatever ssh config or jsch defaults to
+    private Integer compressionLevel;
+    private List<String> ciphers;
+    private List<String> macs;
     private Proxy proxy;
+    private SshSession proxySession;
+    private boolean proxyAutoclose;
+    private JschSessionPool pool;
+    private JschCache cache;
     
     public JschConnect(Context context) {
         this(context, new MutableUri("ssh:/"));
@@ -75,6 +86,7 @@ public class JschConnect extends SshConnect {
         this.identityFiles.add(context.withUserDir(".ssh/id_rsa"));
         this.identityFiles.add(context.withUserDir(".ssh/id_dsa"));
         this.hostChecking = true;
+        this.cache = JschCache.shared();
     }
     
     // for setting up proxies with the exact same settings by default
@@ -87,6 +99,12 @@ public class JschConnect extends SshConnect {
         connect.knownHostsFile = this.knownHostsFile;
         connect.identityFiles = new ArrayList<>(this.identityFiles);
         connect.hostChecking = this.hostChecking;
+        connect.ciphers = this.ciphers;
+        connect.macs = this.macs;
+        connect.pool = this.pool;
+        connect.cache = this.cache;
+        // compressionLevel is not copied since compressing an already
+        // encrypted tunnel is wasted effort
         return connect;
     }
 
@@ -101,6 +119,27 @@ public class JschConnect extends SshConnect {
         return this;
     }
 
+    @Override
+    public JschConnect compressionLevel(int level) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9 (actual = " + level + ")");
+        }
+        this.compressionLevel = level;
+        return this;
+    }
+
+    @Override
+    public JschConnect ciphers(String... ciphers) {
+        this.ciphers = Arrays.asList(ciphers);
+        return this;
+    }
+
+    @Override
+    public JschConnect macs(String... macs) {
+        this.macs = Arrays.asList(macs);
+        return this;
+    }
+
     @Override
     public JschConnect keepAliveInterval(long keepAliveInterval) {
         this.keepAliveInterval = keepAliveInterval;
@@ -145,8 +184,37 @@ public class JschConnect extends SshConnect {
 
     @Override
     public SshConnect proxy(SshSession session, boolean autoclose) {
-        // NOTE: this defaults to using "nc %h %p"
-        this.proxy = JschExecProxy.of(session, autoclose);
+        // tunneled with a direct-tcpip channel (like ProxyJump)
+        this.proxy = JschForwardProxy.of(session, autoclose);
+        this.proxySession = session;
+        this.proxyAutoclose = autoclose;
+        return this;
+    }
+    
+    @Override
+    public JschConnect pooled(boolean pooled) {
+        this.pool = (pooled ? JschSessionPool.shared() : null);
+        return this;
+    }
+    
+    /**
+     * Acquire the session from the supplied pool (rather than the shared one).
+     * @param pool The pool or null to disable pooling
+     * @return This connect
+     */
+    public JschConnect pool(JschSessionPool pool) {
+        this.pool = pool;
+        return this;
+    }
+    
+    /**
+     * Reuse the parsed ssh config, known_hosts and identities from the supplied
+     * cache (rather than the shared one).
+     * @param cache The cache or null to load them fresh on this connect
+     * @return This connect
+     */
+    public JschConnect cache(JschCache cache) {
+        this.cache = cache;
         return this;
     }
     
@@ -156,6 +224,206 @@ public class JschConnect extends SshConnect {
         ObjectHelper.requireNonNull(uri.getScheme(), "uri scheme is required for ssh (e.g. ssh://user@host)");
         ObjectHelper.requireNonNull(uri.getHost(), "uri host is required for ssh");
         
+        if (this.pool == null) {
+            return createResult(connect());
+        }
+        
+        JschSessionPool.Acquired acquired = this.pool.acquire(this.context, poolKey(), this::connect);
+        
+        // an existing connection already has its own proxy
+        if (!acquired.connected() && this.proxySession != null && this.proxyAutoclose) {
+            try {
+                this.proxySession.close();
+            } catch (IOException e) {
+                log.debug("Unable to close unused proxy session", e);
+            }
+        }
+        
+        return createResult(acquired.session());
+    }
+    
+    private Proxy jump(ProxyJump jump) {
+        SshSession session = null;
+        try {
+            for (MutableUri hop : jump.getHops()) {
+                SshConnect connect = this.newConnect(hop);
+                if (session != null) {
+                    // closes the previous hops with it
+                    connect.proxy(session, true);
+                }
+                session = connect.run();
+            }
+        } catch (RuntimeException e) {
+            Streamables.closeQuietly(session);
+            throw e;
+        }
+        
+        // "none" is no proxy at all
+        return (session != null ? JschForwardProxy.of(session, true) : null);
+    }
+    
+    private Proxy proxyFor(SshSession session, SshCommand command) {
+        // "-W %h:%p" and "nc %h %p" are simply forwards we can do ourselves
+        String[] forward = null;
+        if (command.getCommands() == null && command.getFwdHostPort() != null) {
+            forward = command.getFwdHostPort().split(":");
+        } else if (command.getCommands() != null && command.getCommands().size() == 3
+                && command.getCommands().get(0).equals("nc")) {
+            forward = command.getCommands().subList(1, 3).toArray(new String[2]);
+        }
+        
+        if (forward != null && forward.length == 2
+                && (forward[1].equals("%p") || forward[1].matches("\\d+"))) {
+            String host = (forward[0].equals("%h") ? null : forward[0]);
+            Integer port = (forward[1].equals("%p") ? null : Integer.valueOf(forward[1]));
+            return JschForwardProxy.of(session, true, host, port);
+        }
+        
+        // anything else is exec'ed on the jump host
+        return JschExecProxy.of(session, true, command.toCommand());
+    }
+    
+    private void configureAlgorithms(Session jschSession, Config config) {
+        // NOTE: jsch applies the ssh config when the session is created, but
+        // only if its values are plain lists and jzlib is around, so we apply
+        // them ourselves (with what was set on this connect taking precedence)
+        Integer level = this.compressionLevel;
+        if (level == null && config != null) {
+            String compression = config.getValue("Compression");
+            if (compression != null) {
+                if (compression.trim().equalsIgnoreCase("yes")) {
+                    String configLevel = config.getValue("CompressionLevel");
+                    level = (configLevel != null ? configCompressionLevel(configLevel) : 6);
+                } else {
+                    level = 0;
+                }
+            }
+        }
+        
+        if (level != null) {
+            // delayed zlib (after auth) is preferred by openssh servers
+            String compression = (level > 0 ? "zlib@openssh.com,zlib,none" : "none");
+            log.debug("Using ssh compression {} (level {})", compression, level);
+            jschSession.setConfig("compression.s2c", compression);
+            jschSession.setConfig("compression.c2s", compression);
+            if (level > 0) {
+                jschSession.setConfig("compression_level", level.toString());
+            }
+        }
+        
+        this.preferAlgorithms(jschSession, "cipher", this.ciphers,
+            (config != null ? config.getValue("Ciphers") : null));
+        
+        this.preferAlgorithms(jschSession, "mac", this.macs,
+            (config != null ? config.getValue("MACs") : null));
+    }
+    
+    static int configCompressionLevel(String value) {
+        try {
+            int level = Integer.parseInt(value.trim());
+            if (level >= 1 && level <= 9) {
+                return level;
+            }
+        } catch (NumberFormatException e) {
+            // fall thru
+        }
+        throw new SshException("Invalid CompressionLevel '" + value + "' in ssh config (must be between 1 and 9)");
+    }
+    
+    private void preferAlgorithms(Session jschSession, String type, List<String> preferred, String configured) {
+        List<String> algorithms = preferred;
+        
+        if (algorithms == null) {
+            if (configured == null) {
+                return;     // jsch defaults
+            }
+            algorithms = algorithmList(configured, JSch.getConfig(type + ".c2s"));
+        }
+        
+        // jsch fails the key exchange on an algorithm it has no class for
+        List<String> supported = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            if (JSch.getConfig(algorithm) != null) {
+                supported.add(algorithm);
+            } else {
+                log.debug("Skipping ssh {} {} (not supported)", type, algorithm);
+            }
+        }
+        
+        if (supported.isEmpty()) {
+            throw new BlazeException("None of the ssh " + type + "s " + algorithms + " are supported");
+        }
+        
+        String value = String.join(",", supported);
+        log.debug("Using ssh {}s {}", type, value);
+        jschSession.setConfig(type + ".c2s", value);
+        jschSession.setConfig(type + ".s2c", value);
+    }
+    
+    /**
+     * Builds the list of algorithms from an OpenSSH config value such as
+     * "aes256-ctr,aes128-ctr" or one that appends to ("+aes256-cbc"), removes
+     * from ("-aes128-cbc") or prepends to ("^aes256-ctr") the defaults.
+     */
+    static List<String> algorithmList(String value, String defaults) {
+        value = value.trim();
+        
+        List<String> list = new ArrayList<>(Arrays.asList(defaults.split(",")));
+        
+        char op = (value.isEmpty() ? ' ' : value.charAt(0));
+        List<String> names = new ArrayList<>();
+        for (String name : (op == '+' || op == '-' || op == '^' ? value.substring(1) : value).split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        
+        switch (op) {
+            case '+':
+                list.removeAll(names);
+                list.addAll(names);
+                return list;
+            case '-':
+                list.removeAll(names);
+                return list;
+            case '^':
+                list.removeAll(names);
+                list.addAll(0, names);
+                return list;
+            default:
+                return names;
+        }
+    }
+    
+    private String poolKey() {
+        // everything that could change what we would connect to or as
+        StringBuilder key = new StringBuilder()
+            .append(uri.getUsername() != null ? uri.getUsername() : System.getProperty("user.name"))
+            .append('@').append(uri.getHost())
+            .append(':').append(uri.getPort() != null ? uri.getPort() : 22)
+            .append(";password=").append(uri.getPassword() != null ? uri.getPassword().hashCode() : "")
+            .append(";config=").append(configFile)
+            .append(";knownHosts=").append(knownHostsFile)
+            .append(";identities=").append(identityFiles)
+            .append(";hostChecking=").append(hostChecking)
+            .append(";keepAlive=").append(keepAliveInterval)
+            .append(";compression=").append(compressionLevel)
+            .append(";ciphers=").append(ciphers)
+            .append(";macs=").append(macs);
+        
+        if (this.proxySession != null) {
+            key.append(";proxy=");
+            if (this.proxySession instanceof JschSession && ((JschSession)this.proxySession).poolKey() != null) {
+                key.append('[').append(((JschSession)this.proxySession).poolKey()).append(']');
+            } else {
+                key.append(System.identityHashCode(this.proxySession));
+            }
+        }
+        
+        return key.toString();
+    }
+    
+    private JschSession connect() {
         /*
         if (!uri.getScheme().equals("ssh")) {
             throw new IllegalArgumentException("Uri scheme invalid (e.g. ssh://user@host) (actual = " + uri.getScheme() + ")");
@@ -168,7 +436,14 @@ public class JschConnect extends SshConnect {
         JSch.setLogger(new BlazeJschLogger());
         
         Session jschSession = null;
+        Config config = null;
         JSch jsch = new JSch();
+        // resolved per connect so a reconnect never reuses a closed hop
+        Proxy proxy = this.proxy;
+        // a hop session opened by this connect (closed if it fails)
+        Proxy hop = null;
+        // a fresh cache simply loads everything for this connect only
+        JschCache cache = (this.cache != null ? this.cache : new JschCache());
         try {
             //
             // mimic openssh ~.ssh/config
@@ -176,32 +451,32 @@ public class JschConnect extends SshConnect {
             try {
                 log.debug("Using ssh config {}", configFile);
                 
-                ConfigRepository configRepository =
-                    com.jcraft.jsch.OpenSSHConfig.parseFile(configFile.toAbsolutePath().toString());
+                ConfigRepository configRepository = cache.config(configFile);
             
                 // is there a config for this host?
-                Config config = configRepository.getConfig(uri.getHost());
+                config = configRepository.getConfig(uri.getHost());
                 
                 jsch.setConfigRepository(configRepository);
             
                 if (config != null) {
                     
-                    // has proxy command?
+                    // has proxy jump or command?
+                    String proxyJump = config.getValue("ProxyJump");
                     String proxyCommand = config.getValue("ProxyCommand");
-                    if (proxyCommand != null) {
-                        if (this.proxy != null) {
-                            log.debug("Session proxy set but host has ProxyCommand");
+                    if (proxyJump != null || proxyCommand != null) {
+                        if (proxy != null) {
+                            log.debug("Session proxy set but host has ProxyJump or ProxyCommand");
+                        } else if (proxyJump != null) {
+                            // "jump1.example.com,fred@jump2.example.com" -> each hop thru the last
+                            hop = this.jump(ProxyJump.parse(proxyJump));
+                            proxy = hop;
                         } else {
                             // "ssh jump.example.com nc %h %p" -> a structured command
                             SshCommand command = ProxyCommand.parse(proxyCommand).getSshCommand();
                             SshConnect connect = this.newConnect(command.toUri());
-                            try {
-                                // connect and then use that session as our proxy
-                                this.proxy = JschExecProxy.of(
-                                    connect.run(), true, command.toCommand());
-                            } catch (Exception e) {
-                                throw e;
-                            }
+                            // connect and then use that session as our proxy
+                            hop = this.proxyFor(connect.run(), command);
+                            proxy = hop;
                         }
                     }
                     
@@ -232,10 +507,11 @@ public class JschConnect extends SshConnect {
             jschSession.setDaemonThread(true);
             jschSession.setUserInfo(new BlazeJschUserInfo(jschSession));
             
-            // configure way more ciphers by default????
-            //jschSession.setConfig("cipher.s2c", "aes128-cbc,3des-cbc,blowfish-cbc");
-            //jschSession.setConfig("cipher.c2s", "aes128-cbc,3des-cbc,blowfish-cbc");
-            //jschSession.setConfig("CheckCiphers", "aes128-cbc"); 
+            //
+            // mimic openssh Compression, Ciphers & MACs
+            //
+            
+            this.configureAlgorithms(jschSession, config);
             
             
             //
@@ -273,7 +549,7 @@ public class JschConnect extends SshConnect {
                 if (true) {
                     String f = knownHostsFile.toAbsolutePath().toString();
                     log.debug("Setting ssh known_hosts to {}", f);
-                    jsch.setKnownHosts(f);
+                    jsch.setHostKeyRepository(cache.knownHosts(knownHostsFile));
                     // in addition to storing known hosts, hash them as well
                     JSch.setConfig("HashKnownHosts",  "yes");
                 }
@@ -305,8 +581,8 @@ public class JschConnect extends SshConnect {
                         String f = identityFile.toAbsolutePath().toString();
                         log.debug("Adding ssh identity to {}", f);
                         try {
-                            jsch.addIdentity(f);
-                        } catch (JSchException e) {
+                            jsch.addIdentity(cache.identity(identityFile), null);
+                        } catch (JSchException | IOException e) {
                             throw new BlazeException("Unable to add ssh identity", e);
                         }
                     }
@@ -328,10 +604,10 @@ public class JschConnect extends SshConnect {
             //jschSession.setConfig("PreferredAuthentications", "publickey,password");
             
             String proxyInfo = "";
-            if (this.proxy != null) {
-                jschSession.setProxy(this.proxy);
+            if (proxy != null) {
+                jschSession.setProxy(proxy);
                 // via hostname
-                proxyInfo = " via " + this.proxy;
+                proxyInfo = " via " + proxy;
             }
             
             log.info("Open ssh://{}@{}:{}{}...",
@@ -351,11 +627,27 @@ public class JschConnect extends SshConnect {
             log.info("Connected ssh://{}@{}:{}{} in {} ms",
                 jschSession.getUserName(), jschSession.getHost(), jschSession.getPort(), proxyInfo, (stop-start));
             
-            return createResult(new JschSession(this.context, this.uri.toImmutableUri(), jsch, jschSession));
+            return new JschSession(this.context, this.uri.toImmutableUri(), jsch, jschSession);
         } catch (JSchException e) {
+            closeQuietly(hop);
             throw tryToUnwrap(e);
         } catch (IOException e) {
+            closeQuietly(hop);
             throw new SshException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            closeQuietly(hop);
+            throw e;
+        }
+    }
+    
+    static private void closeQuietly(Proxy hop) {
+        // also closes the hop sessions before it
+        if (hop != null) {
+            try {
+                hop.close();
+            } catch (RuntimeException e) {
+                log.debug("Unable to close proxy", e);
+            }
         }
     }
     
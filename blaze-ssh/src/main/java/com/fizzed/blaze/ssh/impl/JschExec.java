@@ -25,12 +25,13 @@ import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fizzed.blaze.core.ExecMixin;
+import com.fizzed.blaze.util.CountingInputStream;
+import com.fizzed.blaze.util.CountingOutputStream;
 import com.fizzed.blaze.util.InterruptibleInputStream;
 import java.io.InputStream;
 import org.apache.commons.io.output.NullOutputStream;
@@ -78,9 +79,10 @@ public class JschExec extends SshExec implements ExecMixin<SshExec> {
             // enters the read() method.
             
             // setup in/out streams
-            final InputStream is = (pipeInput != null ? new InterruptibleInputStream(pipeInput.stream()) : null);
-            final OutputStream os = (pipeOutput != null ? pipeOutput.stream() : new NullOutputStream());
-            final OutputStream es = (pipeErrorToOutput ? os : (pipeError != null ? pipeError.stream() : new NullOutputStream()));
+            final CountingInputStream cis = (pipeInput != null ? new CountingInputStream(pipeInput.stream()) : null);
+            final InputStream is = (cis != null ? new InterruptibleInputStream(cis) : null);
+            final CountingOutputStream os = new CountingOutputStream(pipeOutput != null ? pipeOutput.stream() : new NullOutputStream());
+            final CountingOutputStream es = (pipeErrorToOutput ? os : new CountingOutputStream(pipeError != null ? pipeError.stream() : new NullOutputStream()));
             
             if (is != null) {
                 channel.setInputStream(is, false);
@@ -90,31 +92,23 @@ public class JschExec extends SshExec implements ExecMixin<SshExec> {
             final CountDownLatch outputStreamClosedSignal = new CountDownLatch(1);
             final CountDownLatch errorStreamClosedSignal = new CountDownLatch(1);
             
-            // determine final ouput and then wrap to monitor for close events
-            if (os != null) {
-                channel.setOutputStream(new WrappedOutputStream(os) {
-                    @Override
-                    public void close() throws IOException {
-                        outputStreamClosedSignal.countDown();
-                        super.close();
-                    }
-                }, false);
-            } else {
-                outputStreamClosedSignal.countDown();
-            }
-            
-            // determine final error and then wrap to monitor for close events
-            if (es != null) {
-                channel.setErrStream(new WrappedOutputStream(es) {
-                    @Override
-                    public void close() throws IOException {
-                        errorStreamClosedSignal.countDown();
-                        super.close();
-                    }
-                }, false);
-            } else {
-                errorStreamClosedSignal.countDown();
-            }
+            // wrap final output to monitor for close events
+            channel.setOutputStream(new WrappedOutputStream(os) {
+                @Override
+                public void close() throws IOException {
+                    outputStreamClosedSignal.countDown();
+                    super.close();
+                }
+            }, false);
+            
+            // wrap final error to monitor for close events
+            channel.setErrStream(new WrappedOutputStream(es) {
+                @Override
+                public void close() throws IOException {
+                    errorStreamClosedSignal.countDown();
+                    super.close();
+                }
+            }, false);
             
             // building the command may be a little tricky, not sure about spaces...
             final StringBuilder sb = new StringBuilder(PathHelper.toString(command));
@@ -144,6 +138,9 @@ public class JschExec extends SshExec implements ExecMixin<SshExec> {
             outputStreamClosedSignal.await();
             errorStreamClosedSignal.await();
             
+            bytesOut(cis != null ? cis.count() : 0L);
+            bytesIn(os.count() + (es != os ? es.count() : 0L));
+            
             Integer exitValue = channel.getExitStatus();
             
             if (!this.exitValues.contains(exitValue)) {
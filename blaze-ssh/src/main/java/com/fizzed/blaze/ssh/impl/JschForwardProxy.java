@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+import com.fizzed.blaze.ssh.SshSession;
+import com.jcraft.jsch.ChannelDirectTCPIP;
+import com.jcraft.jsch.Proxy;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Proxies a connection thru another ssh session with a "direct-tcpip"
+ * channel (the same as OpenSSH's ProxyJump or "ssh -W %h:%p").  Unlike
+ * exec'ing netcat on the jump host no remote process is started per hop
+ * and the jump host does not need nc installed.
+ */
+public class JschForwardProxy implements Proxy {
+    static private final Logger log = LoggerFactory.getLogger(JschForwardProxy.class);
+
+    private final SshSession session;
+    private final Session jschSession;
+    private final boolean autoclose;
+    private final String host;
+    private final Integer port;
+    private ChannelDirectTCPIP channel;
+    private InputStream input;
+    private OutputStream output;
+    
+    static public JschForwardProxy of(SshSession session, boolean autoclose) {
+        // forward to whatever host and port is being connected to
+        return of(session, autoclose, null, null);
+    }
+    
+    /**
+     * Creates a proxy that always forwards to the supplied host and port
+     * (e.g. "ssh -W otherhost:22") rather than the ones being connected to.
+     * @param session The session to proxy thru
+     * @param autoclose If true then the session will be closed with the proxy
+     * @param host The host to forward to or null for the one connected to
+     * @param port The port to forward to or null for the one connected to
+     * @return The proxy
+     */
+    static public JschForwardProxy of(SshSession session, boolean autoclose, String host, Integer port) {
+        Objects.requireNonNull(session);
+        if (session instanceof JschSession) {
+            // unwrap jsch session
+            return new JschForwardProxy(session, ((JschSession)session).getJschSession(), autoclose, host, port);
+        }
+        throw new IllegalArgumentException("SshSession was not an instanceof " + JschSession.class.getCanonicalName()
+            + " (actual = " + session.getClass().getCanonicalName() + ")");
+    }
+    
+    private JschForwardProxy(SshSession session, Session jschSession, boolean autoclose, String host, Integer port) {
+        Objects.requireNonNull(session);
+        Objects.requireNonNull(jschSession);
+        this.session = session;
+        this.jschSession = jschSession;
+        this.autoclose = autoclose;
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void connect(final SocketFactory socketFactory, final String host, final int port, final int timeout) throws Exception {
+        final String targetHost = (this.host != null ? this.host : host);
+        final int targetPort = (this.port != null ? this.port : port);
+        
+        log.debug("ssh proxy forward to {}:{} via {}", targetHost, targetPort, jschSession.getHost());
+        
+        channel = (ChannelDirectTCPIP)jschSession.openChannel("direct-tcpip");
+        channel.setHost(targetHost);
+        channel.setPort(targetPort);
+        
+        // streams must be setup before connecting
+        input = channel.getInputStream();
+        output = channel.getOutputStream();
+        
+        channel.connect(timeout);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return input;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return output;
+    }
+
+    @Override
+    public Socket getSocket() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        log.debug("ssh proxy close()");
+        if (channel != null) {
+            channel.disconnect();
+        }
+        if (autoclose) {
+            try {
+                this.session.close();
+            } catch (IOException e) {
+                log.error("Unable to cleanly close proxy ssh session", e);
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return this.jschSession.getHost();
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.ssh.SshExec;
+import com.fizzed.blaze.ssh.SshMultiExec;
+import com.fizzed.blaze.ssh.SshSession;
+
+public class JschMultiExec extends SshMultiExec {
+    
+    public JschMultiExec(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected SshExec newExec(SshSession session) {
+        return new JschExec(context, session);
+    }
+    
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.ssh.SshSession;
+import com.fizzed.blaze.util.CaptureOutput;
+import com.fizzed.blaze.util.Streamables;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashes remote files by running sh, cksum, dd, head and sha256sum (or
+ * shasum) on the server over exec channels of the session.  Used when the
+ * sftp server is unable to hash its own files (e.g. OpenSSH's sftp-server
+ * does not support the "check-file-handle" extension).  The script is sent
+ * as the input of sh so paths are quoted only once and it exits on its own
+ * (the input is never closed).  Its output is checked rather than its exit
+ * value.  Once a script fails (e.g. an account w/o a shell) none are tried again.
+ */
+public class JschRemoteHashes {
+    static private final Logger log = LoggerFactory.getLogger(JschRemoteHashes.class);
+    
+    static private final String HASHER =
+        "if command -v sha256sum >/dev/null 2>&1; then H=sha256sum\n"
+        + "elif command -v shasum >/dev/null 2>&1; then H='shasum -a 256'\n"
+        + "else exit 3; fi\n";
+    
+    /**
+     * The checksums of the whole blocks of a remote file.
+     */
+    static public class Blocks {
+        
+        private final int blockSize;
+        private final long[] weak;
+        private final byte[][] strong;
+
+        public Blocks(int blockSize, long[] weak, byte[][] strong) {
+            this.blockSize = blockSize;
+            this.weak = weak;
+            this.strong = strong;
+        }
+
+        public int blockSize() {
+            return blockSize;
+        }
+        
+        public int count() {
+            return weak.length;
+        }
+        
+        /**
+         * @param block The index of the block
+         * @return The checksum of the block as printed by cksum
+         * @see Cksum
+         */
+        public long weak(int block) {
+            return weak[block];
+        }
+        
+        /**
+         * @param block The index of the block
+         * @return The SHA-256 of the block
+         */
+        public byte[] strong(int block) {
+            return strong[block];
+        }
+        
+    }
+    
+    private final SshSession session;
+    private volatile boolean unsupported;
+
+    public JschRemoteHashes(SshSession session) {
+        this.session = session;
+    }
+    
+    /**
+     * @return False once the server was unable to run a script
+     */
+    public boolean isSupported() {
+        return !unsupported;
+    }
+    
+    /**
+     * Hashes every whole block of the remote file twice: with cksum (that
+     * can be rolled locally) and SHA-256 (to confirm what it matched).
+     * GNU split hashes each in a single pass, otherwise dd reads one block
+     * at a time.
+     * @param path The remote file
+     * @param blockSize The size of the blocks
+     * @param count The number of whole blocks
+     * @return The checksums or null if they could not be computed
+     */
+    public Blocks blocks(String path, int blockSize, int count) {
+        final String script = HASHER
+            + "f=" + JschScp.quote(path) + "; b=" + blockSize + "; n=" + count + "\n"
+            + "if split -b $b --filter=cksum /dev/null 2>/dev/null; then\n"
+            + "  split -b $b --filter=cksum -- \"$f\"; echo -; split -b $b --filter=\"$H\" -- \"$f\"\n"
+            + "else\n"
+            + "  i=0; while [ $i -lt $n ]; do dd if=\"$f\" bs=$b skip=$i count=1 2>/dev/null | cksum; i=$((i+1)); done\n"
+            + "  echo -\n"
+            + "  i=0; while [ $i -lt $n ]; do dd if=\"$f\" bs=$b skip=$i count=1 2>/dev/null | $H; i=$((i+1)); done\n"
+            + "fi\n";
+        
+        final List<String> lines = run(script);
+        
+        if (lines == null) {
+            return null;
+        }
+        
+        // split also hashes a partial last block
+        final int separator = lines.indexOf("-");
+        
+        if (separator < count || lines.size() - separator - 1 < count) {
+            log.debug("Unable to hash the blocks of {} (changed or unreadable?)", path);
+            return null;
+        }
+        
+        final long[] weak = new long[count];
+        final byte[][] strong = new byte[count][];
+        
+        for (int i = 0; i < count; i++) {
+            String[] cksum = lines.get(i).trim().split("\\s+");
+            strong[i] = hex(lines.get(separator + 1 + i));
+            if (cksum.length < 2 || !cksum[1].equals(Integer.toString(blockSize)) || strong[i] == null) {
+                log.debug("Unable to hash the blocks of {} (changed or unreadable?)", path);
+                return null;
+            }
+            weak[i] = Long.parseLong(cksum[0]);
+        }
+        
+        return new Blocks(blockSize, weak, strong);
+    }
+    
+    /**
+     * Hashes the remote files with SHA-256 all with a single script.
+     * @param paths The remote files
+     * @return The hash of each file that could be read or null if the
+     *      server is unable to hash files
+     */
+    public Map<String,byte[]> files(List<String> paths) {
+        final StringBuilder script = new StringBuilder(HASHER);
+        
+        for (String path : paths) {
+            script.append("h=$($H < ").append(JschScp.quote(path)).append(" 2>/dev/null) || h=-; echo \"${h%% *}\"\n");
+        }
+        
+        final List<String> lines = run(script.toString());
+        
+        if (lines == null || lines.size() < paths.size()) {
+            return null;
+        }
+        
+        final Map<String,byte[]> hashes = new HashMap<>();
+        
+        for (int i = 0; i < paths.size(); i++) {
+            byte[] hash = hex(lines.get(i));
+            if (hash != null) {
+                hashes.put(paths.get(i), hash);
+            }
+        }
+        
+        return hashes;
+    }
+    
+    /**
+     * @param path The remote file
+     * @return Its SHA-256 or null if it could not be hashed
+     */
+    public byte[] file(String path) {
+        Map<String,byte[]> hashes = files(Collections.singletonList(path));
+        return (hashes != null ? hashes.get(path) : null);
+    }
+    
+    /**
+     * @param path The remote file
+     * @param length The number of bytes from its start
+     * @return The SHA-256 of its first bytes or null if they could not be
+     *      hashed (a file shorter than the length never matches)
+     */
+    public byte[] prefix(String path, long length) {
+        final List<String> lines = run(HASHER
+            + "h=$(head -c " + length + " " + JschScp.quote(path) + " | $H) || h=-; echo \"${h%% *}\"\n");
+        
+        return (lines != null ? hex(lines.get(0)) : null);
+    }
+    
+    /**
+     * The SHA-256 of a range of a local file to compare with the remote ones.
+     * @param file The local file
+     * @param start The start of the range
+     * @param end The end of the range
+     * @return The hash
+     */
+    static public byte[] sha256(FileChannel file, long start, long end) throws IOException {
+        final MessageDigest digest = sha256();
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        
+        for (long position = start; position < end; ) {
+            buffer.clear().limit((int)Math.min(buffer.capacity(), end - position));
+            int n = file.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("File changed size while being read");
+            }
+            digest.update(buffer.array(), 0, n);
+            position += n;
+        }
+        
+        return digest.digest();
+    }
+    
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Runs the script, one at a time since jsch does not reliably open
+     * channels of the same session concurrently.
+     * @return The lines of its output or null if it failed
+     */
+    private synchronized List<String> run(String script) {
+        if (unsupported) {
+            return null;
+        }
+        
+        final CaptureOutput output = Streamables.captureOutput();
+        final byte[] input = (script + "exit 0\n").getBytes(StandardCharsets.UTF_8);
+        
+        try {
+            new JschExec(session.context(), session)
+                .command("sh")
+                .pipeInput(Streamables.input(new ByteArrayInputStream(input)))
+                .pipeOutput(output)
+                .pipeError(Streamables.nullOutput())
+                .run();
+        } catch (BlazeException e) {
+            log.debug("Unable to hash remote files with a script (will not try again): {}", e.getMessage());
+            unsupported = true;
+            return null;
+        }
+        
+        return Arrays.asList(output.asString(StandardCharsets.UTF_8).split("\r?\n"));
+    }
+    
+    static private byte[] hex(String line) {
+        // e.g. "<hash>  -" from sha256sum
+        final String value = line.trim().split("\\s+")[0];
+        
+        if (value.length() != 64) {
+            return null;
+        }
+        
+        final byte[] bytes = new byte[32];
+        
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(value.charAt(2 * i), 16);
+            int low = Character.digit(value.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte)((high << 4) | low);
+        }
+        
+        return bytes;
+    }
+    
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+import com.fizzed.blaze.Context;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.internal.FileHelper;
+import com.fizzed.blaze.ssh.SshException;
+import com.fizzed.blaze.ssh.SshScp;
+import com.fizzed.blaze.ssh.SshSession;
+import com.fizzed.blaze.util.ObjectHelper;
+import com.fizzed.blaze.util.StreamableInput;
+import com.fizzed.blaze.util.Streamables;
+import com.fizzed.blaze.util.Timer;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Speaks the source side of the scp protocol to a remote "scp -t".  Every
+ * message (a file, directory or time) is acked by the remote scp.  The ack of
+ * a "C" or "D" header is always waited on before anything follows it, since
+ * a remote scp that rejected the header would otherwise read the content as
+ * protocol lines.  Only the acks after file content (and "E") are pipelined:
+ * those already received are read as we go, and we only block once too many
+ * are outstanding.
+ */
+public class JschScp extends SshScp {
+    static private final Logger log = LoggerFactory.getLogger(JschScp.class);
+    
+    static final int MAX_PENDING_ACKS = 256;
+    
+    public JschScp(Context context, SshSession session) {
+        super(context, session);
+    }
+    
+    @Override
+    protected Result doRun() throws BlazeException {
+        Session jschSession = ((JschSession)session).getJschSession();
+        ObjectHelper.requireNonNull(jschSession, "ssh session must be established first");
+        ObjectHelper.requireNonNull(target, "scp target cannot be null");
+        if (source == null && sourcePath == null) {
+            throw new IllegalArgumentException("scp source cannot be null");
+        }
+        if (sourcePath != null && Files.isDirectory(sourcePath) && !recursive) {
+            throw new IllegalArgumentException("scp source " + sourcePath + " is a directory (recursive not set)");
+        }
+        
+        Timer timer = new Timer();
+        
+        ChannelExec channel = null;
+        try {
+            channel = (ChannelExec)jschSession.openChannel("exec");
+            
+            String command = "scp" + (recursive ? " -r" : "") + (preserveTimes ? " -p" : "") + " -t " + quote(target);
+            
+            log.debug("Sending command via ssh session: {}", command);
+            
+            channel.setCommand(command);
+            
+            Sender sender = new Sender(channel.getOutputStream(), channel.getInputStream());
+            
+            // this connects and sends command
+            channel.connect();
+            
+            // remote scp acks once it is ready
+            sender.pending++;
+            
+            if (source != null) {
+                BasicFileAttributes attrs = (source.path() != null
+                    ? Files.readAttributes(source.path(), BasicFileAttributes.class) : null);
+                // closed once sent (the same as a path source)
+                try (StreamableInput input = source) {
+                    sender.file(input, defaultName(input.name()), null, attrs);
+                }
+            } else if (Files.isDirectory(sourcePath)) {
+                sender.directory(sourcePath);
+            } else {
+                sender.file(sourcePath);
+            }
+            
+            sender.finish();
+            
+            // every message was acked, so the exit status (if it has arrived
+            // by the time the remote closed its end) is only a final check
+            int exitValue = channel.getExitStatus();
+            if (exitValue > 0) {
+                throw new SshException("Remote scp exited with " + exitValue, null);
+            }
+            
+            long millis = timer.stop().millis();
+            
+            bytesOut(sender.bytes);
+            
+            log.debug("Copied {} files ({} bytes) to {} in {} ms",
+                sender.files, sender.bytes, target, millis);
+            
+            return new Result(this, null, sender.files, sender.bytes, millis);
+        } catch (JSchException | IOException e) {
+            throw new SshException(e.getMessage(), e);
+        } finally {
+            if (channel != null) {
+                channel.disconnect();
+            }
+        }
+    }
+    
+    private String defaultName(String name) {
+        // unnamed streams ("<stream>") take the name of the target
+        if (name == null || name.startsWith("<")) {
+            Path fileName = Paths.get(target).getFileName();
+            return (fileName != null ? fileName.toString() : "stream");
+        }
+        return name;
+    }
+    
+    static String quote(String value) {
+        // the remote shell splits the command (quoting only when we have to
+        // since simple scp servers do not unquote)
+        if (value.matches("[A-Za-z0-9_./~@%+=:,-]+")) {
+            return value;
+        }
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+    
+    static String mode(Path path, String defaultMode) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+        if (view == null) {
+            return defaultMode;
+        }
+        return String.format("%04o", FileHelper.posixMode(view.readAttributes().permissions()));
+    }
+    
+    private class Sender {
+        
+        private final OutputStream out;
+        private final InputStream in;
+        private final byte[] buffer;
+        private int pending;
+        private long files;
+        private long bytes;
+
+        Sender(OutputStream out, InputStream in) {
+            this.out = out;
+            this.in = in;
+            this.buffer = new byte[32768];
+        }
+        
+        void directory(Path dir) throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(dir, BasicFileAttributes.class);
+            
+            if (preserveTimes) {
+                times(attrs);
+            }
+            
+            header("D" + mode(dir, "0755") + " 0 " + dir.getFileName() + "\n");
+            
+            List<Path> children;
+            try (Stream<Path> stream = Files.list(dir)) {
+                children = stream.sorted().collect(Collectors.toList());
+            }
+            
+            for (Path child : children) {
+                if (Files.isDirectory(child)) {
+                    directory(child);
+                } else {
+                    file(child);
+                }
+            }
+            
+            message("E\n");
+        }
+        
+        void file(Path file) throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            try (StreamableInput input = Streamables.input(file)) {
+                file(input, file.getFileName().toString(), mode(file, "0644"), attrs);
+            }
+        }
+        
+        void file(StreamableInput input, String name, String mode, BasicFileAttributes attrs) throws IOException {
+            if (preserveTimes && attrs != null) {
+                times(attrs);
+            }
+            
+            long size = input.size();
+            
+            header("C" + (mode != null ? mode : "0644") + " " + size + " " + name + "\n");
+            
+            InputStream is = input.stream();
+            long remaining = size;
+            while (remaining > 0) {
+                int n = is.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+                if (n < 0) {
+                    throw new IOException("Source " + name + " ended " + remaining + " bytes short of its size " + size);
+                }
+                out.write(buffer, 0, n);
+                remaining -= n;
+                this.bytes += n;
+            }
+            
+            // a zero byte ends the content (and is acked like a message)
+            out.write(0);
+            this.pending++;
+            this.files++;
+            
+            drain(false);
+        }
+        
+        void times(BasicFileAttributes attrs) throws IOException {
+            message("T" + (attrs.lastModifiedTime().toMillis() / 1000L) + " 0 "
+                + (attrs.lastAccessTime().toMillis() / 1000L) + " 0\n");
+        }
+        
+        void message(String line) throws IOException {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            this.pending++;
+            drain(false);
+        }
+        
+        void header(String line) throws IOException {
+            // nothing may follow a header until the remote accepted it
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            this.pending++;
+            drain(true);
+        }
+        
+        void finish() throws IOException {
+            drain(true);
+            
+            // eof tells the remote scp we're done, then anything it still
+            // sends before closing its end can only be an error
+            out.close();
+            
+            while (true) {
+                int b = in.read();
+                if (b == -1) {
+                    return;
+                }
+                this.pending++;
+                ack(b);
+            }
+        }
+        
+        void drain(boolean all) throws IOException {
+            // read whatever acks have arrived, but only wait on them if there
+            // are too many outstanding (or we are done)
+            if (all || this.pending > MAX_PENDING_ACKS) {
+                out.flush();
+            }
+            while (this.pending > 0) {
+                boolean wait = (all || this.pending > MAX_PENDING_ACKS);
+                if (!wait && in.available() <= 0) {
+                    return;
+                }
+                ack();
+            }
+        }
+        
+        private void ack() throws IOException {
+            ack(in.read());
+        }
+        
+        private void ack(int b) throws IOException {
+            if (b == -1) {
+                throw new IOException("Remote scp closed unexpectedly");
+            }
+            
+            this.pending--;
+            
+            if (b == 0) {
+                return;
+            }
+            
+            // 1 is an error, 2 a fatal error (both followed by a message)
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n' && c != -1) {
+                sb.append((char)c);
+            }
+            
+            throw new IOException("Remote scp failed: " + sb.toString().trim());
+        }
+        
+    }
+    
+}
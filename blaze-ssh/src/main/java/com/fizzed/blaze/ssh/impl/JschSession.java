@@ -29,9 +29,15 @@ public class JschSession implements SshSession {
     final private ImmutableUri uri;
     final private JSch jsch;
     final private Session jschSession;
+    final private JschSessionPool pool;
+    final private String poolKey;
     private boolean closed;
 
     public JschSession(Context context, ImmutableUri uri, JSch jsch, Session jschSession) {
+        this(context, uri, jsch, jschSession, null, null);
+    }
+    
+    JschSession(Context context, ImmutableUri uri, JSch jsch, Session jschSession, JschSessionPool pool, String poolKey) {
         ObjectHelper.requireNonNull(uri, "uri cannot be null");
         ObjectHelper.requireNonNull(jsch, "jsch cannot be null");
         ObjectHelper.requireNonNull(jschSession, "jsch session cannot be null");
@@ -39,6 +45,8 @@ public class JschSession implements SshSession {
         this.uri = uri;
         this.jsch = jsch;
         this.jschSession = jschSession;
+        this.pool = pool;
+        this.poolKey = poolKey;
         this.closed = false;
     }
     
@@ -57,15 +65,35 @@ public class JschSession implements SshSession {
         return this.closed;
     }
     
+    /**
+     * @return True if this session was acquired from a pool (and closing it
+     *      just returns it to the pool)
+     */
+    public boolean pooled() {
+        return this.pool != null;
+    }
+    
     @Override
     public void close() throws IOException {
         if (!this.closed && this.jschSession != null) {
-             try {
-                 this.jschSession.disconnect();
-             } catch (Exception e) {
-                 // not sure this matters
-             }
-             this.closed = true;
+            if (this.pool != null) {
+                this.pool.release(this.poolKey, this.jschSession);
+            } else {
+                disconnect();
+            }
+            this.closed = true;
+        }
+    }
+    
+    String poolKey() {
+        return this.poolKey;
+    }
+    
+    void disconnect() {
+        try {
+            this.jschSession.disconnect();
+        } catch (Exception e) {
+            // not sure this matters
         }
     }
 
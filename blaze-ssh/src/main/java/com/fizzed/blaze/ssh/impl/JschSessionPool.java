@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+import com.fizzed.blaze.Context;
+import com.jcraft.jsch.Session;
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of live ssh connections.  Sessions acquired for the same key (user,
+ * host, port and connect options) share a single connection (ssh multiplexes
+ * channels) and closing a pooled session only releases its reference.  Once a
+ * connection has no references for the idle timeout it is disconnected.
+ * 
+ * A connection is checked before being handed out again: jsch must still
+ * consider it connected and a keepalive must be writable.
+ */
+public class JschSessionPool implements Closeable {
+    static private final Logger log = LoggerFactory.getLogger(JschSessionPool.class);
+    
+    static private final JschSessionPool SHARED = new JschSessionPool();
+    
+    /**
+     * @return The pool used by SshConnect.pooled()
+     */
+    static public JschSessionPool shared() {
+        return SHARED;
+    }
+    
+    static private class Entry {
+        
+        final String key;
+        JschSession session;
+        int references;
+        long lastReleased;
+        long connects;
+
+        Entry(String key) {
+            this.key = key;
+        }
+        
+    }
+    
+    // entries are never removed (only their connection) so an entry found
+    // by one thread can never be orphaned by an eviction in another
+    private final ConcurrentHashMap<String,Entry> entries;
+    private volatile long idleTimeout;
+    private ScheduledExecutorService evictor;
+    
+    public JschSessionPool() {
+        this.entries = new ConcurrentHashMap<>();
+        this.idleTimeout = 60000L;
+    }
+    
+    /**
+     * How long a connection with no references stays open.
+     * @param idleTimeout The timeout in millis
+     * @return This pool
+     */
+    public JschSessionPool idleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+    
+    public long idleTimeout() {
+        return idleTimeout;
+    }
+    
+    /**
+     * @return The number of open connections
+     */
+    public int size() {
+        int size = 0;
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                if (entry.session != null) {
+                    size++;
+                }
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Acquires a session for the key, connecting only if no healthy
+     * connection exists.
+     * @param context The context of the returned session
+     * @param key The key identifying equivalent connections
+     * @param connector Opens a new connection
+     * @return A new pooled session (close it to release it)
+     */
+    public Acquired acquire(Context context, String key, Supplier<JschSession> connector) {
+        Entry entry = entries.computeIfAbsent(key, Entry::new);
+        boolean connected = false;
+        
+        synchronized (entry) {
+            if (entry.session != null && !healthy(entry)) {
+                log.debug("Pooled ssh session {} is no longer healthy (will reconnect)", key);
+                disconnect(entry);
+            }
+            
+            if (entry.session == null) {
+                entry.session = connector.get();
+                entry.connects++;
+                connected = true;
+            } else {
+                log.debug("Reusing pooled ssh session {}", entry.session.uri());
+            }
+            
+            entry.references++;
+        }
+        
+        startEvictor();
+        
+        JschSession pooled = new JschSession(context, entry.session.uri(), entry.session.getJsch(), entry.session.getJschSession(), this, key);
+        
+        return new Acquired(pooled, connected);
+    }
+    
+    static public class Acquired {
+        
+        private final JschSession session;
+        private final boolean connected;
+
+        Acquired(JschSession session, boolean connected) {
+            this.session = session;
+            this.connected = connected;
+        }
+
+        public JschSession session() {
+            return session;
+        }
+
+        /**
+         * @return True if a new connection was opened (vs. reused)
+         */
+        public boolean connected() {
+            return connected;
+        }
+        
+    }
+    
+    void release(String key, Session jschSession) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            // ignore releases of a connection that was already replaced
+            if (entry.session == null || entry.session.getJschSession() != jschSession) {
+                return;
+            }
+            entry.references = Math.max(0, entry.references - 1);
+            if (entry.references == 0) {
+                entry.lastReleased = System.currentTimeMillis();
+            }
+        }
+    }
+    
+    /**
+     * Disconnects idle connections that have passed the idle timeout.
+     */
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                if (entry.session != null && entry.references == 0 && (now - entry.lastReleased) >= idleTimeout) {
+                    log.debug("Closing idle pooled ssh session {}", entry.key);
+                    disconnect(entry);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Disconnects all connections (even ones still referenced).
+     */
+    @Override
+    public void close() {
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                if (entry.session != null) {
+                    disconnect(entry);
+                }
+            }
+        }
+        synchronized (this) {
+            if (evictor != null) {
+                evictor.shutdownNow();
+                evictor = null;
+            }
+        }
+    }
+    
+    private boolean healthy(Entry entry) {
+        Session jschSession = entry.session.getJschSession();
+        
+        if (!jschSession.isConnected()) {
+            return false;
+        }
+        
+        try {
+            // fails fast if the transport is broken (a dead server is caught
+            // by the server alive interval which disconnects the session)
+            jschSession.sendKeepAliveMsg();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+    
+    private void disconnect(Entry entry) {
+        try {
+            entry.session.disconnect();
+        } catch (Exception e) {
+            // not sure this matters
+        }
+        entry.session = null;
+        entry.references = 0;
+    }
+    
+    synchronized private void startEvictor() {
+        if (evictor == null) {
+            evictor = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread thread = new Thread(r, "blaze-ssh-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1000L, idleTimeout / 4);
+            evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+}
@@ -0,0 +1,1249 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+import com.jcraft.jsch.ChannelSubsystem;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Minimal sftp (version 3) client over its own subsystem channel that only
+ * does bulk reads, writes, stats and directory creation, but with many
+ * requests in flight.  Jsch's
+ * ChannelSftp buffers only a single response so any outstanding requests
+ * beyond that stall the session, while a subsystem channel's input grows
+ * as needed.
+ */
+public class JschSftpPipe implements Closeable {
+    static private final Logger log = LoggerFactory.getLogger(JschSftpPipe.class);
+    
+    static public final int CHUNK_SIZE = 32 * 1024;
+    static private final int MAX_PACKET_SIZE = 256 * 1024;
+    static private final int VERIFY_SIZE = 1024 * 1024;
+    static private final int HASH_UNIT = 8 * 1024;
+    
+    static public final int READ = 0x01;
+    static public final int WRITE = 0x02;
+    static public final int CREATE = 0x08;
+    static public final int TRUNCATE = 0x10;
+    
+    static private final int SSH_FXP_INIT = 1;
+    static private final int SSH_FXP_OPEN = 3;
+    static private final int SSH_FXP_CLOSE = 4;
+    static private final int SSH_FXP_READ = 5;
+    static private final int SSH_FXP_WRITE = 6;
+    static private final int SSH_FXP_LSTAT = 7;
+    static private final int SSH_FXP_FSTAT = 8;
+    static private final int SSH_FXP_SETSTAT = 9;
+    static private final int SSH_FXP_FSETSTAT = 10;
+    static private final int SSH_FXP_REMOVE = 13;
+    static private final int SSH_FXP_MKDIR = 14;
+    static private final int SSH_FXP_STAT = 17;
+    static private final int SSH_FXP_RENAME = 18;
+    static private final int SSH_FXP_STATUS = 101;
+    static private final int SSH_FXP_HANDLE = 102;
+    static private final int SSH_FXP_DATA = 103;
+    static private final int SSH_FXP_ATTRS = 105;
+    static private final int SSH_FXP_EXTENDED = 200;
+    static private final int SSH_FXP_EXTENDED_REPLY = 201;
+    
+    static private final int SSH_FX_OK = 0;
+    static private final int SSH_FX_EOF = 1;
+    static private final int SSH_FX_NO_SUCH_FILE = 2;
+    static private final int SSH_FX_FAILURE = 4;
+    static private final int SSH_FX_OP_UNSUPPORTED = 8;
+    static private final int SSH_FILEXFER_ATTR_SIZE = 0x01;
+    static private final int SSH_FILEXFER_ATTR_UIDGID = 0x02;
+    static private final int SSH_FILEXFER_ATTR_PERMISSIONS = 0x04;
+    static private final int SSH_FILEXFER_ATTR_ACMODTIME = 0x08;
+    static private final int S_IFMT = 0170000;
+    static private final int S_IFDIR = 0040000;
+    
+    public interface Sink {
+        void accept(long position, byte[] buffer, int offset, int length) throws IOException;
+    }
+    
+    public interface Source {
+        int read(byte[] buffer, int offset, int length) throws IOException;
+    }
+    
+    /**
+     * The attributes of a remote file we care about.
+     */
+    static public class Attributes {
+        
+        private final long size;
+        private final long modified;
+        private final boolean directory;
+        private final int permissions;
+
+        public Attributes(long size, long modified, boolean directory) {
+            this(size, modified, directory, -1);
+        }
+        
+        public Attributes(long size, long modified, boolean directory, int permissions) {
+            this.size = size;
+            this.modified = modified;
+            this.directory = directory;
+            this.permissions = permissions;
+        }
+
+        /**
+         * @return The size in bytes or -1 if unknown
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * @return The last modified time in seconds since the epoch or -1
+         *      if unknown
+         */
+        public long modified() {
+            return modified;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * @return The permission bits (e.g. 0644) or -1 if unknown
+         */
+        public int permissions() {
+            return permissions;
+        }
+        
+    }
+    
+    private interface Chunks {
+        /**
+         * Fills the buffer with the next chunk to write.
+         * @param buffer The buffer to fill
+         * @param position Set to the position of the chunk in the file
+         * @return The length of the chunk or <= 0 if none are left
+         */
+        int next(byte[] buffer, long[] position) throws IOException;
+    }
+    
+    private final ChannelSubsystem channel;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream packetBuffer;
+    private final DataOutputStream packet;
+    private final byte[] receiveBuffer;
+    private int nextId;
+    private boolean checkFileUnsupported;
+    private boolean posixRenameUnsupported;
+    private boolean copyDataUnsupported;
+    private boolean unusable;
+    
+    public JschSftpPipe(Session jschSession) throws JSchException, IOException, SftpException {
+        this.channel = (ChannelSubsystem)jschSession.openChannel("subsystem");
+        this.channel.setSubsystem("sftp");
+        this.input = new DataInputStream(this.channel.getInputStream());
+        this.output = new DataOutputStream(new BufferedOutputStream(this.channel.getOutputStream(), 2 * CHUNK_SIZE));
+        this.packetBuffer = new ByteArrayOutputStream(CHUNK_SIZE + 256);
+        this.packet = new DataOutputStream(this.packetBuffer);
+        this.receiveBuffer = new byte[MAX_PACKET_SIZE];
+        this.channel.connect();
+        
+        try {
+            // init has no request id
+            begin(SSH_FXP_INIT).writeInt(3);
+            send();
+            output.flush();
+            receive();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+    
+    @Override
+    public void close() {
+        this.channel.disconnect();
+    }
+    
+    public byte[] open(String path, int flags) throws IOException, SftpException {
+        int id = request(SSH_FXP_OPEN);
+        writeString(path.getBytes(StandardCharsets.UTF_8));
+        packet.writeInt(flags);
+        packet.writeInt(0);         // no attributes
+        send();
+        output.flush();
+        
+        ByteBuffer response = receive(id);
+        
+        if (response.get(0) == SSH_FXP_HANDLE) {
+            return readString(response);
+        }
+        
+        throw status(response);
+    }
+    
+    public void close(byte[] handle) throws IOException, SftpException {
+        int id = request(SSH_FXP_CLOSE);
+        writeString(handle);
+        send();
+        output.flush();
+        
+        checkStatus(receive(id));
+    }
+    
+    public long size(byte[] handle) throws IOException, SftpException {
+        int id = request(SSH_FXP_FSTAT);
+        writeString(handle);
+        send();
+        output.flush();
+        
+        ByteBuffer response = receive(id);
+        
+        if (response.get(0) != SSH_FXP_ATTRS) {
+            throw status(response);
+        }
+        
+        if ((response.getInt() & SSH_FILEXFER_ATTR_SIZE) == 0) {
+            throw new IOException("Server did not return the size of the file");
+        }
+        
+        return response.getLong();
+    }
+    
+    /**
+     * Reads the range of the file with up to the supplied number of requests
+     * in flight.  Data is passed to the sink in the order it arrives which
+     * may not be the order of the file.
+     * @param handle The handle of the opened file
+     * @param start The position to start reading at
+     * @param end The position to stop reading at
+     * @param requests The maximum number of outstanding requests
+     * @param sink The sink of the data read
+     */
+    public void read(byte[] handle, long start, long end, int requests, Sink sink) throws IOException, SftpException {
+        final Map<Integer,long[]> outstanding = new HashMap<>();
+        final Deque<long[]> remainders = new ArrayDeque<>();
+        long next = start;
+        
+        try {
+            while (next < end || !outstanding.isEmpty() || !remainders.isEmpty()) {
+                while (outstanding.size() < requests && (!remainders.isEmpty() || next < end)) {
+                    long[] range;
+                    if (!remainders.isEmpty()) {
+                        range = remainders.poll();
+                    } else {
+                        range = new long[] { next, Math.min(CHUNK_SIZE, end - next) };
+                        next += range[1];
+                    }
+                
+                    int id = request(SSH_FXP_READ);
+                    writeString(handle);
+                    packet.writeLong(range[0]);
+                    packet.writeInt((int)range[1]);
+                    send();
+                
+                    outstanding.put(id, range);
+                }
+            
+                output.flush();
+            
+                ByteBuffer response = receive();
+                long[] range = outstanding.remove(response.getInt(1));
+            
+                if (range == null) {
+                    throw unexpected();
+                }
+            
+                if (response.get(0) != SSH_FXP_DATA) {
+                    if (isStatus(response, SSH_FX_EOF)) {
+                        throw new IOException("File changed size while being read");
+                    }
+                    throw status(response);
+                }
+            
+                int length = response.getInt();
+            
+                if (length <= 0 || length > range[1]) {
+                    throw new IOException("Invalid sftp read of " + length + " bytes");
+                }
+            
+                sink.accept(range[0], response.array(), response.position(), length);
+            
+                // servers may return less than requested
+                if (length < range[1]) {
+                    remainders.add(new long[] { range[0] + length, range[1] - length });
+                }
+            }
+        } catch (IOException | SftpException | RuntimeException e) {
+            drain(outstanding.keySet());
+            throw e;
+        }
+    }
+    
+    /**
+     * Writes the source to the file with up to the supplied number of
+     * requests in flight.
+     * @param handle The handle of the opened file
+     * @param start The position to start writing at
+     * @param requests The maximum number of outstanding requests
+     * @param source The source of the data (until it returns -1)
+     * @param progress Called with the number of bytes as each write is
+     *      acknowledged
+     * @return The number of bytes written
+     */
+    public long write(byte[] handle, long start, int requests, Source source, LongConsumer progress) throws IOException, SftpException {
+        final long[] next = new long[] { start };
+        
+        return write(handle, requests, (buffer, position) -> {
+            int length = fill(source, buffer);
+            position[0] = next[0];
+            next[0] += Math.max(0, length);
+            return length;
+        }, progress);
+    }
+    
+    private long write(byte[] handle, int requests, Chunks chunks, LongConsumer progress) throws IOException, SftpException {
+        final Map<Integer,Integer> outstanding = new HashMap<>();
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        final long[] position = new long[1];
+        long bytes = 0;
+        boolean eof = false;
+        
+        try {
+            while (!eof || !outstanding.isEmpty()) {
+                while (!eof && outstanding.size() < requests) {
+                    int length = chunks.next(buffer, position);
+                
+                    if (length <= 0) {
+                        eof = true;
+                        break;
+                    }
+                
+                    int id = request(SSH_FXP_WRITE);
+                    writeString(handle);
+                    packet.writeLong(position[0]);
+                    packet.writeInt(length);
+                    packet.write(buffer, 0, length);
+                    send();
+                
+                    outstanding.put(id, length);
+                    bytes += length;
+                }
+            
+                output.flush();
+            
+                if (outstanding.isEmpty()) {
+                    break;
+                }
+            
+                ByteBuffer response = receive();
+                Integer length = outstanding.remove(response.getInt(1));
+            
+                if (length == null) {
+                    throw unexpected();
+                }
+            
+                checkStatus(response);
+            
+                if (progress != null) {
+                    progress.accept(length);
+                }
+            }
+        } catch (IOException | SftpException | RuntimeException e) {
+            drain(outstanding.keySet());
+            throw e;
+        }
+        
+        return bytes;
+    }
+    
+    /**
+     * Uploads a local file to the remote path (replacing it if it exists).
+     * @param source The local file
+     * @param target The remote file
+     * @param requests The maximum number of outstanding requests
+     * @param progress Called with the number of bytes written as they are
+     *      acknowledged
+     * @return The number of bytes written
+     */
+    public long upload(Path source, String target, int requests, LongConsumer progress) throws IOException, SftpException {
+        try (InputStream input = Files.newInputStream(source)) {
+            byte[] handle = open(target, WRITE | CREATE | TRUNCATE);
+            try {
+                long bytes = write(handle, 0, requests, input::read, progress);
+                // a close failure on success is reported (e.g. a full disk)
+                close(handle);
+                handle = null;
+                return bytes;
+            } finally {
+                closeQuietly(handle);
+            }
+        }
+    }
+    
+    /**
+     * Downloads a remote file to the local path (replacing it if it exists).
+     * @param source The remote file
+     * @param target The local file
+     * @param requests The maximum number of outstanding requests
+     * @param progress Called with the number of bytes read as they arrive
+     * @return The number of bytes read
+     */
+    public long download(String source, Path target, int requests, LongConsumer progress) throws IOException, SftpException {
+        byte[] handle = open(source, READ);
+        try {
+            long size = size(handle);
+            
+            try (FileChannel file = FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                read(handle, 0, size, requests, (position, buffer, offset, length) -> {
+                    ByteBuffer bb = ByteBuffer.wrap(buffer, offset, length);
+                    long p = position;
+                    while (bb.hasRemaining()) {
+                        p += file.write(bb, p);
+                    }
+                    if (progress != null) {
+                        progress.accept(length);
+                    }
+                });
+            }
+            
+            close(handle);
+            handle = null;
+            return size;
+        } finally {
+            closeQuietly(handle);
+        }
+    }
+    
+    /**
+     * Creates the directories (if they do not exist) with all requests of
+     * the same depth in flight at once.  Parents must either exist or be
+     * included.
+     * @param directories The remote directories
+     * @param requests The maximum number of outstanding requests
+     */
+    public void mkdirs(List<String> directories, int requests) throws IOException, SftpException {
+        // parents must be created before their children
+        TreeMap<Integer,List<String>> depths = new TreeMap<>();
+        for (String directory : directories) {
+            int depth = directory.split("/").length;
+            depths.computeIfAbsent(depth, (k) -> new ArrayList<>()).add(directory);
+        }
+        
+        for (List<String> batch : depths.values()) {
+            final List<String> failed = new ArrayList<>();
+            
+            pipeline(batch, requests, SSH_FXP_MKDIR, (path, response) -> {
+                if (!isStatus(response, SSH_FX_OK)) {
+                    failed.add(path);
+                }
+            });
+            
+            // most likely already exist
+            pipeline(failed, requests, SSH_FXP_STAT, (path, response) -> {
+                if (response.get(0) != SSH_FXP_ATTRS || !attributes(response).isDirectory()) {
+                    throw new SftpException(SSH_FX_FAILURE, "Unable to create directory " + path);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Stats the paths with all requests in flight at once.
+     * @param paths The remote paths
+     * @param requests The maximum number of outstanding requests
+     * @return The attributes of each path that exists
+     */
+    public Map<String,Attributes> stat(List<String> paths, int requests) throws IOException, SftpException {
+        final Map<String,Attributes> attributes = new HashMap<>();
+        
+        pipeline(paths, requests, SSH_FXP_STAT, (path, response) -> {
+            if (response.get(0) == SSH_FXP_ATTRS) {
+                attributes.put(path, attributes(response));
+            } else if (!isStatus(response, SSH_FX_NO_SUCH_FILE)) {
+                throw status(response);
+            }
+        });
+        
+        return attributes;
+    }
+    
+    /**
+     * Stats the path without following symlinks.
+     * @param path The remote path
+     * @return The attributes or null if it does not exist
+     */
+    public Attributes lstat(String path) throws IOException, SftpException {
+        int id = request(SSH_FXP_LSTAT);
+        writeString(path.getBytes(StandardCharsets.UTF_8));
+        send();
+        output.flush();
+        
+        ByteBuffer response = receive(id);
+        
+        if (response.get(0) == SSH_FXP_ATTRS) {
+            return attributes(response);
+        } else if (isStatus(response, SSH_FX_NO_SUCH_FILE)) {
+            return null;
+        }
+        
+        throw status(response);
+    }
+    
+    /**
+     * Renames the path, atomically replacing the target if the server
+     * supports the "posix-rename@openssh.com" extension.  Otherwise the
+     * target is removed first since plain sftp renames do not overwrite.
+     * @param source The remote path to rename
+     * @param target The new remote path
+     */
+    public void rename(String source, String target) throws IOException, SftpException {
+        if (!posixRenameUnsupported) {
+            int id = request(SSH_FXP_EXTENDED);
+            writeString("posix-rename@openssh.com".getBytes(StandardCharsets.UTF_8));
+            writeString(source.getBytes(StandardCharsets.UTF_8));
+            writeString(target.getBytes(StandardCharsets.UTF_8));
+            send();
+            output.flush();
+            
+            ByteBuffer response = receive(id);
+            
+            if (!isStatus(response, SSH_FX_OP_UNSUPPORTED)) {
+                checkStatus(response);
+                return;
+            }
+            
+            posixRenameUnsupported = true;
+        }
+        
+        remove(target);
+        
+        int id = request(SSH_FXP_RENAME);
+        writeString(source.getBytes(StandardCharsets.UTF_8));
+        writeString(target.getBytes(StandardCharsets.UTF_8));
+        send();
+        output.flush();
+        
+        checkStatus(receive(id));
+    }
+    
+    /**
+     * Checks whether the start of the remote file is the same as the local
+     * one.  All of it is always compared: hashed by the server if it can,
+     * otherwise by a command run on the server (if allowed), otherwise read
+     * back if no more than a megabyte.  Anything else can't be verified and
+     * does not match.  Some servers hash past the end of a range that is not
+     * a multiple of their buffer, so they only hash whole 8 KB units and the
+     * rest is read back.
+     * @param handle The handle of the remote file opened for reading
+     * @param path The remote file
+     * @param file The local file
+     * @param length The number of bytes to compare
+     * @param requests The maximum number of outstanding requests
+     * @param hashes Hashes the remote file with a command or null if not
+     *      allowed to
+     * @return True if they match
+     */
+    public boolean matches(byte[] handle, String path, FileChannel file, long length, int requests,
+            JschRemoteHashes hashes) throws IOException, SftpException {
+        
+        final List<byte[]> checksums = new ArrayList<>();
+        final long hashed = length - (length % HASH_UNIT);
+        final MessageDigest digest = (hashed > 0 ? checkFile(handle, 0, hashed, 0, checksums) : null);
+        final long start;
+        
+        if (digest != null) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            for (long position = 0; position < hashed; position += buffer.limit()) {
+                buffer.clear().limit((int)Math.min(buffer.capacity(), hashed - position));
+                readFully(file, buffer, position);
+                digest.update(buffer.array(), 0, buffer.limit());
+            }
+            if (!MessageDigest.isEqual(digest.digest(), checksums.get(0))) {
+                return false;
+            }
+            start = hashed;
+        } else if (length > VERIFY_SIZE) {
+            final byte[] remote = (hashes != null ? hashes.prefix(path, length) : null);
+            if (remote == null) {
+                log.debug("Unable to hash the first {} bytes of {}", length, path);
+                return false;
+            }
+            return MessageDigest.isEqual(remote, JschRemoteHashes.sha256(file, 0, length));
+        } else {
+            start = 0;
+        }
+        
+        final byte[] remote = new byte[(int)(length - start)];
+        final ByteBuffer local = ByteBuffer.allocate(remote.length);
+        
+        read(handle, start, length, requests, (position, buffer, offset, count) -> {
+            System.arraycopy(buffer, offset, remote, (int)(position - start), count);
+        });
+        
+        readFully(file, local, start);
+        
+        return Arrays.equals(remote, local.array());
+    }
+    
+    /**
+     * Sets the permissions and/or the access and modified times of the path.
+     * @param path The remote path
+     * @param permissions The permission bits or -1 to leave them alone
+     * @param modified The time in seconds since the epoch or -1 to leave it
+     *      alone
+     */
+    public void setAttributes(String path, int permissions, long modified) throws IOException, SftpException {
+        int flags = (permissions >= 0 ? SSH_FILEXFER_ATTR_PERMISSIONS : 0)
+            | (modified >= 0 ? SSH_FILEXFER_ATTR_ACMODTIME : 0);
+        
+        if (flags == 0) {
+            return;
+        }
+        
+        int id = request(SSH_FXP_SETSTAT);
+        writeString(path.getBytes(StandardCharsets.UTF_8));
+        packet.writeInt(flags);
+        if (permissions >= 0) {
+            packet.writeInt(permissions);
+        }
+        if (modified >= 0) {
+            packet.writeInt((int)modified);     // atime
+            packet.writeInt((int)modified);
+        }
+        send();
+        output.flush();
+        
+        checkStatus(receive(id));
+    }
+    
+    /**
+     * Removes the file if it exists.
+     * @param path The remote file
+     */
+    public void remove(String path) throws IOException, SftpException {
+        int id = request(SSH_FXP_REMOVE);
+        writeString(path.getBytes(StandardCharsets.UTF_8));
+        send();
+        output.flush();
+        
+        ByteBuffer response = receive(id);
+        
+        if (!isStatus(response, SSH_FX_NO_SUCH_FILE)) {
+            checkStatus(response);
+        }
+    }
+    
+    /**
+     * Copies ranges of one remote file to another on the server with the
+     * "copy-data" extension so the data never crosses the wire.  The first
+     * is copied alone (to find out if the server can) and then the rest
+     * with up to the supplied number of requests in flight.
+     * @param copies The ranges as { from offset, to offset, length }
+     * @return False if the server is unable to
+     */
+    private boolean copyData(byte[] from, List<long[]> copies, byte[] to, int requests) throws IOException, SftpException {
+        if (copyDataUnsupported) {
+            return false;
+        }
+        
+        if (copies.isEmpty()) {
+            return true;
+        }
+        
+        ByteBuffer first = receive(copyData(from, copies.get(0), to));
+        
+        if (isStatus(first, SSH_FX_OP_UNSUPPORTED)) {
+            copyDataUnsupported = true;
+            return false;
+        }
+        
+        checkStatus(first);
+        
+        final Set<Integer> outstanding = new HashSet<>();
+        int next = 1;
+        
+        try {
+            while (next < copies.size() || !outstanding.isEmpty()) {
+                while (outstanding.size() < requests && next < copies.size()) {
+                    outstanding.add(copyData(from, copies.get(next++), to));
+                }
+                
+                output.flush();
+                
+                ByteBuffer response = receive();
+                
+                if (!outstanding.remove(response.getInt(1))) {
+                    throw unexpected();
+                }
+                
+                checkStatus(response);
+            }
+        } catch (IOException | SftpException | RuntimeException e) {
+            drain(outstanding);
+            throw e;
+        }
+        
+        return true;
+    }
+    
+    private int copyData(byte[] from, long[] copy, byte[] to) throws IOException {
+        int id = request(SSH_FXP_EXTENDED);
+        writeString("copy-data".getBytes(StandardCharsets.UTF_8));
+        writeString(from);
+        packet.writeLong(copy[0]);
+        packet.writeLong(copy[2]);
+        writeString(to);
+        packet.writeLong(copy[1]);
+        send();
+        output.flush();
+        return id;
+    }
+    
+    /**
+     * Updates an existing remote file to match a local one by only writing
+     * what differs.  The data both share is copied by the server with the
+     * "copy-data" extension so it never crosses the wire.  What they share
+     * is found by hashing the blocks of the remote file either:
+     * 
+     * By running cksum and sha256sum on the server (see JschRemoteHashes)
+     * whose blocks are then found at any offset of the local file with a
+     * rolling checksum (like rsync), so inserting data near the start of a
+     * file only sends what was inserted.  The result is then hashed again
+     * before it replaces the remote file.  This works with OpenSSH (its
+     * sftp-server supports "copy-data" since 9.0).
+     * 
+     * Or if the server has no shell, with the "check-file-handle" extension
+     * which only compares blocks at the same offsets.
+     * 
+     * The data is written to a copy of the remote file that then replaces
+     * it, so an interrupted patch never leaves the remote file half written.
+     * The copy keeps the permissions of the remote file and gets the
+     * modified time of the local one.
+     * @param source The local file
+     * @param target The remote file
+     * @param remote The current attributes of the remote file
+     * @param blockSize The size of the blocks compared
+     * @param requests The maximum number of outstanding requests
+     * @param hashes Hashes remote files with commands or null if not
+     *      allowed to
+     * @param progress Called with the number of bytes written as they are
+     *      acknowledged
+     * @return The number of bytes written or -1 if the server is unable to
+     *      hash or copy its blocks (and the remote file was not changed)
+     */
+    public long patch(Path source, String target, Attributes remote, int blockSize, int requests,
+            JschRemoteHashes hashes, LongConsumer progress) throws IOException, SftpException {
+        
+        if (copyDataUnsupported || (checkFileUnsupported && (hashes == null || !hashes.isSupported()))) {
+            return -1;
+        }
+        
+        try (FileChannel file = FileChannel.open(source, StandardOpenOption.READ)) {
+            final long localSize = file.size();
+            final long remoteSize = remote.size();
+            final String temp = tempName(target);
+            byte[] handle = open(target, READ);
+            byte[] tempHandle = null;
+            boolean created = false;
+            boolean replaced = false;
+            
+            try {
+                final JschRemoteHashes.Blocks blocks = (hashes != null && hashes.isSupported() && remoteSize / blockSize <= Integer.MAX_VALUE
+                    ? hashes.blocks(target, blockSize, (int)(remoteSize / blockSize)) : null);
+                final BlockDelta delta;
+                
+                if (blocks != null) {
+                    delta = BlockDelta.rolling(file, blocks);
+                } else {
+                    delta = diff(handle, file, remoteSize, blockSize);
+                    if (delta == null) {
+                        return -1;
+                    }
+                }
+                
+                if (delta.isSame(remoteSize)) {
+                    // already the same (e.g. compared by checksum)
+                    setAttributes(target, -1, Files.getLastModifiedTime(source).to(TimeUnit.SECONDS));
+                    return 0;
+                }
+                
+                tempHandle = open(temp, WRITE | CREATE | TRUNCATE);
+                created = true;
+                
+                if (!copyData(handle, delta.copies(), tempHandle, requests)) {
+                    return -1;
+                }
+                
+                final Iterator<long[]> iterator = delta.literals().iterator();
+                final long[] range = new long[2];
+                
+                long bytes = write(tempHandle, requests, (buffer, position) -> {
+                    if (range[0] >= range[1]) {
+                        if (!iterator.hasNext()) {
+                            return 0;
+                        }
+                        long[] next = iterator.next();
+                        range[0] = next[0];
+                        range[1] = next[1];
+                    }
+                    int length = (int)Math.min(buffer.length, range[1] - range[0]);
+                    readFully(file, ByteBuffer.wrap(buffer, 0, length), range[0]);
+                    position[0] = range[0];
+                    range[0] += length;
+                    return length;
+                }, progress);
+                
+                close(tempHandle);
+                tempHandle = null;
+                close(handle);
+                handle = null;
+                
+                // the shell may not see the same files as sftp (e.g. chroot'ed)
+                if (blocks != null && !matches(hashes.file(temp), JschRemoteHashes.sha256(file, 0, localSize))) {
+                    log.warn("Patched copy of {} did not match (will upload in full)", target);
+                    return -1;
+                }
+                
+                setAttributes(temp, remote.permissions(), Files.getLastModifiedTime(source).to(TimeUnit.SECONDS));
+                rename(temp, target);
+                replaced = true;
+                
+                return bytes;
+            } finally {
+                closeQuietly(tempHandle);
+                closeQuietly(handle);
+                if (created && !replaced) {
+                    removeQuietly(temp);
+                }
+            }
+        }
+    }
+    
+    static private boolean matches(byte[] remote, byte[] local) {
+        return remote != null && MessageDigest.isEqual(remote, local);
+    }
+    
+    static private String tempName(String path) {
+        int slash = path.lastIndexOf('/');
+        return path.substring(0, slash + 1) + "." + path.substring(slash + 1) + ".patch";
+    }
+    
+    private void closeQuietly(byte[] handle) {
+        if (handle != null && !unusable) {
+            try {
+                close(handle);
+            } catch (IOException | SftpException e) {
+                // ignore
+            }
+        }
+    }
+    
+    private void removeQuietly(String path) {
+        if (!unusable) {
+            try {
+                remove(path);
+            } catch (IOException | SftpException e) {
+                // ignore
+            }
+        }
+    }
+    
+    /**
+     * Compares the blocks of the local file with those of the remote one at
+     * the same offsets, hashed by the server with "check-file-handle".
+     * @return The delta or null if the server was unable to hash its blocks
+     */
+    private BlockDelta diff(byte[] handle, FileChannel file, long remoteSize, int blockSize) throws IOException, SftpException {
+        final long localSize = file.size();
+        final long common = Math.min(localSize, remoteSize);
+        // a partial block is only hashed at the end of the remote file (see matches)
+        final long length = (common == remoteSize ? common : common - (common % blockSize));
+        final List<long[]> ranges = new ArrayList<>();
+        final ByteBuffer block = ByteBuffer.allocate(blockSize);
+        // keep each reply well under the max packet size (hashes are <= 64 bytes)
+        final long span = (long)blockSize * ((MAX_PACKET_SIZE - 1024) / (64 + 4));
+        long start = 0;
+        
+        while (start < length) {
+            final long end = Math.min(length, start + span);
+            final List<byte[]> hashes = new ArrayList<>();
+            final MessageDigest digest = checkFile(handle, start, end - start, blockSize, hashes);
+            
+            if (digest == null) {
+                return null;
+            }
+            
+            for (byte[] hash : hashes) {
+                long blockEnd = Math.min(end, start + blockSize);
+                
+                block.clear().limit((int)(blockEnd - start));
+                readFully(file, block, start);
+                digest.update(block.array(), 0, block.limit());
+                
+                if (!MessageDigest.isEqual(digest.digest(), hash)) {
+                    long[] last = (ranges.isEmpty() ? null : ranges.get(ranges.size() - 1));
+                    if (last != null && last[1] == start) {
+                        last[1] = blockEnd;
+                    } else {
+                        ranges.add(new long[] { start, blockEnd });
+                    }
+                }
+                
+                start = blockEnd;
+            }
+        }
+        
+        return BlockDelta.fixed(localSize, length, ranges);
+    }
+    
+    /**
+     * Asks the server to hash blocks of the range of the file (or the whole
+     * range if the block size is 0).
+     * @return The digest used or null if the server is unable to
+     */
+    private MessageDigest checkFile(byte[] handle, long start, long length, int blockSize, List<byte[]> hashes) throws IOException, SftpException {
+        if (checkFileUnsupported) {
+            return null;
+        }
+        
+        int id = request(SSH_FXP_EXTENDED);
+        writeString("check-file-handle".getBytes(StandardCharsets.UTF_8));
+        writeString(handle);
+        writeString("sha256,sha1,md5".getBytes(StandardCharsets.UTF_8));
+        packet.writeLong(start);
+        packet.writeLong(length);
+        packet.writeInt(blockSize);
+        send();
+        output.flush();
+        
+        ByteBuffer response = receive(id);
+        
+        if ((response.get(0) & 0xFF) != SSH_FXP_EXTENDED_REPLY) {
+            // e.g. openssh does not support the extension
+            if (isStatus(response, SSH_FX_OP_UNSUPPORTED)) {
+                checkFileUnsupported = true;
+                return null;
+            }
+            throw status(response);
+        }
+        
+        String algorithm = new String(readString(response), StandardCharsets.UTF_8);
+        
+        // some servers prefix the reply with the name of the extension
+        if (algorithm.equals("check-file")) {
+            algorithm = new String(readString(response), StandardCharsets.UTF_8);
+        }
+        
+        MessageDigest digest = digest(algorithm);
+        
+        if (digest == null) {
+            checkFileUnsupported = true;
+            return null;
+        }
+        
+        // the hashes are either raw or each prefixed with their length
+        final int size = digest.getDigestLength();
+        final long blocks = (blockSize > 0 ? (length + blockSize - 1) / blockSize : 1);
+        final boolean prefixed;
+        
+        if (response.remaining() == blocks * size) {
+            prefixed = false;
+        } else if (response.remaining() == blocks * (size + 4)) {
+            prefixed = true;
+        } else {
+            throw new IOException("Unexpected check-file reply of " + response.remaining() + " bytes");
+        }
+        
+        for (long i = 0; i < blocks; i++) {
+            if (prefixed) {
+                response.getInt();
+            }
+            byte[] hash = new byte[size];
+            response.get(hash);
+            hashes.add(hash);
+        }
+        
+        return digest;
+    }
+    
+    private interface Handler {
+        void handle(String path, ByteBuffer response) throws IOException, SftpException;
+    }
+    
+    private void pipeline(List<String> paths, int requests, int type, Handler handler) throws IOException, SftpException {
+        final Map<Integer,String> outstanding = new HashMap<>();
+        int next = 0;
+        
+        try {
+            while (next < paths.size() || !outstanding.isEmpty()) {
+                while (outstanding.size() < requests && next < paths.size()) {
+                    String path = paths.get(next++);
+                    int id = request(type);
+                    writeString(path.getBytes(StandardCharsets.UTF_8));
+                    if (type == SSH_FXP_MKDIR) {
+                        packet.writeInt(0);     // no attributes
+                    }
+                    send();
+                    outstanding.put(id, path);
+                }
+            
+                output.flush();
+            
+                ByteBuffer response = receive();
+                String path = outstanding.remove(response.getInt(1));
+            
+                if (path == null) {
+                    throw unexpected();
+                }
+            
+                handler.handle(path, response);
+            }
+        } catch (IOException | SftpException | RuntimeException e) {
+            drain(outstanding.keySet());
+            throw e;
+        }
+    }
+    
+    static private Attributes attributes(ByteBuffer attrs) {
+        int flags = attrs.getInt();
+        long size = -1;
+        long modified = -1;
+        boolean directory = false;
+        int permissions = -1;
+        if ((flags & SSH_FILEXFER_ATTR_SIZE) != 0) {
+            size = attrs.getLong();
+        }
+        if ((flags & SSH_FILEXFER_ATTR_UIDGID) != 0) {
+            attrs.getInt();
+            attrs.getInt();
+        }
+        if ((flags & SSH_FILEXFER_ATTR_PERMISSIONS) != 0) {
+            int mode = attrs.getInt();
+            directory = (mode & S_IFMT) == S_IFDIR;
+            permissions = mode & 07777;
+        }
+        if ((flags & SSH_FILEXFER_ATTR_ACMODTIME) != 0) {
+            attrs.getInt();         // atime
+            modified = attrs.getInt() & 0xFFFFFFFFL;
+        }
+        return new Attributes(size, modified, directory, permissions);
+    }
+    
+    static private MessageDigest digest(String algorithm) {
+        String name;
+        switch (algorithm) {
+            case "md5":
+                name = "MD5";
+                break;
+            case "sha1":
+                name = "SHA-1";
+                break;
+            case "sha256":
+                name = "SHA-256";
+                break;
+            case "sha384":
+                name = "SHA-384";
+                break;
+            case "sha512":
+                name = "SHA-512";
+                break;
+            default:
+                return null;
+        }
+        try {
+            return MessageDigest.getInstance(name);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+    
+    static private void readFully(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("File changed size while being read");
+            }
+        }
+    }
+    
+    static private int fill(Source source, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int n = source.read(buffer, length, buffer.length - length);
+            if (n < 0) {
+                break;
+            }
+            length += n;
+        }
+        return length;
+    }
+    
+    private DataOutputStream begin(int type) throws IOException {
+        packetBuffer.reset();
+        packet.writeByte(type);
+        return packet;
+    }
+    
+    private int request(int type) throws IOException {
+        if (unusable) {
+            throw new IOException("Sftp pipe is unusable after an earlier failure");
+        }
+        int id = nextId++;
+        begin(type).writeInt(id);
+        return id;
+    }
+    
+    private void writeString(byte[] bytes) throws IOException {
+        packet.writeInt(bytes.length);
+        packet.write(bytes);
+    }
+    
+    private void send() throws IOException {
+        output.writeInt(packetBuffer.size());
+        packetBuffer.writeTo(output);
+    }
+    
+    /**
+     * Receives the next packet.  Its buffer is reused by the next receive.
+     * Positioned after its type and request id.
+     */
+    private ByteBuffer receive() throws IOException {
+        int length;
+        try {
+            length = input.readInt();
+            
+            if (length < 5 || length > receiveBuffer.length) {
+                throw new IOException("Invalid sftp packet length " + length);
+            }
+            
+            input.readFully(receiveBuffer, 0, length);
+        } catch (IOException e) {
+            // the stream is out of step w/ the server
+            unusable = true;
+            throw e;
+        }
+        
+        ByteBuffer response = ByteBuffer.wrap(receiveBuffer, 0, length);
+        response.position(5);
+        return response;
+    }
+    
+    private ByteBuffer receive(int id) throws IOException {
+        ByteBuffer response = receive();
+        if (response.getInt(1) != id) {
+            throw unexpected();
+        }
+        return response;
+    }
+    
+    private IOException unexpected() {
+        // a reply we don't know what to do with means we're out of step
+        unusable = true;
+        return new IOException("Unexpected sftp response");
+    }
+    
+    /**
+     * Receives the replies to requests still in flight after a failure so
+     * the next call does not read them as its own.  If that's not possible
+     * the pipe is closed and unusable from then on.
+     */
+    private void drain(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        
+        final Set<Integer> remaining = new HashSet<>(ids);
+        
+        try {
+            if (!unusable) {
+                output.flush();
+                while (!remaining.isEmpty()) {
+                    if (!remaining.remove(receive().getInt(1))) {
+                        throw unexpected();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            unusable = true;
+        }
+        
+        if (unusable) {
+            close();
+        }
+    }
+    
+    static private byte[] readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+    
+    static private boolean isStatus(ByteBuffer response, int code) {
+        return response.get(0) == SSH_FXP_STATUS && response.getInt(5) == code;
+    }
+    
+    static private void checkStatus(ByteBuffer response) throws IOException, SftpException {
+        if (!isStatus(response, SSH_FX_OK)) {
+            throw status(response);
+        }
+    }
+    
+    static private SftpException status(ByteBuffer response) throws IOException {
+        if (response.get(0) != SSH_FXP_STATUS) {
+            throw new IOException("Unexpected sftp response type " + response.get(0));
+        }
+        
+        int code = response.getInt(5);
+        response.position(9);
+        String message = new String(readString(response), StandardCharsets.UTF_8);
+        
+        return new SftpException(code, message);
+    }
+    
+}
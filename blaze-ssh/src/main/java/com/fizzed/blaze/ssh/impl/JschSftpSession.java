@@ -21,12 +21,16 @@ import com.fizzed.blaze.ssh.SshFileAttributes;
 import com.fizzed.blaze.ssh.SshSession;
 import com.fizzed.blaze.ssh.SshSftpException;
 import com.fizzed.blaze.ssh.SshSftpGet;
+import com.fizzed.blaze.ssh.SshSftpGetAll;
 import com.fizzed.blaze.ssh.SshSftpNoSuchFileException;
 import com.fizzed.blaze.ssh.SshSftpPut;
+import com.fizzed.blaze.ssh.SshSftpPutAll;
 import com.fizzed.blaze.ssh.SshSftpSession;
+import com.fizzed.blaze.ssh.SshSftpSync;
 import com.fizzed.blaze.util.Streamable;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.ChannelSftp.LsEntry;
+import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 import com.jcraft.jsch.SftpProgressMonitor;
@@ -40,8 +44,11 @@ import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -174,7 +181,7 @@ public class JschSftpSession extends SshSftpSession implements SshSftpSupport {
     }
     
     @Override
-    public void get(Path source, Streamable<OutputStream> target) throws SshException {
+    public long get(Path source, Streamable<OutputStream> target, int requests, int channels, boolean resume) throws SshException {
         try {
             // TODO: how can we log w/o requring it be a line???
             if (log.isInfoEnabled()) {
@@ -182,10 +189,13 @@ public class JschSftpSession extends SshSftpSession implements SshSftpSupport {
             }
             
             try {
-                this.channel.get(source.toString(), target.stream(), new DefaultProgressMonitor(), ChannelSftp.OVERWRITE, 0);
+                return newTransfer(requests, channels)
+                    .get(PathHelper.toString(source), target.path(), target.stream(), resume, new DefaultProgressMonitor());
             } finally {
                 IOUtils.closeQuietly(target);
             }  
+        } catch (IOException | JSchException e) {
+            throw new SshException(e.getMessage(), e);
         } catch (SftpException e) {
             throw convertSftpException(e);
         }
@@ -197,7 +207,7 @@ public class JschSftpSession extends SshSftpSession implements SshSftpSupport {
     }
     
     @Override
-    public void put(Streamable<InputStream> source, String target) throws SshException {
+    public long put(Streamable<InputStream> source, String target, int requests, int channels, boolean resume) throws SshException {
         try {
             // target potentially 
             
@@ -209,24 +219,74 @@ public class JschSftpSession extends SshSftpSession implements SshSftpSupport {
                     System.out.print("[INFO] Uploading " + source.path() + " -> " + target);
                 }
             }
-                    
-            OutputStream output
-                = this.channel.put(target, new DefaultProgressMonitor(), ChannelSftp.OVERWRITE, 0);
             
             try {
-                // copy streams input -> output
-                IOUtils.copy(source.stream(), output);
+                return newTransfer(requests, channels)
+                    .put(source.path(), source.stream(), source.size(), target, resume, new DefaultProgressMonitor());
             } finally {
-                IOUtils.closeQuietly(output);
                 IOUtils.closeQuietly(source);
             }
-        } catch (IOException e) {
+        } catch (IOException | JSchException e) {
             throw new SshException(e.getMessage(), e);
         } catch (SftpException e) {
             throw convertSftpException(e);
         }
     }
     
+    @Override
+    public SshSftpPutAll putAll() throws SshException {
+        return new SshSftpPutAll(this);
+    }
+    
+    @Override
+    public long putAll(List<String> directories, Map<Path,String> files, int requests, int channels) throws SshException {
+        try {
+            return newTransfer(requests, channels).putAll(directories, files, null);
+        } catch (IOException | JSchException e) {
+            throw new SshException(e.getMessage(), e);
+        } catch (SftpException e) {
+            throw convertSftpException(e);
+        }
+    }
+    
+    @Override
+    public SshSftpGetAll getAll() throws SshException {
+        return new SshSftpGetAll(this);
+    }
+    
+    @Override
+    public long getAll(Map<String,Path> files, int requests, int channels) throws SshException {
+        try {
+            return newTransfer(requests, channels).getAll(files, null);
+        } catch (IOException | JSchException e) {
+            throw new SshException(e.getMessage(), e);
+        } catch (SftpException e) {
+            throw convertSftpException(e);
+        }
+    }
+    
+    @Override
+    public SshSftpSync sync() throws SshException {
+        return new SshSftpSync(this);
+    }
+    
+    @Override
+    public JschSftpTransfer.SyncCounts sync(List<String> directories, Map<Path,String> files, boolean checksum,
+            int blockSize, int requests, int channels) throws SshException {
+        try {
+            return newTransfer(requests, channels).sync(directories, files, checksum, blockSize, null);
+        } catch (IOException | JSchException e) {
+            throw new SshException(e.getMessage(), e);
+        } catch (SftpException e) {
+            throw convertSftpException(e);
+        }
+    }
+    
+    private JschSftpTransfer newTransfer(int requests, int channels) {
+        return new JschSftpTransfer(((JschSession)session).getJschSession(), channel, requests, channels,
+            new JschRemoteHashes(session));
+    }
+    
     @Override
     public void chgrp(String path, int gid) {
         chgrp(Paths.get(path), gid);
@@ -373,20 +433,26 @@ public class JschSftpSession extends SshSftpSession implements SshSftpSupport {
     }
 
     static public class DefaultProgressMonitor implements SftpProgressMonitor {
+        private final AtomicLong bytes = new AtomicLong();
+        private long start;
+        
         @Override
         public void init(int op, String src, String dest, long max) {
+            this.start = System.currentTimeMillis();
             System.out.print(" ");
         }
 
         @Override
         public boolean count(long count) {
+            this.bytes.addAndGet(count);
             System.out.print(".");
             return true;
         }
 
         @Override
         public void end() {
-            System.out.println("!");
+            long millis = Math.max(1L, System.currentTimeMillis() - this.start);
+            System.out.println("! (" + FileUtils.byteCountToDisplaySize(this.bytes.get() * 1000L / millis) + "/s)");
         }
     }
     
@@ -0,0 +1,763 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SftpProgressMonitor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transfers a file over sftp with many requests in flight rather than one at
+ * a time.  Reads and writes keep the configured number of requests
+ * outstanding per channel (like OpenSSH's -R) so high latency links stay
+ * busy.
+ * 
+ * Large files may also be split into ranges transferred over multiple sftp
+ * channels of the same session at once.
+ */
+public class JschSftpTransfer {
+    static private final Logger log = LoggerFactory.getLogger(JschSftpTransfer.class);
+    
+    static public final int DEFAULT_REQUESTS = 64;
+    static public final long MIN_PART_SIZE = 8L * 1024L * 1024L;
+    static public final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    
+    private final Session jschSession;
+    private final ChannelSftp channel;
+    private final int requests;
+    private final int channels;
+    private final JschRemoteHashes hashes;
+
+    public JschSftpTransfer(Session jschSession, ChannelSftp channel, int requests, int channels) {
+        this(jschSession, channel, requests, channels, null);
+    }
+    
+    /**
+     * @param hashes Hashes remote files with commands (when the sftp server
+     *      can't) or null if not allowed to
+     */
+    public JschSftpTransfer(Session jschSession, ChannelSftp channel, int requests, int channels, JschRemoteHashes hashes) {
+        if (requests < 1) {
+            throw new IllegalArgumentException("requests must be >= 1");
+        }
+        if (channels < 1) {
+            throw new IllegalArgumentException("channels must be >= 1");
+        }
+        this.jschSession = jschSession;
+        this.channel = channel;
+        this.requests = requests;
+        this.channels = channels;
+        this.hashes = hashes;
+    }
+    
+    /**
+     * Number of ranges a file of this size is split into.
+     * @param size The size of the file
+     * @return The number of parts
+     */
+    public int parts(long size) {
+        long parts = Math.max(1L, size / MIN_PART_SIZE);
+        return (int)Math.min(channels, parts);
+    }
+    
+    /**
+     * Uploads to the target.  If the source is a local file of known size
+     * it may be uploaded in parts over multiple channels.
+     * 
+     * If resumable, a local file is uploaded to a temporary name next to the
+     * target (".name.part") that is renamed to the target once complete.  If
+     * that partial file already exists (from a transfer that failed) and is
+     * the start of the source, only the rest is uploaded.  Resumable uploads
+     * are never split into parts since a partial file is only the start of
+     * the source if it was written in order.
+     * @param sourceFile The local file or null if only a stream
+     * @param input The stream of the source
+     * @param size The size of the source or null if unknown
+     * @param target The remote file
+     * @param resume True to upload via a partial file that is resumed
+     * @param monitor The progress monitor
+     * @return The number of bytes uploaded
+     */
+    public long put(Path sourceFile, InputStream input, Long size, String target, boolean resume, SftpProgressMonitor monitor)
+            throws IOException, SftpException, JSchException {
+        
+        final String path = absolute(target);
+        
+        monitor.init(SftpProgressMonitor.PUT, (sourceFile != null ? sourceFile.toString() : "<stream>"),
+            target, (size != null ? size : SftpProgressMonitor.UNKNOWN_SIZE));
+        
+        if (sourceFile == null || size == null) {
+            // only a stream so nothing to split or resume
+            try (JschSftpPipe pipe = new JschSftpPipe(jschSession)) {
+                byte[] handle = pipe.open(path, JschSftpPipe.WRITE | JschSftpPipe.CREATE | JschSftpPipe.TRUNCATE);
+                long bytes = pipe.write(handle, 0, requests, input::read, monitor::count);
+                pipe.close(handle);
+                monitor.end();
+                return bytes;
+            }
+        }
+        
+        final String file = (resume ? partName(path) : path);
+        final long offset;
+        
+        try (JschSftpPipe pipe = new JschSftpPipe(jschSession);
+                FileChannel source = FileChannel.open(sourceFile, StandardOpenOption.READ)) {
+            
+            offset = (resume ? resumable(pipe, file, source, size) : 0L);
+            
+            // parts write their ranges at once so a failure would leave holes
+            final int parts = (resume ? 1 : parts(size - offset));
+            
+            // truncated once up front (unless resuming), then every part writes its own range
+            byte[] handle = pipe.open(file, JschSftpPipe.WRITE | JschSftpPipe.CREATE
+                | (offset > 0 ? 0 : JschSftpPipe.TRUNCATE));
+            
+            if (parts < 2) {
+                upload(pipe, handle, source, offset, size, monitor);
+                pipe.close(handle);
+            } else {
+                pipe.close(handle);
+                
+                final long partSize = (size - offset + parts - 1) / parts;
+                
+                log.debug("Uploading {} in {} parts", sourceFile, parts);
+                
+                final List<JschSftpPipe> pipes = openPipes(parts);
+                try {
+                    runParts(parts, parts, (i) -> {
+                        final long start = offset + i * partSize;
+                        final long end = Math.min(size, start + partSize);
+                        final JschSftpPipe partPipe = pipes.get(i);
+                        
+                        byte[] partHandle = partPipe.open(file, JschSftpPipe.WRITE | JschSftpPipe.CREATE);
+                        upload(partPipe, partHandle, source, start, end, monitor);
+                        partPipe.close(partHandle);
+                    });
+                } finally {
+                    pipes.forEach(JschSftpPipe::close);
+                }
+            }
+            
+            if (resume) {
+                pipe.rename(file, path);
+            }
+        }
+        
+        monitor.end();
+        
+        return size - offset;
+    }
+    
+    /**
+     * Downloads from the source.  If the target is a local file it may be
+     * downloaded in parts over multiple channels.
+     * 
+     * If resumable, a local file is downloaded to a temporary name next to
+     * the target ("name.part") that is atomically moved to the target once
+     * complete.  If that partial file already exists (from a transfer that
+     * failed) and is the start of the source, only the rest is downloaded.
+     * Resumable downloads are never split into parts and are written in the
+     * order of the file so a partial file is always the start of the source.
+     * @param source The remote file
+     * @param targetFile The local file or null if only a stream
+     * @param output The stream of the target (unused if a local file)
+     * @param resume True to download via a partial file that is resumed
+     * @param monitor The progress monitor
+     * @return The number of bytes downloaded
+     */
+    public long get(String source, Path targetFile, OutputStream output, boolean resume, SftpProgressMonitor monitor)
+            throws IOException, SftpException, JSchException {
+        
+        final String path = absolute(source);
+        final long offset;
+        
+        try (JschSftpPipe pipe = new JschSftpPipe(jschSession)) {
+            byte[] handle = pipe.open(path, JschSftpPipe.READ);
+            
+            final long size = pipe.size(handle);
+            
+            monitor.init(SftpProgressMonitor.GET, source,
+                (targetFile != null ? targetFile.toString() : "<stream>"), size);
+            
+            if (targetFile == null) {
+                OrderedSink sink = new OrderedSink(output, 0L, monitor);
+                pipe.read(handle, 0, size, requests, sink);
+                pipe.close(handle);
+                monitor.end();
+                return size;
+            }
+            
+            final Path file = (resume ? partName(targetFile) : targetFile);
+            
+            try (FileChannel target = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                
+                offset = (resume ? resumable(pipe, handle, path, target, size) : 0L);
+                
+                // anything not resumed is discarded
+                target.truncate(offset);
+                
+                // parts write their ranges at once so a failure would leave holes
+                final int parts = (resume ? 1 : parts(size - offset));
+                
+                if (resume) {
+                    // replies may arrive out of order (only written in order)
+                    target.position(offset);
+                    OrderedSink sink = new OrderedSink(Channels.newOutputStream(target), offset, monitor);
+                    pipe.read(handle, offset, size, requests, sink);
+                } else if (parts < 2) {
+                    download(pipe, handle, target, offset, size, monitor);
+                } else {
+                    final long partSize = (size - offset + parts - 1) / parts;
+                    
+                    log.debug("Downloading {} in {} parts", source, parts);
+                    
+                    final List<JschSftpPipe> pipes = openPipes(parts);
+                    try {
+                        runParts(parts, parts, (i) -> {
+                            final long start = offset + i * partSize;
+                            final long end = Math.min(size, start + partSize);
+                            final JschSftpPipe partPipe = pipes.get(i);
+                            
+                            byte[] partHandle = partPipe.open(path, JschSftpPipe.READ);
+                            download(partPipe, partHandle, target, start, end, monitor);
+                            partPipe.close(partHandle);
+                        });
+                    } finally {
+                        pipes.forEach(JschSftpPipe::close);
+                    }
+                }
+                
+                pipe.close(handle);
+            }
+            
+            if (resume) {
+                move(file, targetFile);
+            }
+            
+            monitor.end();
+            
+            return size - offset;
+        }
+    }
+    
+    private void upload(JschSftpPipe pipe, byte[] handle, FileChannel source, long start, long end,
+            SftpProgressMonitor monitor) throws IOException, SftpException {
+        
+        final long[] position = new long[] { start };
+        
+        long bytes = pipe.write(handle, start, requests, (buffer, offset, length) -> {
+            int max = (int)Math.min(length, end - position[0]);
+            if (max <= 0) {
+                return -1;
+            }
+            int n = source.read(ByteBuffer.wrap(buffer, offset, max), position[0]);
+            if (n > 0) {
+                position[0] += n;
+            }
+            return n;
+        }, monitor::count);
+        
+        if (bytes != end - start) {
+            throw new IOException("File changed size while being uploaded");
+        }
+    }
+    
+    private void download(JschSftpPipe pipe, byte[] handle, FileChannel target, long start, long end,
+            SftpProgressMonitor monitor) throws IOException, SftpException {
+        
+        pipe.read(handle, start, end, requests, (position, buffer, offset, length) -> {
+            ByteBuffer bb = ByteBuffer.wrap(buffer, offset, length);
+            long p = position;
+            while (bb.hasRemaining()) {
+                p += target.write(bb, p);
+            }
+            monitor.count(length);
+        });
+    }
+    
+    /**
+     * @return The length of the remote partial file that can be resumed
+     */
+    private long resumable(JschSftpPipe pipe, String partial, FileChannel source, long size)
+            throws IOException, SftpException {
+        
+        JschSftpPipe.Attributes attributes = pipe.lstat(partial);
+        
+        if (attributes == null || attributes.isDirectory() || attributes.size() <= 0 || attributes.size() > size) {
+            return 0L;
+        }
+        
+        byte[] handle = pipe.open(partial, JschSftpPipe.READ);
+        boolean matches = pipe.matches(handle, partial, source, attributes.size(), requests, hashes);
+        pipe.close(handle);
+        
+        return verified(partial, matches, attributes.size(), size);
+    }
+    
+    /**
+     * @return The length of the local partial file that can be resumed
+     */
+    private long resumable(JschSftpPipe pipe, byte[] handle, String source, FileChannel partial, long size)
+            throws IOException, SftpException {
+        
+        long length = partial.size();
+        
+        if (length <= 0 || length > size) {
+            return 0L;
+        }
+        
+        return verified("partial file", pipe.matches(handle, source, partial, length, requests, hashes), length, size);
+    }
+    
+    static private long verified(String partial, boolean matches, long length, long size) {
+        if (!matches) {
+            log.warn("The {} no longer matches its source (will start over)", partial);
+            return 0L;
+        }
+        
+        log.info("Resuming transfer at {} of {} bytes", length, size);
+        
+        return length;
+    }
+    
+    static private String partName(String path) {
+        int slash = path.lastIndexOf('/');
+        return path.substring(0, slash + 1) + "." + path.substring(slash + 1) + ".part";
+    }
+    
+    static private Path partName(Path file) {
+        return file.resolveSibling(file.getFileName() + ".part");
+    }
+    
+    static private void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Uploads many files at once, one per channel.  The directories are
+     * created first (all of the same depth at once).
+     * @param directories The remote directories to create
+     * @param files The local files to their remote file
+     * @param progress Called with the number of bytes as they are written
+     * @return The number of bytes uploaded
+     */
+    public long putAll(List<String> directories, Map<Path,String> files, LongConsumer progress)
+            throws IOException, SftpException, JSchException {
+        
+        final List<String> paths = new ArrayList<>();
+        for (String directory : directories) {
+            paths.add(absolute(directory));
+        }
+        
+        final List<Map.Entry<Path,String>> entries = new ArrayList<>();
+        for (Map.Entry<Path,String> entry : files.entrySet()) {
+            entries.add(new AbstractMap.SimpleEntry<>(entry.getKey(), absolute(entry.getValue())));
+        }
+        
+        try (JschSftpPipe pipe = new JschSftpPipe(jschSession)) {
+            pipe.mkdirs(paths, requests);
+        }
+        
+        return transferAll(entries.size(), (pipe, i) -> {
+            Map.Entry<Path,String> entry = entries.get(i);
+            return pipe.upload(entry.getKey(), entry.getValue(), requests, progress);
+        });
+    }
+    
+    /**
+     * Downloads many files at once, one per channel.  The local directories
+     * must already exist.
+     * @param files The remote files to their local file
+     * @param progress Called with the number of bytes as they are read
+     * @return The number of bytes downloaded
+     */
+    public long getAll(Map<String,Path> files, LongConsumer progress)
+            throws IOException, SftpException, JSchException {
+        
+        final List<Map.Entry<String,Path>> entries = new ArrayList<>();
+        for (Map.Entry<String,Path> entry : files.entrySet()) {
+            entries.add(new AbstractMap.SimpleEntry<>(absolute(entry.getKey()), entry.getValue()));
+        }
+        
+        return transferAll(entries.size(), (pipe, i) -> {
+            Map.Entry<String,Path> entry = entries.get(i);
+            return pipe.download(entry.getKey(), entry.getValue(), requests, progress);
+        });
+    }
+    
+    /**
+     * Makes the remote files match the local ones.  Files with the same size
+     * and modified time are skipped (like rsync's quick check), existing
+     * files that changed only have what differs written (see
+     * JschSftpPipe.patch) and the rest are uploaded.  The modified time of
+     * every remote file written is set to that of the local file.
+     * 
+     * With checksum, files that pass the quick check are also compared by
+     * their SHA-256 (hashed remotely in one batch).  If the server can't hash
+     * them they are patched instead, and if it can't do that either they
+     * are left alone (with a warning) rather than uploaded in full.
+     * @param directories The remote directories to create
+     * @param files The local files to their remote file
+     * @param checksum True to compare the content of existing files even if
+     *      their size matches and they were not modified
+     * @param blockSize The size of the blocks compared
+     * @param progress Called with the number of bytes as they are written
+     * @return The counts of what was done
+     */
+    public SyncCounts sync(List<String> directories, Map<Path,String> files, boolean checksum,
+            int blockSize, LongConsumer progress) throws IOException, SftpException, JSchException {
+        
+        final List<String> paths = new ArrayList<>();
+        for (String directory : directories) {
+            paths.add(absolute(directory));
+        }
+        
+        final List<String> targets = new ArrayList<>();
+        for (String target : files.values()) {
+            targets.add(absolute(target));
+        }
+        
+        final Map<String,JschSftpPipe.Attributes> remotes;
+        
+        try (JschSftpPipe pipe = new JschSftpPipe(jschSession)) {
+            pipe.mkdirs(paths, requests);
+            remotes = pipe.stat(targets, requests);
+        }
+        
+        final List<Map.Entry<Path,String>> changed = new ArrayList<>();
+        final List<Map.Entry<Path,String>> unmodified = new ArrayList<>();
+        int index = 0;
+        
+        for (Path source : files.keySet()) {
+            String target = targets.get(index++);
+            JschSftpPipe.Attributes remote = remotes.get(target);
+            
+            if (remote != null && !remote.isDirectory() && remote.size() == Files.size(source)
+                    && remote.modified() == modified(source)) {
+                if (checksum) {
+                    unmodified.add(new AbstractMap.SimpleEntry<>(source, target));
+                }
+                continue;
+            }
+            
+            changed.add(new AbstractMap.SimpleEntry<>(source, target));
+        }
+        
+        // only patched (never uploaded) unless known to differ
+        final Set<Path> unverified = verify(unmodified, changed);
+        final AtomicInteger patched = new AtomicInteger();
+        final AtomicInteger uploaded = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        
+        long bytes = transferAll(changed.size(), (pipe, i) -> {
+            Map.Entry<Path,String> entry = changed.get(i);
+            JschSftpPipe.Attributes remote = remotes.get(entry.getValue());
+            long written = -1;
+            
+            if (remote != null && !remote.isDirectory() && remote.size() >= blockSize) {
+                // also sets the modified time
+                written = pipe.patch(entry.getKey(), entry.getValue(), remote, blockSize, requests, hashes, progress);
+            }
+            
+            if (written >= 0) {
+                patched.incrementAndGet();
+            } else if (unverified.contains(entry.getKey())) {
+                skipped.incrementAndGet();
+                return 0L;
+            } else {
+                written = pipe.upload(entry.getKey(), entry.getValue(), requests, progress);
+                // only once complete so an interrupted upload is never skipped
+                pipe.setAttributes(entry.getValue(), -1, modified(entry.getKey()));
+                uploaded.incrementAndGet();
+            }
+            
+            return written;
+        });
+        
+        if (skipped.get() > 0) {
+            log.warn("Unable to compare {} files by checksum (the server can't hash them) so they were left"
+                + " as is since their size and modified time match", skipped.get());
+        }
+        
+        return new SyncCounts(files.size() - changed.size() + skipped.get(), patched.get(), uploaded.get(), bytes);
+    }
+    
+    /**
+     * Compares the SHA-256 of the local files with the remote ones, adding
+     * those that differ or could not be compared to the changed files.
+     * @return The files that could not be compared
+     */
+    private Set<Path> verify(List<Map.Entry<Path,String>> files, List<Map.Entry<Path,String>> changed)
+            throws IOException {
+        
+        final Set<Path> unverified = new HashSet<>();
+        
+        if (files.isEmpty()) {
+            return unverified;
+        }
+        
+        final List<String> targets = new ArrayList<>();
+        for (Map.Entry<Path,String> entry : files) {
+            targets.add(entry.getValue());
+        }
+        
+        final Map<String,byte[]> remoteHashes = (hashes != null ? hashes.files(targets) : null);
+        
+        for (Map.Entry<Path,String> entry : files) {
+            final byte[] remoteHash = (remoteHashes != null ? remoteHashes.get(entry.getValue()) : null);
+            
+            if (remoteHash == null) {
+                unverified.add(entry.getKey());
+                changed.add(entry);
+                continue;
+            }
+            
+            try (FileChannel file = FileChannel.open(entry.getKey(), StandardOpenOption.READ)) {
+                if (!Arrays.equals(remoteHash, JschRemoteHashes.sha256(file, 0, file.size()))) {
+                    changed.add(entry);
+                }
+            }
+        }
+        
+        return unverified;
+    }
+    
+    static private long modified(Path file) throws IOException {
+        return Files.getLastModifiedTime(file).to(TimeUnit.SECONDS);
+    }
+    
+    static public class SyncCounts {
+        
+        private final int unchanged;
+        private final int patched;
+        private final int uploaded;
+        private final long bytes;
+
+        public SyncCounts(int unchanged, int patched, int uploaded, long bytes) {
+            this.unchanged = unchanged;
+            this.patched = patched;
+            this.uploaded = uploaded;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return The number of files skipped since their size and modified
+         *      time (or checksum) matched
+         */
+        public int unchanged() {
+            return unchanged;
+        }
+
+        /**
+         * @return The number of existing files only their changed blocks
+         *      were written to
+         */
+        public int patched() {
+            return patched;
+        }
+
+        /**
+         * @return The number of files uploaded in full
+         */
+        public int uploaded() {
+            return uploaded;
+        }
+
+        /**
+         * @return The number of bytes written
+         */
+        public long bytes() {
+            return bytes;
+        }
+        
+    }
+    
+    private interface FileTransfer {
+        long run(JschSftpPipe pipe, int index) throws Exception;
+    }
+    
+    private long transferAll(int count, FileTransfer transfer) throws IOException, SftpException, JSchException {
+        if (count == 0) {
+            return 0;
+        }
+        
+        final int threads = Math.min(channels, count);
+        final List<JschSftpPipe> pipes = openPipes(threads);
+        final Queue<JschSftpPipe> idle = new ConcurrentLinkedQueue<>(pipes);
+        final AtomicLong bytes = new AtomicLong();
+        
+        log.debug("Transferring {} files over {} channels", count, threads);
+        
+        try {
+            runParts(threads, count, (i) -> {
+                // one pipe per thread so one is always idle
+                JschSftpPipe pipe = idle.poll();
+                try {
+                    bytes.addAndGet(transfer.run(pipe, i));
+                } finally {
+                    idle.add(pipe);
+                }
+            });
+        } finally {
+            pipes.forEach(JschSftpPipe::close);
+        }
+        
+        return bytes.get();
+    }
+    
+    /**
+     * Writes data to a stream in the order of the file, holding on to any
+     * that arrives ahead of its turn.
+     */
+    static private class OrderedSink implements JschSftpPipe.Sink {
+        
+        private final OutputStream output;
+        private final SftpProgressMonitor monitor;
+        private final TreeMap<Long,byte[]> pending;
+        private long next;
+
+        public OrderedSink(OutputStream output, long start, SftpProgressMonitor monitor) {
+            this.output = output;
+            this.monitor = monitor;
+            this.pending = new TreeMap<>();
+            this.next = start;
+        }
+        
+        @Override
+        public void accept(long position, byte[] buffer, int offset, int length) throws IOException {
+            if (position != next) {
+                pending.put(position, Arrays.copyOfRange(buffer, offset, offset + length));
+                return;
+            }
+            
+            write(buffer, offset, length);
+            
+            Map.Entry<Long,byte[]> entry;
+            while ((entry = pending.firstEntry()) != null && entry.getKey() == next) {
+                pending.pollFirstEntry();
+                write(entry.getValue(), 0, entry.getValue().length);
+            }
+        }
+        
+        private void write(byte[] buffer, int offset, int length) throws IOException {
+            output.write(buffer, offset, length);
+            next += length;
+            monitor.count(length);
+        }
+    }
+    
+    private String absolute(String path) throws SftpException {
+        // transfer channels start in the home dir rather than our working dir
+        if (path.startsWith("/")) {
+            return path;
+        }
+        String pwd = channel.pwd();
+        return (pwd.endsWith("/") ? pwd : pwd + "/") + path;
+    }
+    
+    /**
+     * Opens the channels one after another up front since jsch does not
+     * reliably open channels of the same session concurrently.
+     */
+    private List<JschSftpPipe> openPipes(int count) throws IOException, SftpException, JSchException {
+        final List<JschSftpPipe> pipes = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                pipes.add(new JschSftpPipe(jschSession));
+            }
+        } catch (IOException | SftpException | JSchException | RuntimeException e) {
+            pipes.forEach(JschSftpPipe::close);
+            throw e;
+        }
+        return pipes;
+    }
+    
+    private interface Part {
+        void run(int index) throws Exception;
+    }
+    
+    private void runParts(int threads, int parts, Part part) throws IOException, SftpException, JSchException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < parts; i++) {
+                final int index = i;
+                futures.add(executor.submit(() -> {
+                    part.run(index);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted during transfer", e);
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException) {
+                throw (IOException)t;
+            } else if (t instanceof SftpException) {
+                throw (SftpException)t;
+            } else if (t instanceof JSchException) {
+                throw (JSchException)t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException)t;
+            }
+            throw new IOException(t.getMessage(), t);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+}
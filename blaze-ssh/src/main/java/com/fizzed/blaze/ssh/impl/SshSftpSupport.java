@@ -20,11 +20,75 @@ import com.fizzed.blaze.util.Streamable;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 
 public interface SshSftpSupport {
     
-    void get(Path source, Streamable<OutputStream> target) throws SshSftpException;
+    default void get(Path source, Streamable<OutputStream> target) throws SshSftpException {
+        get(source, target, JschSftpTransfer.DEFAULT_REQUESTS, 1, false);
+    }
     
-    void put(Streamable<InputStream> source, String target) throws SshSftpException;
+    default void put(Streamable<InputStream> source, String target) throws SshSftpException {
+        put(source, target, JschSftpTransfer.DEFAULT_REQUESTS, 1, false);
+    }
+    
+    /**
+     * Downloads the source with up to the supplied number of requests in
+     * flight per channel.
+     * @param source The remote file
+     * @param target The local output
+     * @param requests The number of outstanding requests per channel
+     * @param channels The maximum number of channels to split the file over
+     * @param resume True to download a local file via a partial file that
+     *      a later attempt resumes
+     * @return The number of bytes transferred
+     */
+    long get(Path source, Streamable<OutputStream> target, int requests, int channels, boolean resume) throws SshSftpException;
+    
+    /**
+     * Uploads the source to the target.
+     * @param source The local input
+     * @param target The remote file
+     * @param requests The number of outstanding requests per channel
+     * @param channels The maximum number of channels to split the file over
+     * @param resume True to upload a local file via a partial file that a
+     *      later attempt resumes
+     * @return The number of bytes transferred
+     */
+    long put(Streamable<InputStream> source, String target, int requests, int channels, boolean resume) throws SshSftpException;
+    
+    /**
+     * Uploads many files at once over multiple channels.
+     * @param directories The remote directories to create first
+     * @param files The local files to their remote file
+     * @param requests The number of outstanding requests per channel
+     * @param channels The maximum number of channels
+     * @return The number of bytes transferred
+     */
+    long putAll(List<String> directories, Map<Path,String> files, int requests, int channels) throws SshSftpException;
+    
+    /**
+     * Downloads many files at once over multiple channels.
+     * @param files The remote files to their local file
+     * @param requests The number of outstanding requests per channel
+     * @param channels The maximum number of channels
+     * @return The number of bytes transferred
+     */
+    long getAll(Map<String,Path> files, int requests, int channels) throws SshSftpException;
+    
+    /**
+     * Uploads only what changed of many files over multiple channels.
+     * @param directories The remote directories to create first
+     * @param files The local files to their remote file
+     * @param checksum True to compare the blocks of files even if their
+     *      size matches and they were not modified
+     * @param blockSize The size of the blocks compared
+     * @param requests The number of outstanding requests per channel
+     * @param channels The maximum number of channels
+     * @return The counts of what was done
+     */
+    JschSftpTransfer.SyncCounts sync(List<String> directories, Map<Path,String> files, boolean checksum,
+        int blockSize, int requests, int channels) throws SshSftpException;
     
 }
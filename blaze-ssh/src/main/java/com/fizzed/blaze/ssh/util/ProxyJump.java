@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.util;
+
+import com.fizzed.blaze.util.MutableUri;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Helps working with an OpenSSH ProxyJump.  Each hop is connected to thru
+ * the previous one.  Examples:
+ * 
+ *   ProxyJump jump1.example.com
+ *   ProxyJump fred@jump1.example.com:2222
+ *   ProxyJump jump1.example.com,fred@jump2.example.com
+ *   ProxyJump ssh://fred@jump1.example.com:2222
+ *   ProxyJump none
+ */
+public class ProxyJump {
+    
+    private final List<MutableUri> hops;
+    
+    public ProxyJump(List<MutableUri> hops) {
+        this.hops = hops;
+    }
+
+    /**
+     * @return The hosts to jump thru in order (empty if "none")
+     */
+    public List<MutableUri> getHops() {
+        return hops;
+    }
+    
+    static public ProxyJump parse(String value) {
+        String trimmed = value.trim();
+        
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Invalid ProxyJump '" + value + "'");
+        }
+        
+        if (trimmed.equalsIgnoreCase("none")) {
+            return new ProxyJump(Collections.emptyList());
+        }
+        
+        List<MutableUri> hops = new ArrayList<>();
+        
+        for (String hop : trimmed.split(",")) {
+            hop = hop.trim();
+            
+            if (hop.startsWith("ssh://")) {
+                hop = hop.substring(6);
+            }
+            
+            if (hop.isEmpty() || hop.contains(" ") || hop.contains("/")) {
+                throw new IllegalArgumentException("Invalid ProxyJump host '" + hop + "' in '" + value + "'");
+            }
+            
+            hops.add(MutableUri.of("ssh://" + hop));
+        }
+        
+        return new ProxyJump(hops);
+    }
+    
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import java.io.IOException;
+import java.util.Map;
+import org.apache.sshd.common.util.buffer.Buffer;
+import org.apache.sshd.common.util.buffer.ByteArrayBuffer;
+import org.apache.sshd.server.Command;
+import org.apache.sshd.server.subsystem.sftp.SftpSubsystem;
+import org.apache.sshd.server.subsystem.sftp.SftpSubsystemFactory;
+import static org.apache.sshd.common.subsystem.sftp.SftpConstants.SSH_FX_OP_UNSUPPORTED;
+
+/**
+ * Sftp subsystem for tests that reads version 3 attribute times as 32-bit
+ * (sshd 1.0 reads them as 64-bit and then fails the whole session on any
+ * setstat of modified times).
+ */
+public class SftpV3SubsystemFactory extends SftpSubsystemFactory {
+    
+    private boolean checkFile = true;
+    
+    /**
+     * Answers "check-file-handle" requests as unsupported (like OpenSSH).
+     * @return This factory
+     */
+    public SftpV3SubsystemFactory withoutCheckFile() {
+        this.checkFile = false;
+        return this;
+    }
+    
+    @Override
+    public Command create() {
+        return new SftpSubsystem(getExecutorService(), isShutdownOnExit(), getUnsupportedAttributePolicy()) {
+            @Override
+            protected Map<String,Object> readAttrs(Buffer buffer) throws IOException {
+                if (version != 3) {
+                    return super.readAttrs(buffer);
+                }
+                
+                int flags = buffer.getInt();
+                Buffer widened = new ByteArrayBuffer();
+                widened.putInt(flags);
+                if ((flags & 0x01) != 0) {
+                    widened.putLong(buffer.getLong());              // size
+                }
+                if ((flags & 0x02) != 0) {
+                    widened.putInt(buffer.getInt());                // uid
+                    widened.putInt(buffer.getInt());                // gid
+                }
+                if ((flags & 0x04) != 0) {
+                    widened.putInt(buffer.getInt());                // permissions
+                }
+                if ((flags & 0x08) != 0) {
+                    widened.putLong(buffer.getInt() & 0xFFFFFFFFL); // atime
+                    widened.putLong(buffer.getInt() & 0xFFFFFFFFL); // mtime
+                }
+                return super.readAttrs(widened);
+            }
+            
+            @Override
+            protected void doCheckFileHash(Buffer buffer, int id, String targetType) throws IOException {
+                if (checkFile) {
+                    super.doCheckFileHash(buffer, id, targetType);
+                } else {
+                    buffer.clear();
+                    sendStatus(buffer, id, SSH_FX_OP_UNSUPPORTED, targetType);
+                }
+            }
+        };
+    }
+    
+}
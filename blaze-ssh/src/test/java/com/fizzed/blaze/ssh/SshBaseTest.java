@@ -68,7 +68,10 @@ public class SshBaseTest {
         sshd = SshServer.setUpDefaultServer();
         sshd.setHost("localhost");
         sshd.setPort(0);        // auto
-        sshd.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        // default dsa host key is signed w/ sha-1 which newer jvms reject
+        SimpleGeneratorHostKeyProvider hostKeyProvider = new SimpleGeneratorHostKeyProvider();
+        hostKeyProvider.setAlgorithm("RSA");
+        sshd.setKeyPairProvider(hostKeyProvider);
         sshd.setPasswordAuthenticator((String username, String password, ServerSession ss) -> {
             log.info("Authenticate {} with {}", username, password);
             return "blaze".equals(username) && "test".equals(password);
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.ssh.impl.JschCache;
+import com.fizzed.blaze.ssh.impl.JschConnect;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.KeyPair;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.PublicKey;
+import java.util.Arrays;
+import org.apache.sshd.server.session.ServerSession;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class SshCacheTest extends SshBaseTest {
+    
+    private final JschCache cache = new JschCache();
+    
+    @Test
+    public void reloadsWhenModified() throws Exception {
+        contextWithEmptyUserDir();
+        
+        Path configFile = context.userDir().resolve("config");
+        Files.write(configFile, Arrays.asList("Host target", "  HostName localhost"));
+        
+        Object config1 = cache.config(configFile);
+        Object config2 = cache.config(configFile);
+        
+        assertThat(config1, is(sameInstance(config2)));
+        assertThat(cache.loads(), is(1L));
+        
+        Files.write(configFile, Arrays.asList("Host target", "  HostName 127.0.0.1"));
+        Files.setLastModifiedTime(configFile,
+            FileTime.fromMillis(Files.getLastModifiedTime(configFile).toMillis() + 2000L));
+        
+        Object config3 = cache.config(configFile);
+        
+        assertThat(config3, is(not(sameInstance(config1))));
+        assertThat(cache.loads(), is(2L));
+    }
+    
+    @Test
+    public void reusedAcrossConnects() throws Exception {
+        contextWithEmptyUserDir();
+        
+        sshd.start();
+        
+        Path configFile = context.userDir().resolve("config");
+        Files.write(configFile, Arrays.asList("Host target", "  HostName localhost"));
+        
+        // unknown host accepted only once
+        prompter.add("yes");
+        
+        for (int i = 0; i < 3; i++) {
+            new JschConnect(context)
+                .cache(cache)
+                .host("target")
+                .port(sshd.getPort())
+                .username("blaze")
+                .password("test")
+                .configFile(configFile)
+                .run()
+                .close();
+        }
+        
+        // config loaded once, known_hosts again only after the host was saved
+        assertThat(prompter.answers(), hasSize(0));
+        assertThat(cache.loads(), is(3L));
+    }
+    
+    @Test
+    public void passphrasePromptedOnce() throws Exception {
+        contextWithEmptyUserDir();
+        
+        // an encrypted identity
+        Path identityFile = context.userDir().resolve("id_rsa");
+        KeyPair keyPair = KeyPair.genKeyPair(new JSch(), KeyPair.RSA, 2048);
+        keyPair.writePrivateKey(identityFile.toString(), "secret".getBytes("UTF-8"));
+        
+        sshd.setPasswordAuthenticator(null);
+        sshd.setPublickeyAuthenticator((String username, PublicKey pk, ServerSession ss) -> {
+            return "blaze".equals(username);
+        });
+        
+        sshd.start();
+        
+        // only a single answer (a second prompt would fail)
+        prompter.add("secret");
+        
+        for (int i = 0; i < 2; i++) {
+            new JschConnect(context)
+                .cache(cache)
+                .host(sshd.getHost())
+                .port(sshd.getPort())
+                .username("blaze")
+                .identityFile(identityFile)
+                .disableHostChecking()
+                .run()
+                .close();
+        }
+        
+        assertThat(prompter.answers(), hasSize(0));
+    }
+    
+}
@@ -16,12 +16,21 @@
 package com.fizzed.blaze.ssh;
 
 import com.fizzed.blaze.ssh.impl.JschConnect;
+import com.fizzed.blaze.ssh.impl.JschExec;
+import com.fizzed.blaze.util.CaptureOutput;
+import com.fizzed.blaze.util.Streamables;
 import java.net.ConnectException;
+import java.net.ServerSocket;
 import java.net.UnknownHostException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.PublicKey;
+import java.util.Arrays;
+import org.apache.sshd.common.compression.BuiltinCompressions;
 import org.apache.sshd.common.config.keys.KeyUtils;
+import org.apache.sshd.common.kex.KexProposalOption;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.server.forward.AcceptAllForwardingFilter;
 import org.apache.sshd.server.session.ServerSession;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.instanceOf;
@@ -30,6 +39,7 @@ import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -285,4 +295,211 @@ public class SshConnectTest extends SshBaseTest {
         assertThat(prompter.answers(), hasSize(0));
     }
     
+    @Test
+    public void proxyViaDirectTcpip() throws Exception {
+        contextWithEmptyUserDir();
+        
+        sshd.setTcpipForwardingFilter(AcceptAllForwardingFilter.INSTANCE);
+        
+        SshSession jump = startAndConnect();
+        
+        SshSession session
+            = new JschConnect(context)
+                .host(sshd.getHost())
+                .port(sshd.getPort())
+                .username("blaze")
+                .password("test")
+                .disableHostChecking()
+                .proxy(jump, true)
+                .run();
+        
+        assertThat(session, is(not(nullValue())));
+        assertThat(session.uri().getHost(), is("localhost"));
+        assertThat(session.uri().getUsername(), is("blaze"));
+        
+        // closing the session closes the jump session too
+        session.close();
+        assertThat(jump.closed(), is(true));
+    }
+    
+    @Test
+    public void proxyJumpFromConfig() throws Exception {
+        contextWithEmptyUserDir();
+        
+        sshd.setTcpipForwardingFilter(AcceptAllForwardingFilter.INSTANCE);
+        sshd.start();
+        
+        Path configFile = context.userDir().resolve("config");
+        Files.write(configFile, Arrays.asList(
+            "Host target",
+            "  HostName localhost",
+            "  Port " + sshd.getPort(),
+            "  User blaze",
+            "  ProxyJump blaze@localhost:" + sshd.getPort()));
+        
+        // jump host password is prompted for
+        prompter.add("test");
+        
+        SshSession session
+            = new JschConnect(context)
+                .host("target")
+                .disableHostChecking()
+                .configFile(configFile)
+                .password("test")
+                .run();
+        
+        assertThat(session, is(not(nullValue())));
+        assertThat(session.uri().getHost(), is("localhost"));
+        assertThat(session.uri().getUsername(), is("blaze"));
+        assertThat(prompter.answers(), hasSize(0));
+    }
+    
+    @Test
+    public void proxyJumpClosedWhenConnectFails() throws Exception {
+        contextWithEmptyUserDir();
+        
+        sshd.setTcpipForwardingFilter(AcceptAllForwardingFilter.INSTANCE);
+        sshd.start();
+        
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        
+        Path configFile = context.userDir().resolve("config");
+        Files.write(configFile, Arrays.asList(
+            "Host target",
+            "  HostName localhost",
+            "  Port " + closedPort,
+            "  User blaze",
+            "  ProxyJump blaze@localhost:" + sshd.getPort()));
+        
+        prompter.add("test");
+        
+        try {
+            new JschConnect(context)
+                .host("target")
+                .disableHostChecking()
+                .configFile(configFile)
+                .password("test")
+                .run();
+            fail();
+        } catch (SshException e) {
+            // expected
+        }
+        
+        // the jump host session is closed too
+        for (int i = 0; i < 50 && !sshd.getActiveSessions().isEmpty(); i++) {
+            Thread.sleep(100L);
+        }
+        
+        assertThat(sshd.getActiveSessions(), hasSize(0));
+    }
+    
+    @Test
+    public void compressionAndCiphers() throws Exception {
+        contextWithEmptyUserDir();
+        
+        sshd.setCompressionFactories(Arrays.asList(
+            BuiltinCompressions.none, BuiltinCompressions.zlib, BuiltinCompressions.delayedZlib));
+        
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("Hello World! ");
+        }
+        
+        commandHandler = (SshCommand command) -> {
+            command.outMessage(text.toString());
+            command.exit.onExit(0);
+        };
+        
+        sshd.start();
+        
+        SshSession session
+            = new JschConnect(context)
+                .host(sshd.getHost())
+                .port(sshd.getPort())
+                .username("blaze")
+                .password("test")
+                .disableHostChecking()
+                .compression(true)
+                .ciphers("aes128-gcm@openssh.com", "aes256-ctr")    // gcm is skipped
+                .macs("hmac-sha2-256")
+                .run();
+        
+        Session serverSession = sshd.getActiveSessions().get(0);
+        assertThat(serverSession.getNegotiatedKexParameter(KexProposalOption.C2SCOMP), is("zlib@openssh.com"));
+        assertThat(serverSession.getNegotiatedKexParameter(KexProposalOption.C2SENC), is("aes256-ctr"));
+        assertThat(serverSession.getNegotiatedKexParameter(KexProposalOption.S2CMAC), is("hmac-sha2-256"));
+        
+        // data still flows once compression kicks in after auth
+        CaptureOutput capture = Streamables.captureOutput();
+        
+        new JschExec(context, session)
+            .command("hello")
+            .pipeOutput(capture)
+            .run();
+        
+        assertThat(capture.toString(), is(text.toString()));
+    }
+    
+    @Test
+    public void compressionAndCiphersFromConfig() throws Exception {
+        contextWithEmptyUserDir();
+        
+        sshd.setCompressionFactories(Arrays.asList(
+            BuiltinCompressions.none, BuiltinCompressions.zlib, BuiltinCompressions.delayedZlib));
+        sshd.start();
+        
+        Path configFile = context.userDir().resolve("config");
+        Files.write(configFile, Arrays.asList(
+            "Host target",
+            "  HostName localhost",
+            "  Port " + sshd.getPort(),
+            "  User blaze",
+            "  Compression yes",
+            "  Ciphers ^aes192-ctr",
+            "  MACs hmac-sha1"));
+        
+        new JschConnect(context)
+            .host("target")
+            .disableHostChecking()
+            .configFile(configFile)
+            .password("test")
+            .run();
+        
+        Session serverSession = sshd.getActiveSessions().get(0);
+        assertThat(serverSession.getNegotiatedKexParameter(KexProposalOption.C2SCOMP), is("zlib@openssh.com"));
+        assertThat(serverSession.getNegotiatedKexParameter(KexProposalOption.C2SENC), is("aes192-ctr"));
+        assertThat(serverSession.getNegotiatedKexParameter(KexProposalOption.S2CMAC), is("hmac-sha1"));
+    }
+    
+    @Test
+    public void invalidCompressionLevelFromConfig() throws Exception {
+        contextWithEmptyUserDir();
+        
+        sshd.start();
+        
+        Path configFile = context.userDir().resolve("config");
+        Files.write(configFile, Arrays.asList(
+            "Host target",
+            "  HostName localhost",
+            "  Port " + sshd.getPort(),
+            "  User blaze",
+            "  Compression yes",
+            "  CompressionLevel fast"));
+        
+        try {
+            new JschConnect(context)
+                .host("target")
+                .disableHostChecking()
+                .configFile(configFile)
+                .password("test")
+                .run();
+            fail();
+        } catch (SshException e) {
+            assertThat(e.getMessage(), containsString("CompressionLevel 'fast'"));
+        }
+    }
+    
 }
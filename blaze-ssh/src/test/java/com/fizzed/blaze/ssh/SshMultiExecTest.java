@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.ssh.impl.JschMultiExec;
+import com.fizzed.blaze.util.CaptureOutput;
+import com.fizzed.blaze.util.Streamables;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class SshMultiExecTest extends SshBaseTest {
+    
+    private SshMultiExec multiExec(String... hosts) {
+        SshMultiExec exec = new JschMultiExec(context)
+            .connect((connect) -> connect.disableHostChecking())
+            .command("hello");
+        
+        for (String host : hosts) {
+            exec.host("ssh://blaze:test@" + host + ":" + sshd.getPort());
+        }
+        
+        return exec;
+    }
+    
+    @Test
+    public void executesOnAllHosts() throws Exception {
+        sshd.start();
+        
+        commandHandler = (SshCommand command) -> {
+            command.outMessage("hello\nworld\n");
+            command.exit.onExit(0);
+        };
+        
+        CaptureOutput output = Streamables.captureOutput();
+        
+        SshMultiExec.Result result = multiExec("localhost", "127.0.0.1")
+            .pipeOutput(output)
+            .runResult();
+        
+        assertThat(result.get(), hasSize(2));
+        assertThat(result.succeeded(), hasSize(2));
+        assertThat(result.get().get(0).uri().getHost(), is("localhost"));
+        assertThat(result.get().get(0).exitValue(), is(0));
+        assertThat(result.get().get(1).uri().getHost(), is("127.0.0.1"));
+        
+        String out = output.toString();
+        int port = sshd.getPort();
+        
+        assertThat(out, containsString("[localhost:" + port + "] hello"));
+        assertThat(out, containsString("[localhost:" + port + "] world"));
+        assertThat(out, containsString("[127.0.0.1:" + port + "] hello"));
+        assertThat(out, containsString("[127.0.0.1:" + port + "] world"));
+    }
+    
+    @Test
+    public void aggregatesFailures() throws Exception {
+        sshd.start();
+        
+        AtomicInteger count = new AtomicInteger();
+        
+        commandHandler = (SshCommand command) -> {
+            command.exit.onExit(count.incrementAndGet() == 1 ? 3 : 0);
+        };
+        
+        SshMultiExec.Result result = multiExec("localhost", "localhost")
+            .concurrency(1)
+            .failOnError(false)
+            .pipeOutput(Streamables.nullOutput())
+            .runResult();
+        
+        assertThat(result.failed(), hasSize(1));
+        assertThat(result.failed().get(0).exitValue(), is(3));
+        assertThat(result.succeeded(), hasSize(1));
+        
+        count.set(0);
+        
+        try {
+            multiExec("localhost", "localhost")
+                .concurrency(1)
+                .pipeOutput(Streamables.nullOutput())
+                .run();
+            fail();
+        } catch (SshException e) {
+            assertThat(e.getMessage(), containsString("1 of 2 hosts"));
+        }
+    }
+    
+    @Test
+    public void boundsConcurrency() throws Exception {
+        sshd.start();
+        
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        
+        commandHandler = (SshCommand command) -> {
+            // do not block the server's own threads
+            new Thread(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(200L);
+                } catch (InterruptedException e) {
+                    // do nothing
+                }
+                running.decrementAndGet();
+                command.exit.onExit(0);
+            }).start();
+        };
+        
+        SshMultiExec.Result result = multiExec("localhost", "localhost", "localhost", "localhost", "localhost")
+            .concurrency(2)
+            .pipeOutput(Streamables.nullOutput())
+            .runResult();
+        
+        assertThat(result.succeeded(), hasSize(5));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+    }
+    
+    @Test
+    public void rollingBatchesStopOnFailure() throws Exception {
+        sshd.start();
+        
+        AtomicInteger count = new AtomicInteger();
+        
+        commandHandler = (SshCommand command) -> {
+            command.exit.onExit(count.incrementAndGet() == 3 ? 1 : 0);
+        };
+        
+        SshMultiExec.Result result = multiExec("localhost", "localhost", "localhost", "localhost", "localhost", "localhost")
+            .batch(2)
+            .concurrency(1)
+            .failOnError(false)
+            .pipeOutput(Streamables.nullOutput())
+            .runResult();
+        
+        assertThat(count.get(), is(4));
+        assertThat(result.get(), hasSize(6));
+        assertThat(result.succeeded(), hasSize(3));
+        assertThat(result.failed(), hasSize(1));
+        assertThat(result.skipped(), hasSize(2));
+        assertThat(result.get().get(5).status(), is(SshMultiExec.Status.SKIPPED));
+        assertThat(result.get().get(5).exitValue(), is(nullValue()));
+    }
+    
+}
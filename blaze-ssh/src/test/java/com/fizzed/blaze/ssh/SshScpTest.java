@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.ssh.impl.JschScp;
+import com.fizzed.blaze.util.StreamableInput;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.command.ScpCommandFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SshScpTest extends SshBaseTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private File remoteDir;
+    
+    @Before
+    public void setupScp() throws Exception {
+        remoteDir = temporaryFolder.newFolder("remote");
+        sshd.setFileSystemFactory(new VirtualFileSystemFactory(remoteDir.getAbsolutePath()));
+        sshd.setCommandFactory(new ScpCommandFactory());
+    }
+    
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+    
+    private Path localTree(String name, int files, int size) throws Exception {
+        Path dir = temporaryFolder.newFolder(name).toPath();
+        for (int i = 0; i < files; i++) {
+            Path subDir = dir.resolve("sub" + (i % 4));
+            Files.createDirectories(subDir);
+            Files.write(subDir.resolve("file" + i + ".txt"), randomBytes(size + i));
+        }
+        return dir;
+    }
+    
+    @Test
+    public void streamWithKnownSize() throws Exception {
+        SshSession session = startAndConnect();
+        
+        byte[] bytes = randomBytes(3 * 1024 * 1024 + 17);
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream stream = new ByteArrayInputStream(bytes) {
+            @Override
+            public void close() throws IOException {
+                closed.set(true);
+            }
+        };
+        
+        SshScp.Result result = new JschScp(context, session)
+            .source(new StreamableInput(stream, "<stream>", null, (long)bytes.length))
+            .target("stream.bin")
+            .runResult();
+        
+        // closed once sent (the same as a file)
+        assertThat(closed.get(), is(true));
+        assertThat(result.files(), is(1L));
+        assertThat(result.bytes(), is((long)bytes.length));
+        assertArrayEquals(bytes, Files.readAllBytes(remoteDir.toPath().resolve("stream.bin")));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void streamWithUnknownSize() throws Exception {
+        SshSession session = startAndConnect();
+        
+        new JschScp(context, session)
+            .source(new StreamableInput(new ByteArrayInputStream(new byte[10]), "<stream>", null, null));
+    }
+    
+    @Test
+    public void fileWithPreservedTimes() throws Exception {
+        SshSession session = startAndConnect();
+        
+        Path file = temporaryFolder.newFile("times.txt").toPath();
+        Files.write(file, randomBytes(1000));
+        long modified = TimeUnit.SECONDS.toMillis(1500000000L);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+        
+        new JschScp(context, session)
+            .source(file)
+            .target("times.txt")
+            .preserveTimes(true)
+            .run();
+        
+        Path remoteFile = remoteDir.toPath().resolve("times.txt");
+        assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(remoteFile));
+        assertThat(Files.getLastModifiedTime(remoteFile).toMillis(), is(modified));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void directoryRequiresRecursive() throws Exception {
+        SshSession session = startAndConnect();
+        
+        new JschScp(context, session)
+            .source(localTree("notrecursive", 2, 10))
+            .target("site")
+            .run();
+    }
+    
+    @Test
+    public void recursiveDirectory() throws Exception {
+        SshSession session = startAndConnect();
+        
+        Path localDir = localTree("site", 50, 100);
+        
+        SshScp.Result result = new JschScp(context, session)
+            .source(localDir)
+            .target("site")
+            .recursive(true)
+            .runResult();
+        
+        assertThat(result.files(), is(50L));
+        
+        for (int i = 0; i < 50; i++) {
+            String file = "sub" + (i % 4) + "/file" + i + ".txt";
+            assertArrayEquals(Files.readAllBytes(localDir.resolve(file)),
+                Files.readAllBytes(remoteDir.toPath().resolve("site").resolve(file)));
+        }
+    }
+    
+    @Test
+    public void rejectedTargetFailsWithoutWriting() throws Exception {
+        SshSession session = startAndConnect();
+        
+        // content that would be a valid message if read as protocol lines
+        byte[] bytes = "C0644 6 evil.txt\nhello\n\0".getBytes(StandardCharsets.UTF_8);
+        
+        try {
+            new JschScp(context, session)
+                .source(new StreamableInput(new ByteArrayInputStream(bytes), "<stream>", null, (long)bytes.length))
+                .target("missing/stream.bin")
+                .run();
+            fail("expected remote scp to reject the target");
+        } catch (SshException e) {
+            // expected
+        }
+        
+        assertThat(Files.exists(remoteDir.toPath().resolve("missing")), is(false));
+        assertThat(Files.exists(remoteDir.toPath().resolve("evil.txt")), is(false));
+    }
+    
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.ssh.impl.JschConnect;
+import com.fizzed.blaze.ssh.impl.JschExec;
+import com.fizzed.blaze.ssh.impl.JschSession;
+import com.fizzed.blaze.ssh.impl.JschSessionPool;
+import com.fizzed.blaze.util.CaptureOutput;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Test;
+
+public class SshSessionPoolTest extends SshBaseTest {
+    
+    private final JschSessionPool pool = new JschSessionPool();
+    
+    @After
+    public void closePool() {
+        pool.close();
+    }
+    
+    private JschSession pooledConnect() {
+        return (JschSession)new JschConnect(context)
+            .pool(pool)
+            .host(sshd.getHost())
+            .port(sshd.getPort())
+            .username("blaze")
+            .password("test")
+            .disableHostChecking()
+            .run();
+    }
+    
+    @Test
+    public void reusesConnection() throws Exception {
+        sshd.start();
+        
+        JschSession session1 = pooledConnect();
+        JschSession session2 = pooledConnect();
+        
+        assertThat(session1.pooled(), is(true));
+        assertThat(session1, is(not(sameInstance(session2))));
+        assertThat(session1.getJschSession(), is(sameInstance(session2.getJschSession())));
+        assertThat(pool.size(), is(1));
+        assertThat(sshd.getActiveSessions().size(), is(1));
+        
+        // channels are multiplexed over the shared connection
+        commandHandler = (SshCommand command) -> {
+            command.outMessage("ok");
+            command.exit.onExit(0);
+        };
+        
+        CaptureOutput output = new JschExec(context, session2)
+            .command("hello")
+            .runCaptureOutput();
+        
+        assertThat(output.toString().trim(), is("ok"));
+        
+        // closing returns it to the pool (connection stays up)
+        session1.close();
+        session2.close();
+        
+        assertThat(session1.closed(), is(true));
+        assertThat(session1.getJschSession().isConnected(), is(true));
+        
+        JschSession session3 = pooledConnect();
+        
+        assertThat(session3.getJschSession(), is(sameInstance(session1.getJschSession())));
+        
+        session3.close();
+    }
+    
+    @Test
+    public void evictsIdleConnections() throws Exception {
+        sshd.start();
+        
+        pool.idleTimeout(0);
+        
+        JschSession session = pooledConnect();
+        
+        // still referenced
+        pool.evictIdle();
+        assertThat(pool.size(), is(1));
+        
+        session.close();
+        
+        pool.evictIdle();
+        assertThat(pool.size(), is(0));
+        assertThat(session.getJschSession().isConnected(), is(false));
+    }
+    
+    @Test
+    public void reconnectsWhenUnhealthy() throws Exception {
+        sshd.start();
+        
+        JschSession session1 = pooledConnect();
+        session1.close();
+        
+        // server drops the connection
+        session1.getJschSession().disconnect();
+        
+        JschSession session2 = pooledConnect();
+        
+        assertThat(session2.getJschSession(), is(not(sameInstance(session1.getJschSession()))));
+        assertThat(session2.getJschSession().isConnected(), is(true));
+        
+        session2.close();
+    }
+    
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.ssh.impl.JschSftp;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import org.apache.sshd.common.file.nativefs.NativeFileSystemFactory;
+import org.apache.sshd.server.shell.ProcessShellFactory;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Syncs and resumes with a server like OpenSSH: its sftp can copy data but
+ * not hash it so remote files are hashed by commands run with a real shell.
+ */
+public class SshSftpSyncTest extends SshBaseTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private File remoteDir;
+    private String path;
+    
+    @Before
+    public void setupShell() throws Exception {
+        Assume.assumeTrue(Files.isExecutable(Paths.get("/bin/sh")));
+        
+        remoteDir = temporaryFolder.newFolder("remote");
+        sshd.setFileSystemFactory(new NativeFileSystemFactory());
+        sshd.setSubsystemFactories(Arrays.asList(new SftpV3SubsystemFactory().withoutCheckFile()));
+        shell(null);
+    }
+    
+    private void shell(String path) {
+        final String prefix = (path != null ? "PATH=" + path + ":$PATH; " : "");
+        sshd.setCommandFactory((String command) -> {
+            return new ProcessShellFactory(new String[] { "/bin/sh", "-c", prefix + command },
+                EnumSet.noneOf(ProcessShellFactory.TtyOptions.class)).create();
+        });
+    }
+    
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+    
+    private SshSftpSync sync(SshSftpSession sftp, Path site) {
+        return sftp.sync()
+            .path(site)
+            .target(remoteDir.getAbsolutePath() + "/deploy");
+    }
+    
+    @Test
+    public void insertedByteOnlySendsWhatChanged() throws Exception {
+        SshSession session = startAndConnect();
+        
+        Path site = temporaryFolder.newFolder("site").toPath();
+        Path big = site.resolve("big.bin");
+        byte[] bigBytes = randomBytes(1024 * 1024 + 10);
+        Files.write(big, bigBytes);
+        Files.setLastModifiedTime(big, FileTime.from(1500000000L, TimeUnit.SECONDS));
+        
+        Path remoteBig = remoteDir.toPath().resolve("deploy/site/big.bin");
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            SshSftpSync.Result sync = sync(sftp, site).runResult();
+            
+            assertThat(sync.uploaded(), is(1));
+            
+            // every block after it moved by a byte
+            byte[] inserted = new byte[bigBytes.length + 1];
+            System.arraycopy(bigBytes, 0, inserted, 0, 1000);
+            inserted[1000] = 42;
+            System.arraycopy(bigBytes, 1000, inserted, 1001, bigBytes.length - 1000);
+            Files.write(big, inserted);
+            Files.setLastModifiedTime(big, FileTime.from(1600000000L, TimeUnit.SECONDS));
+            Files.setPosixFilePermissions(remoteBig, PosixFilePermissions.fromString("rw-r-----"));
+            
+            sync = sync(sftp, site).runResult();
+            
+            // the first block (w/ the new byte) and the partial last block
+            assertThat(sync.patched(), is(1));
+            assertThat(sync.bytes(), is(64L * 1024L + 1L + 10L));
+            assertArrayEquals(inserted, Files.readAllBytes(remoteBig));
+            assertThat(Files.getLastModifiedTime(remoteBig).to(TimeUnit.SECONDS), is(1600000000L));
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(remoteBig)), is("rw-r-----"));
+            assertThat(Files.exists(remoteBig.resolveSibling(".big.bin.patch")), is(false));
+        }
+    }
+    
+    @Test
+    public void insertedByteWithoutGnuSplit() throws Exception {
+        // blocks are then hashed one at a time w/ dd
+        Path bin = temporaryFolder.newFolder("bin").toPath();
+        Files.write(bin.resolve("split"), "#!/bin/sh\nexit 1\n".getBytes("UTF-8"));
+        Files.setPosixFilePermissions(bin.resolve("split"), PosixFilePermissions.fromString("rwxr-xr-x"));
+        shell(bin.toString());
+        
+        SshSession session = startAndConnect();
+        
+        Path site = temporaryFolder.newFolder("site").toPath();
+        Path big = site.resolve("big.bin");
+        byte[] bigBytes = randomBytes(300000);
+        Files.write(big, bigBytes);
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            sync(sftp, site).runResult();
+            
+            byte[] removed = Arrays.copyOfRange(bigBytes, 10, bigBytes.length);
+            Files.write(big, removed);
+            Files.setLastModifiedTime(big, FileTime.from(1600000000L, TimeUnit.SECONDS));
+            
+            SshSftpSync.Result sync = sync(sftp, site).runResult();
+            
+            // the first block is the only one not found
+            assertThat(sync.patched(), is(1));
+            assertThat(sync.bytes(), is(64L * 1024L - 10L + (300000L % (64L * 1024L))));
+            assertArrayEquals(removed, Files.readAllBytes(remoteDir.toPath().resolve("deploy/site/big.bin")));
+        }
+    }
+    
+    @Test
+    public void checksumComparesByHash() throws Exception {
+        SshSession session = startAndConnect();
+        
+        Path site = temporaryFolder.newFolder("site").toPath();
+        byte[] bigBytes = randomBytes(300000);
+        Files.write(site.resolve("big.bin"), bigBytes);
+        for (int i = 1; i <= 3; i++) {
+            Files.write(site.resolve("small" + i + ".txt"), randomBytes(i * 100));
+        }
+        
+        Path remoteSite = remoteDir.toPath().resolve("deploy/site");
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            SshSftpSync.Result sync = sync(sftp, site).runResult();
+            
+            assertThat(sync.uploaded(), is(4));
+            
+            // identical content is never sent again
+            sync = sync(sftp, site).checksum(true).runResult();
+            
+            assertThat(sync.unchanged(), is(4));
+            assertThat(sync.bytes(), is(0L));
+            
+            // changed remotely w/o changing its size or modified time
+            for (String name : new String[] { "big.bin", "small2.txt" }) {
+                Path remote = remoteSite.resolve(name);
+                FileTime modified = Files.getLastModifiedTime(remote);
+                byte[] bytes = Files.readAllBytes(remote);
+                bytes[150] ^= 1;
+                Files.write(remote, bytes);
+                Files.setLastModifiedTime(remote, modified);
+            }
+            
+            sync = sync(sftp, site).checksum(true).runResult();
+            
+            assertThat(sync.unchanged(), is(2));
+            assertThat(sync.patched(), is(1));
+            assertThat(sync.uploaded(), is(1));
+            assertThat(sync.bytes(), is(64L * 1024L + (300000L % (64L * 1024L)) + 200L));
+            assertArrayEquals(bigBytes, Files.readAllBytes(remoteSite.resolve("big.bin")));
+            assertArrayEquals(randomBytes(200), Files.readAllBytes(remoteSite.resolve("small2.txt")));
+        }
+    }
+    
+    @Test
+    public void resumeComparesAllOfThePartialFile() throws Exception {
+        SshSession session = startAndConnect();
+        
+        byte[] bytes = randomBytes(3 * 1024 * 1024);
+        Path local = temporaryFolder.newFile("resume.bin").toPath();
+        Files.write(local, bytes);
+        
+        Path remote = remoteDir.toPath().resolve("resume.bin");
+        Path remotePartial = remoteDir.toPath().resolve(".resume.bin.part");
+        String target = remoteDir.getAbsolutePath() + "/resume.bin";
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            Files.write(remotePartial, Arrays.copyOf(bytes, 2 * 1024 * 1024));
+            
+            SshSftpPut.Result put = sftp.put()
+                .source(local)
+                .target(target)
+                .resume(true)
+                .runResult();
+            
+            assertThat(put.bytes(), is((long)bytes.length - 2 * 1024 * 1024));
+            assertArrayEquals(bytes, Files.readAllBytes(remote));
+            
+            // only its start differs (its last megabyte still matches)
+            byte[] partial = Arrays.copyOf(bytes, 2 * 1024 * 1024);
+            partial[0] ^= 1;
+            Files.write(remotePartial, partial);
+            
+            put = sftp.put()
+                .source(local)
+                .target(target)
+                .resume(true)
+                .runResult();
+            
+            assertThat(put.bytes(), is((long)bytes.length));
+            assertArrayEquals(bytes, Files.readAllBytes(remote));
+            
+            Path download = temporaryFolder.newFolder("download").toPath();
+            Files.write(download.resolve("resume.bin.part"), partial);
+            
+            SshSftpGet.Result get = sftp.get()
+                .source(target)
+                .target(download.resolve("resume.bin"))
+                .resume(true)
+                .runResult();
+            
+            assertThat(get.bytes(), is((long)bytes.length));
+            assertArrayEquals(bytes, Files.readAllBytes(download.resolve("resume.bin")));
+            
+            Files.write(download.resolve("resume.bin.part"), Arrays.copyOf(bytes, 2 * 1024 * 1024));
+            
+            get = sftp.get()
+                .source(target)
+                .target(download.resolve("resume.bin"))
+                .resume(true)
+                .runResult();
+            
+            assertThat(get.bytes(), is((long)bytes.length - 2 * 1024 * 1024));
+            assertArrayEquals(bytes, Files.readAllBytes(download.resolve("resume.bin")));
+        }
+    }
+    
+}
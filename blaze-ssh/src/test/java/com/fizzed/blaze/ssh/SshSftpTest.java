@@ -0,0 +1,570 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh;
+
+import com.fizzed.blaze.ssh.impl.JschSession;
+import com.fizzed.blaze.ssh.impl.JschSftp;
+import com.fizzed.blaze.ssh.impl.JschSftpPipe;
+import com.fizzed.blaze.ssh.impl.JschSftpTransfer;
+import com.fizzed.blaze.util.CaptureOutput;
+import com.fizzed.blaze.util.Streamables;
+import com.jcraft.jsch.SftpProgressMonitor;
+import java.io.File;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.subsystem.sftp.SftpSubsystem;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SshSftpTest extends SshBaseTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private File remoteDir;
+    
+    @Before
+    public void setupSftp() throws Exception {
+        remoteDir = temporaryFolder.newFolder("remote");
+        sshd.setFileSystemFactory(new VirtualFileSystemFactory(remoteDir.getAbsolutePath()));
+        sshd.setSubsystemFactories(Arrays.asList(new SftpV3SubsystemFactory()));
+        // no shell so only sftp can hash remote files
+        commandHandler = (SshCommand command) -> {
+            command.exit.onExit(127);
+        };
+    }
+    
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+    
+    @Test
+    public void putAndGetPipelined() throws Exception {
+        SshSession session = startAndConnect();
+        
+        byte[] bytes = randomBytes(3 * 1024 * 1024 + 17);
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            SshSftpPut.Result put = sftp.put()
+                .source(Streamables.input(new java.io.ByteArrayInputStream(bytes)))
+                .target("stream.bin")
+                .runResult();
+            
+            assertThat(put.bytes(), is((long)bytes.length));
+            assertThat(put.bytesPerSecond(), greaterThan(0L));
+            assertArrayEquals(bytes, Files.readAllBytes(remoteDir.toPath().resolve("stream.bin")));
+            
+            CaptureOutput capture = Streamables.captureOutput();
+            
+            SshSftpGet.Result get = sftp.get()
+                .source("stream.bin")
+                .target(capture)
+                .requests(4)
+                .runResult();
+            
+            assertThat(get.bytes(), is((long)bytes.length));
+            assertArrayEquals(bytes, capture.asBytes());
+        }
+    }
+    
+    @Test
+    public void pipeUsableAfterFailedPipelinedRead() throws Exception {
+        SshSession session = startAndConnect();
+        
+        byte[] bytes = randomBytes(1024 * 1024);
+        Files.write(remoteDir.toPath().resolve("read.bin"), bytes);
+        
+        try (JschSftpPipe pipe = new JschSftpPipe(((JschSession)session).getJschSession())) {
+            byte[] handle = pipe.open("read.bin", JschSftpPipe.READ);
+            
+            try {
+                // fails on the first chunk w/ many other reads in flight
+                pipe.read(handle, 0, bytes.length, 16, (position, buffer, offset, length) -> {
+                    throw new IllegalStateException("sink failed");
+                });
+                fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            
+            // replies to the other reads must not be mistaken for this one's
+            assertThat(pipe.size(handle), is((long)bytes.length));
+            assertThat(pipe.lstat("read.bin").size(), is((long)bytes.length));
+            
+            pipe.close(handle);
+        }
+    }
+    
+    @Test
+    public void failedDownloadAndUploadCloseRemoteHandle() throws Exception {
+        // any handle left open fails the next open
+        sshd.getProperties().put(SftpSubsystem.MAX_OPEN_HANDLES_PER_SESSION, "0");
+        
+        SshSession session = startAndConnect();
+        
+        Files.write(remoteDir.toPath().resolve("read.bin"), randomBytes(1000));
+        Path missingDir = temporaryFolder.getRoot().toPath().resolve("missing");
+        
+        try (JschSftpPipe pipe = new JschSftpPipe(((JschSession)session).getJschSession())) {
+            try {
+                pipe.download("read.bin", missingDir.resolve("read.bin"), 4, null);
+                fail();
+            } catch (NoSuchFileException e) {
+                // expected (the local file cannot be created)
+            }
+            
+            try {
+                pipe.upload(missingDir.resolve("write.bin"), "write.bin", 4, null);
+                fail();
+            } catch (NoSuchFileException e) {
+                // expected (before a remote handle is even opened)
+            }
+            
+            Path localFile = temporaryFolder.newFile("write.bin").toPath();
+            Files.write(localFile, randomBytes(2000));
+            assertThat(pipe.upload(localFile, "write.bin", 4, null), is(2000L));
+            assertThat(pipe.download("read.bin", localFile, 4, null), is(1000L));
+        }
+    }
+    
+    @Test
+    public void putAndGetOverMultipleChannels() throws Exception {
+        SshSession session = startAndConnect();
+        
+        // large enough to be split into 3 parts
+        byte[] bytes = randomBytes(25 * 1024 * 1024 + 3);
+        Path localFile = temporaryFolder.newFile("large.bin").toPath();
+        Files.write(localFile, bytes);
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            // existing larger remote file must be truncated
+            Files.write(remoteDir.toPath().resolve("large.bin"), randomBytes(30 * 1024 * 1024));
+            
+            SshSftpPut.Result put = sftp.put()
+                .source(localFile)
+                .target("large.bin")
+                .channels(4)
+                .runResult();
+            
+            assertThat(put.bytes(), is((long)bytes.length));
+            assertArrayEquals(bytes, Files.readAllBytes(remoteDir.toPath().resolve("large.bin")));
+            
+            Path downloadFile = temporaryFolder.newFile("download.bin").toPath();
+            
+            SshSftpGet.Result get = sftp.get()
+                .source("large.bin")
+                .target(downloadFile)
+                .channels(4)
+                .runResult();
+            
+            assertThat(get.bytes(), is((long)bytes.length));
+            assertArrayEquals(bytes, Files.readAllBytes(downloadFile));
+        }
+    }
+    
+    @Test
+    public void resumePutAndGet() throws Exception {
+        SshSession session = startAndConnect();
+        
+        byte[] bytes = randomBytes(20 * 1024 * 1024 + 5);
+        Path local = temporaryFolder.newFile("resume.bin").toPath();
+        Files.write(local, bytes);
+        
+        Path remote = remoteDir.toPath().resolve("resume.bin");
+        Path remotePartial = remoteDir.toPath().resolve(".resume.bin.part");
+        Files.write(remote, randomBytes(10));
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            // a previous attempt got 2 MB in
+            Files.write(remotePartial, Arrays.copyOf(bytes, 2 * 1024 * 1024));
+            
+            SshSftpPut.Result put = sftp.put()
+                .source(local)
+                .target("resume.bin")
+                .channels(4)
+                .resume(true)
+                .runResult();
+            
+            assertThat(put.bytes(), is((long)bytes.length - 2 * 1024 * 1024));
+            assertArrayEquals(bytes, Files.readAllBytes(remote));
+            assertThat(Files.exists(remotePartial), is(false));
+            
+            // a partial file that no longer matches starts over
+            Files.write(remotePartial, randomBytes(1024 * 1024));
+            
+            put = sftp.put()
+                .source(local)
+                .target("resume.bin")
+                .resume(true)
+                .runResult();
+            
+            assertThat(put.bytes(), is((long)bytes.length));
+            assertArrayEquals(bytes, Files.readAllBytes(remote));
+            
+            Path download = temporaryFolder.newFolder("download").toPath();
+            Path target = download.resolve("resume.bin");
+            Files.write(download.resolve("resume.bin.part"), Arrays.copyOf(bytes, 1024 * 1024 + 1));
+            
+            SshSftpGet.Result get = sftp.get()
+                .source("resume.bin")
+                .target(target)
+                .channels(4)
+                .resume(true)
+                .runResult();
+            
+            assertThat(get.bytes(), is((long)bytes.length - 1024 * 1024 - 1));
+            assertArrayEquals(bytes, Files.readAllBytes(target));
+            assertThat(Files.exists(download.resolve("resume.bin.part")), is(false));
+        }
+    }
+    
+    @Test
+    public void resumeStartsOverWhenPartialFileCannotBeHashed() throws Exception {
+        // neither sftp nor a shell can hash it
+        sshd.setSubsystemFactories(Arrays.asList(new SftpV3SubsystemFactory().withoutCheckFile()));
+        
+        SshSession session = startAndConnect();
+        
+        byte[] bytes = randomBytes(3 * 1024 * 1024);
+        Path local = temporaryFolder.newFile("resume.bin").toPath();
+        Files.write(local, bytes);
+        
+        Path remote = remoteDir.toPath().resolve("resume.bin");
+        Path remotePartial = remoteDir.toPath().resolve(".resume.bin.part");
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            // small enough to be read back
+            Files.write(remotePartial, Arrays.copyOf(bytes, 512 * 1024));
+            
+            SshSftpPut.Result put = sftp.put()
+                .source(local)
+                .target("resume.bin")
+                .resume(true)
+                .runResult();
+            
+            assertThat(put.bytes(), is((long)bytes.length - 512 * 1024));
+            assertArrayEquals(bytes, Files.readAllBytes(remote));
+            
+            // the same start but too big to read back
+            Files.write(remotePartial, Arrays.copyOf(bytes, 2 * 1024 * 1024));
+            
+            put = sftp.put()
+                .source(local)
+                .target("resume.bin")
+                .resume(true)
+                .runResult();
+            
+            assertThat(put.bytes(), is((long)bytes.length));
+            assertArrayEquals(bytes, Files.readAllBytes(remote));
+            
+            Path download = temporaryFolder.newFolder("download").toPath();
+            Path target = download.resolve("resume.bin");
+            Files.write(download.resolve("resume.bin.part"), Arrays.copyOf(bytes, 2 * 1024 * 1024));
+            
+            SshSftpGet.Result get = sftp.get()
+                .source("resume.bin")
+                .target(target)
+                .resume(true)
+                .runResult();
+            
+            assertThat(get.bytes(), is((long)bytes.length));
+            assertArrayEquals(bytes, Files.readAllBytes(target));
+        }
+    }
+    
+    /**
+     * Progress monitor that kills the transfer once enough bytes are done.
+     */
+    static private class KillingMonitor implements SftpProgressMonitor {
+        
+        private final long killAt;
+        private long count;
+
+        public KillingMonitor(long killAt) {
+            this.killAt = killAt;
+        }
+        
+        @Override
+        public void init(int op, String src, String dest, long max) {
+            // do nothing
+        }
+
+        @Override
+        public boolean count(long count) {
+            this.count += count;
+            if (this.count >= killAt) {
+                throw new IllegalStateException("killed");
+            }
+            return true;
+        }
+
+        @Override
+        public void end() {
+            // do nothing
+        }
+        
+    }
+    
+    @Test
+    public void resumeMultiChannelTransfersKilledPartway() throws Exception {
+        SshSession session = startAndConnect();
+        
+        // large enough to be split into 4 parts if it were not resumable
+        byte[] bytes = randomBytes(40 * 1024 * 1024 + 3);
+        Path local = temporaryFolder.newFile("killed.bin").toPath();
+        Files.write(local, bytes);
+        
+        Path remotePartial = remoteDir.toPath().resolve(".killed.bin.part");
+        JschSftpTransfer transfer = new JschSftpTransfer(((JschSession)session).getJschSession(), null, 64, 4);
+        
+        try {
+            transfer.put(local, null, (long)bytes.length, "/killed.bin", true, new KillingMonitor(5 * 1024 * 1024));
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        
+        // the partial file must be the start of the source (no holes)
+        int length = (int)Files.size(remotePartial);
+        assertThat(length > 0 && length < bytes.length, is(true));
+        assertArrayEquals(Arrays.copyOf(bytes, length), Files.readAllBytes(remotePartial));
+        
+        long sent = transfer.put(local, null, (long)bytes.length, "/killed.bin", true, new KillingMonitor(Long.MAX_VALUE));
+        
+        assertThat(sent, is((long)bytes.length - length));
+        assertArrayEquals(bytes, Files.readAllBytes(remoteDir.toPath().resolve("killed.bin")));
+        
+        Path target = temporaryFolder.newFolder("download").toPath().resolve("killed.bin");
+        Path localPartial = target.resolveSibling("killed.bin.part");
+        
+        try {
+            transfer.get("/killed.bin", target, null, true, new KillingMonitor(5 * 1024 * 1024));
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        
+        length = (int)Files.size(localPartial);
+        assertThat(length > 0 && length < bytes.length, is(true));
+        assertArrayEquals(Arrays.copyOf(bytes, length), Files.readAllBytes(localPartial));
+        
+        long received = transfer.get("/killed.bin", target, null, true, new KillingMonitor(Long.MAX_VALUE));
+        
+        assertThat(received, is((long)bytes.length - length));
+        assertArrayEquals(bytes, Files.readAllBytes(target));
+    }
+    
+    @Test
+    public void putAllAndGetAll() throws Exception {
+        SshSession session = startAndConnect();
+        
+        Path site = temporaryFolder.newFolder("site").toPath();
+        for (int i = 0; i < 40; i++) {
+            Path dir = site.resolve("dir" + (i % 4)).resolve("sub" + (i % 2));
+            Files.createDirectories(dir);
+            Files.write(dir.resolve("file" + i + ".txt"), randomBytes(i * 100));
+        }
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            SshSftpPutAll.Result put = sftp.putAll()
+                .path(site)
+                .target("deploy")
+                .channels(3)
+                .runResult();
+            
+            assertThat(put.files(), is(40));
+            // deploy, site, 4 dirs and a sub in each
+            assertThat(put.directories(), is(10));
+            assertThat(put.bytes(), is(78000L));
+            
+            Path remoteSite = remoteDir.toPath().resolve("deploy/site");
+            assertArrayEquals(randomBytes(3900), Files.readAllBytes(remoteSite.resolve("dir3/sub1/file39.txt")));
+            
+            // directories already exist the second time
+            put = sftp.putAll()
+                .path(site)
+                .target("deploy")
+                .runResult();
+            
+            assertThat(put.files(), is(40));
+            
+            Path download = temporaryFolder.newFolder("download").toPath();
+            
+            SshSftpGetAll.Result get = sftp.getAll()
+                .source("deploy/site")
+                .target(download)
+                .channels(3)
+                .runResult();
+            
+            assertThat(get.files(), is(40));
+            assertThat(get.directories(), is(9));
+            assertThat(get.bytes(), is(78000L));
+            assertArrayEquals(randomBytes(3900), Files.readAllBytes(download.resolve("site/dir3/sub1/file39.txt")));
+            assertArrayEquals(randomBytes(0), Files.readAllBytes(download.resolve("site/dir0/sub0/file0.txt")));
+        }
+    }
+    
+    @Test
+    public void syncOnlySendsChanges() throws Exception {
+        SshSession session = startAndConnect();
+        
+        Path site = temporaryFolder.newFolder("site").toPath();
+        Path big = site.resolve("big.bin");
+        byte[] bigBytes = randomBytes(1024 * 1024 + 10);
+        Files.write(big, bigBytes);
+        for (int i = 1; i <= 4; i++) {
+            Files.write(site.resolve("small" + i + ".txt"), randomBytes(i * 100));
+        }
+        touchAll(site, 1500000000L);
+        
+        Path remoteSite = remoteDir.toPath().resolve("deploy/site");
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            SshSftpSync.Result sync = sftp.sync()
+                .path(site)
+                .target("deploy")
+                .runResult();
+            
+            assertThat(sync.files(), is(5));
+            assertThat(sync.uploaded(), is(5));
+            assertThat(sync.bytes(), is(1024L * 1024L + 10L + 1000L));
+            
+            // nothing changed
+            sync = sftp.sync()
+                .path(site)
+                .target("deploy")
+                .runResult();
+            
+            assertThat(sync.unchanged(), is(5));
+            assertThat(sync.bytes(), is(0L));
+            
+            // change a few bytes of a single block and a small file (modified after upload)
+            long later = System.currentTimeMillis() / 1000L + 3600L;
+            bigBytes[300000] ^= 1;
+            bigBytes[300005] ^= 1;
+            Files.write(big, bigBytes);
+            Files.setLastModifiedTime(big, FileTime.from(later, TimeUnit.SECONDS));
+            Files.write(site.resolve("small1.txt"), randomBytes(101));
+            Files.setLastModifiedTime(site.resolve("small1.txt"), FileTime.from(later, TimeUnit.SECONDS));
+            
+            sync = sftp.sync()
+                .path(site)
+                .target("deploy")
+                .runResult();
+            
+            assertThat(sync.unchanged(), is(3));
+            assertThat(sync.patched(), is(1));
+            assertThat(sync.uploaded(), is(1));
+            assertThat(sync.bytes(), is(64L * 1024L + 101L));
+            assertArrayEquals(bigBytes, Files.readAllBytes(remoteSite.resolve("big.bin")));
+            assertArrayEquals(randomBytes(101), Files.readAllBytes(remoteSite.resolve("small1.txt")));
+            
+            // remote modified times were set to the local ones
+            assertThat(Files.getLastModifiedTime(remoteSite.resolve("big.bin")).to(TimeUnit.SECONDS), is(later));
+            assertThat(Files.getLastModifiedTime(remoteSite.resolve("small1.txt")).to(TimeUnit.SECONDS), is(later));
+            
+            // shrinking resends only the new partial last block and keeps permissions
+            Files.setPosixFilePermissions(remoteSite.resolve("big.bin"), PosixFilePermissions.fromString("rw-r-----"));
+            Files.write(big, Arrays.copyOf(bigBytes, 500000));
+            Files.setLastModifiedTime(big, FileTime.from(later + 3600L, TimeUnit.SECONDS));
+            
+            sync = sftp.sync()
+                .path(site)
+                .target("deploy")
+                .runResult();
+            
+            assertThat(sync.unchanged(), is(4));
+            assertThat(sync.patched(), is(1));
+            assertThat(sync.bytes(), is(500000L - 7L * 64L * 1024L));
+            assertArrayEquals(Arrays.copyOf(bigBytes, 500000), Files.readAllBytes(remoteSite.resolve("big.bin")));
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(remoteSite.resolve("big.bin"))), is("rw-r-----"));
+            assertThat(Files.exists(remoteSite.resolve(".big.bin.patch")), is(false));
+            
+            // same size edit w/ an older modified time (e.g. restored from an archive)
+            byte[] small2 = randomBytes(200);
+            small2[0] ^= 1;
+            Files.write(site.resolve("small2.txt"), small2);
+            Files.setLastModifiedTime(site.resolve("small2.txt"), FileTime.from(1400000000L, TimeUnit.SECONDS));
+            
+            sync = sftp.sync()
+                .path(site)
+                .target("deploy")
+                .runResult();
+            
+            assertThat(sync.unchanged(), is(4));
+            assertThat(sync.uploaded(), is(1));
+            assertArrayEquals(small2, Files.readAllBytes(remoteSite.resolve("small2.txt")));
+        }
+    }
+    
+    @Test
+    public void syncChecksumNeverUploadsWhatItCannotCompare() throws Exception {
+        // neither sftp nor a shell can hash remote files
+        sshd.setSubsystemFactories(Arrays.asList(new SftpV3SubsystemFactory().withoutCheckFile()));
+        SshSession session = startAndConnect();
+        
+        Path site = temporaryFolder.newFolder("site").toPath();
+        Files.write(site.resolve("big.bin"), randomBytes(300000));
+        Files.write(site.resolve("small.txt"), randomBytes(100));
+        touchAll(site, 1500000000L);
+        
+        try (SshSftpSession sftp = new JschSftp(context, session).run()) {
+            SshSftpSync.Result sync = sftp.sync()
+                .path(site)
+                .target("deploy")
+                .runResult();
+            
+            assertThat(sync.uploaded(), is(2));
+            
+            sync = sftp.sync()
+                .path(site)
+                .target("deploy")
+                .checksum(true)
+                .runResult();
+            
+            assertThat(sync.unchanged(), is(2));
+            assertThat(sync.patched(), is(0));
+            assertThat(sync.uploaded(), is(0));
+            assertThat(sync.bytes(), is(0L));
+        }
+    }
+    
+    private void touchAll(Path dir, long seconds) throws Exception {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.setLastModifiedTime(file, FileTime.from(seconds, TimeUnit.SECONDS));
+            }
+        }
+    }
+    
+}
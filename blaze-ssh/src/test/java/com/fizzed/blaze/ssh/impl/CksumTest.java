@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class CksumTest {
+    
+    @Test
+    public void sameAsPosixCksum() {
+        // printf '123456789' | cksum
+        assertThat(Cksum.of("123456789".getBytes(StandardCharsets.US_ASCII), 0, 9), is(930766865L));
+        // head -c 1000 /dev/zero | cksum
+        assertThat(Cksum.of(new byte[1000], 0, 1000), is(2610763910L));
+    }
+    
+    @Test
+    public void rollsToEveryOffset() {
+        byte[] data = new byte[4096];
+        new Random(1).nextBytes(data);
+        int length = 1000;
+        
+        Cksum cksum = new Cksum(length);
+        cksum.reset(data, 0);
+        
+        for (int offset = 0; ; offset++) {
+            assertThat(cksum.value(), is(Cksum.of(data, offset, length)));
+            if (offset + length >= data.length) {
+                break;
+            }
+            cksum.roll(data[offset], data[offset + length]);
+        }
+    }
+    
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Fizzed, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fizzed.blaze.ssh.util;
+
+import com.fizzed.blaze.util.MutableUri;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class ProxyJumpTest {
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void empty() {
+        ProxyJump.parse("  ");
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void invalidHop() {
+        ProxyJump.parse("jump1.example.com,,jump2.example.com");
+    }
+    
+    @Test
+    public void none() {
+        assertThat(ProxyJump.parse("none").getHops(), hasSize(0));
+    }
+    
+    @Test
+    public void parse() {
+        ProxyJump jump = null;
+        MutableUri hop = null;
+        
+        jump = ProxyJump.parse("jump1.example.com");
+        assertThat(jump.getHops(), hasSize(1));
+        hop = jump.getHops().get(0);
+        assertThat(hop.getHost(), is("jump1.example.com"));
+        assertThat(hop.getUsername(), is(nullValue()));
+        assertThat(hop.getPort(), is(nullValue()));
+        
+        jump = ProxyJump.parse("fred@jump1.example.com:2222");
+        hop = jump.getHops().get(0);
+        assertThat(hop.getHost(), is("jump1.example.com"));
+        assertThat(hop.getUsername(), is("fred"));
+        assertThat(hop.getPort(), is(2222));
+        
+        jump = ProxyJump.parse("ssh://fred@jump1.example.com:2222");
+        hop = jump.getHops().get(0);
+        assertThat(hop.getHost(), is("jump1.example.com"));
+        assertThat(hop.getUsername(), is("fred"));
+        assertThat(hop.getPort(), is(2222));
+        
+        // chain in order
+        jump = ProxyJump.parse("jump1.example.com, fred@jump2.example.com");
+        assertThat(jump.getHops(), hasSize(2));
+        assertThat(jump.getHops().get(0).getHost(), is("jump1.example.com"));
+        assertThat(jump.getHops().get(1).getHost(), is("jump2.example.com"));
+        assertThat(jump.getHops().get(1).getUsername(), is("fred"));
+    }
+    
+}
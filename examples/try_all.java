@@ -2,9 +2,8 @@ import com.fizzed.blaze.Contexts;
 import static com.fizzed.blaze.Contexts.baseDir;
 import static com.fizzed.blaze.Systems.exec;
 import static com.fizzed.blaze.util.Globber.globber;
+import java.io.File;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -39,10 +38,9 @@ public class try_all {
     
     private Path findBlazeJarOnClassPath() throws URISyntaxException {
         // does the jar already exist on claspath?
-        URLClassLoader urlClassLoader = (URLClassLoader)Thread.currentThread().getContextClassLoader();
-
-        for (URL u : urlClassLoader.getURLs()) {
-            Path loadedJarFile = Paths.get(u.toURI());
+        // (app classloader is not a URLClassLoader on Java 9+)
+        for (String p : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            Path loadedJarFile = Paths.get(p).toAbsolutePath();
             String loadedJarName = loadedJarFile.getFileName().toString();
             if (loadedJarName.startsWith("blaze") && loadedJarName.endsWith(".jar")) {
                 log.info("Using blaze jar {}", loadedJarFile);